@@ -8,6 +8,7 @@
 
 package org.cloudbus.cloudsim;
 
+import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -23,7 +24,10 @@ import org.cloudbus.cloudsim.core.CloudSim;
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
  */
-public class Cloudlet {
+public class Cloudlet implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * The User or Broker ID. It is advisable that broker set this ID with its own ID, so that
@@ -40,16 +44,16 @@ public class Cloudlet {
 	 * The input file size of this Cloudlet before execution (unit: in byte). in byte = program +
 	 * input data size
 	 */
-	private final long cloudletFileSize;
+	private long cloudletFileSize;
 
 	/** The output file size of this Cloudlet after execution (unit: in byte). */
-	private final long cloudletOutputSize;
+	private long cloudletOutputSize;
 
 	/** The num of Pe required to execute this job. */
 	private int numberOfPes;
 
 	/** The cloudlet ID. */
-	private final int cloudletId;
+	private int cloudletId;
 
 	/** The status of this Cloudlet. */
 	private int status;
@@ -192,8 +196,6 @@ public class Cloudlet {
 		vmId = -1;
 		accumulatedBwCost = 0.0;
 		costPerBw = 0.0;
-
-		requiredFiles = new LinkedList<String>();
 	}
 
 	/**
@@ -328,6 +330,76 @@ public class Cloudlet {
 			final UtilizationModel utilizationModelRam,
 			final UtilizationModel utilizationModelBw,
 			final boolean record) {
+		// Normally, a Cloudlet is only executed on a resource without being
+		// migrated to others. Hence, to reduce memory consumption, set the
+		// size of this ArrayList to be less than the default one.
+		resList = new ArrayList<Resource>(2);
+		this.record = record;
+
+		initialize(
+				cloudletId,
+				cloudletLength,
+				pesNumber,
+				cloudletFileSize,
+				cloudletOutputSize,
+				utilizationModelCpu,
+				utilizationModelRam,
+				utilizationModelBw);
+	}
+
+	/**
+	 * Resets this Cloudlet to the state of a new Cloudlet with the given parameters, keeping only
+	 * whether its history is recorded, so that the object can be reused once the previous cloudlet
+	 * is not referenced anymore.
+	 * 
+	 * @param cloudletId the unique ID of the cloudlet
+	 * @param cloudletLength the length or size (in MI) of the cloudlet
+	 * @param pesNumber the pes number
+	 * @param cloudletFileSize the file size (in byte) of the cloudlet <tt>BEFORE</tt> submitting
+	 * @param cloudletOutputSize the file size (in byte) of the cloudlet <tt>AFTER</tt> finish
+	 * @param utilizationModelCpu the utilization model cpu
+	 * @param utilizationModelRam the utilization model ram
+	 * @param utilizationModelBw the utilization model bw
+	 */
+	protected void reset(
+			final int cloudletId,
+			final long cloudletLength,
+			final int pesNumber,
+			final long cloudletFileSize,
+			final long cloudletOutputSize,
+			final UtilizationModel utilizationModelCpu,
+			final UtilizationModel utilizationModelRam,
+			final UtilizationModel utilizationModelBw) {
+		resList.clear();
+		reservationId = -1;
+		num = null;
+		newline = null;
+		history = null;
+		requiredFiles = null;
+
+		initialize(
+				cloudletId,
+				cloudletLength,
+				pesNumber,
+				cloudletFileSize,
+				cloudletOutputSize,
+				utilizationModelCpu,
+				utilizationModelRam,
+				utilizationModelBw);
+	}
+
+	/**
+	 * Sets the fields of a new Cloudlet.
+	 */
+	private void initialize(
+			final int cloudletId,
+			final long cloudletLength,
+			final int pesNumber,
+			final long cloudletFileSize,
+			final long cloudletOutputSize,
+			final UtilizationModel utilizationModelCpu,
+			final UtilizationModel utilizationModelRam,
+			final UtilizationModel utilizationModelBw) {
 		userId = -1;          // to be set by a Broker or user
 		status = CREATED;
 		this.cloudletId = cloudletId;
@@ -342,18 +414,13 @@ public class Cloudlet {
 		this.cloudletFileSize = Math.max(1, cloudletFileSize);
 		this.cloudletOutputSize = Math.max(1, cloudletOutputSize);
 
-		// Normally, a Cloudlet is only executed on a resource without being
-		// migrated to others. Hence, to reduce memory consumption, set the
-		// size of this ArrayList to be less than the default one.
-		resList = new ArrayList<Resource>(2);
 		index = -1;
-		this.record = record;
 
 		vmId = -1;
 		accumulatedBwCost = 0.0;
 		costPerBw = 0.0;
 
-		requiredFiles = new LinkedList<String>();
+		// the list of required files is created by the first call to getRequiredFiles()
 
 		setUtilizationModelCpu(utilizationModelCpu);
 		setUtilizationModelRam(utilizationModelRam);
@@ -365,7 +432,10 @@ public class Cloudlet {
 	/**
 	 * Internal class that keeps track Cloudlet's movement in different CloudResources.
 	 */
-	public static class Resource {
+	public static class Resource implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
 
 		/** Cloudlet's submission time to a CloudResource. */
 		public double submissionTime = 0.0;
@@ -1293,11 +1363,15 @@ public class Cloudlet {
 	// Data cloudlet
 
 	/**
-	 * Gets the required files.
+	 * Gets the required files. The list is created on first use, as most cloudlets, tuples
+	 * included, require no file.
 	 * 
 	 * @return the required files
 	 */
 	public List<String> getRequiredFiles() {
+		if (requiredFiles == null) {
+			requiredFiles = new LinkedList<String>();
+		}
 		return requiredFiles;
 	}
 
@@ -1347,7 +1421,7 @@ public class Cloudlet {
 	 */
 	public boolean deleteRequiredFile(final String filename) {
 		boolean result = false;
-		if (getRequiredFiles() == null) {
+		if (requiredFiles == null) {
 			return result;
 		}
 
@@ -1372,7 +1446,7 @@ public class Cloudlet {
 	 */
 	public boolean requiresFiles() {
 		boolean result = false;
-		if (getRequiredFiles() != null && getRequiredFiles().size() > 0) {
+		if (requiredFiles != null && requiredFiles.size() > 0) {
 			result = true;
 		}
 
@@ -24,6 +24,9 @@ import org.fog.entities.Tuple;
  */
 public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShared {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The mips. */
 	private double mips;
 
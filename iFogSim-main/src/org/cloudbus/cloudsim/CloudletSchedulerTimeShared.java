@@ -23,6 +23,9 @@ import org.fog.entities.Tuple;
  */
 public class CloudletSchedulerTimeShared extends CloudletScheduler {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The cloudlet exec list. */
 	private List<? extends ResCloudlet> cloudletExecList;
 
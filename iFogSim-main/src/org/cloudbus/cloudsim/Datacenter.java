@@ -32,6 +32,9 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class Datacenter extends SimEntity {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The characteristics. */
 	private DatacenterCharacteristics characteristics;
 
@@ -642,7 +645,7 @@ public class Datacenter extends SimEntity {
 					failed = true;
 				} else {
 					// time to transfer the files
-					double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
+					double fileTransferTime = cl.requiresFiles() ? predictFileTransferTime(cl.getRequiredFiles()) : 0.0;
 					vm.getCloudletScheduler().cloudletSubmit(cl, fileTransferTime);
 				}
 			} else {// the cloudlet will migrate from one resource to another
@@ -714,7 +717,7 @@ public class Datacenter extends SimEntity {
 			int userId = cl.getUserId();
 			int vmId = cl.getVmId();
 						// time to transfer the files
-			double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
+			double fileTransferTime = cl.requiresFiles() ? predictFileTransferTime(cl.getRequiredFiles()) : 0.0;
 			Host host = getVmAllocationPolicy().getHost(vmId, userId);
 			Vm vm = host.getVm(vmId, userId);
 			CloudletScheduler scheduler = vm.getCloudletScheduler();
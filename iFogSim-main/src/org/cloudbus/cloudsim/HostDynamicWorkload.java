@@ -25,6 +25,9 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  */
 public class HostDynamicWorkload extends Host {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The utilization mips. */
 	private double utilizationMips;
 
@@ -34,6 +37,9 @@ public class HostDynamicWorkload extends Host {
 	/** The state history. */
 	private final List<HostStateHistoryEntry> stateHistory = new LinkedList<HostStateHistoryEntry>();
 
+	/** Whether the state histories of the host and of its VMs are kept. */
+	private boolean stateHistoryKept = true;
+
 	/**
 	 * Instantiates a new host.
 	 * 
@@ -104,24 +110,28 @@ public class HostDynamicWorkload extends Host {
 			}
 
 			if (getVmsMigratingIn().contains(vm)) {
-				Log.formatLine("%.2f: [Host #" + getId() + "] VM #" + vm.getId()
-						+ " is being migrated to Host #" + getId(), CloudSim.clock());
+				if (!Log.isDisabled()) {
+					Log.formatLine("%.2f: [Host #%d] VM #%d is being migrated to Host #%d", CloudSim.clock(), getId(),
+							vm.getId(), getId());
+				}
 			} else {
-				if (totalAllocatedMips + 0.1 < totalRequestedMips) {
-					Log.formatLine("%.2f: [Host #" + getId() + "] Under allocated MIPS for VM #" + vm.getId()
-							+ ": %.2f", CloudSim.clock(), totalRequestedMips - totalAllocatedMips);
+				if (totalAllocatedMips + 0.1 < totalRequestedMips && !Log.isDisabled()) {
+					Log.formatLine("%.2f: [Host #%d] Under allocated MIPS for VM #%d: %.2f", CloudSim.clock(), getId(),
+							vm.getId(), totalRequestedMips - totalAllocatedMips);
 				}
 
-				vm.addStateHistoryEntry(
-						currentTime,
-						totalAllocatedMips,
-						totalRequestedMips,
-						(vm.isInMigration() && !getVmsMigratingIn().contains(vm)));
+				if (isStateHistoryKept()) {
+					vm.addStateHistoryEntry(
+							currentTime,
+							totalAllocatedMips,
+							totalRequestedMips,
+							(vm.isInMigration() && !getVmsMigratingIn().contains(vm)));
+				}
 
 				if (vm.isInMigration()) {
-					Log.formatLine(
-							"%.2f: [Host #" + getId() + "] VM #" + vm.getId() + " is in migration",
-							CloudSim.clock());
+					if (!Log.isDisabled()) {
+						Log.formatLine("%.2f: [Host #%d] VM #%d is in migration", CloudSim.clock(), getId(), vm.getId());
+					}
 					totalAllocatedMips /= 0.9; // performance degradation due to migration - 10%
 				}
 			}
@@ -274,6 +284,26 @@ public class HostDynamicWorkload extends Host {
 		return stateHistory;
 	}
 
+	/**
+	 * Checks if the state histories of the host and of its VMs are kept.
+	 * 
+	 * @return true, if they are kept
+	 */
+	public boolean isStateHistoryKept() {
+		return stateHistoryKept;
+	}
+
+	/**
+	 * Sets whether the state histories of the host and of its VMs are kept. They get an entry at
+	 * every update of the processing that changes the time, so a long simulation whose histories are
+	 * not read had better not keep them.
+	 * 
+	 * @param stateHistoryKept whether the entries added from now on are kept
+	 */
+	public void setStateHistoryKept(boolean stateHistoryKept) {
+		this.stateHistoryKept = stateHistoryKept;
+	}
+
 	/**
 	 * Adds the state history entry.
 	 * 
@@ -285,6 +315,9 @@ public class HostDynamicWorkload extends Host {
 	public
 			void
 			addStateHistoryEntry(double time, double allocatedMips, double requestedMips, boolean isActive) {
+		if (!isStateHistoryKept()) {
+			return;
+		}
 
 		HostStateHistoryEntry newState = new HostStateHistoryEntry(
 				time,
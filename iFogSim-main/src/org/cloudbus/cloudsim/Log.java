@@ -10,10 +10,22 @@ package org.cloudbus.cloudsim;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.function.Supplier;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.TraceSink;
 
 /**
  * The Log class used for performing loggin of the simulation process. It provides the ability to
  * substitute the output stream by any OutputStream subclass.
+ * <p>
+ * A message on a hot path should be passed as a format and its arguments, or as a supplier, so
+ * that it is only built if the output is enabled. The fixed-arity format methods allocate no
+ * arguments array; primitive arguments are still boxed at the call site, so a statement with such
+ * arguments should be guarded by {@link #isDisabled()}.
+ * <p>
+ * If the simulation of the calling thread has a {@link TraceSink} tracing text, the output goes to
+ * the sink instead of the output stream, and the messages are formatted by the thread of the sink.
  * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
@@ -36,6 +48,11 @@ public class Log {
 	 */
 	public static void print(String message) {
 		if (!isDisabled()) {
+			TraceSink sink = getTraceSink();
+			if (sink != null) {
+				sink.text(message, false);
+				return;
+			}
 			try {
 				getOutput().write(message.getBytes());
 			} catch (IOException e) {
@@ -62,10 +79,26 @@ public class Log {
 	 */
 	public static void printLine(String message) {
 		if (!isDisabled()) {
+			TraceSink sink = getTraceSink();
+			if (sink != null) {
+				sink.text(message, true);
+				return;
+			}
 			print(message + LINE_SEPARATOR);
 		}
 	}
 
+	/**
+	 * Prints the line built by the supplier, which is only called if the output is enabled.
+	 * 
+	 * @param message the supplier of the message
+	 */
+	public static void printLine(Supplier<String> message) {
+		if (!isDisabled()) {
+			printLine(message.get());
+		}
+	}
+
 	/**
 	 * Prints the empty line.
 	 */
@@ -86,6 +119,45 @@ public class Log {
 		}
 	}
 
+	/**
+	 * Prints a string formated as in String.format(), with one argument.
+	 * 
+	 * @param format the format
+	 * @param arg the argument
+	 */
+	public static void format(String format, Object arg) {
+		if (!isDisabled()) {
+			write(false, format, arg);
+		}
+	}
+
+	/**
+	 * Prints a string formated as in String.format(), with two arguments.
+	 * 
+	 * @param format the format
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 */
+	public static void format(String format, Object arg1, Object arg2) {
+		if (!isDisabled()) {
+			write(false, format, arg1, arg2);
+		}
+	}
+
+	/**
+	 * Prints a string formated as in String.format(), with three arguments.
+	 * 
+	 * @param format the format
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 */
+	public static void format(String format, Object arg1, Object arg2, Object arg3) {
+		if (!isDisabled()) {
+			write(false, format, arg1, arg2, arg3);
+		}
+	}
+
 	/**
 	 * Prints a string formated as in String.format().
 	 * 
@@ -94,7 +166,46 @@ public class Log {
 	 */
 	public static void format(String format, Object... args) {
 		if (!isDisabled()) {
-			print(String.format(format, args));
+			write(false, format, args);
+		}
+	}
+
+	/**
+	 * Prints a line formated as in String.format(), with one argument.
+	 * 
+	 * @param format the format
+	 * @param arg the argument
+	 */
+	public static void formatLine(String format, Object arg) {
+		if (!isDisabled()) {
+			write(true, format, arg);
+		}
+	}
+
+	/**
+	 * Prints a line formated as in String.format(), with two arguments.
+	 * 
+	 * @param format the format
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 */
+	public static void formatLine(String format, Object arg1, Object arg2) {
+		if (!isDisabled()) {
+			write(true, format, arg1, arg2);
+		}
+	}
+
+	/**
+	 * Prints a line formated as in String.format(), with three arguments.
+	 * 
+	 * @param format the format
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 */
+	public static void formatLine(String format, Object arg1, Object arg2, Object arg3) {
+		if (!isDisabled()) {
+			write(true, format, arg1, arg2, arg3);
 		}
 	}
 
@@ -106,10 +217,38 @@ public class Log {
 	 */
 	public static void formatLine(String format, Object... args) {
 		if (!isDisabled()) {
+			write(true, format, args);
+		}
+	}
+
+	/**
+	 * Prints a string or a line formated as in String.format(), by the trace sink if there is one.
+	 * 
+	 * @param newLine true to print a line
+	 * @param format the format
+	 * @param args the args
+	 */
+	private static void write(boolean newLine, String format, Object... args) {
+		TraceSink sink = getTraceSink();
+		if (sink != null) {
+			sink.format(newLine, format, args);
+		} else if (newLine) {
 			printLine(String.format(format, args));
+		} else {
+			print(String.format(format, args));
 		}
 	}
 
+	/**
+	 * Gets the trace sink of the simulation of the calling thread, if it traces text.
+	 * 
+	 * @return the sink, or <tt>null</tt>
+	 */
+	private static TraceSink getTraceSink() {
+		TraceSink sink = CloudSim.getTraceSink();
+		return sink != null && sink.isTraced(TraceSink.TEXT) ? sink : null;
+	}
+
 	/**
 	 * Sets the output.
 	 * 
@@ -23,6 +23,9 @@ import java.util.List;
  */
 public class SanStorage extends HarddriveStorage {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The bandwidth. */
 	double bandwidth;
 
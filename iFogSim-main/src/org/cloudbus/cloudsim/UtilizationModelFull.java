@@ -17,6 +17,12 @@ package org.cloudbus.cloudsim;
  */
 public class UtilizationModelFull implements UtilizationModel {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** An instance that can be shared by any number of cloudlets, as the model has no state. */
+	public static final UtilizationModelFull INSTANCE = new UtilizationModelFull();
+
 	/*
 	 * (non-Javadoc)
 	 * @see cloudsim.power.UtilizationModel#getUtilization(double)
@@ -25,6 +25,9 @@ import java.util.Random;
  */
 public class UtilizationModelStochastic implements UtilizationModel {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The random generator. */
 	private Random randomGenerator;
 
@@ -25,6 +25,9 @@ import java.util.Map;
  */
 public class VmSchedulerSpaceShared extends VmScheduler {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** Map containing VM ID and a vector of PEs allocated to this VM. */
 	private Map<String, List<Pe>> peAllocationMap;
 
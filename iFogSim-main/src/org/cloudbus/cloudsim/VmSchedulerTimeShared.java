@@ -28,6 +28,9 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  */
 public class VmSchedulerTimeShared extends VmScheduler {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The mips map requested. */
 	private Map<String, List<Double>> mipsMapRequested;
 
@@ -149,7 +152,7 @@ public class VmSchedulerTimeShared extends VmScheduler {
 							break;
 						}
 						if (!peIterator.hasNext()) {
-							Log.printLine("There is no enough MIPS (" + mips + ") to accommodate VM " + vmUid);
+							Log.formatLine("There is no enough MIPS (%s) to accommodate VM %s", mips, vmUid);
 						}
 						pe = peIterator.next();
 						peProvisioner = pe.getPeProvisioner();
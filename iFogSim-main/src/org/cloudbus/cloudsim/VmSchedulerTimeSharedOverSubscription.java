@@ -26,6 +26,9 @@ import org.cloudbus.cloudsim.lists.PeList;
  */
 public class VmSchedulerTimeSharedOverSubscription extends VmSchedulerTimeShared {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Instantiates a new vm scheduler time shared over subscription.
 	 * 
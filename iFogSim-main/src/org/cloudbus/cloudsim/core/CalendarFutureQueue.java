@@ -0,0 +1,437 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue implemented as a calendar queue (R. Brown, 1988). Time is split into
+ * "days" of a fixed width and each day is mapped to one of a ring of buckets; every bucket keeps
+ * its events sorted. Adding and removing events cost O(1) on average when events are spread
+ * evenly in time, which is the case of dense periodic workloads such as sensors emitting at a
+ * fixed rate. The number of buckets and the day width are recomputed when the queue grows or
+ * shrinks by a factor of two.
+ * <p>
+ * The bucket lists are stored in primitive arrays with a free list, so no node object is
+ * allocated per event.
+ *
+ * @see FutureQueue
+ */
+public class CalendarFutureQueue extends FutureQueue {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** Marks the end of a bucket list. */
+	private static final int NIL = -1;
+
+	/** The minimum number of buckets. */
+	private static final int MIN_BUCKETS = 16;
+
+	/** The number of events sampled to estimate the day width. */
+	private static final int WIDTH_SAMPLE = 64;
+
+	/** The events of the nodes. */
+	private SimEvent[] events;
+
+	/** The times of the nodes. */
+	private double[] times;
+
+	/** The ordering keys of the nodes. */
+	private long[] keys;
+
+	/** The next node in the same bucket, or in the free list. */
+	private int[] next;
+
+	/** The first node of each bucket. */
+	private int[] heads;
+
+	/** The last node of each bucket. */
+	private int[] tails;
+
+	/** The first free node. */
+	private int free;
+
+	/** The width of a day. */
+	private double width;
+
+	/** The day of the last event returned, no event in the queue is earlier than this day. */
+	private long currentDay;
+
+	/** The number of events in the queue. */
+	private int size;
+
+	/**
+	 * Creates a new calendar queue with a day width of one time unit.
+	 */
+	public CalendarFutureQueue() {
+		this(1.0);
+	}
+
+	/**
+	 * Creates a new calendar queue.
+	 *
+	 * @param initialWidth the initial day width, it is adjusted as the queue is resized
+	 */
+	public CalendarFutureQueue(double initialWidth) {
+		if (initialWidth <= 0 || Double.isInfinite(initialWidth) || Double.isNaN(initialWidth)) {
+			throw new IllegalArgumentException("The day width should be positive, but is:" + initialWidth);
+		}
+		width = initialWidth;
+		allocateNodes(MIN_BUCKETS * 2);
+		heads = new int[MIN_BUCKETS];
+		tails = new int[MIN_BUCKETS];
+		Arrays.fill(heads, NIL);
+		Arrays.fill(tails, NIL);
+	}
+
+	@Override
+	protected void insert(SimEvent event, long key) {
+		if (free == NIL) {
+			allocateNodes(events.length << 1);
+		}
+		int node = free;
+		free = next[node];
+		events[node] = event;
+		times[node] = event.eventTime();
+		keys[node] = key;
+		long day = dayOf(times[node]);
+		if (day < currentDay) {
+			currentDay = day;
+		}
+		link(node, day);
+		size++;
+		if (size > heads.length << 1) {
+			resize(heads.length << 1);
+		}
+	}
+
+	@Override
+	public SimEvent first() {
+		return size == 0 ? null : events[heads[findFirstBucket()]];
+	}
+
+	@Override
+	public SimEvent removeFirst() {
+		if (size == 0) {
+			return null;
+		}
+		int bucket = findFirstBucket();
+		int node = heads[bucket];
+		heads[bucket] = next[node];
+		if (heads[bucket] == NIL) {
+			tails[bucket] = NIL;
+		}
+		SimEvent event = events[node];
+		release(node);
+		if (size < heads.length >> 1 && heads.length > MIN_BUCKETS) {
+			resize(heads.length >> 1);
+		}
+		return event;
+	}
+
+	/**
+	 * Returns an iterator to the queue. Events are returned bucket by bucket, not in temporal
+	 * order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = -1;
+
+			private int node = nextBucketHead();
+
+			@Override
+			public boolean hasNext() {
+				return node != NIL;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (node == NIL) {
+					throw new NoSuchElementException();
+				}
+				SimEvent event = events[node];
+				node = CalendarFutureQueue.this.next[node];
+				if (node == NIL) {
+					node = nextBucketHead();
+				}
+				return event;
+			}
+
+			private int nextBucketHead() {
+				while (++bucket < heads.length) {
+					if (heads[bucket] != NIL) {
+						return heads[bucket];
+					}
+				}
+				return NIL;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		int bucket = bucketOf(dayOf(event.eventTime()));
+		int prev = NIL;
+		for (int node = heads[bucket]; node != NIL; prev = node, node = next[node]) {
+			if (events[node] == event) {
+				if (prev == NIL) {
+					heads[bucket] = next[node];
+				} else {
+					next[prev] = next[node];
+				}
+				if (tails[bucket] == node) {
+					tails[bucket] = prev;
+				}
+				release(node);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(heads, NIL);
+		Arrays.fill(tails, NIL);
+		Arrays.fill(events, null);
+		for (int i = 0; i < next.length - 1; i++) {
+			next[i] = i + 1;
+		}
+		next[next.length - 1] = NIL;
+		free = 0;
+		size = 0;
+		currentDay = 0;
+	}
+
+	/**
+	 * Finds the bucket whose head is the first event of the queue. The queue must not be empty.
+	 * Days without events are skipped, and if a whole year is empty the earliest head is searched
+	 * directly.
+	 *
+	 * @return the bucket index
+	 */
+	private int findFirstBucket() {
+		int buckets = heads.length;
+		for (int i = 0; i < buckets; i++) {
+			int bucket = bucketOf(currentDay);
+			int head = heads[bucket];
+			if (head != NIL && dayOf(times[head]) <= currentDay) {
+				return bucket;
+			}
+			currentDay++;
+		}
+
+		int best = NIL;
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			int head = heads[bucket];
+			if (head != NIL && (best == NIL || before(head, heads[best]))) {
+				best = bucket;
+			}
+		}
+		currentDay = dayOf(times[heads[best]]);
+		return best;
+	}
+
+	/**
+	 * Inserts a node in the sorted list of the bucket of a day.
+	 *
+	 * @param node the node
+	 * @param day the day of the node time
+	 */
+	private void link(int node, long day) {
+		int bucket = bucketOf(day);
+		int tail = tails[bucket];
+		if (tail == NIL) {
+			heads[bucket] = node;
+			tails[bucket] = node;
+			next[node] = NIL;
+			return;
+		}
+		// events are mostly added in temporal order, so check the tail first
+		if (before(tail, node)) {
+			next[tail] = node;
+			tails[bucket] = node;
+			next[node] = NIL;
+			return;
+		}
+		int prev = NIL;
+		int current = heads[bucket];
+		while (before(current, node)) {
+			prev = current;
+			current = next[current];
+		}
+		next[node] = current;
+		if (prev == NIL) {
+			heads[bucket] = node;
+		} else {
+			next[prev] = node;
+		}
+	}
+
+	/**
+	 * Returns a node to the free list.
+	 *
+	 * @param node the node
+	 */
+	private void release(int node) {
+		events[node] = null;
+		next[node] = free;
+		free = node;
+		size--;
+	}
+
+	/**
+	 * Rebuilds the calendar with a new number of buckets and a day width estimated from the
+	 * earliest events.
+	 *
+	 * @param buckets the new number of buckets
+	 */
+	private void resize(int buckets) {
+		int[] nodes = new int[size];
+		int count = 0;
+		for (int bucket = 0; bucket < heads.length; bucket++) {
+			for (int node = heads[bucket]; node != NIL; node = next[node]) {
+				nodes[count++] = node;
+			}
+		}
+
+		width = estimateWidth(nodes);
+		heads = new int[buckets];
+		tails = new int[buckets];
+		Arrays.fill(heads, NIL);
+		Arrays.fill(tails, NIL);
+
+		long firstDay = Long.MAX_VALUE;
+		for (int node : nodes) {
+			long day = dayOf(times[node]);
+			firstDay = Math.min(firstDay, day);
+			link(node, day);
+		}
+		currentDay = count == 0 ? 0 : firstDay;
+	}
+
+	/**
+	 * Estimates the day width as three times the average separation between the earliest events,
+	 * ignoring separations much larger than the average. Events with the same time are not counted.
+	 *
+	 * @param nodes the nodes in the queue
+	 * @return the day width
+	 */
+	private double estimateWidth(int[] nodes) {
+		double[] sample = new double[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			sample[i] = times[nodes[i]];
+		}
+		Arrays.sort(sample);
+
+		double total = 0;
+		int gaps = 0;
+		for (int i = 1; i < sample.length && gaps < WIDTH_SAMPLE; i++) {
+			double gap = sample[i] - sample[i - 1];
+			if (gap > 0) {
+				total += gap;
+				gaps++;
+			}
+		}
+		if (gaps == 0) {
+			return width;
+		}
+
+		double average = total / gaps;
+		total = 0;
+		int kept = 0;
+		gaps = 0;
+		for (int i = 1; i < sample.length && gaps < WIDTH_SAMPLE; i++) {
+			double gap = sample[i] - sample[i - 1];
+			if (gap > 0) {
+				gaps++;
+				if (gap <= 2 * average) {
+					total += gap;
+					kept++;
+				}
+			}
+		}
+		return kept == 0 ? 3 * average : 3 * total / kept;
+	}
+
+	/**
+	 * Grows the node arrays and makes the new nodes the free list. Only called when the free list
+	 * is empty.
+	 *
+	 * @param capacity the new number of nodes
+	 */
+	private void allocateNodes(int capacity) {
+		int from = events == null ? 0 : events.length;
+		if (events == null) {
+			events = new SimEvent[capacity];
+			times = new double[capacity];
+			keys = new long[capacity];
+			next = new int[capacity];
+		} else {
+			events = Arrays.copyOf(events, capacity);
+			times = Arrays.copyOf(times, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			next = Arrays.copyOf(next, capacity);
+		}
+		for (int i = from; i < capacity - 1; i++) {
+			next[i] = i + 1;
+		}
+		next[capacity - 1] = NIL;
+		free = from;
+	}
+
+	/**
+	 * Checks if a node comes before another one.
+	 *
+	 * @param a the first node
+	 * @param b the second node
+	 * @return true, if <tt>a</tt> is ordered before <tt>b</tt>
+	 */
+	private boolean before(int a, int b) {
+		return times[a] < times[b] || (times[a] == times[b] && keys[a] < keys[b]);
+	}
+
+	/**
+	 * Gets the day of a time.
+	 *
+	 * @param time the time
+	 * @return the day
+	 */
+	private long dayOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	/**
+	 * Gets the bucket of a day.
+	 *
+	 * @param day the day
+	 * @return the bucket index
+	 */
+	private int bucketOf(long day) {
+		return (int) Math.floorMod(day, (long) heads.length);
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Writes and reads the checkpoint files of simulations: gzipped Java serialisation of a
+ * {@link SimulationContext}. The streams replace the objects of the few classes the entities use
+ * that are not serialisable, such as {@link Pair}, by serialisable copies.
+ *
+ * @see CloudSim#checkpointAt(double, File)
+ * @see SimulationContext#restore(File)
+ */
+final class Checkpoint {
+
+	/** The size of the buffers of the streams. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private Checkpoint() {
+	}
+
+	/**
+	 * Writes a simulation to a checkpoint file.
+	 *
+	 * @param simulation the context of the simulation
+	 * @param file the file
+	 * @throws IOException if the file cannot be written or an object of the simulation is not
+	 *             serialisable
+	 */
+	static void write(SimulationContext simulation, File file) throws IOException {
+		try (ObjectOutputStream out = new CheckpointOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+			out.writeObject(simulation);
+		} catch (IOException e) {
+			// do not leave a truncated checkpoint behind
+			file.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads a simulation from a checkpoint file.
+	 *
+	 * @param file the file
+	 * @return the context of the simulation
+	 * @throws IOException if the file cannot be read or is not a checkpoint of these classes
+	 */
+	static SimulationContext read(File file) throws IOException {
+		try (ObjectInputStream in = new CheckpointInputStream(new BufferedInputStream(new GZIPInputStream(
+				new FileInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+			return (SimulationContext) in.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new InvalidObjectException("The checkpoint needs a missing class: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The stream checkpoints are written with.
+	 */
+	private static class CheckpointOutputStream extends ObjectOutputStream {
+
+		CheckpointOutputStream(OutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) {
+			if (obj instanceof Pair) {
+				Pair<?, ?> pair = (Pair<?, ?>) obj;
+				return new SerializablePair(pair.getFirst(), pair.getSecond());
+			}
+			return obj;
+		}
+	}
+
+	/**
+	 * The stream checkpoints are read with.
+	 */
+	private static class CheckpointInputStream extends ObjectInputStream {
+
+		CheckpointInputStream(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) {
+			if (obj instanceof SerializablePair) {
+				SerializablePair pair = (SerializablePair) obj;
+				return new Pair<Object, Object>(pair.first, pair.second);
+			}
+			return obj;
+		}
+	}
+
+	/**
+	 * The serialisable copy of a {@link Pair}.
+	 */
+	private static class SerializablePair implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The first element. */
+		private final Object first;
+
+		/** The second element. */
+		private final Object second;
+
+		SerializablePair(Object first, Object second) {
+			this.first = first;
+			this.second = second;
+		}
+	}
+
+}
@@ -8,16 +8,10 @@
 
 package org.cloudbus.cloudsim.core;
 
-import java.util.ArrayList;
+import java.io.File;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
-import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
 import org.cloudbus.cloudsim.core.predicates.PredicateAny;
 import org.cloudbus.cloudsim.core.predicates.PredicateNone;
@@ -29,6 +23,10 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  * network. Later, nodes in such file are mapped to CloudSim entities. Delay calculated from the
  * BRITE model are added to the messages send through CloudSim. Messages using the old model are
  * converted to the apropriate methods with the correct parameters.
+ * <p>
+ * The state of a simulation is kept in a {@link SimulationContext}. The static methods of this
+ * class operate on the context of the calling thread, which is the default context unless another
+ * one has been bound to the thread.
  * 
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
@@ -36,65 +34,6 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  */
 public class CloudSim {
 
-	/** The Constant CLOUDSIM_VERSION_STRING. */
-	private static final String CLOUDSIM_VERSION_STRING = "3.0";
-
-	/** The id of CIS entity. */
-	private static int cisId = -1;
-
-	/** The id of CloudSimShutdown entity. */
-	@SuppressWarnings("unused")
-	private static int shutdownId = -1;
-
-	/** The CIS object. */
-	private static CloudInformationService cis = null;
-
-	/** The Constant NOT_FOUND. */
-	private static final int NOT_FOUND = -1;
-
-	/** The trace flag. */
-	@SuppressWarnings("unused")
-	private static boolean traceFlag = false;
-
-	/** The calendar. */
-	private static Calendar calendar = null;
-
-	/** The termination time. */
-	private static double terminateAt = -1;
-
-	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
-	private static double minTimeBetweenEvents = 0.1;
-	
-	/**
-	 * Initialises all the common attributes.
-	 * 
-	 * @param _calendar the _calendar
-	 * @param _traceFlag the _trace flag
-	 * @param numUser number of users
-	 * @throws Exception This happens when creating this entity before initialising CloudSim package
-	 *             or this entity name is <tt>null</tt> or empty
-	 * @pre $none
-	 * @post $none
-	 */
-	private static void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
-			throws Exception {
-		initialize();
-		// NOTE: the order for the below 3 lines are important
-		traceFlag = _traceFlag;
-
-		// Set the current Wall clock time as the starting time of
-		// simulation
-		if (_calendar == null) {
-			calendar = Calendar.getInstance();
-		} else {
-			calendar = _calendar;
-		}
-
-		// creates a CloudSimShutdown object
-		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
-		shutdownId = shutdown.getId();
-	}
-
 	/**
 	 * Initialises CloudSim parameters. This method should be called before creating any entities.
 	 * <p>
@@ -117,21 +56,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag) {
-		try {
-			initCommonVariable(cal, traceFlag, numUser);
-
-			// create a GIS object
-			cis = new CloudInformationService("CloudInformationService");
-
-			// set all the above entity IDs
-			cisId = cis.getId();
-		} catch (IllegalArgumentException s) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(s.getMessage());
-		} catch (Exception e) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(e.getMessage());
-		}
+		SimulationContext.current().init(numUser, cal, traceFlag);
 	}
 
 	/**
@@ -158,16 +83,29 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents) {
-	    if (periodBetweenEvents <= 0) {
-		throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
-	    }
-	    
-	    init(numUser, cal, traceFlag);
-	    minTimeBetweenEvents = periodBetweenEvents;
+		SimulationContext.current().init(numUser, cal, traceFlag, periodBetweenEvents);
 	}
-	
-	
-	
+
+	/**
+	 * Initialises CloudSim parameters with a given future event queue implementation. This method
+	 * should be called before creating any entities.
+	 * 
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureQueue an empty future event queue, e.g. a {@link HeapFutureQueue}, a
+	 *            {@link CalendarFutureQueue} or a {@link TimingWheelFutureQueue} with another
+	 *            resolution
+	 * @see #init(int, Calendar, boolean)
+	 * @pre numUser >= 0
+	 * @pre futureQueue != null
+	 * @post $none
+	 */
+	public static void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		SimulationContext.current().init(numUser, cal, traceFlag, futureQueue);
+	}
+
 	/**
 	 * Starts the execution of CloudSim simulation. It waits for complete execution of all entities,
 	 * i.e. until all entities threads reach non-RUNNABLE state or there are no more events in the
@@ -183,23 +121,59 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static double startSimulation() throws NullPointerException {
-		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
-		try {
-			double clock = run();
-
-			// reset all static variables
-			cisId = -1;
-			shutdownId = -1;
-			cis = null;
-			calendar = null;
-			traceFlag = false;
-
-			return clock;
-		} catch (IllegalArgumentException e) {
-			e.printStackTrace();
-			throw new NullPointerException("CloudSim.startCloudSimulation() :"
-					+ " Error - you haven't initialized CloudSim.");
-		}
+		return SimulationContext.current().startSimulation();
+	}
+
+	/**
+	 * Starts the simulation like {@link #startSimulation()}, running the partitions of the entities
+	 * on several threads. The partitions are synchronised conservatively in time windows as long as
+	 * the lookahead of the partitioning: in each window, all the partitions but the root one process
+	 * their events concurrently, then the root partition processes its events, then the updates
+	 * submitted with {@link #runInOrder(Runnable)} are applied. The results are those of the
+	 * sequential engine, provided that:
+	 * <ul>
+	 * <li>events sent to the entities of another partition than the root one have a delay of at
+	 * least the lookahead;</li>
+	 * <li>entities only access the state of the entities of other partitions, and the state shared
+	 * by all the entities such as metrics, in tasks submitted with {@link #runInOrder(Runnable)};</li>
+	 * <li>no entity is created while the simulation runs;</li>
+	 * <li>the simulation ends when there are no more events or at the time set with
+	 * {@link #terminateSimulation(double)}. An entity that ends it with
+	 * {@link #abruptallyTerminate()} stops the run at the end of the current time window.</li>
+	 * </ul>
+	 * Events sent to the entities of another partition can only be cancelled until the end of the
+	 * time window they were sent in, and the simulation cannot be paused.
+	 * 
+	 * @param partitioning the partitioning of the entities
+	 * @param threads the number of threads running the partitions
+	 * @return the simulation time at the end of the run
+	 * @throws IllegalStateException if an event is sent to another partition with a delay shorter
+	 *             than the lookahead
+	 * @see Partitioning
+	 */
+	public static double startSimulation(Partitioning partitioning, int threads) {
+		return SimulationContext.current().startSimulation(partitioning, threads);
+	}
+
+	/**
+	 * Writes a checkpoint of the simulation once every event before a given time has been
+	 * processed, i.e. before the first clock tick at or after that time, and lets the simulation go
+	 * on. The checkpoint holds the clock, the event queues, the entities with everything they
+	 * reference, and the values of the named {@link SimulationLocal simulation locals} (id
+	 * generators, metrics, ...), as gzipped Java serialisation: every object reachable from the
+	 * entities and the events has to be serialisable. Restore it with
+	 * {@link SimulationContext#restore(File)} to run the rest of the simulation again, or to branch
+	 * into different experiments, without simulating the prefix again.
+	 * <p>
+	 * Parallel runs cannot be checkpointed.
+	 * 
+	 * @param time the simulation time
+	 * @param file the file to write the checkpoint to, once the time is reached
+	 * @throws IllegalArgumentException if the time is in the past or the file is <tt>null</tt>
+	 * @see SimulationContext#restore(File)
+	 */
+	public static void checkpointAt(double time, File file) {
+		SimulationContext.current().checkpointAt(time, file);
 	}
 
 	/**
@@ -215,12 +189,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void stopSimulation() throws NullPointerException {
-		try {
-			runStop();
-		} catch (IllegalArgumentException e) {
-			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
-					+ "Error - can't stop Cloud Simulation.");
-		}
+		SimulationContext.current().stopSimulation();
 	}
 
 	/**
@@ -229,9 +198,7 @@ public class CloudSim {
 	 * @return true, if successful; false otherwise.
 	 */
 	public static boolean terminateSimulation() {
-		running = false;
-		printMessage("Simulation: Reached termination time.");
-		return true;
+		return SimulationContext.current().terminateSimulation();
 	}
 
 	/**
@@ -241,12 +208,7 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean terminateSimulation(double time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			terminateAt = time;
-		}
-		return true;
+		return SimulationContext.current().terminateSimulation(time);
 	}
 
 	
@@ -255,7 +217,83 @@ public class CloudSim {
 	 * @return the minimum time between events.
 	 */
 	public static double getMinTimeBetweenEvents() {
-	    return minTimeBetweenEvents;
+		return SimulationContext.current().getMinTimeBetweenEvents();
+	}
+
+	/**
+	 * Runs a task that reads or updates the state shared by the entities of the simulation, such as
+	 * metrics, or the state of an entity of another partition. The task runs immediately, except in a
+	 * parallel run, where it runs when the current time window ends, in the order the sequential
+	 * engine would have run it, with {@link #clock()} returning the time it was submitted at. The
+	 * task must not send events.
+	 * 
+	 * @param task the task
+	 * @see #startSimulation(Partitioning, int)
+	 */
+	public static void runInOrder(Runnable task) {
+		SimulationContext.current().runInOrder(task);
+	}
+
+	/**
+	 * Checks if the tasks submitted with {@link #runInOrder(Runnable)} by the calling thread run
+	 * immediately, as they do outside a parallel run. Code updating shared state on a hot path can
+	 * then update it directly instead of allocating a task.
+	 * 
+	 * @return true, if the tasks run immediately
+	 */
+	public static boolean isSequential() {
+		return SimulationContext.current().isSequential();
+	}
+
+	/**
+	 * Enables the recycling of events. Once an entity has processed an event in
+	 * {@link SimEntity#run()}, the event is returned to a free list and reused by a later send, so
+	 * entities must not keep references to the events they receive. Events obtained directly with
+	 * {@link SimEntity#selectEvent(Predicate)} or {@link SimEntity#cancelEvent(Predicate)} are not
+	 * recycled.
+	 * 
+	 * @param debug <tt>true</tt> to never reuse released events and make any access to them throw
+	 *            an {@link IllegalStateException}, in order to find entities that keep events
+	 */
+	public static void enableEventRecycling(boolean debug) {
+		SimulationContext.current().enableEventRecycling(debug);
+	}
+
+	/**
+	 * Disables the recycling of events, which is the default.
+	 */
+	public static void disableEventRecycling() {
+		SimulationContext.current().disableEventRecycling();
+	}
+
+	/**
+	 * Checks if events are recycled.
+	 * 
+	 * @return true, if events are recycled
+	 */
+	public static boolean isEventRecyclingEnabled() {
+		return SimulationContext.current().isEventRecyclingEnabled();
+	}
+
+	/**
+	 * Attaches a sink to the simulation, which then receives the records of the events it processes,
+	 * of the lifecycle of its tuples and of the energy of its devices, and the output of the logs and
+	 * of the controllers, instead of the standard output. The sink is not closed by the simulation.
+	 * 
+	 * @param traceSink the sink, or <tt>null</tt> to detach the sink
+	 * @see TraceSink
+	 */
+	public static void setTraceSink(TraceSink traceSink) {
+		SimulationContext.current().setTraceSink(traceSink);
+	}
+
+	/**
+	 * Gets the sink attached to the simulation.
+	 * 
+	 * @return the sink, or <tt>null</tt> if the simulation has none
+	 */
+	public static TraceSink getTraceSink() {
+		return SimulationContext.current().getTraceSink();
 	}
 
 	/**
@@ -268,13 +306,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static Calendar getSimulationCalendar() {
-		// make a new copy
-		Calendar clone = calendar;
-		if (calendar != null) {
-			clone = (Calendar) calendar.clone();
-		}
-
-		return clone;
+		return SimulationContext.current().getSimulationCalendar();
 	}
 
 	/**
@@ -285,7 +317,7 @@ public class CloudSim {
 	 * @post $result >= -1
 	 */
 	public static int getCloudInfoServiceEntityId() {
-		return cisId;
+		return SimulationContext.current().getCloudInfoServiceEntityId();
 	}
 
 	/**
@@ -298,59 +330,17 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static List<Integer> getCloudResourceList() {
-		if (cis == null) {
-			return null;
-		}
-
-		return cis.getList();
+		return SimulationContext.current().getCloudResourceList();
 	}
 
 	// ======== SIMULATION METHODS ===============//
 
-	/** The entities. */
-	private static List<SimEntity> entities;
-
-	/** The future event queue. */
-	protected static FutureQueue future;
-
-	/** The deferred event queue. */
-	protected static DeferredQueue deferred;
-
-	/** The simulation clock. */
-	private static double clock;
-
-	/** Flag for checking if the simulation is running. */
-	private static boolean running;
-
-	/** The entities by name. */
-	private static Map<String, SimEntity> entitiesByName;
-
-	// The predicates used in entity wait methods
-	/** The wait predicates. */
-	private static Map<Integer, Predicate> waitPredicates;
-
-	/** The paused. */
-	private static boolean paused = false;
-
-	/** The pause at. */
-	private static long pauseAt = -1;
-
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
-
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
 	 * start of the simulation.
 	 */
 	protected static void initialize() {
-		Log.printLine("Initialising...");
-		entities = new ArrayList<SimEntity>();
-		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
-		deferred = new DeferredQueue();
-		waitPredicates = new HashMap<Integer, Predicate>();
-		clock = 0;
-		running = false;
+		SimulationContext.current().initialize();
 	}
 
 	// The two standard predicates
@@ -369,7 +359,7 @@ public class CloudSim {
 	 * @return the simulation time
 	 */
 	public static double clock() {
-		return clock;
+		return SimulationContext.current().clock();
 	}
 
 	/**
@@ -378,7 +368,7 @@ public class CloudSim {
 	 * @return The number of entities
 	 */
 	public static int getNumEntities() {
-		return entities.size();
+		return SimulationContext.current().getNumEntities();
 	}
 
 	/**
@@ -388,7 +378,7 @@ public class CloudSim {
 	 * @return The entity, or if it could not be found
 	 */
 	public static SimEntity getEntity(int id) {
-		return entities.get(id);
+		return SimulationContext.current().getEntity(id);
 	}
 
 	/**
@@ -398,7 +388,7 @@ public class CloudSim {
 	 * @return The entity
 	 */
 	public static SimEntity getEntity(String name) {
-		return entitiesByName.get(name);
+		return SimulationContext.current().getEntity(name);
 	}
 
 	/**
@@ -408,12 +398,7 @@ public class CloudSim {
 	 * @return The entity's unique id number
 	 */
 	public static int getEntityId(String name) {
-		SimEntity obj = entitiesByName.get(name);
-		if (obj == null) {
-			return NOT_FOUND;
-		} else {
-			return obj.getId();
-		}
+		return SimulationContext.current().getEntityId(name);
 	}
 
 	/**
@@ -425,13 +410,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static String getEntityName(int entityID) {
-		try {
-			return getEntity(entityID).getName();
-		} catch (IllegalArgumentException e) {
-			return null;
-		} catch (Exception e) {
-			return null;
-		}
+		return SimulationContext.current().getEntityName(entityID);
 	}
 
 	/**
@@ -455,11 +434,7 @@ public class CloudSim {
 	 * @return the entity iterator
 	 */
 	public static List<SimEntity> getEntityList() {
-		// create a new list to prevent the user from changing
-		// the list of entities used by Simulation
-		List<SimEntity> list = new LinkedList<SimEntity>();
-		list.addAll(entities);
-		return list;
+		return SimulationContext.current().getEntityList();
 	}
 
 	// Public update methods
@@ -471,20 +446,7 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	public static void addEntity(SimEntity e) {
-		SimEvent evt;
-		if (running) {
-			// Post an event to make this entity
-			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
-			future.addEvent(evt);
-		}
-		if (e.getId() == -1) { // Only add once!
-			
-			//System.out.println("From CloudSim.addEntity(): Adding SimEntity "+e.getName());
-			int id = entities.size();
-			e.setId(id);
-			entities.add(e);
-			entitiesByName.put(e.getName(), e);
-		}
+		SimulationContext.current().addEntity(e);
 	}
 
 	/**
@@ -494,73 +456,25 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	protected static void addEntityDynamically(SimEntity e) {
-		if (e == null) {
-			throw new IllegalArgumentException("Adding null entity.");
-		} else {
-			printMessage("Adding: " + e.getName());
-		}
-		e.startEntity();
+		SimulationContext.current().addEntityDynamically(e);
 	}
 
 	/**
-	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
-	 * called in simulations.
+	 * Internal method used to run one tick of the simulation. Only the entities that received an
+	 * event or a HOLD_DONE since the last tick are run, in the order of their ids. This method
+	 * should <b>not</b> be called in simulations.
 	 * 
 	 * @return true, if successful otherwise
 	 */
 	public static boolean runClockTick() {
-		SimEntity ent;
-		boolean queue_empty;
-		
-		int entities_size = entities.size();
-
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
-			}
-		}
-				
-		// If there are more future events then deal with them
-		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
-			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
-			}
-
-			future.removeAll(toRemove);
-
-		} else {
-			queue_empty = true;
-			running = false;
-			printMessage("Simulation: No more future events");
-		}
-
-		return queue_empty;
+		return SimulationContext.current().runClockTick();
 	}
 
 	/**
 	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
 	 */
 	public static void runStop() {
-		printMessage("Simulation completed.");
+		SimulationContext.current().runStop();
 	}
 
 	/**
@@ -570,9 +484,7 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext.current().hold(src, delay);
 	}
 
 	/**
@@ -582,9 +494,7 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext.current().pause(src, delay);
 	}
 
 	/**
@@ -597,12 +507,7 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void send(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
-
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		SimulationContext.current().send(src, dest, delay, tag, data);
 	}
 
 	/**
@@ -615,12 +520,38 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void sendFirst(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
+		SimulationContext.current().sendFirst(src, dest, delay, tag, data);
+	}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+	/**
+	 * Used to send an event from one entity to another, returning a handle that cancels it.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 * @return the handle to the event
+	 * @see #cancel(EventHandle)
+	 */
+	public static EventHandle sendCancellable(int src, int dest, double delay, int tag, Object data) {
+		return new EventHandle(SimulationContext.current().send(src, dest, delay, tag, data));
+	}
+
+	/**
+	 * Used to send an event from one entity to another, with priority in the queue, returning a
+	 * handle that cancels it.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 * @return the handle to the event
+	 * @see #cancel(EventHandle)
+	 */
+	public static EventHandle sendFirstCancellable(int src, int dest, double delay, int tag, Object data) {
+		return new EventHandle(SimulationContext.current().sendFirst(src, dest, delay, tag, data));
 	}
 
 	/**
@@ -632,11 +563,7 @@ public class CloudSim {
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
-		entities.get(src).setState(SimEntity.WAITING);
-		if (p != SIM_ANY) {
-			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
-		}
+		SimulationContext.current().wait(src, p);
 	}
 
 	/**
@@ -647,16 +574,7 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		return SimulationContext.current().waiting(d, p);
 	}
 
 	/**
@@ -664,19 +582,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		return SimulationContext.current().select(src, p);
 	}
 
 	/**
@@ -684,18 +593,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		return SimulationContext.current().findFirstDeferred(src, p);
 	}
 
 	/**
@@ -706,17 +607,18 @@ public class CloudSim {
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
-		}
+		return SimulationContext.current().cancel(src, p);
+	}
 
-		return ev;
+	/**
+	 * Removes an event sent with a handle from the event queue. Unlike {@link #cancel(int, Predicate)},
+	 * it does not look at the other events.
+	 * 
+	 * @param handle the handle to the event
+	 * @return true if the event was cancelled, false if it was already processed or cancelled
+	 */
+	public static boolean cancel(EventHandle handle) {
+		return SimulationContext.current().cancel(handle);
 	}
 
 	/**
@@ -728,82 +630,16 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
+		return SimulationContext.current().cancelAll(src, p);
 	}
 
-	//
-	// Private internal methods
-	//
-
 	/**
-	 * Processes an event.
+	 * Returns an event that has been consumed to the event pool, if events are recycled.
 	 * 
-	 * @param e the e
+	 * @param e the event
 	 */
-	private static void processEvent(SimEvent e) {
-		int dest, src;
-		SimEntity dest_ent;
-		// Update the system's clock
-		if (e.eventTime() < clock) {
-			throw new IllegalArgumentException("Past event detected.");
-		}
-		clock = e.eventTime();
-
-		// Ok now process it
-		switch (e.getType()) {
-			case SimEvent.ENULL:
-				throw new IllegalArgumentException("Event has a null type.");
-
-			case SimEvent.CREATE:
-				SimEntity newe = (SimEntity) e.getData();
-				addEntityDynamically(newe);
-				break;
-
-			case SimEvent.SEND:
-				// Check for matching wait
-				dest = e.getDestination();
-				if (dest < 0) {
-					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
-				} else {
-					int tag = e.getTag();
-					dest_ent = entities.get(dest);
-					if (dest_ent.getState() == SimEntity.WAITING) {
-						Integer destObj = Integer.valueOf(dest);
-						Predicate p = waitPredicates.get(destObj);
-						if ((p == null) || (tag == 9999) || (p.match(e))) {
-							dest_ent.setEventBuffer((SimEvent) e.clone());
-							dest_ent.setState(SimEntity.RUNNABLE);
-							waitPredicates.remove(destObj);
-						} else {
-							deferred.addEvent(e);
-						}
-					} else {
-						deferred.addEvent(e);
-					}
-				}
-				break;
-
-			case SimEvent.HOLD_DONE:
-				src = e.getSource();
-				if (src < 0) {
-					throw new IllegalArgumentException("Null entity holding.");
-				} else {
-					entities.get(src).setState(SimEntity.RUNNABLE);
-				}
-				break;
-
-			default:
-				break;
-		}
+	static void releaseEvent(SimEvent e) {
+		SimulationContext.current().releaseEvent(e);
 	}
 
 	/**
@@ -811,14 +647,7 @@ public class CloudSim {
 	 * simulations.
 	 */
 	public static void runStart() {
-		running = true;
-		// Start all the entities
-		for (SimEntity ent : entities) {
-			//System.out.println("From CloudSim.runStart(): Starting SimEntity "+ent.getName());
-			ent.startEntity();
-		}
-
-		printMessage("Entities started.");
+		SimulationContext.current().runStart();
 	}
 
 	/**
@@ -828,7 +657,7 @@ public class CloudSim {
 	 * @return if the simulation is still running, otherwise
 	 */
 	public static boolean running() {
-		return running;
+		return SimulationContext.current().running();
 	}
 
 	/**
@@ -837,8 +666,7 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation() {
-		paused = true;
-		return paused;
+		return SimulationContext.current().pauseSimulation();
 	}
 
 	/**
@@ -848,12 +676,7 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation(long time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			pauseAt = time;
-		}
-		return true;
+		return SimulationContext.current().pauseSimulation(time);
 	}
 
 	/**
@@ -862,13 +685,7 @@ public class CloudSim {
 	 * @return if the simulation has been restarted or or otherwise.
 	 */
 	public static boolean resumeSimulation() {
-		paused = false;
-
-		if (pauseAt <= clock) {
-			pauseAt = -1;
-		}
-
-		return !paused;
+		return SimulationContext.current().resumeSimulation();
 	}
 
 	/**
@@ -878,43 +695,7 @@ public class CloudSim {
 	 * @return the double last clock value
 	 */
 	public static double run() {
-		if (!running) {
-			runStart();
-		}
-		while (true) {
-			if (runClockTick() || abruptTerminate) {
-				break;
-			}
-
-			// this block allows termination of simulation at a specific time
-			if (terminateAt > 0.0 && clock >= terminateAt) {
-				terminateSimulation();
-				clock = terminateAt;
-				break;
-			}
-
-			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
-				pauseSimulation();
-				clock = pauseAt;
-			}
-
-			while (paused) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-
-		double clock = clock();
-
-		finishSimulation();
-		runStop();
-
-		return clock;
+		return SimulationContext.current().run();
 	}
 
 	/**
@@ -922,48 +703,14 @@ public class CloudSim {
 	 * in user simulations.
 	 */
 	public static void finishSimulation() {
-		// Allow all entities to exit their body method
-		if (!abruptTerminate) {
-			for (SimEntity ent : entities) {
-				if (ent.getState() != SimEntity.FINISHED) {
-					ent.run();
-				}
-			}
-		}
-
-		for (SimEntity ent : entities) {
-			ent.shutdownEntity();
-		}
-
-		// reset all static variables
-		// Private data members
-		entities = null;
-		entitiesByName = null;
-		future = null;
-		deferred = null;
-		clock = 0L;
-		running = false;
-
-		waitPredicates = null;
-		paused = false;
-		pauseAt = -1;
-		abruptTerminate = false;
+		SimulationContext.current().finishSimulation();
 	}
 
 	/**
 	 * Abruptally terminate.
 	 */
 	public static void abruptallyTerminate() {
-		abruptTerminate = true;
-	}
-
-	/**
-	 * Prints a message about the progress of the simulation.
-	 * 
-	 * @param message the message
-	 */
-	private static void printMessage(String message) {
-		Log.printLine(message);
+		SimulationContext.current().abruptallyTerminate();
 	}
 
 	/**
@@ -972,7 +719,7 @@ public class CloudSim {
 	 * @return true, if is paused
 	 */
 	public static boolean isPaused() {
-		return paused;
+		return SimulationContext.current().isPaused();
 	}
 
 }
@@ -8,81 +8,215 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. Each destination
+ * entity has its own mailbox, indexed by the entity id, so that looking up the events of an entity
+ * does not depend on the events waiting for the other entities. Each mailbox keeps its events in
+ * temporal order, events with the same time being kept in insertion order.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
  * @see SimEvent
  */
-public class DeferredQueue {
+public class DeferredQueue implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The mailboxes, indexed by destination entity id. */
+	private final List<Mailbox> mailboxes = new ArrayList<Mailbox>();
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The total number of events. */
+	private int size = 0;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		// The event has to be inserted as the last of all events
-		// with the same event_time(). Yes, this matters.
-		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
-			list.add(newEvent);
-			maxTime = eventTime;
-			return;
+		int destination = newEvent.getDestination();
+		while (mailboxes.size() <= destination) {
+			mailboxes.add(null);
+		}
+		Mailbox mailbox = mailboxes.get(destination);
+		if (mailbox == null) {
+			mailbox = new Mailbox();
+			mailboxes.set(destination, mailbox);
 		}
+		mailbox.addEvent(newEvent);
+		size++;
+	}
 
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
-			}
+	/**
+	 * Returns the first event waiting for an entity, without removing it.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the first event, or <tt>null</tt> if there is none
+	 */
+	public SimEvent first(int destination) {
+		Mailbox mailbox = getMailbox(destination);
+		return mailbox == null ? null : mailbox.events.peekFirst();
+	}
+
+	/**
+	 * Removes and returns the first event waiting for an entity.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the first event, or <tt>null</tt> if there is none
+	 */
+	public SimEvent removeFirst(int destination) {
+		Mailbox mailbox = getMailbox(destination);
+		if (mailbox == null || mailbox.events.isEmpty()) {
+			return null;
 		}
+		size--;
+		return mailbox.events.pollFirst();
+	}
+
+	/**
+	 * Returns an iterator to the events waiting for an entity, in temporal order. Events removed
+	 * through the iterator are removed from the queue.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the iterator
+	 */
+	public Iterator<SimEvent> iterator(int destination) {
+		final Mailbox mailbox = getMailbox(destination);
+		if (mailbox == null) {
+			return Collections.<SimEvent> emptyList().iterator();
+		}
+		final Iterator<SimEvent> iterator = mailbox.events.iterator();
+		return new Iterator<SimEvent>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public SimEvent next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				iterator.remove();
+				size--;
+			}
+		};
+	}
 
-		list.add(newEvent);
+	/**
+	 * Returns the number of events waiting for an entity.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the number of events
+	 */
+	public int size(int destination) {
+		Mailbox mailbox = getMailbox(destination);
+		return mailbox == null ? 0 : mailbox.events.size();
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Returns an iterator to the events in the queue. Events are returned mailbox by mailbox.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		List<SimEvent> list = new ArrayList<SimEvent>(size);
+		for (Mailbox mailbox : mailboxes) {
+			if (mailbox != null) {
+				list.addAll(mailbox.events);
+			}
+		}
+		return Collections.unmodifiableList(list).iterator();
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		mailboxes.clear();
+		size = 0;
+	}
+
+	/**
+	 * Gets the mailbox of an entity.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the mailbox, or <tt>null</tt> if no event has been sent to the entity
+	 */
+	private Mailbox getMailbox(int destination) {
+		if (destination < 0 || destination >= mailboxes.size()) {
+			return null;
+		}
+		return mailboxes.get(destination);
+	}
+
+	/**
+	 * The events waiting for one entity.
+	 */
+	private static class Mailbox implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The events. */
+		private final ArrayDeque<SimEvent> events = new ArrayDeque<SimEvent>();
+
+		/** The max time. */
+		private double maxTime = -1;
+
+		/**
+		 * Adds a new event, after all the events with the same or earlier time.
+		 *
+		 * @param newEvent the event
+		 */
+		private void addEvent(SimEvent newEvent) {
+			// The event has to be inserted as the last of all events
+			// with the same event_time(). Yes, this matters.
+			double eventTime = newEvent.eventTime();
+			if (eventTime >= maxTime) {
+				events.addLast(newEvent);
+				maxTime = eventTime;
+				return;
+			}
+
+			// events are delivered in temporal order, so this only happens when events are
+			// deferred out of order; rebuild the mailbox around the new event
+			int count = events.size();
+			boolean added = false;
+			for (int i = 0; i < count; i++) {
+				SimEvent event = events.pollFirst();
+				if (!added && event.eventTime() > eventTime) {
+					events.addLast(newEvent);
+					added = true;
+				}
+				events.addLast(event);
+			}
+			if (!added) {
+				events.addLast(newEvent);
+			}
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+
+/**
+ * A handle to an event sent with {@link CloudSim#sendCancellable(int, int, double, int, Object)}
+ * or one of the <tt>scheduleCancellable</tt> methods of {@link SimEntity}, which cancels exactly
+ * that event without scanning the future event queue. Cancelling an event that has already been
+ * processed, or cancelled, does nothing; a handle stays valid when events are recycled, as it
+ * knows which use of the recycled event it was created for.
+ *
+ * @see CloudSim#cancel(EventHandle)
+ * @see SimEntity#cancelEvent(EventHandle)
+ */
+public final class EventHandle implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The event. */
+	private final SimEvent event;
+
+	/** The generation of the event when it was sent. */
+	private final int generation;
+
+	/** The id of the entity that sent the event. */
+	private final int source;
+
+	/** The time of the event. */
+	private final double time;
+
+	/** The tag of the event. */
+	private final int tag;
+
+	/**
+	 * Creates a handle to an event that has just been sent.
+	 *
+	 * @param event the event
+	 */
+	EventHandle(SimEvent event) {
+		this.event = event;
+		generation = event.generation;
+		source = event.getSource();
+		time = event.eventTime();
+		tag = event.getTag();
+	}
+
+	/**
+	 * Gets the event, unless it has been recycled and reused for another event since it was sent.
+	 *
+	 * @return the event, or <tt>null</tt>
+	 */
+	SimEvent getEvent() {
+		return event.generation == generation ? event : null;
+	}
+
+	/**
+	 * Gets the id of the entity that sent the event.
+	 *
+	 * @return the id
+	 */
+	public int getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the simulation time the event was sent for.
+	 *
+	 * @return the time
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the tag of the event.
+	 *
+	 * @return the tag
+	 */
+	public int getTag() {
+		return tag;
+	}
+
+	/**
+	 * Cancels the event if it is still in the future event queue.
+	 *
+	 * @return true if the event was cancelled, false if it was already processed or cancelled
+	 * @see CloudSim#cancel(EventHandle)
+	 */
+	public boolean cancel() {
+		return CloudSim.cancel(this);
+	}
+
+}
@@ -8,92 +8,127 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
- * 
+ * This class represents the future event queue used by {@link Simulation}. Events are ordered by
+ * their time and, for events with the same time, by their serial number. Events added with
+ * {@link #addEventFirst(SimEvent)} get serial number 0 and are kept in insertion order among
+ * themselves, exactly as {@link SimEvent#compareTo(SimEvent)} does.
+ * <p>
+ * Subclasses decide how the events are stored. The implementation used by a simulation can be
+ * chosen with {@link CloudSim#init(int, java.util.Calendar, boolean, FutureQueue)}; the default
+ * one is {@link TimingWheelFutureQueue}.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
- * @see java.util.TreeSet
+ * @see TimingWheelFutureQueue
+ * @see TreeSetFutureQueue
+ * @see HeapFutureQueue
+ * @see CalendarFutureQueue
  */
-public class FutureQueue {
+public abstract class FutureQueue implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	/** The base of the ordering keys given to events with serial number 0. */
+	private static final long FIRST_KEY_BASE = Long.MIN_VALUE;
 
 	/** The serial. */
 	private long serial = 0;
 
+	/** The number of events added so far with serial number 0. */
+	private long firstCount = 0;
+
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
-		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
+		long s = serial++;
+		newEvent.setSerial(s);
+		insert(newEvent, s == 0 ? FIRST_KEY_BASE + firstCount++ : s);
 	}
 
 	/**
 	 * Add a new event to the head of the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
 	public void addEventFirst(SimEvent newEvent) {
 		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
+		insert(newEvent, FIRST_KEY_BASE + firstCount++);
 	}
 
 	/**
-	 * Returns an iterator to the queue.
-	 * 
+	 * Stores an event in the queue. Events with the same time must be ordered by ascending
+	 * <tt>key</tt>; keys are unique for the lifetime of the queue.
+	 *
+	 * @param event the event
+	 * @param key the ordering key of the event among events with the same time
+	 */
+	protected abstract void insert(SimEvent event, long key);
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public abstract SimEvent first();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	public abstract SimEvent removeFirst();
+
+	/**
+	 * Returns an iterator to the queue. The iteration order depends on the implementation and
+	 * the queue must not be modified while the iterator is in use.
+	 *
 	 * @return the iterator
 	 */
-	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
-	}
+	public abstract Iterator<SimEvent> iterator();
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the size
 	 */
-	public int size() {
-		return sortedSet.size();
-	}
+	public abstract int size();
 
 	/**
 	 * Removes the event from the queue.
-	 * 
+	 *
 	 * @param event the event
 	 * @return true, if successful
 	 */
-	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
-	}
+	public abstract boolean remove(SimEvent event);
 
 	/**
 	 * Removes all the events from the queue.
-	 * 
+	 *
 	 * @param events the events
 	 * @return true, if successful
 	 */
 	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
+		boolean modified = false;
+		for (SimEvent event : events) {
+			modified |= remove(event);
+		}
+		return modified;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
-	public void clear() {
-		sortedSet.clear();
-	}
+	public abstract void clear();
 
-}
\ No newline at end of file
+}
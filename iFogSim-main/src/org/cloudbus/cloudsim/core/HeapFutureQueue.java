@@ -0,0 +1,250 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue backed by a 4-ary array heap. The event times and ordering keys are kept
+ * in primitive arrays next to the events, so comparisons never dereference the events and adding
+ * or removing an event allocates nothing once the arrays have grown to the working size. Every
+ * event records its position in the heap, so removing a given event, e.g. when it is cancelled,
+ * takes logarithmic time.
+ *
+ * @see FutureQueue
+ */
+public class HeapFutureQueue extends FutureQueue {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The arity of the heap. */
+	private static final int ARITY = 4;
+
+	/** The default initial capacity. */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	/** The events in heap order. */
+	private SimEvent[] events;
+
+	/** The times of the events, indexed as {@link #events}. */
+	private double[] times;
+
+	/** The ordering keys of the events, indexed as {@link #events}. */
+	private long[] keys;
+
+	/** The number of events in the heap. */
+	private int size;
+
+	/**
+	 * Creates a new heap with the default initial capacity.
+	 */
+	public HeapFutureQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new heap.
+	 *
+	 * @param initialCapacity the number of events the heap can hold before growing
+	 */
+	public HeapFutureQueue(int initialCapacity) {
+		if (initialCapacity < 1) {
+			initialCapacity = 1;
+		}
+		events = new SimEvent[initialCapacity];
+		times = new double[initialCapacity];
+		keys = new long[initialCapacity];
+	}
+
+	@Override
+	protected void insert(SimEvent event, long key) {
+		if (size == events.length) {
+			int capacity = events.length << 1;
+			events = Arrays.copyOf(events, capacity);
+			times = Arrays.copyOf(times, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+		}
+		siftUp(size++, event, event.eventTime(), key);
+	}
+
+	@Override
+	public SimEvent first() {
+		return size == 0 ? null : events[0];
+	}
+
+	/**
+	 * Returns the ordering key of the first event of the queue. The queue must not be empty.
+	 *
+	 * @return the key
+	 */
+	long firstKey() {
+		return keys[0];
+	}
+
+	@Override
+	public SimEvent removeFirst() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = events[0];
+		removeAt(0);
+		first.heapIndex = -1;
+		return first;
+	}
+
+	/**
+	 * Returns an iterator to the queue. Events are returned in heap order, not in temporal order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return events[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		int index = event.heapIndex;
+		if (index < 0 || index >= size || events[index] != event) {
+			return false;
+		}
+		removeAt(index);
+		event.heapIndex = -1;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			events[i].heapIndex = -1;
+		}
+		Arrays.fill(events, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Removes the event at a given heap position.
+	 *
+	 * @param index the heap position
+	 */
+	private void removeAt(int index) {
+		int last = --size;
+		SimEvent event = events[last];
+		double time = times[last];
+		long key = keys[last];
+		events[last] = null;
+		if (index == last) {
+			return;
+		}
+		siftDown(index, event, time, key);
+		if (events[index] == event) {
+			siftUp(index, event, time, key);
+		}
+	}
+
+	/**
+	 * Moves an event up from a given position until its parent is not greater than it.
+	 *
+	 * @param index the starting position
+	 * @param event the event
+	 * @param time the event time
+	 * @param key the event ordering key
+	 */
+	private void siftUp(int index, SimEvent event, double time, long key) {
+		while (index > 0) {
+			int parent = (index - 1) / ARITY;
+			double parentTime = times[parent];
+			if (parentTime < time || (parentTime == time && keys[parent] < key)) {
+				break;
+			}
+			SimEvent moved = events[parent];
+			events[index] = moved;
+			moved.heapIndex = index;
+			times[index] = parentTime;
+			keys[index] = keys[parent];
+			index = parent;
+		}
+		events[index] = event;
+		event.heapIndex = index;
+		times[index] = time;
+		keys[index] = key;
+	}
+
+	/**
+	 * Moves an event down from a given position until none of its children is smaller than it.
+	 *
+	 * @param index the starting position
+	 * @param event the event
+	 * @param time the event time
+	 * @param key the event ordering key
+	 */
+	private void siftDown(int index, SimEvent event, double time, long key) {
+		while (true) {
+			int child = index * ARITY + 1;
+			if (child >= size) {
+				break;
+			}
+			int end = Math.min(child + ARITY, size);
+			int min = child;
+			double minTime = times[child];
+			long minKey = keys[child];
+			for (int c = child + 1; c < end; c++) {
+				double t = times[c];
+				if (t < minTime || (t == minTime && keys[c] < minKey)) {
+					min = c;
+					minTime = t;
+					minKey = keys[c];
+				}
+			}
+			if (time < minTime || (time == minTime && key < minKey)) {
+				break;
+			}
+			SimEvent moved = events[min];
+			events[index] = moved;
+			moved.heapIndex = index;
+			times[index] = minTime;
+			keys[index] = minKey;
+			index = min;
+		}
+		events[index] = event;
+		event.heapIndex = index;
+		times[index] = time;
+		keys[index] = key;
+	}
+
+}
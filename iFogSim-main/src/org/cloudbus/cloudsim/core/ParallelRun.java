@@ -0,0 +1,539 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * A parallel run of a simulation, see {@link CloudSim#startSimulation(Partitioning, int)}.
+ * <p>
+ * The entities are started and run once by the sequential engine, then their events are handed
+ * over to the partitions, each with its own {@link SimulationContext}. The run then proceeds in time
+ * windows starting at the earliest pending event and as long as the lookahead, so that no event sent
+ * to another partition during a window falls into it. Events are stamped with their place in the
+ * order of the sequential engine (see {@link PartitionFutureQueue}), which makes the order in which
+ * each entity receives its events, and the order in which the tasks submitted with
+ * {@link CloudSim#runInOrder(Runnable)} are applied, those of the sequential engine.
+ *
+ * @see CloudSim#startSimulation(Partitioning, int)
+ * @see Partitioning
+ */
+class ParallelRun {
+
+	/** The number of bits of the rank given to the round of the creating clock tick. */
+	private static final int ROUND_BITS = 15;
+
+	/** The number of bits of the rank given to the creating entity and to the sequence number. */
+	private static final int ID_BITS = 24;
+
+	/** The context of the simulation. */
+	private final SimulationContext simulation;
+
+	/** The partition of each entity, by entity id. */
+	private final int[] partitionOf;
+
+	/** The number of partitions. */
+	private final int count;
+
+	/** The lookahead. */
+	private final double lookahead;
+
+	/** The number of threads. */
+	private final int threads;
+
+	/** The contexts of the partitions. */
+	private SimulationContext[] contexts;
+
+	/** The partitions. */
+	private Partition[] partitions;
+
+	/**
+	 * Creates a parallel run of the entities of a simulation.
+	 *
+	 * @param simulation the context of the simulation
+	 * @param partitioning the partitioning of the entities
+	 * @param threads the number of threads
+	 */
+	ParallelRun(SimulationContext simulation, Partitioning partitioning, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads should be positive, but is: " + threads);
+		}
+		count = partitioning.getPartitionCount();
+		if (count < 1) {
+			throw new IllegalArgumentException("The number of partitions should be positive, but is: " + count);
+		}
+		lookahead = partitioning.getLookahead();
+		if (!(lookahead > 0)) {
+			throw new IllegalArgumentException("The lookahead should be positive, but is: " + lookahead);
+		}
+		this.simulation = simulation;
+		this.threads = threads;
+		partitionOf = new int[simulation.getNumEntities()];
+		for (int id = 0; id < partitionOf.length; id++) {
+			SimEntity entity = simulation.getEntity(id);
+			int p = partitioning.getPartition(entity);
+			if (p < 0 || p >= count) {
+				throw new IllegalArgumentException("Invalid partition " + p + " for entity " + entity.getName());
+			}
+			partitionOf[id] = p;
+		}
+	}
+
+	/**
+	 * Gives the rank of an event among the events created at the same time: the events created in
+	 * earlier rounds of clock ticks come first, then those created by entities with smaller ids, then
+	 * those created earlier by the same entity.
+	 *
+	 * @param round the round of the clock tick the creating entity is run after
+	 * @param entity the id of the creating entity
+	 * @param sequence the number of events created before by the entity in the same run
+	 * @return the rank
+	 */
+	static long rank(int round, int entity, int sequence) {
+		if (round >= 1 << ROUND_BITS || entity >= 1 << ID_BITS || sequence >= 1 << ID_BITS) {
+			throw new IllegalStateException("Too many clock ticks, entities or events at time "
+					+ CloudSim.clock() + " for a parallel run.");
+		}
+		return (long) round << (2 * ID_BITS) | (long) entity << ID_BITS | sequence;
+	}
+
+	/**
+	 * Runs the simulation.
+	 *
+	 * @return the simulation time at the end of the run
+	 */
+	double run() {
+		// start the entities and run them once, as the first clock tick of the sequential engine does
+		if (!simulation.running()) {
+			simulation.runStart();
+		}
+		simulation.runReadyEntities();
+
+		contexts = new SimulationContext[count];
+		partitions = new Partition[count];
+		for (int p = 0; p < count; p++) {
+			partitions[p] = new Partition(p);
+			contexts[p] = new SimulationContext(simulation, partitions[p]);
+		}
+
+		// hand the events over to the partitions, ranked in the order of the sequential engine
+		FutureQueue future = simulation.getFutureQueue();
+		long rank = 0;
+		while (future.size() > 0) {
+			SimEvent e = simulation.removeFirstFutureEvent();
+			if (e.getType() == SimEvent.CREATE) {
+				throw new IllegalStateException("Entities cannot be created during a parallel run.");
+			}
+			e.creationTime = Double.NEGATIVE_INFINITY;
+			e.creationRank = rank++;
+			int owner = e.getType() == SimEvent.HOLD_DONE ? e.getSource() : e.getDestination();
+			if (owner < 0 || owner >= partitionOf.length) {
+				throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+			}
+			((PartitionFutureQueue) contexts[partitionOf[owner]].getFutureQueue()).deliver(e);
+		}
+		for (Map.Entry<Integer, Predicate> wait : simulation.getWaitPredicates().entrySet()) {
+			contexts[partitionOf[wait.getKey()]].getWaitPredicates().put(wait.getKey(), wait.getValue());
+		}
+
+		double terminateAt = simulation.getTerminateAt();
+		boolean abrupt = false;
+		ExecutorService executor = count > 2 && threads > 1 ? Executors.newFixedThreadPool(
+				Math.min(threads, count - 1), new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "partition");
+						thread.setDaemon(true);
+						return thread;
+					}
+				}) : null;
+		try {
+			while (true) {
+				double start = nextEventTime();
+				if (start == Double.POSITIVE_INFINITY || terminateAt > 0.0 && start >= terminateAt) {
+					break;
+				}
+				double end = start + lookahead;
+				if (terminateAt > 0.0 && end > terminateAt) {
+					end = terminateAt;
+				}
+				runWindow(executor, end);
+				if (isAbruptlyTerminated()) {
+					abrupt = true;
+					break;
+				}
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+
+		double clock = 0;
+		for (SimulationContext context : contexts) {
+			clock = Math.max(clock, context.clock());
+		}
+		if (!abrupt && terminateAt > 0.0 && nextEventTime() != Double.POSITIVE_INFINITY) {
+			// the sequential engine processes the first clock tick at or after the termination time,
+			// without running the entities
+			double time = nextEventTime();
+			for (SimulationContext context : contexts) {
+				SimEvent first = context.getFutureQueue().first();
+				if (first != null && first.eventTime() == time) {
+					context.processNextTick();
+				}
+			}
+			simulation.terminateSimulation();
+			clock = terminateAt;
+		}
+		finish(clock, abrupt);
+		return clock;
+	}
+
+	/**
+	 * Runs a time window: the partitions but the root one, concurrently, then the root partition,
+	 * then the ordered tasks.
+	 *
+	 * @param executor the executor, or <tt>null</tt> to run the partitions on the calling thread
+	 * @param end the end of the time window
+	 */
+	private void runWindow(ExecutorService executor, final double end) {
+		List<Callable<Void>> windows = new ArrayList<Callable<Void>>();
+		for (int p = 1; p < count; p++) {
+			SimEvent first = contexts[p].getFutureQueue().first();
+			if (first != null && first.eventTime() < end) {
+				windows.add(window(contexts[p], end));
+			}
+		}
+		try {
+			if (executor == null || windows.size() < 2) {
+				for (Callable<Void> window : windows) {
+					window.call();
+				}
+			} else {
+				for (Future<Void> result : executor.invokeAll(windows)) {
+					result.get();
+				}
+			}
+			for (int p = 1; p < count; p++) {
+				deliver(partitions[p]);
+			}
+			window(contexts[0], end).call();
+			deliver(partitions[0]);
+		} catch (ExecutionException e) {
+			throw propagate(e.getCause());
+		} catch (Exception e) {
+			throw propagate(e);
+		}
+		applyTasks();
+	}
+
+	/**
+	 * Creates the task running a time window of a partition.
+	 */
+	private static Callable<Void> window(final SimulationContext context, final double end) {
+		return new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				return context.call(new Callable<Void>() {
+
+					@Override
+					public Void call() {
+						context.runWindow(end);
+						return null;
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Hands the events sent by a partition during the time window over to their partitions.
+	 */
+	private void deliver(Partition partition) {
+		for (SimEvent e : partition.outbox) {
+			((PartitionFutureQueue) contexts[partitionOf[e.getDestination()]].getFutureQueue()).deliver(e);
+		}
+		partition.outbox.clear();
+	}
+
+	/**
+	 * Applies the tasks submitted by the partitions during the time window, in the order of the
+	 * sequential engine. The tasks of a partition are already in that order.
+	 */
+	private void applyTasks() {
+		int[] next = new int[count];
+		while (true) {
+			OrderedTask best = null;
+			int bestPartition = -1;
+			for (int p = 0; p < count; p++) {
+				List<OrderedTask> tasks = partitions[p].tasks;
+				if (next[p] < tasks.size()) {
+					OrderedTask task = tasks.get(next[p]);
+					if (best == null || task.time < best.time || task.time == best.time && task.rank < best.rank) {
+						best = task;
+						bestPartition = p;
+					}
+				}
+			}
+			if (best == null) {
+				break;
+			}
+			next[bestPartition]++;
+			simulation.setClock(best.time);
+			best.task.run();
+		}
+		for (Partition partition : partitions) {
+			partition.tasks.clear();
+		}
+	}
+
+	/**
+	 * Finishes the entities, as {@link SimulationContext#finishSimulation()} does, each in the
+	 * context of its partition.
+	 */
+	private void finish(double clock, boolean abrupt) {
+		for (int p = 0; p < count; p++) {
+			partitions[p].finishing = true;
+			contexts[p].endTicks(clock);
+		}
+		try {
+			if (!abrupt) {
+				for (int id = 0; id < partitionOf.length; id++) {
+					final SimEntity entity = simulation.getEntity(id);
+					if (entity.getState() != SimEntity.FINISHED) {
+						contexts[partitionOf[id]].call(new Callable<Void>() {
+
+							@Override
+							public Void call() {
+								entity.run();
+								return null;
+							}
+						});
+					}
+				}
+			}
+			for (int id = 0; id < partitionOf.length; id++) {
+				final SimEntity entity = simulation.getEntity(id);
+				contexts[partitionOf[id]].call(new Callable<Void>() {
+
+					@Override
+					public Void call() {
+						entity.shutdownEntity();
+						return null;
+					}
+				});
+			}
+		} catch (Exception e) {
+			throw propagate(e);
+		}
+		simulation.resetSimulation();
+	}
+
+	/**
+	 * Gets the time of the earliest event of the partitions.
+	 *
+	 * @return the time, or positive infinity if there is no event
+	 */
+	private double nextEventTime() {
+		double time = Double.POSITIVE_INFINITY;
+		for (SimulationContext context : contexts) {
+			SimEvent first = context.getFutureQueue().first();
+			if (first != null && first.eventTime() < time) {
+				time = first.eventTime();
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * Checks if an entity has terminated the simulation abruptly.
+	 */
+	private boolean isAbruptlyTerminated() {
+		for (SimulationContext context : contexts) {
+			if (context.isAbruptlyTerminated()) {
+				return true;
+			}
+		}
+		return simulation.isAbruptlyTerminated();
+	}
+
+	/**
+	 * Rethrows an exception thrown by a partition.
+	 */
+	private static RuntimeException propagate(Throwable t) {
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		}
+		if (t instanceof Error) {
+			throw (Error) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/**
+	 * The state of a partition of the run shared with its context.
+	 */
+	class Partition {
+
+		/** The index of the partition. */
+		private final int index;
+
+		/** The events sent to the other partitions during the time window. */
+		private final List<SimEvent> outbox = new ArrayList<SimEvent>();
+
+		/** The tasks submitted during the time window, in the order of the sequential engine. */
+		private final List<OrderedTask> tasks = new ArrayList<OrderedTask>();
+
+		/** Whether the entities are being finished, after the last time window. */
+		private boolean finishing = false;
+
+		Partition(int index) {
+			this.index = index;
+		}
+
+		int getIndex() {
+			return index;
+		}
+
+		int getCount() {
+			return count;
+		}
+
+		boolean isFinishing() {
+			return finishing;
+		}
+
+		/**
+		 * Checks if an entity belongs to another partition.
+		 *
+		 * @param id the id of the entity
+		 * @return true, if the entity belongs to another partition
+		 */
+		boolean isRemote(int id) {
+			return id >= 0 && id < partitionOf.length && partitionOf[id] != index;
+		}
+
+		/**
+		 * Sends an event to an entity of another partition. It is delivered at the end of the time
+		 * window.
+		 *
+		 * @param e the event
+		 * @param delay the delay of the event
+		 * @throws IllegalStateException if the event could fall into the current time window of its
+		 *             partition
+		 */
+		void sendRemote(SimEvent e, double delay) {
+			if (finishing) {
+				// the sequential engine does not process the events sent by finishing entities either
+				return;
+			}
+			if (partitionOf[e.getDestination()] != 0 && delay < lookahead) {
+				throw new IllegalStateException("Event with tag " + e.getTag() + " sent from "
+						+ CloudSim.getEntityName(e.getSource()) + " to " + CloudSim.getEntityName(e.getDestination())
+						+ " in another partition with a delay of " + delay + ", shorter than the lookahead "
+						+ lookahead + ".");
+			}
+			outbox.add(e);
+		}
+
+		/**
+		 * Submits a task to be run at the end of the time window.
+		 */
+		void addTask(double time, long rank, Runnable task) {
+			tasks.add(new OrderedTask(time, rank, task));
+		}
+
+		/**
+		 * Cancels the first event sent by an entity that matches a predicate, among the events of
+		 * the partition and those it sent to the other partitions during the time window.
+		 */
+		SimEvent cancel(FutureQueue future, int src, Predicate p) {
+			SimEvent ev = null;
+			Iterator<SimEvent> iter = future.iterator();
+			while (iter.hasNext()) {
+				SimEvent next = iter.next();
+				if (next.getSource() == src && p.match(next)
+						&& (ev == null || PartitionFutureQueue.ORDER.compare(next, ev) < 0)) {
+					ev = next;
+				}
+			}
+			for (SimEvent next : outbox) {
+				if (next.getSource() == src && p.match(next)
+						&& (ev == null || PartitionFutureQueue.ORDER.compare(next, ev) < 0)) {
+					ev = next;
+				}
+			}
+			if (ev != null && !future.remove(ev)) {
+				outbox.remove(ev);
+			}
+			return ev;
+		}
+
+		/**
+		 * Cancels all the events sent by an entity that match a predicate, among the events of the
+		 * partition and those it sent to the other partitions during the time window.
+		 */
+		boolean cancelAll(FutureQueue future, int src, Predicate p) {
+			List<SimEvent> toRemove = new ArrayList<SimEvent>();
+			Iterator<SimEvent> iter = future.iterator();
+			while (iter.hasNext()) {
+				SimEvent ev = iter.next();
+				if (ev.getSource() == src && p.match(ev)) {
+					toRemove.add(ev);
+				}
+			}
+			boolean modified = future.removeAll(toRemove);
+			iter = outbox.iterator();
+			while (iter.hasNext()) {
+				SimEvent ev = iter.next();
+				if (ev.getSource() == src && p.match(ev)) {
+					iter.remove();
+					modified = true;
+				}
+			}
+			return modified;
+		}
+	}
+
+	/**
+	 * A task submitted with {@link CloudSim#runInOrder(Runnable)} during a time window.
+	 */
+	private static class OrderedTask {
+
+		/** The simulation time the task was submitted at. */
+		final double time;
+
+		/** The rank of the submitting entity run, see {@link ParallelRun#rank(int, int, int)}. */
+		final long rank;
+
+		/** The task. */
+		final Runnable task;
+
+		OrderedTask(double time, long rank, Runnable task) {
+			this.time = time;
+			this.rank = rank;
+			this.task = task;
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * The future event queue of a partition of a parallel run. The sequential engine orders the events
+ * with the same time by the order they were created in; a partition cannot count the events created
+ * by the other partitions, so events are ordered by a stamp that gives the same order instead: the
+ * round of the clock tick they are processed in among the ticks at their time, the events added to
+ * the head of the queue first, then the time and the rank they were created with. The stamp does
+ * not depend on the partition an event was created in, so events sent to other partitions keep
+ * their place in the order.
+ *
+ * @see ParallelRun
+ * @see SimulationContext
+ */
+class PartitionFutureQueue extends FutureQueue {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The order of the events of a parallel run. */
+	static final Comparator<SimEvent> ORDER = new Comparator<SimEvent>() {
+
+		@Override
+		public int compare(SimEvent a, SimEvent b) {
+			int c = Double.compare(a.eventTime(), b.eventTime());
+			if (c != 0) {
+				return c;
+			}
+			if (a.round != b.round) {
+				return a.round < b.round ? -1 : 1;
+			}
+			boolean aFirst = a.getSerial() == 0;
+			if (aFirst != (b.getSerial() == 0)) {
+				return aFirst ? -1 : 1;
+			}
+			c = Double.compare(a.creationTime, b.creationTime);
+			if (c != 0) {
+				return c;
+			}
+			return a.creationRank < b.creationRank ? -1 : a.creationRank > b.creationRank ? 1 : 0;
+		}
+	};
+
+	/** The events. */
+	private final PriorityQueue<SimEvent> events = new PriorityQueue<SimEvent>(256, ORDER);
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(1);
+		events.add(newEvent);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		events.add(newEvent);
+	}
+
+	/**
+	 * Adds an event that has already been added to the queue of another partition or of the
+	 * sequential engine, keeping its serial number.
+	 *
+	 * @param event the event
+	 */
+	void deliver(SimEvent event) {
+		events.add(event);
+	}
+
+	@Override
+	protected void insert(SimEvent event, long key) {
+		events.add(event);
+	}
+
+	@Override
+	public SimEvent first() {
+		return events.peek();
+	}
+
+	@Override
+	public SimEvent removeFirst() {
+		return events.poll();
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return events.iterator();
+	}
+
+	@Override
+	public int size() {
+		return events.size();
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		return events.remove(event);
+	}
+
+	@Override
+	public void clear() {
+		events.clear();
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+/**
+ * Splits the entities of a simulation into the partitions of a parallel run, see
+ * {@link CloudSim#startSimulation(Partitioning, int)}.
+ * <p>
+ * Partition 0 is the root partition. It runs after the other partitions in each time window, so
+ * the other partitions may send events to its entities with any delay. Any other event sent to an
+ * entity of another partition must have a delay of at least the lookahead.
+ *
+ * @see CloudSim#startSimulation(Partitioning, int)
+ */
+public interface Partitioning {
+
+	/**
+	 * Gets the number of partitions, including the root partition.
+	 *
+	 * @return the number of partitions
+	 */
+	int getPartitionCount();
+
+	/**
+	 * Gets the partition of an entity.
+	 *
+	 * @param entity the entity
+	 * @return the index of the partition, 0 for the root partition
+	 */
+	int getPartition(SimEntity entity);
+
+	/**
+	 * Gets the lookahead: the shortest delay of the events sent to the entities of another
+	 * partition than the root partition, usually the latency of the links between the partitions.
+	 *
+	 * @return the lookahead
+	 */
+	double getLookahead();
+
+}
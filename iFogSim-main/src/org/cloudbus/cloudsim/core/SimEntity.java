@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.NetworkTopology;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
@@ -28,7 +30,10 @@ import org.cloudbus.cloudsim.core.predicates.Predicate;
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  */
-public abstract class SimEntity implements Cloneable {
+public abstract class SimEntity implements Cloneable, Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** The name. */
 	private String name;
@@ -192,6 +197,42 @@ public abstract class SimEntity implements Cloneable {
 		CloudSim.sendFirst(id, dest, delay, tag, data);
 	}
 
+	/**
+	 * Send an event to another entity by id number, with data, and return a handle that cancels
+	 * it. Note that the tag <code>9999</code> is reserved.
+	 * 
+	 * @param dest The unique id number of the destination entity
+	 * @param delay How long from the current simulation time the event should be sent
+	 * @param tag An user-defined number representing the type of event.
+	 * @param data The data to be sent with the event.
+	 * @return The handle to the event, or <tt>null</tt> if the simulation is not running
+	 * @see #cancelEvent(EventHandle)
+	 */
+	public EventHandle scheduleCancellable(int dest, double delay, int tag, Object data) {
+		if (!CloudSim.running()) {
+			return null;
+		}
+		return CloudSim.sendCancellable(id, dest, delay, tag, data);
+	}
+
+	/**
+	 * Send a high priority event to another entity by id number, with data, and return a handle
+	 * that cancels it. Note that the tag <code>9999</code> is reserved.
+	 * 
+	 * @param dest The unique id number of the destination entity
+	 * @param delay How long from the current simulation time the event should be sent
+	 * @param tag An user-defined number representing the type of event.
+	 * @param data The data to be sent with the event.
+	 * @return The handle to the event, or <tt>null</tt> if the simulation is not running
+	 * @see #cancelEvent(EventHandle)
+	 */
+	public EventHandle scheduleFirstCancellable(int dest, double delay, int tag, Object data) {
+		if (!CloudSim.running()) {
+			return null;
+		}
+		return CloudSim.sendFirstCancellable(id, dest, delay, tag, data);
+	}
+
 	/**
 	 * Send a high priority event to another entity by id number and with <b>no</b> data. Note that
 	 * the tag <code>9999</code> is reserved.
@@ -337,6 +378,20 @@ public abstract class SimEntity implements Cloneable {
 		return CloudSim.cancel(id, p);
 	}
 
+	/**
+	 * Cancel an event sent with a handle, if it is still waiting in the future queue.
+	 * 
+	 * @param handle The handle to the event
+	 * @return true if the event was cancelled, false if it was already processed or cancelled
+	 */
+	public boolean cancelEvent(EventHandle handle) {
+		if (!CloudSim.running()) {
+			return false;
+		}
+
+		return CloudSim.cancel(handle);
+	}
+
 	/**
 	 * Get the first event matching a predicate from the deferred queue, or if none match, wait for
 	 * a matching event to arrive.
@@ -404,6 +459,7 @@ public abstract class SimEntity implements Cloneable {
 
 		while (ev != null) {
 			processEvent(ev);
+			CloudSim.releaseEvent(ev);
 			if (state != RUNNABLE) {
 				break;
 			}
@@ -536,12 +592,51 @@ public abstract class SimEntity implements Cloneable {
 			return;
 		}
 
+		schedule(entityId, delayTo(entityId, delay), cloudSimTag, data);
+	}
+
+	/**
+	 * Sends an event/message to another entity by <tt>delaying</tt> the simulation time from the
+	 * current time, with a tag representing the event type, and returns a handle that cancels it.
+	 * 
+	 * @param entityId the id number of the destination entity
+	 * @param delay how long from the current simulation time the event should be sent. If delay is
+	 *            a negative number, then it will be changed to 0
+	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @param data A reference to data to be sent with the event
+	 * @return the handle to the event, or <tt>null</tt> if it was not sent
+	 * @see #cancelEvent(EventHandle)
+	 */
+	protected EventHandle sendCancellable(int entityId, double delay, int cloudSimTag, Object data) {
+		if (entityId < 0) {
+			return null;
+		}
+
+		// if delay is -ve, then it doesn't make sense. So resets to 0.0
+		if (delay < 0) {
+			delay = 0;
+		}
+
+		if (Double.isInfinite(delay)) {
+			throw new IllegalArgumentException("The specified delay is infinite value");
+		}
+
+		return scheduleCancellable(entityId, delayTo(entityId, delay), cloudSimTag, data);
+	}
+
+	/**
+	 * Adds the network delay to another entity to the delay of an event sent to it.
+	 * 
+	 * @param entityId the id number of the destination entity
+	 * @param delay the delay of the event
+	 * @return the delay with the network delay
+	 */
+	private double delayTo(int entityId, double delay) {
 		int srcId = getId();
 		if (entityId != srcId) {// does not delay self messages
 			delay += getNetworkDelay(srcId, entityId);
 		}
-
-		schedule(entityId, delay, cloudSimTag, data);
+		return delay;
 	}
 
 	/**
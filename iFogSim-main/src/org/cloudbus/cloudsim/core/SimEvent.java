@@ -8,6 +8,8 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.io.Serializable;
+
 /**
  * This class represents a simulation event which is passed between the entities in the simulation.
  * 
@@ -15,13 +17,16 @@ package org.cloudbus.cloudsim.core;
  * @see Simulation
  * @see SimEntity
  */
-public class SimEvent implements Cloneable, Comparable<SimEvent> {
+public class SimEvent implements Cloneable, Comparable<SimEvent>, Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	/** internal event type **/
-	private final int etype;
+	private int etype;
 
 	/** time at which event should occur **/
-	private final double time;
+	private double time;
 
 	/** time that the event was removed from the queue for service **/
 	private double endWaitingTime;
@@ -33,13 +38,40 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	private int entDst;
 
 	/** the user defined type of the event **/
-	private final int tag;
+	private int tag;
 
 	/** any data the event is carrying **/
-	private final Object data;
+	private Object data;
 
 	private long serial = -1;
 
+	/** round of the clock tick the event is processed in, among the ticks at its time, in parallel runs **/
+	int round;
+
+	/** simulation time the event was created at, in parallel runs **/
+	double creationTime;
+
+	/** position of the event among the events created at the same time, in parallel runs **/
+	long creationRank;
+
+	/** whether this event has been recycled and must not be used anymore **/
+	private boolean recycled = false;
+
+	/** number of times this event has been taken from the event pool, which invalidates its handles **/
+	int generation;
+
+	/** whether this event is in the index by source of the future queue of the sequential engine **/
+	transient boolean indexed;
+
+	/** previous event of the same source in the index of the future queue **/
+	transient SimEvent previousOfSource;
+
+	/** next event of the same source in the index of the future queue **/
+	transient SimEvent nextOfSource;
+
+	/** position of this event in a {@link HeapFutureQueue} **/
+	int heapIndex = -1;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -82,10 +114,58 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		data = null;
 	}
 
+	/**
+	 * Reinitialises a recycled event.
+	 * 
+	 * @return this event
+	 */
+	SimEvent reset(int evtype, double time, int src, int dest, int tag, Object edata) {
+		etype = evtype;
+		this.time = time;
+		endWaitingTime = -1.0;
+		entSrc = src;
+		entDst = dest;
+		this.tag = tag;
+		data = edata;
+		serial = -1;
+		round = 0;
+		creationTime = 0;
+		creationRank = 0;
+		generation++;
+		return this;
+	}
+
+	/**
+	 * Marks this event as recycled, so that any later access to it fails.
+	 */
+	void markRecycled() {
+		recycled = true;
+		data = null;
+	}
+
+	/**
+	 * Fails if this event has been recycled.
+	 */
+	private void checkNotRecycled() {
+		if (recycled) {
+			throw new IllegalStateException("SimEvent used after being recycled (tag = " + tag + ").");
+		}
+	}
+
 	protected void setSerial(long serial) {
 		this.serial = serial;
 	}
 
+	/**
+	 * Gets the serial number of this event; events added to the head of the queue have serial
+	 * number 0.
+	 * 
+	 * @return the serial number
+	 */
+	long getSerial() {
+		return serial;
+	}
+
 	/**
 	 * Used to set the time at which this event finished waiting in the event
 	 * 
@@ -107,6 +187,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return
 	 */
 	public int getType() {
+		checkNotRecycled();
 		return etype;
 	}
 
@@ -138,6 +219,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return the id number
 	 */
 	public int getDestination() {
+		checkNotRecycled();
 		return entDst;
 	}
 
@@ -147,6 +229,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return the id number
 	 */
 	public int getSource() {
+		checkNotRecycled();
 		return entSrc;
 	}
 
@@ -156,6 +239,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The simulation time
 	 */
 	public double eventTime() {
+		checkNotRecycled();
 		return time;
 	}
 
@@ -165,6 +249,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The simulation time
 	 */
 	public double endWaitingTime() {
+		checkNotRecycled();
 		return endWaitingTime;
 	}
 
@@ -174,6 +259,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The tag
 	 */
 	public int type() {
+		checkNotRecycled();
 		return tag;
 	}
 
@@ -183,6 +269,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return the id number
 	 */
 	public int scheduledBy() {
+		checkNotRecycled();
 		return entSrc;
 	}
 
@@ -192,6 +279,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The tag
 	 */
 	public int getTag() {
+		checkNotRecycled();
 		return tag;
 	}
 
@@ -201,6 +289,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return A reference to the data
 	 */
 	public Object getData() {
+		checkNotRecycled();
 		return data;
 	}
 
@@ -0,0 +1,88 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+/**
+ * A free list of {@link SimEvent} objects. Events are returned to the pool once they have been
+ * consumed by their destination entity and are handed out again for later sends.
+ * <p>
+ * In debug mode released events are never reused; they are marked as recycled instead, so that an
+ * entity still holding a reference to one fails on its next access to the event.
+ *
+ * @see CloudSim#enableEventRecycling(boolean)
+ */
+class SimEventPool {
+
+	/** The maximum number of free events kept. */
+	private static final int MAX_FREE = 1 << 16;
+
+	/** The free events. */
+	private SimEvent[] free = new SimEvent[256];
+
+	/** The number of free events. */
+	private int freeCount = 0;
+
+	/** Whether released events are poisoned instead of reused. */
+	private final boolean debug;
+
+	/**
+	 * Creates a new pool.
+	 *
+	 * @param debug <tt>true</tt> to detect uses of events after they are released
+	 */
+	SimEventPool(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * Checks if released events are poisoned instead of reused.
+	 *
+	 * @return <tt>true</tt> in debug mode
+	 */
+	boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * Gets an event, reusing a released one when possible.
+	 *
+	 * @return the event
+	 */
+	SimEvent obtain(int evtype, double time, int src, int dest, int tag, Object data) {
+		if (freeCount == 0) {
+			return new SimEvent(evtype, time, src, dest, tag, data);
+		}
+		SimEvent event = free[--freeCount];
+		free[freeCount] = null;
+		return event.reset(evtype, time, src, dest, tag, data);
+	}
+
+	/**
+	 * Returns an event to the pool. The event must not be used by the caller anymore.
+	 *
+	 * @param event the event
+	 */
+	void release(SimEvent event) {
+		if (debug) {
+			event.markRecycled();
+			return;
+		}
+		if (freeCount == MAX_FREE) {
+			return;
+		}
+		if (freeCount == free.length) {
+			SimEvent[] grown = new SimEvent[free.length << 1];
+			System.arraycopy(free, 0, grown, 0, freeCount);
+			free = grown;
+		}
+		event.reset(SimEvent.ENULL, -1, -1, -1, -1, null);
+		free[freeCount++] = event;
+	}
+
+}
@@ -0,0 +1,1545 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+
+/**
+ * The state of one simulation: the clock, the event queues, the entity registry, and the
+ * {@link SimulationLocal} values (id generators, metrics) of the simulation. The static methods of
+ * {@link CloudSim} operate on the context of the calling thread, which is the default context
+ * unless another context has been bound to the thread.
+ * <p>
+ * Several simulations can run concurrently in one JVM, each in its own context and thread:
+ *
+ * <pre>
+ * SimulationContext context = new SimulationContext();
+ * context.call(new Callable&lt;Double&gt;() {
+ * 	public Double call() {
+ * 		CloudSim.init(1, Calendar.getInstance(), false);
+ * 		// create the entities
+ * 		return CloudSim.startSimulation();
+ * 	}
+ * });
+ * </pre>
+ *
+ * A context must only be used by one thread at a time.
+ * <p>
+ * A running simulation can be saved to a checkpoint file (see
+ * {@link CloudSim#checkpointAt(double, File)}) and restored into a new context with
+ * {@link #restore(File)}, which then continues the simulation from there.
+ *
+ * @see CloudSim
+ * @see SimulationLocal
+ */
+public class SimulationContext implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The context used by the threads no context has been bound to. */
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	/** The contexts bound to threads. */
+	private static final ThreadLocal<SimulationContext> BOUND = new ThreadLocal<SimulationContext>();
+
+	/** The number of threads a context is bound to; the thread local is only read when non-zero. */
+	private static final AtomicInteger boundThreads = new AtomicInteger();
+
+	/** The Constant CLOUDSIM_VERSION_STRING. */
+	private static final String CLOUDSIM_VERSION_STRING = "3.0";
+
+	/** The Constant NOT_FOUND. */
+	private static final int NOT_FOUND = -1;
+
+	/** The id of CIS entity. */
+	private int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	@SuppressWarnings("unused")
+	private int shutdownId = -1;
+
+	/** The CIS object. */
+	private CloudInformationService cis = null;
+
+	/** The trace flag. */
+	@SuppressWarnings("unused")
+	private boolean traceFlag = false;
+
+	/** The calendar. */
+	private Calendar calendar = null;
+
+	/** The termination time. */
+	private double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	private double minTimeBetweenEvents = 0.1;
+
+	/** The pool consumed events are recycled into, or <tt>null</tt> if events are not recycled. */
+	private transient SimEventPool eventPool = null;
+
+	/** The sink of the trace records of the simulation, or <tt>null</tt>. */
+	private transient TraceSink traceSink;
+
+	/** The entities. */
+	private List<SimEntity> entities;
+
+	/** The future event queue. */
+	private FutureQueue future;
+
+	/** The deferred event queue. */
+	private DeferredQueue deferred;
+
+	/**
+	 * The index by source of the future event queue of the sequential engine: the last event sent
+	 * by every entity that is still in the queue, indexed by id. The events of an entity are linked
+	 * through {@link SimEvent#previousOfSource}, so that cancelling them does not scan the queue.
+	 */
+	private transient SimEvent[] sourceEvents = new SimEvent[16];
+
+	/** The simulation clock. */
+	private double clock;
+
+	/** Flag for checking if the simulation is running. */
+	private boolean running;
+
+	/** The entities by name. */
+	private Map<String, SimEntity> entitiesByName;
+
+	/** The wait predicates. */
+	private Map<Integer, Predicate> waitPredicates;
+
+	/** The ids of the entities that have to be run on the next clock tick. */
+	private int[] readyEntities;
+
+	/** The number of ids in {@link #readyEntities}. */
+	private int readyCount;
+
+	/** Flags telling which entities are already in {@link #readyEntities}, indexed by id. */
+	private boolean[] readyFlags;
+
+	/** The paused. */
+	private boolean paused = false;
+
+	/** The pause at. */
+	private long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	private boolean abruptTerminate = false;
+
+	/** The values of the simulation locals, indexed by {@link SimulationLocal#getIndex()}. */
+	private transient Object[] locals = new Object[8];
+
+	/** The simulation this context is a partition of in a parallel run, or <tt>null</tt>. */
+	private transient SimulationContext parent;
+
+	/** The partition of the parallel run this context runs, or <tt>null</tt>. */
+	private transient ParallelRun.Partition partition;
+
+	/** The round of the last clock tick among the ticks at the same time, in a partition. */
+	private int tickRound;
+
+	/** The id of the entity being run, in a partition. */
+	private int runningEntity;
+
+	/** The number of events created by the entity being run, in a partition. */
+	private int createdCount;
+
+	/** The time to write a checkpoint at, or -1. */
+	private transient double checkpointAt = -1;
+
+	/** The file to write the checkpoint to. */
+	private transient File checkpointFile;
+
+	/**
+	 * Creates a new context. Its simulation has to be initialised with one of the <tt>init</tt>
+	 * methods of {@link CloudSim}, called in the context.
+	 */
+	public SimulationContext() {
+	}
+
+	/**
+	 * Creates the context of a partition of a parallel run. It shares the entities and the
+	 * simulation locals of the simulation, and has its own clock and event queues.
+	 *
+	 * @param simulation the context of the simulation
+	 * @param partition the partition
+	 */
+	SimulationContext(SimulationContext simulation, ParallelRun.Partition partition) {
+		this.parent = simulation;
+		this.partition = partition;
+		cisId = simulation.cisId;
+		shutdownId = simulation.shutdownId;
+		cis = simulation.cis;
+		traceFlag = simulation.traceFlag;
+		calendar = simulation.calendar;
+		minTimeBetweenEvents = simulation.minTimeBetweenEvents;
+		traceSink = simulation.traceSink;
+		entities = simulation.entities;
+		entitiesByName = simulation.entitiesByName;
+		future = new PartitionFutureQueue();
+		deferred = new DeferredQueue();
+		waitPredicates = new HashMap<Integer, Predicate>();
+		readyEntities = new int[16];
+		readyFlags = new boolean[16];
+		clock = simulation.clock;
+		running = true;
+	}
+
+	/**
+	 * Gets the default context, used by the threads no context has been bound to.
+	 *
+	 * @return the default context
+	 */
+	public static SimulationContext getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Gets the context of the calling thread.
+	 *
+	 * @return the context bound to the calling thread, or the default context
+	 */
+	public static SimulationContext current() {
+		if (boundThreads.get() == 0) {
+			return DEFAULT;
+		}
+		SimulationContext context = BOUND.get();
+		return context == null ? DEFAULT : context;
+	}
+
+	/**
+	 * Makes this context the context of the calling thread, until {@link #unbind()} is called.
+	 */
+	public void bind() {
+		if (BOUND.get() == null) {
+			boundThreads.incrementAndGet();
+		}
+		BOUND.set(this);
+	}
+
+	/**
+	 * Makes the default context the context of the calling thread again.
+	 */
+	public static void unbind() {
+		if (BOUND.get() != null) {
+			BOUND.remove();
+			boundThreads.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Runs a task with this context bound to the calling thread. The context the thread had before
+	 * is restored afterwards.
+	 *
+	 * @param task the task, typically creating the entities and running the simulation
+	 * @return the result of the task
+	 * @throws Exception the exception thrown by the task
+	 */
+	public <T> T call(Callable<T> task) throws Exception {
+		SimulationContext previous = BOUND.get();
+		bind();
+		try {
+			return task.call();
+		} finally {
+			if (previous == null) {
+				unbind();
+			} else {
+				previous.bind();
+			}
+		}
+	}
+
+	/**
+	 * Checks if this is the default context, or a partition of a parallel run of it.
+	 *
+	 * @return true, if this is the default context
+	 */
+	public boolean isDefault() {
+		return parent == null ? this == DEFAULT : parent.isDefault();
+	}
+
+	/**
+	 * Get the current simulation time of this context.
+	 *
+	 * @return the simulation time
+	 */
+	public double clock() {
+		return clock;
+	}
+
+	/**
+	 * Gets the index of the partition of a parallel run this context runs.
+	 *
+	 * @return the index of the partition, or 0 outside parallel runs
+	 * @see CloudSim#startSimulation(Partitioning, int)
+	 */
+	public int getPartitionIndex() {
+		return partition == null ? 0 : partition.getIndex();
+	}
+
+	/**
+	 * Gets the number of partitions of the parallel run this context is a partition of.
+	 *
+	 * @return the number of partitions, or 1 outside parallel runs
+	 */
+	public int getPartitionCount() {
+		return partition == null ? 1 : partition.getCount();
+	}
+
+	/**
+	 * Turns a number drawn from a counter each partition has its own copy of (see
+	 * {@link SimulationLocal#partitionValue(Object)}) into an id that no other partition draws, so
+	 * that ids stay unique in parallel runs.
+	 *
+	 * @param n the number drawn from the counter
+	 * @return the id, <tt>n</tt> itself outside parallel runs
+	 */
+	public int partitionUniqueId(int n) {
+		return partition == null ? n : n * partition.getCount() + partition.getIndex();
+	}
+
+	/**
+	 * Gets the value of a simulation local in this context.
+	 *
+	 * @param local the simulation local
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T getLocal(SimulationLocal<T> local) {
+		int index = local.getIndex();
+		if (index < locals.length && locals[index] != null) {
+			return (T) locals[index];
+		}
+		T value;
+		if (parent == null) {
+			value = local.initialValue();
+		} else {
+			// the other partitions may be reading the values of the simulation
+			synchronized (parent) {
+				value = local.partitionValue(parent.getLocal(local));
+			}
+		}
+		setLocal(local, value);
+		return value;
+	}
+
+	/**
+	 * Sets the value of a simulation local in this context.
+	 *
+	 * @param local the simulation local
+	 * @param value the value
+	 */
+	<T> void setLocal(SimulationLocal<T> local, T value) {
+		int index = local.getIndex();
+		if (index >= locals.length) {
+			locals = Arrays.copyOf(locals, Math.max(index + 1, locals.length << 1));
+		}
+		locals[index] = value;
+	}
+
+	// ======== INITIALISATION ===============//
+
+	/**
+	 * Initialises all the common attributes.
+	 *
+	 * @see CloudSim#init(int, Calendar, boolean)
+	 */
+	private void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
+			throws Exception {
+		initialize();
+		// NOTE: the order for the below 3 lines are important
+		traceFlag = _traceFlag;
+
+		// Set the current Wall clock time as the starting time of
+		// simulation
+		if (_calendar == null) {
+			calendar = Calendar.getInstance();
+		} else {
+			calendar = _calendar;
+		}
+
+		// creates a CloudSimShutdown object
+		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
+		shutdownId = shutdown.getId();
+	}
+
+	/**
+	 * @see CloudSim#init(int, Calendar, boolean)
+	 */
+	void init(int numUser, Calendar cal, boolean traceFlag) {
+		try {
+			initCommonVariable(cal, traceFlag, numUser);
+
+			// create a GIS object
+			cis = new CloudInformationService("CloudInformationService");
+
+			// set all the above entity IDs
+			cisId = cis.getId();
+		} catch (IllegalArgumentException s) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(s.getMessage());
+		} catch (Exception e) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(e.getMessage());
+		}
+	}
+
+	/**
+	 * @see CloudSim#init(int, Calendar, boolean, double)
+	 */
+	void init(int numUser, Calendar cal, boolean traceFlag, double periodBetweenEvents) {
+		if (periodBetweenEvents <= 0) {
+			throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
+		}
+
+		init(numUser, cal, traceFlag);
+		minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * @see CloudSim#init(int, Calendar, boolean, FutureQueue)
+	 */
+	void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		if (futureQueue == null || futureQueue.size() > 0) {
+			throw new IllegalArgumentException("The future event queue should be empty and not null.");
+		}
+
+		init(numUser, cal, traceFlag);
+		future = futureQueue;
+	}
+
+	/**
+	 * Initialise the simulation for stand alone simulations.
+	 */
+	void initialize() {
+		Log.printLine("Initialising...");
+		entities = new ArrayList<SimEntity>();
+		entitiesByName = new LinkedHashMap<String, SimEntity>();
+		future = new TimingWheelFutureQueue();
+		sourceEvents = new SimEvent[16];
+		deferred = new DeferredQueue();
+		waitPredicates = new HashMap<Integer, Predicate>();
+		readyEntities = new int[16];
+		readyCount = 0;
+		readyFlags = new boolean[16];
+		clock = 0;
+		running = false;
+	}
+
+	/**
+	 * @see CloudSim#startSimulation()
+	 */
+	double startSimulation() throws NullPointerException {
+		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
+		try {
+			double clock = run();
+			resetInitialisation();
+			return clock;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			throw new NullPointerException("CloudSim.startCloudSimulation() :"
+					+ " Error - you haven't initialized CloudSim.");
+		}
+	}
+
+	/**
+	 * @see CloudSim#startSimulation(Partitioning, int)
+	 */
+	double startSimulation(Partitioning partitioning, int threads) {
+		Log.printLine("Starting CloudSim version " + CLOUDSIM_VERSION_STRING);
+		if (partition != null) {
+			throw new IllegalStateException("A partition cannot start a parallel run.");
+		}
+		if (paused || pauseAt != -1) {
+			throw new IllegalStateException("A parallel run cannot be paused.");
+		}
+		if (checkpointAt != -1) {
+			throw new IllegalStateException("A parallel run cannot be checkpointed.");
+		}
+		double clock = new ParallelRun(this, partitioning, threads).run();
+		runStop();
+		resetInitialisation();
+		return clock;
+	}
+
+	/**
+	 * Resets the variables set by the initialisation of the simulation.
+	 */
+	private void resetInitialisation() {
+		cisId = -1;
+		shutdownId = -1;
+		cis = null;
+		calendar = null;
+		traceFlag = false;
+	}
+
+	/**
+	 * @see CloudSim#stopSimulation()
+	 */
+	void stopSimulation() throws NullPointerException {
+		try {
+			runStop();
+		} catch (IllegalArgumentException e) {
+			throw new NullPointerException("CloudSim.stopCloudSimulation() : "
+					+ "Error - can't stop Cloud Simulation.");
+		}
+	}
+
+	/**
+	 * @see CloudSim#terminateSimulation()
+	 */
+	boolean terminateSimulation() {
+		running = false;
+		printMessage("Simulation: Reached termination time.");
+		return true;
+	}
+
+	/**
+	 * @see CloudSim#terminateSimulation(double)
+	 */
+	boolean terminateSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			terminateAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * @see CloudSim#getMinTimeBetweenEvents()
+	 */
+	double getMinTimeBetweenEvents() {
+		return minTimeBetweenEvents;
+	}
+
+	/**
+	 * @see CloudSim#runInOrder(Runnable)
+	 */
+	void runInOrder(Runnable task) {
+		if (isSequential()) {
+			task.run();
+		} else {
+			partition.addTask(clock, ParallelRun.rank(tickRound, runningEntity, 0), task);
+		}
+	}
+
+	/**
+	 * @see CloudSim#isSequential()
+	 */
+	boolean isSequential() {
+		return partition == null || partition.isFinishing();
+	}
+
+	/**
+	 * @see CloudSim#enableEventRecycling(boolean)
+	 */
+	void enableEventRecycling(boolean debug) {
+		eventPool = new SimEventPool(debug);
+	}
+
+	/**
+	 * @see CloudSim#disableEventRecycling()
+	 */
+	void disableEventRecycling() {
+		eventPool = null;
+	}
+
+	/**
+	 * @see CloudSim#isEventRecyclingEnabled()
+	 */
+	boolean isEventRecyclingEnabled() {
+		return eventPool != null;
+	}
+
+	/**
+	 * @see CloudSim#setTraceSink(TraceSink)
+	 */
+	void setTraceSink(TraceSink traceSink) {
+		this.traceSink = traceSink;
+	}
+
+	/**
+	 * @see CloudSim#getTraceSink()
+	 */
+	TraceSink getTraceSink() {
+		return traceSink;
+	}
+
+	/**
+	 * @see CloudSim#getSimulationCalendar()
+	 */
+	Calendar getSimulationCalendar() {
+		// make a new copy
+		Calendar clone = calendar;
+		if (calendar != null) {
+			clone = (Calendar) calendar.clone();
+		}
+
+		return clone;
+	}
+
+	/**
+	 * @see CloudSim#getCloudInfoServiceEntityId()
+	 */
+	int getCloudInfoServiceEntityId() {
+		return cisId;
+	}
+
+	/**
+	 * @see CloudSim#getCloudResourceList()
+	 */
+	List<Integer> getCloudResourceList() {
+		if (cis == null) {
+			return null;
+		}
+
+		return cis.getList();
+	}
+
+	// ======== SIMULATION METHODS ===============//
+
+	/**
+	 * @see CloudSim#getNumEntities()
+	 */
+	int getNumEntities() {
+		return entities.size();
+	}
+
+	/**
+	 * @see CloudSim#getEntity(int)
+	 */
+	SimEntity getEntity(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * @see CloudSim#getEntity(String)
+	 */
+	SimEntity getEntity(String name) {
+		return entitiesByName.get(name);
+	}
+
+	/**
+	 * @see CloudSim#getEntityId(String)
+	 */
+	int getEntityId(String name) {
+		SimEntity obj = entitiesByName.get(name);
+		if (obj == null) {
+			return NOT_FOUND;
+		} else {
+			return obj.getId();
+		}
+	}
+
+	/**
+	 * @see CloudSim#getEntityName(int)
+	 */
+	String getEntityName(int entityID) {
+		try {
+			return getEntity(entityID).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the name of an entity for a trace record, without the exception of
+	 * {@link #getEntityName(int)} for the ids of no entity.
+	 *
+	 * @param id the id of the entity
+	 * @return the name of the entity, or <tt>null</tt>
+	 */
+	private String traceName(int id) {
+		return id >= 0 && id < entities.size() ? entities.get(id).getName() : null;
+	}
+
+	/**
+	 * @see CloudSim#getEntityList()
+	 */
+	List<SimEntity> getEntityList() {
+		// create a new list to prevent the user from changing
+		// the list of entities used by Simulation
+		List<SimEntity> list = new LinkedList<SimEntity>();
+		list.addAll(entities);
+		return list;
+	}
+
+	/**
+	 * @see CloudSim#addEntity(SimEntity)
+	 */
+	void addEntity(SimEntity e) {
+		SimEvent evt;
+		if (partition != null) {
+			throw new IllegalStateException("Entities cannot be created during a parallel run.");
+		}
+		if (running) {
+			// Post an event to make this entity
+			evt = newEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
+			addFutureEvent(evt);
+		}
+		if (e.getId() == -1) { // Only add once!
+			int id = entities.size();
+			e.setId(id);
+			entities.add(e);
+			entitiesByName.put(e.getName(), e);
+		}
+	}
+
+	/**
+	 * @see CloudSim#addEntityDynamically(SimEntity)
+	 */
+	void addEntityDynamically(SimEntity e) {
+		if (e == null) {
+			throw new IllegalArgumentException("Adding null entity.");
+		} else {
+			printMessage("Adding: " + e.getName());
+		}
+		e.startEntity();
+	}
+
+	/**
+	 * @see CloudSim#runClockTick()
+	 */
+	boolean runClockTick() {
+		boolean queue_empty;
+
+		runReadyEntities();
+
+		// If there are more future events then deal with them
+		if (future.size() > 0) {
+			queue_empty = false;
+			processNextTick();
+		} else {
+			queue_empty = true;
+			running = false;
+			printMessage("Simulation: No more future events");
+		}
+
+		return queue_empty;
+	}
+
+	/**
+	 * Runs the entities made ready by the last clock tick, in the order of their ids.
+	 */
+	void runReadyEntities() {
+		SimEntity ent;
+		int ready_size = readyCount;
+		Arrays.sort(readyEntities, 0, ready_size);
+
+		for (int i = 0; i < ready_size; i++) {
+			int id = readyEntities[i];
+			readyFlags[id] = false;
+			ent = entities.get(id);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				runningEntity = id;
+				createdCount = 0;
+				ent.run();
+			}
+		}
+
+		// keep the entities made ready while running the others
+		readyCount -= ready_size;
+		System.arraycopy(readyEntities, ready_size, readyEntities, 0, readyCount);
+	}
+
+	/**
+	 * Processes the events of the next clock tick: the first events of the future queue with the
+	 * same time and, in a partition, the same round.
+	 */
+	void processNextTick() {
+		SimEvent first = removeFirstFutureEvent();
+		double time = first.eventTime();
+		int round = first.round;
+		tickRound = round;
+		processEvent(first);
+
+		// Check if next events are at same time...
+		SimEvent next = future.first();
+		while (next != null && next.eventTime() == time && next.round == round) {
+			processEvent(removeFirstFutureEvent());
+			next = future.first();
+		}
+	}
+
+	/**
+	 * Runs the clock ticks of a partition until its next event is at or after the end of the time
+	 * window.
+	 *
+	 * @param end the end of the time window
+	 */
+	void runWindow(double end) {
+		while (true) {
+			runReadyEntities();
+			SimEvent first = future.first();
+			if (first == null || first.eventTime() >= end) {
+				return;
+			}
+			processNextTick();
+		}
+	}
+
+	/**
+	 * @see CloudSim#runStop()
+	 */
+	void runStop() {
+		printMessage("Simulation completed.");
+	}
+
+	/**
+	 * @see CloudSim#hold(int, long)
+	 */
+	void hold(int src, long delay) {
+		SimEvent e = newEvent(SimEvent.HOLD_DONE, clock + delay, src, -1, -1, null);
+		addFutureEvent(e);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * @see CloudSim#pause(int, double)
+	 */
+	void pause(int src, double delay) {
+		SimEvent e = newEvent(SimEvent.HOLD_DONE, clock + delay, src, -1, -1, null);
+		addFutureEvent(e);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * @see CloudSim#send(int, int, double, int, Object)
+	 *
+	 * @return the event sent
+	 */
+	SimEvent send(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = newEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		if (partition != null && partition.isRemote(dest)) {
+			e.setSerial(1);
+			partition.sendRemote(e, delay);
+		} else {
+			addFutureEvent(e);
+		}
+		return e;
+	}
+
+	/**
+	 * @see CloudSim#sendFirst(int, int, double, int, Object)
+	 *
+	 * @return the event sent
+	 */
+	SimEvent sendFirst(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = newEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		if (partition != null && partition.isRemote(dest)) {
+			e.setSerial(0);
+			partition.sendRemote(e, delay);
+		} else {
+			future.addEventFirst(e);
+			indexBySource(e);
+		}
+		return e;
+	}
+
+	/**
+	 * @see CloudSim#wait(int, Predicate)
+	 */
+	void wait(int src, Predicate p) {
+		entities.get(src).setState(SimEntity.WAITING);
+		if (p != CloudSim.SIM_ANY) {
+			// If a predicate has been used store it in order to check it
+			waitPredicates.put(src, p);
+		}
+	}
+
+	/**
+	 * @see CloudSim#waiting(int, Predicate)
+	 */
+	int waiting(int d, Predicate p) {
+		if (p instanceof PredicateAny) {
+			return deferred.size(d);
+		}
+		int count = 0;
+		Iterator<SimEvent> iterator = deferred.iterator(d);
+		while (iterator.hasNext()) {
+			if (p.match(iterator.next())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @see CloudSim#select(int, Predicate)
+	 */
+	SimEvent select(int src, Predicate p) {
+		if (p instanceof PredicateAny) {
+			return deferred.removeFirst(src);
+		}
+		Iterator<SimEvent> iterator = deferred.iterator(src);
+		while (iterator.hasNext()) {
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
+				iterator.remove();
+				return ev;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see CloudSim#findFirstDeferred(int, Predicate)
+	 */
+	SimEvent findFirstDeferred(int src, Predicate p) {
+		if (p instanceof PredicateAny) {
+			return deferred.first(src);
+		}
+		Iterator<SimEvent> iterator = deferred.iterator(src);
+		while (iterator.hasNext()) {
+			SimEvent ev = iterator.next();
+			if (p.match(ev)) {
+				return ev;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @see CloudSim#cancel(int, Predicate)
+	 */
+	SimEvent cancel(int src, Predicate p) {
+		if (partition != null) {
+			return partition.cancel(future, src, p);
+		}
+		SimEvent ev = null;
+		for (SimEvent next = lastEventOf(src); next != null; next = next.previousOfSource) {
+			if (p.match(next) && (ev == null || next.compareTo(ev) < 0)) {
+				ev = next;
+			}
+		}
+		if (ev != null) {
+			removeFromSourceIndex(ev);
+			future.remove(ev);
+		}
+
+		return ev;
+	}
+
+	/**
+	 * @see CloudSim#cancelAll(int, Predicate)
+	 */
+	boolean cancelAll(int src, Predicate p) {
+		if (partition != null) {
+			return partition.cancelAll(future, src, p);
+		}
+		boolean modified = false;
+		SimEvent ev = lastEventOf(src);
+		while (ev != null) {
+			SimEvent previous = ev.previousOfSource;
+			if (p.match(ev)) {
+				removeFromSourceIndex(ev);
+				modified |= future.remove(ev);
+			}
+			ev = previous;
+		}
+		return modified;
+	}
+
+	/**
+	 * @see CloudSim#cancel(EventHandle)
+	 */
+	boolean cancel(EventHandle handle) {
+		final SimEvent event = handle.getEvent();
+		if (event == null) {
+			return false;
+		}
+		if (partition != null) {
+			return partition.cancel(future, handle.getSource(), new Predicate() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public boolean match(SimEvent ev) {
+					return ev == event;
+				}
+			}) != null;
+		}
+		if (!event.indexed) {
+			return false;
+		}
+		removeFromSourceIndex(event);
+		return future.remove(event);
+	}
+
+	/**
+	 * Adds an event to the future event queue and to its index by source.
+	 *
+	 * @param e the event
+	 */
+	private void addFutureEvent(SimEvent e) {
+		future.addEvent(e);
+		indexBySource(e);
+	}
+
+	/**
+	 * Removes the first event of the future event queue and from its index by source.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent removeFirstFutureEvent() {
+		SimEvent e = future.removeFirst();
+		if (e != null && e.indexed) {
+			removeFromSourceIndex(e);
+		}
+		return e;
+	}
+
+	/**
+	 * Adds an event that has just been added to the future event queue to the index by source. The
+	 * partitions of a parallel run do not index their events.
+	 *
+	 * @param e the event
+	 */
+	private void indexBySource(SimEvent e) {
+		int src = e.getSource();
+		if (partition != null || src < 0) {
+			return;
+		}
+		if (src >= sourceEvents.length) {
+			sourceEvents = Arrays.copyOf(sourceEvents, Math.max(src + 1, sourceEvents.length << 1));
+		}
+		SimEvent last = sourceEvents[src];
+		e.previousOfSource = last;
+		e.nextOfSource = null;
+		if (last != null) {
+			last.nextOfSource = e;
+		}
+		sourceEvents[src] = e;
+		e.indexed = true;
+	}
+
+	/**
+	 * Removes an event from the index by source.
+	 *
+	 * @param e the indexed event
+	 */
+	private void removeFromSourceIndex(SimEvent e) {
+		SimEvent previous = e.previousOfSource;
+		SimEvent next = e.nextOfSource;
+		if (previous != null) {
+			previous.nextOfSource = next;
+		}
+		if (next != null) {
+			next.previousOfSource = previous;
+		} else {
+			sourceEvents[e.getSource()] = previous;
+		}
+		e.previousOfSource = null;
+		e.nextOfSource = null;
+		e.indexed = false;
+	}
+
+	/**
+	 * Gets the last event sent by an entity that is still in the future event queue.
+	 *
+	 * @param src the id of the entity
+	 * @return the event, or <tt>null</tt>
+	 */
+	private SimEvent lastEventOf(int src) {
+		return src >= 0 && src < sourceEvents.length ? sourceEvents[src] : null;
+	}
+
+	//
+	// Private internal methods
+	//
+
+	/**
+	 * Processes an event.
+	 *
+	 * @param e the e
+	 */
+	private void processEvent(SimEvent e) {
+		int dest, src;
+		SimEntity dest_ent;
+		// Update the system's clock
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+		if (traceSink != null && traceSink.isTraced(TraceSink.EVENT)) {
+			traceSink.event(clock, e.getType(), e.getTag(), traceName(e.getSource()), traceName(e.getDestination()));
+		}
+
+		// Ok now process it
+		switch (e.getType()) {
+			case SimEvent.ENULL:
+				throw new IllegalArgumentException("Event has a null type.");
+
+			case SimEvent.CREATE:
+				SimEntity newe = (SimEntity) e.getData();
+				addEntityDynamically(newe);
+				markReady(newe.getId());
+				releaseEvent(e);
+				break;
+
+			case SimEvent.SEND:
+				// Check for matching wait
+				dest = e.getDestination();
+				if (dest < 0) {
+					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+				} else {
+					int tag = e.getTag();
+					dest_ent = entities.get(dest);
+					if (dest_ent.getState() == SimEntity.WAITING) {
+						Integer destObj = Integer.valueOf(dest);
+						Predicate p = waitPredicates.get(destObj);
+						if ((p == null) || (tag == 9999) || (p.match(e))) {
+							dest_ent.setEventBuffer(e);
+							dest_ent.setState(SimEntity.RUNNABLE);
+							waitPredicates.remove(destObj);
+						} else {
+							deferred.addEvent(e);
+						}
+					} else {
+						deferred.addEvent(e);
+					}
+					markReady(dest);
+				}
+				break;
+
+			case SimEvent.HOLD_DONE:
+				src = e.getSource();
+				if (src < 0) {
+					throw new IllegalArgumentException("Null entity holding.");
+				} else {
+					entities.get(src).setState(SimEntity.RUNNABLE);
+					markReady(src);
+				}
+				releaseEvent(e);
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Creates an event, taking it from the event pool when events are recycled.
+	 *
+	 * @return the event
+	 */
+	private SimEvent newEvent(int evtype, double time, int src, int dest, int tag, Object data) {
+		SimEvent e;
+		if (eventPool != null) {
+			e = eventPool.obtain(evtype, time, src, dest, tag, data);
+		} else {
+			e = new SimEvent(evtype, time, src, dest, tag, data);
+		}
+		if (partition != null) {
+			// the place of the event in the order of the sequential engine
+			e.round = time == clock ? tickRound + 1 : 0;
+			e.creationTime = clock;
+			e.creationRank = ParallelRun.rank(tickRound, runningEntity, createdCount++);
+		}
+		return e;
+	}
+
+	/**
+	 * Returns an event that has been consumed to the event pool, if events are recycled.
+	 *
+	 * @param e the event
+	 */
+	void releaseEvent(SimEvent e) {
+		if (eventPool != null) {
+			eventPool.release(e);
+		}
+	}
+
+	/**
+	 * @see CloudSim#runStart()
+	 */
+	void runStart() {
+		running = true;
+		// Start all the entities
+		for (SimEntity ent : entities) {
+			ent.startEntity();
+			markReady(ent.getId());
+		}
+
+		printMessage("Entities started.");
+	}
+
+	/**
+	 * Schedules an entity to be run on the next clock tick.
+	 *
+	 * @param id the entity id
+	 */
+	private void markReady(int id) {
+		if (id >= readyFlags.length) {
+			readyFlags = Arrays.copyOf(readyFlags, Math.max(id + 1, readyFlags.length << 1));
+		}
+		if (readyFlags[id]) {
+			return;
+		}
+		readyFlags[id] = true;
+		if (readyCount == readyEntities.length) {
+			readyEntities = Arrays.copyOf(readyEntities, readyCount << 1);
+		}
+		readyEntities[readyCount++] = id;
+	}
+
+	/**
+	 * @see CloudSim#running()
+	 */
+	boolean running() {
+		return running;
+	}
+
+	/**
+	 * @see CloudSim#pauseSimulation()
+	 */
+	boolean pauseSimulation() {
+		paused = true;
+		return paused;
+	}
+
+	/**
+	 * @see CloudSim#pauseSimulation(long)
+	 */
+	boolean pauseSimulation(long time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			pauseAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * @see CloudSim#resumeSimulation()
+	 */
+	boolean resumeSimulation() {
+		paused = false;
+
+		if (pauseAt <= clock) {
+			pauseAt = -1;
+		}
+
+		return !paused;
+	}
+
+	/**
+	 * @see CloudSim#run()
+	 */
+	double run() {
+		if (!running) {
+			runStart();
+		}
+		while (true) {
+			if (runClockTick() || abruptTerminate) {
+				break;
+			}
+
+			// this block allows termination of simulation at a specific time
+			if (terminateAt > 0.0 && clock >= terminateAt) {
+				terminateSimulation();
+				clock = terminateAt;
+				break;
+			}
+
+			if (checkpointAt != -1 && (future.size() == 0 || future.first().eventTime() >= checkpointAt)) {
+				File file = checkpointFile;
+				checkpointAt = -1;
+				checkpointFile = null;
+				writeCheckpoint(file);
+			}
+
+			if (pauseAt != -1
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.first().eventTime())
+							|| future.size() == 0 && pauseAt <= clock)) {
+				pauseSimulation();
+				clock = pauseAt;
+			}
+
+			while (paused) {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		double clock = clock();
+
+		finishSimulation();
+		runStop();
+
+		return clock;
+	}
+
+	/**
+	 * @see CloudSim#finishSimulation()
+	 */
+	void finishSimulation() {
+		// Allow all entities to exit their body method
+		if (!abruptTerminate) {
+			for (SimEntity ent : entities) {
+				if (ent.getState() != SimEntity.FINISHED) {
+					ent.run();
+				}
+			}
+		}
+
+		for (SimEntity ent : entities) {
+			ent.shutdownEntity();
+		}
+
+		resetSimulation();
+	}
+
+	/**
+	 * Resets all the simulation variables once the simulation has finished.
+	 */
+	void resetSimulation() {
+		entities = null;
+		entitiesByName = null;
+		future = null;
+		Arrays.fill(sourceEvents, null);
+		deferred = null;
+		clock = 0L;
+		running = false;
+
+		waitPredicates = null;
+		readyEntities = null;
+		readyCount = 0;
+		readyFlags = null;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+	/**
+	 * @see CloudSim#abruptallyTerminate()
+	 */
+	void abruptallyTerminate() {
+		abruptTerminate = true;
+	}
+
+	/**
+	 * Prints a message about the progress of the simulation.
+	 *
+	 * @param message the message
+	 */
+	private void printMessage(String message) {
+		Log.printLine(message);
+	}
+
+	/**
+	 * @see CloudSim#isPaused()
+	 */
+	boolean isPaused() {
+		return paused;
+	}
+
+	// ======== CHECKPOINTS ===============//
+
+	/**
+	 * @see CloudSim#checkpointAt(double, File)
+	 */
+	void checkpointAt(double time, File file) {
+		if (partition != null) {
+			throw new IllegalStateException("A partition cannot be checkpointed.");
+		}
+		if (time < clock) {
+			throw new IllegalArgumentException("The checkpoint time " + time + " is before the current time " + clock);
+		}
+		if (file == null) {
+			throw new IllegalArgumentException("The checkpoint file should not be null.");
+		}
+		checkpointAt = time;
+		checkpointFile = file;
+	}
+
+	/**
+	 * Writes the state of the simulation to a checkpoint file, between two clock ticks.
+	 *
+	 * @param file the file
+	 */
+	private void writeCheckpoint(File file) {
+		try {
+			Checkpoint.write(this, file);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write the checkpoint to " + file, e);
+		}
+		printMessage("Simulation: Checkpoint written at " + clock + " to " + file);
+	}
+
+	/**
+	 * Restores a simulation from a checkpoint file written by
+	 * {@link CloudSim#checkpointAt(double, File)}, possibly in another JVM running the same classes.
+	 * Starting the simulation in the returned context, e.g. in {@link #call(Callable)}, continues it
+	 * from the checkpoint: the entities are not started again. The entities can be found with
+	 * {@link CloudSim#getEntity(String)} and changed before, to branch into another experiment.
+	 * <p>
+	 * The state of the random generators the entities own, such as those of the distributions, is
+	 * restored with them; {@link Math#random()} is not.
+	 *
+	 * @param file the checkpoint file
+	 * @return a new context with the restored simulation
+	 * @throws IOException if the file cannot be read or is not a checkpoint of these classes
+	 */
+	public static SimulationContext restore(File file) throws IOException {
+		return Checkpoint.read(file);
+	}
+
+	/**
+	 * Saves the context, with the values of its simulation locals by name.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		if (parent != null) {
+			throw new NotSerializableException("A partition of a parallel run cannot be checkpointed.");
+		}
+		out.defaultWriteObject();
+		out.writeByte(eventPool == null ? 0 : eventPool.isDebug() ? 2 : 1);
+		List<SimulationLocal<?>> named = new ArrayList<SimulationLocal<?>>();
+		for (int index = 0; index < locals.length; index++) {
+			if (locals[index] != null) {
+				SimulationLocal<?> local = SimulationLocal.forIndex(index);
+				if (local.getName() == null) {
+					throw new NotSerializableException("A simulation local without a name has a value: "
+							+ locals[index].getClass().getName());
+				}
+				named.add(local);
+			}
+		}
+		out.writeInt(named.size());
+		for (SimulationLocal<?> local : named) {
+			out.writeUTF(local.getName());
+			out.writeObject(locals[local.getIndex()]);
+		}
+	}
+
+	/**
+	 * Restores the context saved by {@link #writeObject(ObjectOutputStream)}.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int recycling = in.readByte();
+		if (recycling != 0) {
+			eventPool = new SimEventPool(recycling == 2);
+		}
+		checkpointAt = -1;
+		sourceEvents = new SimEvent[16];
+		if (future != null) {
+			Iterator<SimEvent> iterator = future.iterator();
+			while (iterator.hasNext()) {
+				indexBySource(iterator.next());
+			}
+		}
+		locals = new Object[8];
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			String name = in.readUTF();
+			SimulationLocal<Object> local = (SimulationLocal<Object>) SimulationLocal.forName(name);
+			if (local == null) {
+				throw new InvalidObjectException("The checkpoint has a value for an unknown simulation local: " + name);
+			}
+			setLocal(local, in.readObject());
+		}
+	}
+
+	// ======== PARALLEL RUNS ===============//
+
+	/**
+	 * Gets the future event queue.
+	 *
+	 * @return the future event queue
+	 */
+	FutureQueue getFutureQueue() {
+		return future;
+	}
+
+	/**
+	 * Gets the predicates of the waiting entities, by entity id.
+	 *
+	 * @return the wait predicates
+	 */
+	Map<Integer, Predicate> getWaitPredicates() {
+		return waitPredicates;
+	}
+
+	/**
+	 * Gets the termination time set with {@link CloudSim#terminateSimulation(double)}.
+	 *
+	 * @return the termination time, or -1 if it is not set
+	 */
+	double getTerminateAt() {
+		return terminateAt;
+	}
+
+	/**
+	 * Checks if an entity has called {@link CloudSim#abruptallyTerminate()}.
+	 *
+	 * @return true, if the simulation has been terminated abruptly
+	 */
+	boolean isAbruptlyTerminated() {
+		return abruptTerminate;
+	}
+
+	/**
+	 * Sets the simulation clock.
+	 *
+	 * @param clock the simulation time
+	 */
+	void setClock(double clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Stops the clock ticks of a partition, as the sequential engine does when the simulation ends,
+	 * before the entities are finished.
+	 *
+	 * @param clock the simulation time the simulation ended at
+	 */
+	void endTicks(double clock) {
+		this.clock = clock;
+		running = false;
+	}
+
+}
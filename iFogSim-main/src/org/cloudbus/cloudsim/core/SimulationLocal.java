@@ -0,0 +1,160 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A value that has one copy per {@link SimulationContext}, the way a {@link ThreadLocal} has one
+ * copy per thread. It replaces the static fields of the classes that keep the state of a simulation
+ * outside of its entities, such as id generators and metrics, so that simulations running in
+ * different contexts do not share them.
+ * <p>
+ * The values of a simulation are saved in its checkpoints (see
+ * {@link CloudSim#checkpointAt(double, java.io.File)}) by the name of their simulation local, so only
+ * named simulation locals may have a value in a simulation that is checkpointed.
+ *
+ * @param <T> the type of the value
+ * @see SimulationContext
+ */
+public class SimulationLocal<T> {
+
+	/** The index of the next simulation local. */
+	private static final AtomicInteger nextIndex = new AtomicInteger();
+
+	/** The named simulation locals, by name. */
+	private static final ConcurrentMap<String, SimulationLocal<?>> named = new ConcurrentHashMap<String, SimulationLocal<?>>();
+
+	/** The simulation locals, by index. */
+	private static final ConcurrentMap<Integer, SimulationLocal<?>> byIndex = new ConcurrentHashMap<Integer, SimulationLocal<?>>();
+
+	/** The index of the value in the contexts. */
+	private final int index = nextIndex.getAndIncrement();
+
+	/** The name, or <tt>null</tt>. */
+	private final String name;
+
+	/**
+	 * Creates a simulation local without a name, whose value cannot be checkpointed.
+	 */
+	public SimulationLocal() {
+		name = null;
+		byIndex.put(index, this);
+	}
+
+	/**
+	 * Creates a named simulation local, whose value can be checkpointed. It has to be created when its
+	 * owner class is initialised, typically in a static field, so that it exists when a checkpoint is
+	 * restored.
+	 *
+	 * @param owner the class that owns the simulation local
+	 * @param name the name of the simulation local in the class, typically the name of the field
+	 * @throws IllegalArgumentException if the class already has a simulation local with that name
+	 */
+	public SimulationLocal(Class<?> owner, String name) {
+		this.name = owner.getName() + "#" + name;
+		if (named.putIfAbsent(this.name, this) != null) {
+			throw new IllegalArgumentException("There is already a simulation local named " + this.name);
+		}
+		byIndex.put(index, this);
+	}
+
+	/**
+	 * Gets a simulation local by index.
+	 *
+	 * @param index the index, as returned by {@link #getIndex()}
+	 * @return the simulation local
+	 */
+	static SimulationLocal<?> forIndex(int index) {
+		return byIndex.get(index);
+	}
+
+	/**
+	 * Gets a named simulation local, initialising its owner class if needed.
+	 *
+	 * @param name the name, as returned by {@link #getName()}
+	 * @return the simulation local, or <tt>null</tt> if there is none with that name
+	 */
+	static SimulationLocal<?> forName(String name) {
+		SimulationLocal<?> local = named.get(name);
+		if (local == null) {
+			try {
+				Class.forName(name.substring(0, name.indexOf('#')), true, SimulationLocal.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				return null;
+			}
+			local = named.get(name);
+		}
+		return local;
+	}
+
+	/**
+	 * Returns the value of this simulation local in a context it has not been set in yet. The
+	 * default implementation returns <tt>null</tt>.
+	 *
+	 * @return the initial value
+	 */
+	protected T initialValue() {
+		return null;
+	}
+
+	/**
+	 * Returns the value of this simulation local in a partition of a parallel run, given its value in
+	 * the simulation. The default implementation returns the value of the simulation, which all the
+	 * partitions then share: they must only access it in tasks submitted with
+	 * {@link CloudSim#runInOrder(Runnable)}. Values the entities update directly, such as id
+	 * counters, return a copy instead.
+	 *
+	 * @param value the value in the simulation
+	 * @return the value in the partition
+	 * @see CloudSim#startSimulation(Partitioning, int)
+	 */
+	protected T partitionValue(T value) {
+		return value;
+	}
+
+	/**
+	 * Gets the value in the context of the calling thread.
+	 *
+	 * @return the value
+	 */
+	public T get() {
+		return SimulationContext.current().getLocal(this);
+	}
+
+	/**
+	 * Sets the value in the context of the calling thread.
+	 *
+	 * @param value the value
+	 */
+	public void set(T value) {
+		SimulationContext.current().setLocal(this, value);
+	}
+
+	/**
+	 * Gets the index of the value in the contexts.
+	 *
+	 * @return the index
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gets the name: the name of the owner class and the name in the class, separated by <tt>#</tt>.
+	 *
+	 * @return the name, or <tt>null</tt> if the simulation local has no name
+	 */
+	String getName() {
+		return name;
+	}
+
+}
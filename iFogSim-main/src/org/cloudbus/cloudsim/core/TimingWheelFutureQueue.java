@@ -0,0 +1,476 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue that keeps the near-future events in a hierarchical timing wheel (G.
+ * Varghese and T. Lauck, 1987) and the other events in a {@link HeapFutureQueue}. Time is cut into
+ * ticks of a fixed resolution; the wheel has {@value #LEVELS} levels of {@value #SLOTS} slots, a
+ * slot of level <i>n</i> covering {@value #SLOTS}<sup><i>n</i></sup> ticks, and an event is added
+ * in O(1) to the slot of the lowest level that separates its tick from the current tick. When the
+ * ticks of the lowest level are used up, the next slot of a higher level is cascaded down. The
+ * events of a tick are sorted when the tick becomes the current one, and handed out in order.
+ * <p>
+ * Events at or before the current tick, and events beyond the range of the wheel, go to the heap;
+ * the first event of the queue is the first of the heap and of the current tick, compared by time
+ * and ordering key, so the order of the events is exactly the one of the other queues. Timer-heavy
+ * workloads, e.g. sensors emitting and devices sending periodic tuples at fixed intervals, keep
+ * almost all their events in the wheel.
+ * <p>
+ * The resolution should be about the time between successive events of the simulation: a much
+ * coarser one puts many events in each tick, which are sorted, and a much finer one makes more
+ * events cascade.
+ *
+ * @see FutureQueue
+ */
+public class TimingWheelFutureQueue extends FutureQueue {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The number of bits of the tick indexing the slots of a level. */
+	private static final int SLOT_BITS = 6;
+
+	/** The number of slots of a level. */
+	public static final int SLOTS = 1 << SLOT_BITS;
+
+	/** The number of levels. */
+	public static final int LEVELS = 4;
+
+	/** The default resolution, the default minimal time between events of {@link CloudSim}. */
+	public static final double DEFAULT_RESOLUTION = 0.1;
+
+	/** The duration of a tick. */
+	private final double resolution;
+
+	/** The slots of the levels of the wheel, created when first used. */
+	private final Bucket[][] wheel = new Bucket[LEVELS][SLOTS];
+
+	/** A bit per slot of every level, set if the slot has events. */
+	private final long[] occupied = new long[LEVELS];
+
+	/** The events of the current tick, sorted. */
+	private Bucket current = new Bucket();
+
+	/** The position of the first event of the current tick that has not been removed yet. */
+	private int currentHead;
+
+	/** The current tick; the wheel only holds events of later ticks. */
+	private long now;
+
+	/** The events that are not in the wheel. */
+	private final HeapFutureQueue overflow = new HeapFutureQueue();
+
+	/** The number of events in the queue. */
+	private int size;
+
+	/**
+	 * Creates a new timing wheel with the default resolution.
+	 */
+	public TimingWheelFutureQueue() {
+		this(DEFAULT_RESOLUTION);
+	}
+
+	/**
+	 * Creates a new timing wheel.
+	 *
+	 * @param resolution the duration of a tick
+	 */
+	public TimingWheelFutureQueue(double resolution) {
+		if (resolution <= 0 || Double.isInfinite(resolution) || Double.isNaN(resolution)) {
+			throw new IllegalArgumentException("The resolution should be positive, but is:" + resolution);
+		}
+		this.resolution = resolution;
+	}
+
+	@Override
+	protected void insert(SimEvent event, long key) {
+		double time = event.eventTime();
+		if (!addToWheel(event, time, key)) {
+			overflow.insert(event, key);
+		}
+		size++;
+	}
+
+	@Override
+	public SimEvent first() {
+		if (!hasCurrent()) {
+			return overflow.first();
+		}
+		if (overflow.size() > 0 && overflowFirst()) {
+			return overflow.first();
+		}
+		return current.events[currentHead];
+	}
+
+	@Override
+	public SimEvent removeFirst() {
+		if (size == 0) {
+			return null;
+		}
+		size--;
+		if (!hasCurrent() || (overflow.size() > 0 && overflowFirst())) {
+			return overflow.removeFirst();
+		}
+		SimEvent event = current.events[currentHead];
+		current.events[currentHead++] = null;
+		return event;
+	}
+
+	/**
+	 * Returns an iterator to the queue. Events are returned tick by tick for the events in the wheel,
+	 * then in heap order for the others; not in temporal order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private final Iterator<SimEvent> overflowIterator = overflow.iterator();
+
+			/** The level of the bucket being iterated, -1 for the current tick. */
+			private int level = -1;
+
+			private int slot = 0;
+
+			private Bucket bucket = current;
+
+			private int index = currentHead;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket == null || index >= bucket.size) {
+					if (level == LEVELS) {
+						return overflowIterator.hasNext();
+					}
+					if (level >= 0 && ++slot < SLOTS) {
+						bucket = wheel[level][slot];
+					} else {
+						level++;
+						slot = 0;
+						bucket = level < LEVELS ? wheel[level][0] : null;
+					}
+					index = 0;
+				}
+				return true;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				if (level == LEVELS) {
+					return overflowIterator.next();
+				}
+				return bucket.events[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		if (overflow.remove(event)) {
+			size--;
+			return true;
+		}
+		long tick = tickOf(event.eventTime());
+		if (tick == now) {
+			for (int i = currentHead; i < current.size; i++) {
+				if (current.events[i] == event) {
+					// keep the current tick sorted
+					System.arraycopy(current.events, i + 1, current.events, i, current.size - i - 1);
+					System.arraycopy(current.times, i + 1, current.times, i, current.size - i - 1);
+					System.arraycopy(current.keys, i + 1, current.keys, i, current.size - i - 1);
+					current.events[--current.size] = null;
+					size--;
+					return true;
+				}
+			}
+			return false;
+		}
+		int level = levelOf(tick);
+		if (tick < now || level >= LEVELS) {
+			return false;
+		}
+		int slot = slotOf(tick, level);
+		Bucket bucket = wheel[level][slot];
+		if (bucket == null || !bucket.remove(event)) {
+			return false;
+		}
+		if (bucket.size == 0) {
+			occupied[level] &= ~(1L << slot);
+		}
+		size--;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int level = 0; level < LEVELS; level++) {
+			for (Bucket bucket : wheel[level]) {
+				if (bucket != null) {
+					bucket.clear();
+				}
+			}
+			occupied[level] = 0;
+		}
+		current.clear();
+		currentHead = 0;
+		overflow.clear();
+		size = 0;
+	}
+
+	/**
+	 * Adds an event to the slot of the wheel of its tick, if the tick is after the current tick and
+	 * within the range of the wheel.
+	 *
+	 * @return true if the event was added
+	 */
+	private boolean addToWheel(SimEvent event, double time, long key) {
+		long tick = tickOf(time);
+		if (tick <= now) {
+			return false;
+		}
+		int level = levelOf(tick);
+		if (level >= LEVELS) {
+			return false;
+		}
+		int slot = slotOf(tick, level);
+		Bucket bucket = wheel[level][slot];
+		if (bucket == null) {
+			bucket = new Bucket();
+			wheel[level][slot] = bucket;
+		}
+		bucket.add(event, time, key);
+		occupied[level] |= 1L << slot;
+		return true;
+	}
+
+	/**
+	 * Makes sure the current tick has an event left, moving on to the next tick with events if
+	 * needed.
+	 *
+	 * @return false if the wheel is empty
+	 */
+	private boolean hasCurrent() {
+		if (currentHead < current.size) {
+			return true;
+		}
+		current.clear();
+		currentHead = 0;
+		while (true) {
+			int level = 0;
+			long later = 0;
+			for (; level < LEVELS; level++) {
+				// the slots after the one of the current tick; the earlier ones are empty
+				later = occupied[level] & (-2L << slotOf(now, level));
+				if (later != 0) {
+					break;
+				}
+			}
+			if (level == LEVELS) {
+				return false;
+			}
+			int slot = Long.numberOfTrailingZeros(later);
+			int shift = level * SLOT_BITS;
+			now = (now & -(1L << (shift + SLOT_BITS))) | ((long) slot << shift);
+			Bucket bucket = wheel[level][slot];
+			occupied[level] &= ~(1L << slot);
+			if (level == 0) {
+				wheel[0][slot] = current;
+				current = bucket;
+			} else {
+				// cascade the slot down: its events are now at the current tick or on a lower level
+				for (int i = 0; i < bucket.size; i++) {
+					SimEvent event = bucket.events[i];
+					double time = bucket.times[i];
+					long key = bucket.keys[i];
+					if (!addToWheel(event, time, key)) {
+						current.add(event, time, key);
+					}
+				}
+				bucket.clear();
+			}
+			if (current.size > 0) {
+				current.sort();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Checks if the first event of the heap comes before the first event of the current tick.
+	 */
+	private boolean overflowFirst() {
+		double time = overflow.first().eventTime();
+		double currentTime = current.times[currentHead];
+		return time < currentTime || (time == currentTime && overflow.firstKey() < current.keys[currentHead]);
+	}
+
+	/**
+	 * Gets the tick of a time.
+	 */
+	private long tickOf(double time) {
+		return (long) (time / resolution);
+	}
+
+	/**
+	 * Gets the level of the wheel that separates a tick after the current tick from the current
+	 * tick, {@link #LEVELS} or more if the tick is beyond the range of the wheel.
+	 */
+	private int levelOf(long tick) {
+		return (63 - Long.numberOfLeadingZeros(tick ^ now)) / SLOT_BITS;
+	}
+
+	/**
+	 * Gets the slot of a tick on a level of the wheel.
+	 */
+	private static int slotOf(long tick, int level) {
+		return (int) (tick >>> (level * SLOT_BITS)) & (SLOTS - 1);
+	}
+
+	/**
+	 * The events of a slot of the wheel, with their times and ordering keys.
+	 */
+	private static class Bucket implements Serializable {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** Below this size, events are sorted by insertion. */
+		private static final int INSERTION_SORT_THRESHOLD = 16;
+
+		SimEvent[] events = new SimEvent[8];
+
+		double[] times = new double[8];
+
+		long[] keys = new long[8];
+
+		int size;
+
+		void add(SimEvent event, double time, long key) {
+			if (size == events.length) {
+				int capacity = size << 1;
+				events = Arrays.copyOf(events, capacity);
+				times = Arrays.copyOf(times, capacity);
+				keys = Arrays.copyOf(keys, capacity);
+			}
+			events[size] = event;
+			times[size] = time;
+			keys[size++] = key;
+		}
+
+		/**
+		 * Removes an event, moving the last event in its place.
+		 */
+		boolean remove(SimEvent event) {
+			for (int i = 0; i < size; i++) {
+				if (events[i] == event) {
+					int last = --size;
+					events[i] = events[last];
+					times[i] = times[last];
+					keys[i] = keys[last];
+					events[last] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void clear() {
+			Arrays.fill(events, 0, size, null);
+			size = 0;
+		}
+
+		/**
+		 * Sorts the events by time and ordering key.
+		 */
+		void sort() {
+			sort(0, size - 1);
+		}
+
+		private void sort(int low, int high) {
+			while (high - low >= INSERTION_SORT_THRESHOLD) {
+				// quicksort with the median of three as pivot; no two events are equal
+				int middle = (low + high) >>> 1;
+				if (before(middle, low)) {
+					swap(middle, low);
+				}
+				if (before(high, low)) {
+					swap(high, low);
+				}
+				if (before(high, middle)) {
+					swap(high, middle);
+				}
+				double pivotTime = times[middle];
+				long pivotKey = keys[middle];
+				int i = low;
+				int j = high;
+				while (i <= j) {
+					while (times[i] < pivotTime || (times[i] == pivotTime && keys[i] < pivotKey)) {
+						i++;
+					}
+					while (times[j] > pivotTime || (times[j] == pivotTime && keys[j] > pivotKey)) {
+						j--;
+					}
+					if (i <= j) {
+						swap(i++, j--);
+					}
+				}
+				// recurse into the smaller part
+				if (j - low < high - i) {
+					sort(low, j);
+					low = i;
+				} else {
+					sort(i, high);
+					high = j;
+				}
+			}
+			for (int i = low + 1; i <= high; i++) {
+				for (int j = i; j > low && before(j, j - 1); j--) {
+					swap(j, j - 1);
+				}
+			}
+		}
+
+		private boolean before(int a, int b) {
+			return times[a] < times[b] || (times[a] == times[b] && keys[a] < keys[b]);
+		}
+
+		private void swap(int a, int b) {
+			SimEvent event = events[a];
+			events[a] = events[b];
+			events[b] = event;
+			double time = times[a];
+			times[a] = times[b];
+			times[b] = time;
+			long key = keys[a];
+			keys[a] = keys[b];
+			keys[b] = key;
+		}
+	}
+
+}
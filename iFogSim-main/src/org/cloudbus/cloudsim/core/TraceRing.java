@@ -0,0 +1,165 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of trace records with a single producer, the thread it was created for, and a
+ * single consumer, the thread of its {@link TraceSink}. The records have a fixed layout (a kind, a
+ * time, two ints, two doubles and five references), stored in arrays allocated with the ring, so
+ * that publishing a record allocates nothing.
+ * <p>
+ * The producer claims the slot of its next record with {@link #claim(boolean)}, fills it and makes
+ * it visible to the consumer with {@link #publish()}. The consumer reads the records up to
+ * {@link #getPublished()} and frees their slots with {@link #release(long)}. Each side only writes
+ * its own counter, with ordered stores, so neither takes a lock.
+ *
+ * @see TraceSink
+ */
+final class TraceRing {
+
+	/** The number of references of a record. */
+	static final int OBJECTS = 5;
+
+	/** The thread publishing the records. */
+	final Thread producer;
+
+	/** The number of records the ring holds, a power of two. */
+	final int capacity;
+
+	/** The mask turning a sequence number into a slot. */
+	final int mask;
+
+	/** The kinds of the records, by slot. */
+	final int[] kinds;
+
+	/** The times of the records, by slot. */
+	final double[] times;
+
+	/** The ints of the records, two per slot. */
+	final int[] ints;
+
+	/** The doubles of the records, two per slot. */
+	final double[] doubles;
+
+	/** The references of the records, {@link #OBJECTS} per slot. */
+	final Object[] objects;
+
+	/** The sequence number of the next record of the producer, only accessed by the producer. */
+	private long next;
+
+	/** The last value of {@link #released} read by the producer, only accessed by the producer. */
+	private long releasedCache;
+
+	/** The number of records published. */
+	private final AtomicLong published = new AtomicLong();
+
+	/** The number of records the consumer is done with. */
+	private final AtomicLong released = new AtomicLong();
+
+	/** The number of records dropped because the ring was full. */
+	private final AtomicLong dropped = new AtomicLong();
+
+	/** The sink consuming the records. */
+	private final TraceSink sink;
+
+	/**
+	 * Creates a ring for the calling thread.
+	 *
+	 * @param sink the sink consuming the records
+	 * @param capacity the number of records, a power of two
+	 */
+	TraceRing(TraceSink sink, int capacity) {
+		this.sink = sink;
+		this.capacity = capacity;
+		producer = Thread.currentThread();
+		mask = capacity - 1;
+		kinds = new int[capacity];
+		times = new double[capacity];
+		ints = new int[2 * capacity];
+		doubles = new double[2 * capacity];
+		objects = new Object[OBJECTS * capacity];
+	}
+
+	/**
+	 * Claims the slot of the next record. If the ring is full, either waits for the consumer to
+	 * free a slot or drops the record.
+	 *
+	 * @param block true to wait for a free slot, false to drop the record
+	 * @return the slot, or -1 if the record is dropped
+	 * @throws IllegalStateException if the ring is full and the sink is closed or its thread failed
+	 */
+	int claim(boolean block) {
+		if (next - releasedCache >= capacity) {
+			releasedCache = released.get();
+			if (next - releasedCache >= capacity) {
+				if (!sink.isWriting()) {
+					throw new IllegalStateException("The trace sink is closed or has failed.");
+				}
+				if (!block) {
+					dropped.lazySet(dropped.get() + 1);
+					return -1;
+				}
+				while (next - (releasedCache = released.get()) >= capacity) {
+					sink.wake();
+					if (sink.isClosed() || !sink.isWriting()) {
+						throw new IllegalStateException("The trace sink is closed or has failed.");
+					}
+					LockSupport.parkNanos(this, 1000);
+				}
+			}
+		}
+		return (int) next & mask;
+	}
+
+	/**
+	 * Publishes the record of the last claimed slot.
+	 */
+	void publish() {
+		published.lazySet(++next);
+	}
+
+	/**
+	 * Gets the number of records published so far.
+	 *
+	 * @return the number of records published
+	 */
+	long getPublished() {
+		return published.get();
+	}
+
+	/**
+	 * Gets the number of records the consumer is done with.
+	 *
+	 * @return the number of records released
+	 */
+	long getReleased() {
+		return released.get();
+	}
+
+	/**
+	 * Frees the slots of the records up to a sequence number, called by the consumer.
+	 *
+	 * @param sequence the number of records the consumer is done with
+	 */
+	void release(long sequence) {
+		released.lazySet(sequence);
+	}
+
+	/**
+	 * Gets the number of records dropped because the ring was full.
+	 *
+	 * @return the number of records dropped
+	 */
+	long getDropped() {
+		return dropped.get();
+	}
+}
@@ -0,0 +1,771 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An asynchronous sink of trace records: the events processed by the engine, the lifecycle of the
+ * tuples, the energy samples of the devices, and the output of the logs and of the controllers.
+ * The simulation threads publish fixed-layout records into preallocated rings, one per thread (see
+ * {@link TraceRing}), and a background thread formats them and writes them to a file, rotated once
+ * it reaches a size. Tracing thus costs the simulation thread the copy of a few fields per record
+ * instead of the formatting of a line and a blocking write.
+ * <p>
+ * When a ring is full, the producer either waits for the sink to catch up ({@link #BLOCK}) or drops
+ * the record and counts it ({@link #DROP}), see {@link #getDropped()}.
+ * <p>
+ * A sink is attached to a simulation with {@link CloudSim#setTraceSink(TraceSink)}, and has to be
+ * closed once the simulation has ended, which writes the remaining records. The arguments of the
+ * messages formatted by the sink are formatted by its thread, so arguments other than strings,
+ * numbers and <tt>null</tt> are turned into strings when they are published, and atomic numbers into
+ * their values. A message that cannot be formatted is written as its format and arguments, and the
+ * error is reported by {@link #close()}.
+ *
+ * @see CloudSim#setTraceSink(TraceSink)
+ */
+public class TraceSink {
+
+	/** The kind of the records of the events processed by the engine. */
+	public static final int EVENT = 0;
+
+	/** The kind of the records of the lifecycle of the tuples. */
+	public static final int TUPLE = 1;
+
+	/** The kind of the records of the energy samples of the devices. */
+	public static final int ENERGY = 2;
+
+	/** The kind of the records of the messages of the fog log. */
+	public static final int LOG = 3;
+
+	/** The kind of the records of the text printed by the CloudSim log and the controllers. */
+	public static final int TEXT = 4;
+
+	/** The names of the kinds of records. */
+	public static final String[] KIND_NAMES = {"EVENT", "TUPLE", "ENERGY", "LOG", "TEXT"};
+
+	/** The backpressure policy waiting for a free slot when a ring is full. */
+	public static final int BLOCK = 0;
+
+	/** The backpressure policy dropping the record when a ring is full. */
+	public static final int DROP = 1;
+
+	/** The phase of a tuple emitted by a sensor. */
+	public static final int EMITTED = 0;
+
+	/** The phase of a tuple arriving at a device or an actuator. */
+	public static final int ARRIVED = 1;
+
+	/** The phase of a tuple starting its execution on a module. */
+	public static final int STARTED = 2;
+
+	/** The phase of a tuple completing its execution on a module. */
+	public static final int FINISHED = 3;
+
+	/** The names of the phases of the tuples. */
+	private static final String[] PHASE_NAMES = {"EMITTED", "ARRIVED", "STARTED", "FINISHED"};
+
+	/** The names of the types of the events, see {@link SimEvent#SEND}. */
+	private static final String[] EVENT_TYPE_NAMES = {"ENULL", "SEND", "HOLD_DONE", "CREATE"};
+
+	/** The number of records the sink writes before freeing their slots. */
+	private static final int BATCH = 256;
+
+	/** The time the sink waits for records when the rings are empty, in nanoseconds. */
+	private static final long IDLE_WAIT = 200000;
+
+	/** The name of the file the sink writes to. */
+	private final String fileName;
+
+	/** The number of records of a ring. */
+	private final int capacity;
+
+	/** True to wait for a free slot when a ring is full, false to drop the record. */
+	private final boolean block;
+
+	/** The size of a file beyond which the sink rotates the files, or 0 to never rotate. */
+	private final long maxFileSize;
+
+	/** The number of files kept, the current one included. */
+	private final int maxFiles;
+
+	/** The kinds of records traced, one bit per kind. */
+	private volatile int tracedKinds = (1 << KIND_NAMES.length) - 1;
+
+	/** The ring of each producing thread. */
+	private final ThreadLocal<TraceRing> ring = new ThreadLocal<TraceRing>() {
+		@Override
+		protected TraceRing initialValue() {
+			TraceRing ring = new TraceRing(TraceSink.this, capacity);
+			rings.add(ring);
+			return ring;
+		}
+	};
+
+	/** The rings of all the producing threads. */
+	private final List<TraceRing> rings = new CopyOnWriteArrayList<TraceRing>();
+
+	/** The ring last used, to skip the thread local lookup while the same thread publishes. */
+	private volatile TraceRing lastRing;
+
+	/** The thread writing the records. */
+	private final Thread writer;
+
+	/** The closed flag. */
+	private volatile boolean closed;
+
+	/** The first error writing the files, or <tt>null</tt>. */
+	private volatile IOException failure;
+
+	/** The first error formatting a record, or the error the writing thread died of, or <tt>null</tt>. */
+	private volatile Throwable error;
+
+	/** The number of records written. */
+	private volatile long written;
+
+	/** The number of files opened. */
+	private volatile int fileCount;
+
+	/** The current file, only accessed by the writing thread. */
+	private Writer out;
+
+	/** The size of the current file. */
+	private long fileSize;
+
+	/** The line being formatted. */
+	private final StringBuilder line = new StringBuilder(256);
+
+	/** The formatter of the messages, appending to {@link #line}. */
+	private final Formatter formatter = new Formatter(line);
+
+	/** The format of the times of the log messages, the format of the fog log. */
+	private final DecimalFormat df = new DecimalFormat("#.00");
+
+	/** The time of the last log message, most messages having the time of the previous one. */
+	private double lastLogTime = Double.NaN;
+
+	/** The time of the last log message, formatted. */
+	private String lastLogTimeText;
+
+	/**
+	 * Creates a sink writing to a file, with rings of 65536 records, blocking when they are full, and
+	 * keeping 4 files of at most 64 MB.
+	 *
+	 * @param fileName the name of the file
+	 */
+	public TraceSink(String fileName) {
+		this(fileName, 1 << 16, BLOCK, 64L << 20, 4);
+	}
+
+	/**
+	 * Creates a sink writing to a file. Once the file reaches its maximum size, it is renamed
+	 * <tt>fileName.1</tt>, the previous <tt>fileName.1</tt> is renamed <tt>fileName.2</tt>, and so
+	 * on up to <tt>maxFiles - 1</tt>, and the sink writes to a new file.
+	 *
+	 * @param fileName the name of the file
+	 * @param capacity the number of records of the ring of each producing thread, a power of two
+	 * @param backpressure {@link #BLOCK} or {@link #DROP}
+	 * @param maxFileSize the size of a file beyond which the files are rotated, or 0 to never rotate
+	 * @param maxFiles the number of files kept, the current one included
+	 * @throws IllegalArgumentException if an argument is out of range
+	 * @throws IllegalStateException if the file cannot be created
+	 */
+	public TraceSink(String fileName, int capacity, int backpressure, long maxFileSize, int maxFiles) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("The capacity should be a power of two, at least 2.");
+		}
+		if (backpressure != BLOCK && backpressure != DROP) {
+			throw new IllegalArgumentException("Unknown backpressure policy: " + backpressure);
+		}
+		if (maxFileSize < 0 || maxFiles < 1) {
+			throw new IllegalArgumentException("The maximum file size should be positive or 0, and at least "
+					+ "one file should be kept.");
+		}
+		this.fileName = fileName;
+		this.capacity = capacity;
+		this.block = backpressure == BLOCK;
+		this.maxFileSize = maxFileSize;
+		this.maxFiles = maxFiles;
+		try {
+			open();
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot create the trace file " + fileName, e);
+		}
+		writer = new Thread("trace-sink") {
+			@Override
+			public void run() {
+				consume();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Sets whether the records of a kind are traced, all are by default.
+	 *
+	 * @param kind the kind, see {@link #EVENT}
+	 * @param traced true to trace the records of the kind
+	 */
+	public void setTraced(int kind, boolean traced) {
+		if (traced) {
+			tracedKinds |= 1 << kind;
+		} else {
+			tracedKinds &= ~(1 << kind);
+		}
+	}
+
+	/**
+	 * Checks if the records of a kind are traced.
+	 *
+	 * @param kind the kind, see {@link #EVENT}
+	 * @return true, if they are traced
+	 */
+	public boolean isTraced(int kind) {
+		return (tracedKinds & 1 << kind) != 0;
+	}
+
+	/**
+	 * Publishes the record of an event processed by the engine.
+	 *
+	 * @param time the time of the event
+	 * @param type the type of the event, see {@link SimEvent#SEND}
+	 * @param tag the tag of the event
+	 * @param source the name of the entity sending it, or <tt>null</tt>
+	 * @param destination the name of the entity receiving it, or <tt>null</tt>
+	 */
+	public void event(double time, int type, int tag, String source, String destination) {
+		TraceRing ring = ring();
+		int slot = ring.claim(block);
+		if (slot < 0) {
+			return;
+		}
+		ring.kinds[slot] = EVENT;
+		ring.times[slot] = time;
+		ring.ints[2 * slot] = type;
+		ring.ints[2 * slot + 1] = tag;
+		ring.objects[TraceRing.OBJECTS * slot] = source;
+		ring.objects[TraceRing.OBJECTS * slot + 1] = destination;
+		ring.publish();
+	}
+
+	/**
+	 * Publishes the record of a phase of the lifecycle of a tuple.
+	 *
+	 * @param time the time of the phase
+	 * @param phase the phase, see {@link #EMITTED}
+	 * @param tupleId the id of the tuple
+	 * @param tupleType the type of the tuple
+	 * @param entity the name of the sensor, device or actuator the tuple is at
+	 */
+	public void tuple(double time, int phase, int tupleId, String tupleType, String entity) {
+		TraceRing ring = ring();
+		int slot = ring.claim(block);
+		if (slot < 0) {
+			return;
+		}
+		ring.kinds[slot] = TUPLE;
+		ring.times[slot] = time;
+		ring.ints[2 * slot] = phase;
+		ring.ints[2 * slot + 1] = tupleId;
+		ring.objects[TraceRing.OBJECTS * slot] = tupleType;
+		ring.objects[TraceRing.OBJECTS * slot + 1] = entity;
+		ring.publish();
+	}
+
+	/**
+	 * Publishes an energy sample of a device.
+	 *
+	 * @param time the time of the sample
+	 * @param device the name of the device
+	 * @param utilization the utilization of the device from then on
+	 * @param energy the energy consumed by the device up to then
+	 */
+	public void energy(double time, String device, double utilization, double energy) {
+		TraceRing ring = ring();
+		int slot = ring.claim(block);
+		if (slot < 0) {
+			return;
+		}
+		ring.kinds[slot] = ENERGY;
+		ring.times[slot] = time;
+		ring.doubles[2 * slot] = utilization;
+		ring.doubles[2 * slot + 1] = energy;
+		ring.objects[TraceRing.OBJECTS * slot] = device;
+		ring.publish();
+	}
+
+	/**
+	 * Publishes a message of the fog log, written as the log prints it.
+	 *
+	 * @param time the time of the message
+	 * @param name the name of the entity logging
+	 * @param message the message
+	 */
+	public void log(double time, String name, String message) {
+		message(LOG, time, name, message, false, true, null);
+	}
+
+	/**
+	 * Publishes a message of the fog log formatted as in String.format(), by the thread of the sink.
+	 *
+	 * @param time the time of the message
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param args the arguments
+	 */
+	public void log(double time, String name, String format, Object... args) {
+		message(LOG, time, name, format, true, true, args);
+	}
+
+	/**
+	 * Publishes text, written as it is.
+	 *
+	 * @param text the text
+	 * @param newLine true to end the text with a line separator
+	 */
+	public void text(String text, boolean newLine) {
+		message(TEXT, 0, null, text, false, newLine, null);
+	}
+
+	/**
+	 * Publishes text formatted as in String.format(), by the thread of the sink.
+	 *
+	 * @param newLine true to end the text with a line separator
+	 * @param format the format of the text
+	 * @param args the arguments
+	 */
+	public void format(boolean newLine, String format, Object... args) {
+		message(TEXT, 0, null, format, true, newLine, args);
+	}
+
+	/**
+	 * Prints a line to the trace sink of the simulation of the calling thread, or to the standard
+	 * output if it has none or does not trace text.
+	 *
+	 * @param line the line
+	 */
+	public static void printLine(String line) {
+		TraceSink sink = CloudSim.getTraceSink();
+		if (sink != null && sink.isTraced(TEXT)) {
+			sink.text(line, true);
+		} else {
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Prints a line formatted as in String.format() to the trace sink of the simulation of the
+	 * calling thread, which formats it on its own thread, or to the standard output if it has none
+	 * or does not trace text.
+	 *
+	 * @param format the format of the line
+	 * @param args the arguments
+	 */
+	public static void printLine(String format, Object... args) {
+		TraceSink sink = CloudSim.getTraceSink();
+		if (sink != null && sink.isTraced(TEXT)) {
+			sink.format(true, format, args);
+		} else {
+			System.out.println(String.format(format, args));
+		}
+	}
+
+	/**
+	 * Publishes a message, its format and up to three arguments in the references of the record, or
+	 * a copy of the arguments if there are more.
+	 */
+	private void message(int kind, double time, String name, String text, boolean formatted, boolean newLine,
+			Object[] args) {
+		TraceRing ring = ring();
+		int slot = ring.claim(block);
+		if (slot < 0) {
+			return;
+		}
+		int objects = TraceRing.OBJECTS * slot;
+		ring.kinds[slot] = kind;
+		ring.times[slot] = time;
+		ring.ints[2 * slot + 1] = newLine ? 1 : 0;
+		ring.objects[objects] = name;
+		ring.objects[objects + 1] = text;
+		if (!formatted) {
+			ring.ints[2 * slot] = -1;
+		} else if (args.length <= TraceRing.OBJECTS - 2) {
+			ring.ints[2 * slot] = args.length;
+			for (int i = 0; i < args.length; i++) {
+				ring.objects[objects + 2 + i] = immutable(args[i]);
+			}
+		} else {
+			Object[] copy = new Object[args.length];
+			for (int i = 0; i < args.length; i++) {
+				copy[i] = immutable(args[i]);
+			}
+			ring.ints[2 * slot] = -2;
+			ring.objects[objects + 2] = copy;
+		}
+		ring.publish();
+	}
+
+	/**
+	 * Gets an argument that can be formatted later: the argument itself if it cannot change, or its
+	 * string.
+	 */
+	private static Object immutable(Object arg) {
+		if (arg == null || arg instanceof String || arg instanceof Double || arg instanceof Integer
+				|| arg instanceof Long || arg instanceof Float || arg instanceof Boolean || arg instanceof Character
+				|| arg instanceof Short || arg instanceof Byte || arg instanceof BigDecimal
+				|| arg instanceof BigInteger) {
+			return arg;
+		}
+		if (arg instanceof AtomicLong) {
+			return ((AtomicLong) arg).get();
+		}
+		if (arg instanceof AtomicInteger) {
+			return ((AtomicInteger) arg).get();
+		}
+		return String.valueOf(arg);
+	}
+
+	/**
+	 * Gets the ring of the calling thread.
+	 */
+	private TraceRing ring() {
+		TraceRing ring = lastRing;
+		if (ring == null || ring.producer != Thread.currentThread()) {
+			ring = this.ring.get();
+			lastRing = ring;
+		}
+		return ring;
+	}
+
+	/**
+	 * Wakes the writing thread up, called by a producer waiting for a free slot.
+	 */
+	void wake() {
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Checks if the writing thread is still running, which it stops doing once the sink is closed
+	 * and its records are written, or if it fails.
+	 *
+	 * @return true, if the thread is running
+	 */
+	boolean isWriting() {
+		return writer.isAlive();
+	}
+
+	/**
+	 * Checks if the sink is closed.
+	 *
+	 * @return true, if it is closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Gets the number of records published so far by all the threads.
+	 *
+	 * @return the number of records published
+	 */
+	public long getPublished() {
+		long published = 0;
+		for (TraceRing ring : rings) {
+			published += ring.getPublished();
+		}
+		return published;
+	}
+
+	/**
+	 * Gets the number of records dropped so far because a ring was full, with the {@link #DROP}
+	 * policy.
+	 *
+	 * @return the number of records dropped
+	 */
+	public long getDropped() {
+		long dropped = 0;
+		for (TraceRing ring : rings) {
+			dropped += ring.getDropped();
+		}
+		return dropped;
+	}
+
+	/**
+	 * Gets the number of records written so far.
+	 *
+	 * @return the number of records written
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	/**
+	 * Gets the number of files the sink has written to so far, rotated files included.
+	 *
+	 * @return the number of files
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Writes the remaining records, closes the file and stops the writing thread. Has to be called
+	 * once no thread publishes anymore.
+	 *
+	 * @throws IllegalStateException if the files could not be written, if a message could not be
+	 *         formatted, or if the writing thread failed
+	 */
+	public void close() {
+		if (!closed) {
+			closed = true;
+			wake();
+			boolean interrupted = false;
+			while (writer.isAlive()) {
+				try {
+					writer.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Cannot write the trace file " + fileName, failure);
+		}
+		if (error != null) {
+			throw new IllegalStateException("The trace sink of " + fileName + " failed", error);
+		}
+	}
+
+	/**
+	 * The loop of the writing thread: writes the records of the rings until the sink is closed and
+	 * they are all written, and flushes the file whenever the rings are empty. If the thread fails,
+	 * the error is kept for {@link #close()}, and the producers waiting for a free slot give up.
+	 */
+	private void consume() {
+		try {
+			boolean flushed = true;
+			while (true) {
+				boolean closing = closed;
+				int count = 0;
+				for (TraceRing ring : rings) {
+					count += drain(ring);
+				}
+				if (count > 0) {
+					flushed = false;
+					continue;
+				}
+				if (!flushed) {
+					try {
+						out.flush();
+					} catch (IOException e) {
+						fail(e);
+					}
+					flushed = true;
+				}
+				if (closing) {
+					break;
+				}
+				LockSupport.parkNanos(this, IDLE_WAIT);
+			}
+		} catch (RuntimeException e) {
+			error(e);
+		} catch (Error e) {
+			error(e);
+			throw e;
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the published records of a ring, and frees their slots.
+	 *
+	 * @return the number of records written
+	 */
+	private int drain(TraceRing ring) {
+		long sequence = ring.getReleased();
+		long published = ring.getPublished();
+		int count = 0;
+		while (sequence < published) {
+			int slot = (int) sequence & ring.mask;
+			write(ring, slot);
+			Object[] objects = ring.objects;
+			for (int i = TraceRing.OBJECTS * slot, end = i + TraceRing.OBJECTS; i < end; i++) {
+				objects[i] = null;
+			}
+			sequence++;
+			count++;
+			if (count % BATCH == 0) {
+				ring.release(sequence);
+			}
+		}
+		if (count > 0) {
+			ring.release(sequence);
+			written += count;
+		}
+		return count;
+	}
+
+	/**
+	 * Formats a record and writes it.
+	 */
+	private void write(TraceRing ring, int slot) {
+		StringBuilder line = this.line;
+		line.setLength(0);
+		int objects = TraceRing.OBJECTS * slot;
+		double time = ring.times[slot];
+		int kind = ring.kinds[slot];
+		boolean newLine = true;
+		switch (kind) {
+			case EVENT:
+				line.append(time).append('\t').append(KIND_NAMES[kind]).append('\t')
+						.append(name(EVENT_TYPE_NAMES, ring.ints[2 * slot])).append('\t').append(ring.ints[2 * slot + 1])
+						.append('\t').append(ring.objects[objects]).append('\t').append(ring.objects[objects + 1]);
+				break;
+			case TUPLE:
+				line.append(time).append('\t').append(KIND_NAMES[kind]).append('\t')
+						.append(name(PHASE_NAMES, ring.ints[2 * slot])).append('\t').append(ring.ints[2 * slot + 1])
+						.append('\t').append(ring.objects[objects]).append('\t').append(ring.objects[objects + 1]);
+				break;
+			case ENERGY:
+				line.append(time).append('\t').append(KIND_NAMES[kind]).append('\t').append(ring.objects[objects])
+						.append('\t').append(ring.doubles[2 * slot]).append('\t').append(ring.doubles[2 * slot + 1]);
+				break;
+			case LOG:
+				if (time != lastLogTime) {
+					lastLogTime = time;
+					lastLogTimeText = df.format(time);
+				}
+				line.append(lastLogTimeText).append(" : ").append(ring.objects[objects]).append(" : ");
+				appendMessage(ring, slot);
+				break;
+			default:
+				appendMessage(ring, slot);
+				newLine = ring.ints[2 * slot + 1] != 0;
+		}
+		if (newLine) {
+			line.append(System.lineSeparator());
+		}
+		if (failure != null) {
+			return;
+		}
+		try {
+			out.append(line);
+			fileSize += line.length();
+			if (maxFileSize > 0 && fileSize >= maxFileSize) {
+				rotate();
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Appends the message of a log or text record, formatting it if it has arguments. If the message
+	 * cannot be formatted, appends its format and arguments, and keeps the error for {@link #close()}.
+	 */
+	private void appendMessage(TraceRing ring, int slot) {
+		int objects = TraceRing.OBJECTS * slot;
+		Object text = ring.objects[objects + 1];
+		int argCount = ring.ints[2 * slot];
+		if (argCount == -1) {
+			line.append(text);
+			return;
+		}
+		Object[] args;
+		if (argCount == -2) {
+			args = (Object[]) ring.objects[objects + 2];
+		} else {
+			args = new Object[argCount];
+			System.arraycopy(ring.objects, objects + 2, args, 0, argCount);
+		}
+		int start = line.length();
+		try {
+			formatter.format((String) text, args);
+		} catch (RuntimeException e) {
+			line.setLength(start);
+			line.append(text).append(' ').append(Arrays.toString(args));
+			error(e);
+		}
+	}
+
+	private static String name(String[] names, int index) {
+		return index >= 0 && index < names.length ? names[index] : String.valueOf(index);
+	}
+
+	/**
+	 * Opens a new current file.
+	 */
+	private void open() throws IOException {
+		File file = new File(fileName);
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		out = new BufferedWriter(new FileWriter(file), 1 << 16);
+		fileSize = 0;
+		fileCount++;
+	}
+
+	/**
+	 * Closes the current file, shifts the names of the rotated files, dropping the oldest, and opens
+	 * a new current file.
+	 */
+	private void rotate() throws IOException {
+		out.close();
+		File oldest = new File(fileName + "." + (maxFiles - 1));
+		if (maxFiles == 1) {
+			oldest = new File(fileName);
+		}
+		if (oldest.exists() && !oldest.delete()) {
+			throw new IOException("Cannot delete " + oldest);
+		}
+		for (int i = maxFiles - 2; i >= 0; i--) {
+			File from = new File(i == 0 ? fileName : fileName + "." + i);
+			if (from.exists() && !from.renameTo(new File(fileName + "." + (i + 1)))) {
+				throw new IOException("Cannot rename " + from);
+			}
+		}
+		open();
+	}
+
+	private void fail(IOException e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+
+	private void error(Throwable e) {
+		if (error == null) {
+			error = e;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * This class implements the future event queue used by {@link Simulation}. The event queue uses a
+ * {@link TreeSet} in order to store the events. It was the default future event queue before
+ * {@link TimingWheelFutureQueue}.
+ *
+ * @author Marcos Dias de Assuncao
+ * @since CloudSim Toolkit 1.0
+ * @see Simulation
+ * @see java.util.TreeSet
+ */
+public class TreeSetFutureQueue extends FutureQueue {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The sorted set. */
+	private final TreeSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+
+	@Override
+	protected void insert(SimEvent event, long key) {
+		sortedSet.add(event);
+	}
+
+	@Override
+	public SimEvent first() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	@Override
+	public SimEvent removeFirst() {
+		return sortedSet.pollFirst();
+	}
+
+	/**
+	 * Returns an iterator to the queue. Events are returned in their temporal order.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return sortedSet.iterator();
+	}
+
+	@Override
+	public int size() {
+		return sortedSet.size();
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		return sortedSet.remove(event);
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		return sortedSet.removeAll(events);
+	}
+
+	@Override
+	public void clear() {
+		sortedSet.clear();
+	}
+
+}
@@ -33,6 +33,9 @@ import org.cloudbus.cloudsim.core.CloudSimTags;
  */
 public class NetworkCloudletSpaceSharedScheduler extends CloudletScheduler {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The cloudlet waiting list. */
 	private List<? extends ResCloudlet> cloudletWaitingList;
 
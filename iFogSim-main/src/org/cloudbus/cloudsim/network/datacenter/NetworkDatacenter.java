@@ -45,6 +45,9 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class NetworkDatacenter extends Datacenter {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Allocates a new NetworkDatacenter object.
 	 * 
@@ -181,7 +184,7 @@ public class NetworkDatacenter extends Datacenter {
 			int vmId = cl.getVmId();
 
 			// time to transfer the files
-			double fileTransferTime = predictFileTransferTime(cl.getRequiredFiles());
+			double fileTransferTime = cl.requiresFiles() ? predictFileTransferTime(cl.getRequiredFiles()) : 0.0;
 
 			Host host = getVmAllocationPolicy().getHost(vmId, userId);
 			Vm vm = host.getVm(vmId, userId);
@@ -40,6 +40,9 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  */
 public class NetworkHost extends Host {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	public List<NetworkPacket> packetTosendLocal;
 
 	public List<NetworkPacket> packetTosendGlobal;
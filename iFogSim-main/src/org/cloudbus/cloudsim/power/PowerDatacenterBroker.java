@@ -29,6 +29,9 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class PowerDatacenterBroker extends DatacenterBroker {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Instantiates a new power datacenter broker.
 	 * 
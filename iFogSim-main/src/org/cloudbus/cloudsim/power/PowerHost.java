@@ -33,6 +33,9 @@ import org.cloudbus.cloudsim.provisioners.RamProvisioner;
  */
 public class PowerHost extends HostDynamicWorkload {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The power model. */
 	private PowerModel powerModel;
 
@@ -34,6 +34,9 @@ import org.cloudbus.cloudsim.util.MathUtil;
  */
 public class PowerHostUtilizationHistory extends PowerHost {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Instantiates a new power host utilization history.
 	 * 
@@ -41,6 +41,9 @@ import org.cloudbus.cloudsim.util.ExecutionTimeMeasurer;
  */
 public abstract class PowerVmAllocationPolicyMigrationAbstract extends PowerVmAllocationPolicyAbstract {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The vm selection policy. */
 	private PowerVmSelectionPolicy vmSelectionPolicy;
 
@@ -32,6 +32,9 @@ import org.cloudbus.cloudsim.util.MathUtil;
 public class PowerVmAllocationPolicyMigrationInterQuartileRange extends
 		PowerVmAllocationPolicyMigrationAbstract {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The safety parameter. */
 	private double safetyParameter = 0;
 
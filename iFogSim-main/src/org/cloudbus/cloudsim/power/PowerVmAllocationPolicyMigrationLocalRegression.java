@@ -30,6 +30,9 @@ import org.cloudbus.cloudsim.util.MathUtil;
  */
 public class PowerVmAllocationPolicyMigrationLocalRegression extends PowerVmAllocationPolicyMigrationAbstract {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
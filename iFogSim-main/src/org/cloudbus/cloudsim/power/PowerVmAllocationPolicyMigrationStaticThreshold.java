@@ -29,6 +29,9 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class PowerVmAllocationPolicyMigrationStaticThreshold extends PowerVmAllocationPolicyMigrationAbstract {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The utilization threshold. */
 	private double utilizationThreshold = 0.9;
 
@@ -25,6 +25,9 @@ package org.cloudbus.cloudsim.power.models;
  */
 public abstract class PowerModelSpecPower implements PowerModel {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.cloudbus.cloudsim.power.models.PowerModel#getPower(double)
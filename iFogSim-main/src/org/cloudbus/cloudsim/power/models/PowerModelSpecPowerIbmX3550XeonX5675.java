@@ -25,6 +25,9 @@ package org.cloudbus.cloudsim.power.models;
  */
 public class PowerModelSpecPowerIbmX3550XeonX5675 extends PowerModelSpecPower {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The power. */
 	private final double[] power = { 58.4, 98, 109, 118, 128, 140, 153, 170, 189, 205, 222 };
 
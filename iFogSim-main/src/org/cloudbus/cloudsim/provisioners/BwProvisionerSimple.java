@@ -23,6 +23,9 @@ import org.cloudbus.cloudsim.Vm;
  */
 public class BwProvisionerSimple extends BwProvisioner {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The bw table. */
 	private Map<String, Long> bwTable;
 
@@ -121,8 +121,9 @@ public class Channel {
 		double factor = this.getAdjustedRequestedBandwidth(); 
 		double adjustedBandwidth = this.getRequestedBandwidth() * factor;
 		if(factor < 1.0) {
-			Log.printLine("Link.adjustDedicatedBandwidthAlongLink(): Cannot allocate requested amount of BW"
-					+adjustedBandwidth+"/"+this.getRequestedBandwidth());
+			if(!Log.isDisabled())
+				Log.formatLine("Link.adjustDedicatedBandwidthAlongLink(): Cannot allocate requested amount of BW%s/%s",
+						adjustedBandwidth, this.getRequestedBandwidth());
 		}			
 
 		// Find the slowest link (low bw) among all links where this channel is passing through
@@ -221,8 +222,9 @@ public class Channel {
 		this.inTransmission.removeAll(completedTransmissions);
 		previousTime=currentTime;
 
-		Log.printLine(CloudSim.clock() + ": Channel.updatePackageProcessing() ("+this.toString()+"):Time spent:"+timeSpent+
-				", BW/host:"+getAllocatedBandwidthPerTransmission()+", Processed:"+processedThisRound);
+		if(!Log.isDisabled())
+			Log.formatLine("%s: Channel.updatePackageProcessing() (%s):Time spent:%s, BW/host:%s, Processed:%d",
+					CloudSim.clock(), this, timeSpent, getAllocatedBandwidthPerTransmission(), processedThisRound);
 		
 		if(completedTransmissions.isEmpty())
 			return false;	// Nothing changed
@@ -52,6 +52,9 @@ import org.json.simple.JSONValue;
  */
 public abstract class NetworkOperatingSystem extends SimEntity {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	String physicalTopologyFileName; 
 	protected PhysicalTopology topology;
 	//Hashtable<Integer,SDNHost> vmHostTable;
@@ -32,6 +32,9 @@ import org.cloudbus.cloudsim.core.SimEvent;
  */
 public class SDNDatacenter extends Datacenter {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	NetworkOperatingSystem nos;
 	
 	public SDNDatacenter(String name, DatacenterCharacteristics characteristics, VmAllocationPolicy vmAllocationPolicy, List<Storage> storageList, double schedulingInterval, NetworkOperatingSystem nos) throws Exception {
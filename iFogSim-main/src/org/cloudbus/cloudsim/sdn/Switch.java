@@ -27,6 +27,9 @@ import org.cloudbus.cloudsim.core.SimEvent;
  * @since CloudSimSDN 1.0
  */
 public class Switch extends SimEntity implements Node{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	//private static long cont=0;
 	//private static long MULTI = 1;
@@ -180,7 +183,8 @@ public class Switch extends SimEntity implements Node{
 		if(processingTable.size() != 0) {
 			// More to process. Send event again
 			double delay = this.nextFinishTime();
-			Log.printLine(CloudSim.clock() + ": " + getName() + ".sendInternalEvent(): next finish time: "+ delay);
+			if(!Log.isDisabled())
+				Log.formatLine("%s: %s.sendInternalEvent(): next finish time: %s", CloudSim.clock(), getName(), delay);
 			send(this.getId(), delay, Constants.SDN_INTERNAL_PACKAGE_PROCESS);
 		}
 	}
@@ -232,12 +236,14 @@ public class Switch extends SimEntity implements Node{
 	}
 	
 	private void processPackageFinish(Package pkg) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": finished processing a package:" + pkg);
+		if(!Log.isDisabled())
+			Log.formatLine("%s: %s: finished processing a package:%s", CloudSim.clock(), getName(), pkg);
 		nos.sendPackageToNextHop(this, pkg);
 	}
 
 	private void sendToBuffer(Package pkg) {
-		Log.printLine(CloudSim.clock() + ": " + getName() + ": Package received from Network:" + pkg);
+		if(!Log.isDisabled())
+			Log.formatLine("%s: %s: Package received from Network:%s", CloudSim.clock(), getName(), pkg);
 		updatePackageProcessing();
 		this.processingTable.put(pkg, pkg.getSize()*MULTI);
 		sendInternalEvent();
@@ -267,7 +273,8 @@ public class Switch extends SimEntity implements Node{
 		delay=CloudSim.round(delay);
 		
 		if (delay < CloudSim.getMinTimeBetweenEvents()) { 
-			Log.printLine(CloudSim.clock() + ": " + getName() + ": delay is too short: "+ delay);
+			if(!Log.isDisabled())
+				Log.formatLine("%s: %s: delay is too short: %s", CloudSim.clock(), getName(), delay);
 			delay = CloudSim.getMinTimeBetweenEvents();
 		}
 		
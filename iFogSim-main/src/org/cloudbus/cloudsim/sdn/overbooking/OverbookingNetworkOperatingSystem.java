@@ -25,6 +25,9 @@ import org.cloudbus.cloudsim.sdn.TimedVm;
 
 public class OverbookingNetworkOperatingSystem extends NetworkOperatingSystem {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	public OverbookingNetworkOperatingSystem(String fileName) {
 		super(fileName);
 	}
@@ -24,6 +24,9 @@ import org.cloudbus.cloudsim.provisioners.PeProvisioner;
  */
 public class PeProvisionerOverbooking extends PeProvisioner {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	/** The pe table. */
 	private Map<String, List<Double>> peTable;
 	public static final double overbookingRatioMips = 4.0;	// 10% overbooking allowed for MIPS
@@ -14,6 +14,9 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationMaxHostInterface;
 
 public class VmAllocationPolicyOverbooking extends VmAllocationPolicy implements PowerUtilizationMaxHostInterface {
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	protected final double hostTotalMips;
 	protected final double hostTotalBw;
 	protected final int hostTotalPes;
@@ -8,6 +8,9 @@
 
 package org.cloudbus.cloudsim.sdn.overbooking;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,6 +31,9 @@ import org.cloudbus.cloudsim.sdn.power.PowerUtilizationInterface;
  */
 public class VmSchedulerTimeSharedOverbookingEnergy extends VmSchedulerTimeSharedOverSubscription implements PowerUtilizationInterface{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	
 	public VmSchedulerTimeSharedOverbookingEnergy(List<? extends Pe> pelist) {
 		super(pelist);
@@ -39,41 +45,46 @@ public class VmSchedulerTimeSharedOverbookingEnergy extends VmSchedulerTimeShare
 		addUtilizationEntry();		
 	}
 	
-	private List<PowerUtilizationHistoryEntry> utilizationHistories = null;
+	/**
+	 * The utilisation history, kept unless turned off, see {@link #setUtilizationHistoryKept(boolean)}.
+	 * Saved by {@link #writeObject(ObjectOutputStream)} as an array of doubles.
+	 */
+	private transient List<PowerUtilizationHistoryEntry> utilizationHistories = null;
+	private boolean utilizationHistoryKept = true;
+	/** The energy consumed up to the last utilisation entry, in Watt*seconds. */
+	private double utilizationEnergy;
+	private double lastUtilizationTime;
+	private double lastUsedMips;
+	private boolean hasUtilizationEntry;
 	private static double powerOffDuration = 0; //if host is idle for 1 hours, it's turned off.
 	
 	public void addUtilizationEntryTermination(double terminatedTime) {
-		if(this.utilizationHistories != null)
-			this.utilizationHistories.add(new PowerUtilizationHistoryEntry(terminatedTime, 0));
+		if(this.hasUtilizationEntry)
+			addUtilizationEntry(terminatedTime, 0);
 	}
 	
+	/**
+	 * Gets the utilisation history.
+	 * 
+	 * @return the history, or null if it is not kept or has no entry yet
+	 */
 	public List<PowerUtilizationHistoryEntry> getUtilizationHisotry() {
 		return utilizationHistories;
 	}
 
+	/**
+	 * Sets whether the utilisation history is kept, which it is by default. It grows with every change
+	 * of the allocated MIPS, and the energy consumption is summed as the entries come whether it is
+	 * kept or not, so schedulers of long simulations can turn it off.
+	 * 
+	 * @param utilizationHistoryKept whether the entries added from now on are kept
+	 */
+	public void setUtilizationHistoryKept(boolean utilizationHistoryKept) {
+		this.utilizationHistoryKept = utilizationHistoryKept;
+	}
+
 	public double getUtilizationEnergyConsumption() {
-		
-		double total=0;
-		double lastTime=0;
-		double lastMips=0;
-		if(this.utilizationHistories == null)
-			return 0;
-		
-		for(PowerUtilizationHistoryEntry h:this.utilizationHistories) {
-			double duration = h.startTime - lastTime;
-			double utilPercentage = lastMips/ getTotalMips();
-			double power = calculatePower(utilPercentage);
-			double energyConsumption = power * duration;
-			
-			// Assume that the host is turned off when duration is long enough
-			if(duration > powerOffDuration && lastMips == 0)
-				energyConsumption = 0;
-			
-			total += energyConsumption;
-			lastTime = h.startTime;
-			lastMips = h.usedMips;
-		}
-		return total/3600;	// transform to Whatt*hour from What*seconds
+		return utilizationEnergy/3600;	// transform to Whatt*hour from What*seconds
 	}
 	
 	private double calculatePower(double u) {
@@ -88,12 +99,65 @@ public class VmSchedulerTimeSharedOverbookingEnergy extends VmSchedulerTimeShare
 		if(usingMips < 0) {
 			System.err.println("addUtilizationEntry : using mips is negative, No way!");
 		}
-		if(utilizationHistories == null)
-			utilizationHistories = new ArrayList<PowerUtilizationHistoryEntry>();
-		this.utilizationHistories.add(new PowerUtilizationHistoryEntry(time, usingMips));
+		addUtilizationEntry(time, usingMips);
+	}
+	
+	/**
+	 * Adds the energy consumed since the last entry, at the MIPS used then, and keeps the entry in
+	 * the history if asked.
+	 */
+	private void addUtilizationEntry(double time, double usedMips) {
+		double duration = time - lastUtilizationTime;
+		double utilPercentage = lastUsedMips/ getTotalMips();
+		double power = calculatePower(utilPercentage);
+		double energyConsumption = power * duration;
+		
+		// Assume that the host is turned off when duration is long enough
+		if(duration > powerOffDuration && lastUsedMips == 0)
+			energyConsumption = 0;
+		
+		utilizationEnergy += energyConsumption;
+		lastUtilizationTime = time;
+		lastUsedMips = usedMips;
+		hasUtilizationEntry = true;
+		if(utilizationHistoryKept) {
+			if(utilizationHistories == null)
+				utilizationHistories = new ArrayList<PowerUtilizationHistoryEntry>();
+			this.utilizationHistories.add(new PowerUtilizationHistoryEntry(time, usedMips));
+		}
 	}
 	
 	private double getTotalMips() {
 		return this.getPeList().size() * this.getPeCapacity();
 	}
+
+	/**
+	 * Saves the scheduler with its utilisation history, if kept, as an array of doubles: the history
+	 * grows with every change of the allocated MIPS and makes most of the objects of a checkpoint
+	 * otherwise.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		double[] history = null;
+		if (utilizationHistories != null) {
+			history = new double[utilizationHistories.size() * 2];
+			int i = 0;
+			for (PowerUtilizationHistoryEntry entry : utilizationHistories) {
+				history[i++] = entry.startTime;
+				history[i++] = entry.usedMips;
+			}
+		}
+		out.writeObject(history);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		double[] history = (double[]) in.readObject();
+		if (history != null) {
+			utilizationHistories = new ArrayList<PowerUtilizationHistoryEntry>(history.length / 2);
+			for (int i = 0; i < history.length; i += 2) {
+				utilizationHistories.add(new PowerUtilizationHistoryEntry(history[i], history[i + 1]));
+			}
+		}
+	}
 }
@@ -1,11 +1,19 @@
 package org.fog.application;
 
+import java.io.Serializable;
+
+import org.fog.entities.Tuple;
+import org.fog.entities.TupleDescriptor;
+
 /**
  * Class represents application edges which connect modules together and represent data dependency between them.
  * @author Harshit Gupta
  *
  */
-public class AppEdge {
+public class AppEdge implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	public static final int SENSOR = 1; // App Edge originates from a sensor
 	public static final int ACTUATOR = 2; // App Edge leads to an actuator
@@ -45,6 +53,10 @@ public class AppEdge {
 	 * Denotes if the application edge is a periodic edge.
 	 */
 	private boolean isPeriodic;
+	/**
+	 * Descriptor shared by the tuples carried by the application edge, created on demand.
+	 */
+	private TupleDescriptor tupleDescriptor;
 	
 	public AppEdge(){
 		
@@ -80,30 +92,35 @@ public class AppEdge {
 	}
 	public void setSource(String source) {
 		this.source = source;
+		tupleDescriptor = null;
 	}
 	public String getDestination() {
 		return destination;
 	}
 	public void setDestination(String destination) {
 		this.destination = destination;
+		tupleDescriptor = null;
 	}
 	public double getTupleCpuLength() {
 		return tupleCpuLength;
 	}
 	public void setTupleCpuLength(double tupleCpuLength) {
 		this.tupleCpuLength = tupleCpuLength;
+		tupleDescriptor = null;
 	}
 	public double getTupleNwLength() {
 		return tupleNwLength;
 	}
 	public void setTupleNwLength(double tupleNwLength) {
 		this.tupleNwLength = tupleNwLength;
+		tupleDescriptor = null;
 	}
 	public String getTupleType() {
 		return tupleType;
 	}
 	public void setTupleType(String tupleType) {
 		this.tupleType = tupleType;
+		tupleDescriptor = null;
 	}
 
 	public int getDirection() {
@@ -112,6 +129,7 @@ public class AppEdge {
 
 	public void setDirection(int direction) {
 		this.direction = direction;
+		tupleDescriptor = null;
 	}
 
 	public int getEdgeType() {
@@ -138,6 +156,26 @@ public class AppEdge {
 		this.isPeriodic = isPeriodic;
 	}
 
+	/**
+	 * Gets the descriptor of the tuples carried by the application edge, which is shared by all of
+	 * them as long as the edge is not changed.
+	 * 
+	 * @param appId the application of the tuples
+	 * @param direction the direction of the tuples, which is {@link Tuple#ACTUATOR} rather than
+	 *            the direction of the edge for the tuples sent to actuators
+	 * @return the descriptor
+	 */
+	public TupleDescriptor getTupleDescriptor(String appId, int direction) {
+		TupleDescriptor descriptor = tupleDescriptor;
+		if (descriptor == null || descriptor.getDirection() != direction
+				|| (appId == null ? descriptor.getAppId() != null : !appId.equals(descriptor.getAppId()))) {
+			descriptor = new TupleDescriptor(appId, tupleType, source, destination, direction,
+					(long) tupleCpuLength, (long) tupleNwLength);
+			tupleDescriptor = descriptor;
+		}
+		return descriptor;
+	}
+
 	@Override
 	public String toString() {
 		return "AppEdge [source=" + source + ", destination=" + destination
@@ -9,6 +9,7 @@ import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.CloudletScheduler;
 import org.cloudbus.cloudsim.power.PowerVm;
 import org.fog.application.selectivity.SelectivityModel;
+import org.fog.scheduler.FogTupleScheduler;
 import org.fog.scheduler.TupleScheduler;
 import org.fog.utils.FogUtils;
 
@@ -19,6 +20,9 @@ import org.fog.utils.FogUtils;
  */
 public class AppModule extends PowerVm{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	private String name;
 	private String appId;
 	private Map<Pair<String, String>, SelectivityModel> selectivityMap;
@@ -76,7 +80,7 @@ public class AppModule extends PowerVm{
 		setDownInstanceIdsMaps(new HashMap<String, List<Integer>>());
 	}
 	public AppModule(AppModule operator) {
-		super(FogUtils.generateEntityId(), operator.getUserId(), operator.getMips(), 1, operator.getRam(), operator.getBw(), operator.getSize(), 1, operator.getVmm(), new TupleScheduler(operator.getMips(), 1), operator.getSchedulingInterval());
+		super(FogUtils.generateEntityId(), operator.getUserId(), operator.getMips(), 1, operator.getRam(), operator.getBw(), operator.getSize(), 1, operator.getVmm(), newTupleScheduler(operator), operator.getSchedulingInterval());
 		setName(operator.getName());
 		setAppId(operator.getAppId());
 		setInMigration(false);
@@ -89,6 +93,15 @@ public class AppModule extends PowerVm{
 		setDownInstanceIdsMaps(new HashMap<String, List<Integer>>());
 	}
 	
+	/**
+	 * Creates a scheduler for a copy of a module, of the same kind as the scheduler of the module.
+	 */
+	private static CloudletScheduler newTupleScheduler(AppModule operator) {
+		if (operator.getCloudletScheduler() instanceof FogTupleScheduler)
+			return new FogTupleScheduler(operator.getMips(), 1);
+		return new TupleScheduler(operator.getMips(), 1);
+	}
+	
 	public void subscribeActuator(int id, String tuplyType){
 		if(!getActuatorSubscriptions().containsKey(tuplyType))
 			getActuatorSubscriptions().put(tuplyType, new ArrayList<Integer>());
@@ -1,14 +1,18 @@
 package org.fog.application;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.CloudletScheduler;
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
+import org.fog.entities.TuplePool;
+import org.fog.scheduler.FogTupleScheduler;
 import org.fog.scheduler.TupleScheduler;
 import org.fog.utils.FogUtils;
 import org.fog.utils.GeoCoverage;
@@ -18,7 +22,10 @@ import org.fog.utils.GeoCoverage;
  * @author Harshit Gupta
  *
  */
-public class Application {
+public class Application implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	private String appId;
 	private int userId;
@@ -45,6 +52,15 @@ public class Application {
 
 	protected DAG dag;
 
+	/**
+	 * The routes of the tuples, compiled from the modules, edges and mappings when first needed, or
+	 * null if they changed since.
+	 */
+	private transient DispatchPlan dispatchPlan;
+
+	/** The loops indexed by their edges, built when first needed, or null if the loops changed since. */
+	private transient LoopIndex loopIndex;
+
 	/**
 	 * Creates a plain vanilla application with no modules and edges.
 	 * @param appId
@@ -70,7 +86,7 @@ public class Application {
 				mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 		
 		getModules().add(module);
-		
+		invalidateDispatchPlan();
 	}
 
 	/**
@@ -87,6 +103,27 @@ public class Application {
 				mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 
 		getModules().add(module);
+		invalidateDispatchPlan();
+	}
+
+	/**
+	 * Adds an application module whose tuples are scheduled by the given scheduler, e.g. a
+	 * {@link FogTupleScheduler}. Each module needs its own scheduler.
+	 * @param moduleName
+	 * @param ram
+	 * @param mips
+	 * @param size
+	 * @param tupleScheduler
+	 */
+	public void addAppModule(String moduleName, int ram, int mips, int size, CloudletScheduler tupleScheduler) {
+		long bw = 1000;
+		String vmm = "Xen";
+
+		AppModule module = new AppModule(FogUtils.generateEntityId(), moduleName, getAppId(), getUserId(),
+				mips, ram, bw, size, vmm, tupleScheduler, new HashMap<Pair<String, String>, SelectivityModel>());
+
+		getModules().add(module);
+		invalidateDispatchPlan();
 	}
 	
 	/**
@@ -104,6 +141,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		invalidateDispatchPlan();
 	}
 	
 	/**
@@ -121,6 +159,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, periodicity, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		invalidateDispatchPlan();
 	}
 	
 	/**
@@ -133,6 +172,41 @@ public class Application {
 	public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel){
 		AppModule module = getModuleByName(moduleName);
 		module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
+		invalidateDispatchPlan();
+	}
+	
+	/**
+	 * Discards the routes of the tuples compiled from the modules, edges and tuple mappings of the
+	 * application, so that they are compiled again when next needed. The methods adding modules,
+	 * edges and mappings call it; code changing them otherwise, e.g. through the lists of the
+	 * application or the selectivity maps of its modules, must call it too.
+	 */
+	public void invalidateDispatchPlan(){
+		dispatchPlan = null;
+	}
+	
+	/**
+	 * Gets the routes of the tuples, compiling them if needed. Simulations running in parallel may
+	 * compile them concurrently; plans are immutable, so any of them can be kept.
+	 * @return
+	 */
+	private DispatchPlan getDispatchPlan(){
+		DispatchPlan plan = dispatchPlan;
+		if(plan == null){
+			plan = new DispatchPlan(this);
+			dispatchPlan = plan;
+		}
+		return plan;
+	}
+	
+	/**
+	 * Get the edge carrying the tuples emitted by sensors of a given tuple type. If several edges
+	 * leave the sensors, the last one added.
+	 * @param sensorTupleType the tuple type of the sensors, which is the source of their edge
+	 * @return the edge, or null if there is none
+	 */
+	public AppEdge getSensorEdge(String sensorTupleType){
+		return getDispatchPlan().getSourceEdge(sensorTupleType);
 	}
 	
 	/**
@@ -191,48 +265,20 @@ public class Application {
 	 * @param inputTuple incoming tuple, whose execution creates resultant tuples
 	 * @param sourceDeviceId
 	 * @return
+	 * @see #invalidateDispatchPlan()
 	 */
 	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
-		List<Tuple> tuples = new ArrayList<Tuple>();
-		AppModule module = getModuleByName(moduleName);
-		for(AppEdge edge : getEdges()){
-			if(edge.getSource().equals(moduleName)){
-				Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-				
-				if(module.getSelectivityMap().get(pair)==null)
-					continue;
-				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
-						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-								(long) (edge.getTupleCpuLength()),
+		DispatchPlan.Route[] routes = getDispatchPlan().getRoutes(moduleName, inputTuple.getTupleType());
+		List<Tuple> tuples = new ArrayList<Tuple>(routes.length);
+		for(DispatchPlan.Route route : routes){
+			AppEdge edge = route.edge;
+			if(route.selectivityModel.canSelect()){
+				//TODO check if the edge is ACTUATOR, then create multiple tuples
+				if(edge.getEdgeType() == AppEdge.ACTUATOR){
+					//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
+						Tuple tuple = TuplePool.obtain(edge.getTupleDescriptor(inputTuple.getAppId(), Tuple.ACTUATOR),
+								FogUtils.generateTupleId(),
 								inputTuple.getNumberOfPes(),
-								(long) (edge.getTupleNwLength()),
 								inputTuple.getCloudletOutputSize(),
 								inputTuple.getUtilizationModelCpu(),
 								inputTuple.getUtilizationModelRam(),
@@ -240,16 +286,27 @@ public class Application {
 								);
 						tuple.setActualTupleId(inputTuple.getActualTupleId());
 						tuple.setUserId(inputTuple.getUserId());
-						tuple.setAppId(inputTuple.getAppId());
-						tuple.setDestModuleName(edge.getDestination());
-						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
-						tuple.setTupleType(edge.getTupleType());
+						tuple.setSourceDeviceId(sourceDeviceId);
 						tuple.setSourceModuleId(sourceModuleId);
-						tuple.setTraversedMicroservices(inputTuple.getTraversed());
-
+						//tuple.setActuatorId(actuatorId);
+						
 						tuples.add(tuple);
-					}
+					//}
+				}else{
+					Tuple tuple = TuplePool.obtain(edge.getTupleDescriptor(inputTuple.getAppId(), edge.getDirection()),
+							FogUtils.generateTupleId(),
+							inputTuple.getNumberOfPes(),
+							inputTuple.getCloudletOutputSize(),
+							inputTuple.getUtilizationModelCpu(),
+							inputTuple.getUtilizationModelRam(),
+							inputTuple.getUtilizationModelBw()
+							);
+					tuple.setActualTupleId(inputTuple.getActualTupleId());
+					tuple.setUserId(inputTuple.getUserId());
+					tuple.setSourceModuleId(sourceModuleId);
+					tuple.setTraversedMicroservices(inputTuple.getTraversed());
+
+					tuples.add(tuple);
 				}
 			}
 		}
@@ -263,24 +320,18 @@ public class Application {
 	 * @return
 	 */
 	public Tuple createTuple(AppEdge edge, int sourceDeviceId, int sourceModuleId){
-		AppModule module = getModuleByName(edge.getSource());
+		AppModule module = getDispatchPlan().getModule(edge.getSource());
 		if(edge.getEdgeType() == AppEdge.ACTUATOR){
 			for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-				Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-						(long) (edge.getTupleCpuLength()),
+				Tuple tuple = TuplePool.obtain(edge.getTupleDescriptor(getAppId(), Tuple.ACTUATOR),
+						FogUtils.generateTupleId(),
 						1,
-						(long) (edge.getTupleNwLength()),
 						100,
-						new UtilizationModelFull(), 
-						new UtilizationModelFull(), 
-						new UtilizationModelFull()
+						UtilizationModelFull.INSTANCE, 
+						UtilizationModelFull.INSTANCE, 
+						UtilizationModelFull.INSTANCE
 						);
 				tuple.setUserId(getUserId());
-				tuple.setAppId(getAppId());
-				tuple.setDestModuleName(edge.getDestination());
-				tuple.setSrcModuleName(edge.getSource());
-				tuple.setDirection(Tuple.ACTUATOR);
-				tuple.setTupleType(edge.getTupleType());
 				tuple.setSourceDeviceId(sourceDeviceId);
 				tuple.setActuatorId(actuatorId);
 				tuple.setSourceModuleId(sourceModuleId);
@@ -288,22 +339,16 @@ public class Application {
 				return tuple;
 			}
 		}else{
-			Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-					(long) (edge.getTupleCpuLength()),
+			Tuple tuple = TuplePool.obtain(edge.getTupleDescriptor(getAppId(), edge.getDirection()),
+					FogUtils.generateTupleId(),
 					1,
-					(long) (edge.getTupleNwLength()),
 					100,
-					new UtilizationModelFull(), 
-					new UtilizationModelFull(), 
-					new UtilizationModelFull()
+					UtilizationModelFull.INSTANCE, 
+					UtilizationModelFull.INSTANCE, 
+					UtilizationModelFull.INSTANCE
 					);
 			//tuple.setActualTupleId(inputTuple.getActualTupleId());
 			tuple.setUserId(getUserId());
-			tuple.setAppId(getAppId());
-			tuple.setDestModuleName(edge.getDestination());
-			tuple.setSrcModuleName(edge.getSource());
-			tuple.setDirection(edge.getDirection());
-			tuple.setTupleType(edge.getTupleType());
 			tuple.setSourceModuleId(sourceModuleId);
 
 			return tuple;
@@ -322,12 +367,14 @@ public class Application {
 	}
 	public void setModules(List<AppModule> modules) {
 		this.modules = modules;
+		invalidateDispatchPlan();
 	}
 	public List<AppEdge> getEdges() {
 		return edges;
 	}
 	public void setEdges(List<AppEdge> edges) {
 		this.edges = edges;
+		invalidateDispatchPlan();
 	}
 	public GeoCoverage getGeoCoverage() {
 		return geoCoverage;
@@ -340,8 +387,57 @@ public class Application {
 		return loops;
 	}
 
+	/**
+	 * Sets the loops to monitor. The loops, and the modules of each loop, must not be changed
+	 * afterwards, except by setting the loops again.
+	 * @param loops
+	 */
 	public void setLoops(List<AppLoop> loops) {
 		this.loops = loops;
+		loopIndex = null;
+	}
+
+	/**
+	 * Gets the loops containing the edge between two modules.
+	 * @param src the name of the source module
+	 * @param dest the name of the destination module
+	 * @return the loops, in the order of the loops of the application
+	 */
+	public List<AppLoop> getLoopsWithEdge(String src, String dest) {
+		return getLoopIndex().getEntry(src, dest).loops;
+	}
+
+	/**
+	 * Gets the loops containing the edge between two modules and starting at its source.
+	 * @param src the name of the source module
+	 * @param dest the name of the destination module
+	 * @return the loops, in the order of the loops of the application
+	 */
+	public List<AppLoop> getLoopsStartingWithEdge(String src, String dest) {
+		return getLoopIndex().getEntry(src, dest).startingLoops;
+	}
+
+	/**
+	 * Gets the loops containing the edge between two modules and ending at its destination.
+	 * @param src the name of the source module
+	 * @param dest the name of the destination module
+	 * @return the loops, in the order of the loops of the application
+	 */
+	public List<AppLoop> getLoopsEndingWithEdge(String src, String dest) {
+		return getLoopIndex().getEntry(src, dest).endingLoops;
+	}
+
+	/**
+	 * Gets the index of the loops, building it if needed. Simulations running in parallel may build
+	 * it concurrently; indexes are immutable, so any of them can be kept.
+	 */
+	private LoopIndex getLoopIndex() {
+		LoopIndex index = loopIndex;
+		if (index == null) {
+			index = new LoopIndex(getLoops());
+			loopIndex = index;
+		}
+		return index;
 	}
 
 	public int getUserId() {
@@ -3,11 +3,16 @@ package org.fog.application;
 /**
  * Created by Samodha Pallewatta on 9/15/2019.
  */
+import java.io.Serializable;
 import java.util.*;
 
 // This class represents a directed graph using adjacency
 // list representation
-public class DAG {
+public class DAG implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     private int V;   // No. of vertices
     private List<String> vertices = new ArrayList<>();
     private HashMap<String,LinkedList<String>> adj = new HashMap<>(); // Adjacency List
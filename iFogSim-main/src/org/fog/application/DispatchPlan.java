@@ -0,0 +1,150 @@
+package org.fog.application;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Pair;
+import org.fog.application.selectivity.SelectivityModel;
+
+/**
+ * The routes of the tuples of an application, compiled from its modules, edges and tuple mappings
+ * so that finding the tuples a module emits on executing a tuple, or the edge a sensor emits on,
+ * takes table lookups instead of a scan of all the edges. Module names and tuple types are given
+ * dense ids, and the routes of a module and an input tuple type are kept at the index
+ * <tt>moduleId * tupleTypeCount + tupleTypeId</tt> of a flat table.
+ * <p>
+ * A plan is immutable. It reflects the application at the time it was compiled, see
+ * {@link Application#invalidateDispatchPlan()}.
+ */
+final class DispatchPlan {
+
+	/** The routes of a module and input tuple type that has none. */
+	static final Route[] NO_ROUTES = new Route[0];
+
+	/**
+	 * An output edge of a module for an input tuple type, with the selectivity model of the mapping.
+	 */
+	static final class Route {
+
+		final AppEdge edge;
+		final SelectivityModel selectivityModel;
+
+		Route(AppEdge edge, SelectivityModel selectivityModel) {
+			this.edge = edge;
+			this.selectivityModel = selectivityModel;
+		}
+	}
+
+	/** The ids of the module names, which index the modules. */
+	private final Map<String, Integer> moduleIds;
+
+	/** The modules, by id. When modules share a name, the first one has it. */
+	private final AppModule[] modules;
+
+	/** The ids of the input tuple types of the mappings. */
+	private final Map<String, Integer> tupleTypeIds;
+
+	/** The routes of each module and input tuple type, in the order of the edges. */
+	private final Route[][] routes;
+
+	/** The last edge leaving each source, for the sensors. */
+	private final Map<String, AppEdge> sourceEdges;
+
+	/**
+	 * Compiles the plan of an application.
+	 *
+	 * @param application the application
+	 */
+	DispatchPlan(Application application) {
+		moduleIds = new HashMap<String, Integer>();
+		List<AppModule> moduleList = new ArrayList<AppModule>();
+		tupleTypeIds = new HashMap<String, Integer>();
+		for (AppModule module : application.getModules()) {
+			if (moduleIds.containsKey(module.getName())) {
+				continue;
+			}
+			moduleIds.put(module.getName(), moduleList.size());
+			moduleList.add(module);
+			for (Pair<String, String> pair : module.getSelectivityMap().keySet()) {
+				if (!tupleTypeIds.containsKey(pair.getFirst())) {
+					tupleTypeIds.put(pair.getFirst(), tupleTypeIds.size());
+				}
+			}
+		}
+		modules = moduleList.toArray(new AppModule[moduleList.size()]);
+
+		List<List<Route>> table = new ArrayList<List<Route>>();
+		for (int i = 0; i < modules.length * tupleTypeIds.size(); i++) {
+			table.add(null);
+		}
+		sourceEdges = new HashMap<String, AppEdge>();
+		for (AppEdge edge : application.getEdges()) {
+			sourceEdges.put(edge.getSource(), edge);
+			Integer moduleId = moduleIds.get(edge.getSource());
+			if (moduleId == null) {
+				continue;
+			}
+			for (Map.Entry<Pair<String, String>, SelectivityModel> entry : modules[moduleId].getSelectivityMap().entrySet()) {
+				if (entry.getValue() == null || !equal(entry.getKey().getSecond(), edge.getTupleType())) {
+					continue;
+				}
+				int index = moduleId * tupleTypeIds.size() + tupleTypeIds.get(entry.getKey().getFirst());
+				if (table.get(index) == null) {
+					table.set(index, new ArrayList<Route>());
+				}
+				table.get(index).add(new Route(edge, entry.getValue()));
+			}
+		}
+		routes = new Route[table.size()][];
+		for (int i = 0; i < routes.length; i++) {
+			List<Route> cell = table.get(i);
+			routes[i] = cell == null ? NO_ROUTES : cell.toArray(new Route[cell.size()]);
+		}
+	}
+
+	/**
+	 * Gets the module with a name.
+	 *
+	 * @param moduleName the name of the module
+	 * @return the first module of the application with the name, or null if there is none
+	 */
+	AppModule getModule(String moduleName) {
+		Integer moduleId = moduleIds.get(moduleName);
+		return moduleId == null ? null : modules[moduleId];
+	}
+
+	/**
+	 * Gets the routes of the tuples a module emits on executing a tuple of a type.
+	 *
+	 * @param moduleName the name of the module
+	 * @param inputTupleType the type of the executed tuple
+	 * @return the routes, in the order of the edges of the application; empty if there are none
+	 */
+	Route[] getRoutes(String moduleName, String inputTupleType) {
+		Integer moduleId = moduleIds.get(moduleName);
+		if (moduleId == null) {
+			return NO_ROUTES;
+		}
+		Integer tupleTypeId = tupleTypeIds.get(inputTupleType);
+		if (tupleTypeId == null) {
+			return NO_ROUTES;
+		}
+		return routes[moduleId * tupleTypeIds.size() + tupleTypeId];
+	}
+
+	/**
+	 * Gets the last edge of the application leaving a source.
+	 *
+	 * @param source the name of the source, a module or a sensor tuple type
+	 * @return the edge, or null if no edge leaves the source
+	 */
+	AppEdge getSourceEdge(String source) {
+		return sourceEdges.get(source);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,120 @@
+package org.fog.application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The loops of an application indexed by the edges they contain, so that finding the loops a tuple
+ * starts or ends takes table lookups instead of a scan of the modules of every loop. The modules of
+ * the loops are given dense ids, and the loops containing the edge from module a to module b are
+ * kept at the index <tt>a * moduleCount + b</tt> of a flat table.
+ * <p>
+ * An index is immutable. It reflects the loops at the time it was built, see
+ * {@link Application#setLoops(List)}.
+ */
+final class LoopIndex {
+
+	/** The loops of an edge. */
+	static final class Entry {
+
+		/** The loops containing the edge. */
+		final List<AppLoop> loops;
+
+		/** The loops containing the edge and starting at its source. */
+		final List<AppLoop> startingLoops;
+
+		/** The loops containing the edge and ending at its destination. */
+		final List<AppLoop> endingLoops;
+
+		Entry(List<AppLoop> loops, List<AppLoop> startingLoops, List<AppLoop> endingLoops) {
+			this.loops = loops;
+			this.startingLoops = startingLoops;
+			this.endingLoops = endingLoops;
+		}
+	}
+
+	/** The loops of an edge that is in no loop. */
+	static final Entry NO_LOOPS = new Entry(Collections.<AppLoop>emptyList(), Collections.<AppLoop>emptyList(),
+			Collections.<AppLoop>emptyList());
+
+	/** The ids of the modules of the loops. */
+	private final Map<String, Integer> moduleIds;
+
+	/** The loops of each edge, by source and destination ids. */
+	private final Entry[] entries;
+
+	/**
+	 * Builds the index of some loops.
+	 *
+	 * @param loops the loops of an application
+	 */
+	LoopIndex(List<AppLoop> loops) {
+		moduleIds = new HashMap<String, Integer>();
+		for (AppLoop loop : loops) {
+			for (String module : loop.getModules()) {
+				if (!moduleIds.containsKey(module)) {
+					moduleIds.put(module, moduleIds.size());
+				}
+			}
+		}
+		int moduleCount = moduleIds.size();
+		entries = new Entry[moduleCount * moduleCount];
+		List<Integer> edges = new ArrayList<Integer>();
+		for (AppLoop loop : loops) {
+			// the edges of the loop, once each
+			edges.clear();
+			List<String> modules = loop.getModules();
+			for (int i = 0; i < modules.size() - 1; i++) {
+				Integer edge = moduleIds.get(modules.get(i)) * moduleCount + moduleIds.get(modules.get(i + 1));
+				if (!edges.contains(edge)) {
+					edges.add(edge);
+				}
+			}
+			for (Integer edge : edges) {
+				Entry entry = entries[edge];
+				if (entry == null) {
+					entry = new Entry(new ArrayList<AppLoop>(), new ArrayList<AppLoop>(), new ArrayList<AppLoop>());
+					entries[edge] = entry;
+				}
+				entry.loops.add(loop);
+				if (moduleIds.get(loop.getStartModule()) == edge / moduleCount) {
+					entry.startingLoops.add(loop);
+				}
+				if (moduleIds.get(loop.getEndModule()) == edge % moduleCount) {
+					entry.endingLoops.add(loop);
+				}
+			}
+		}
+		for (int i = 0; i < entries.length; i++) {
+			Entry entry = entries[i];
+			entries[i] = entry == null ? NO_LOOPS
+					: new Entry(freeze(entry.loops), freeze(entry.startingLoops), freeze(entry.endingLoops));
+		}
+	}
+
+	private static List<AppLoop> freeze(List<AppLoop> loops) {
+		return loops.isEmpty() ? Collections.<AppLoop>emptyList() : Collections.unmodifiableList(loops);
+	}
+
+	/**
+	 * Gets the loops of the edge between two modules.
+	 *
+	 * @param src the name of the source module
+	 * @param dest the name of the destination module
+	 * @return the loops of the edge, {@link #NO_LOOPS} if it is in no loop
+	 */
+	Entry getEntry(String src, String dest) {
+		Integer srcId = moduleIds.get(src);
+		if (srcId == null) {
+			return NO_LOOPS;
+		}
+		Integer destId = moduleIds.get(dest);
+		if (destId == null) {
+			return NO_LOOPS;
+		}
+		return entries[srcId * moduleIds.size() + destId];
+	}
+}
@@ -1,8 +1,11 @@
 package org.fog.entities;
 
+import java.util.List;
+
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppLoop;
 import org.fog.application.Application;
 import org.fog.utils.FogEvents;
@@ -12,6 +15,9 @@ import org.fog.utils.TimeKeeper;
 
 public class Actuator extends SimEntity{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	private int gatewayDeviceId;
 	private double latency;
 	private GeoLocation geoLocation;
@@ -53,31 +59,42 @@ public class Actuator extends SimEntity{
 
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple)ev.getData();
-		Logger.debug(getName(), "Received tuple "+tuple.getCloudletId()+"on "+tuple.getDestModuleName());
+		if(Logger.isDebugEnabled())
+			Logger.debug(getName(), "Received tuple %d on %s", tuple.getCloudletId(), tuple.getDestModuleName());
+		tuple.trace(TraceSink.ARRIVED, getName());
 		String srcModule = tuple.getSrcModuleName();
 		String destModule = tuple.getDestModuleName();
 		Application app = getApp();
 		
-		for(AppLoop loop : app.getLoops()){
-			if(loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)){
-				
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if(startTime==null)
-					break;
-				if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
+		List<AppLoop> loops = app.getLoopsEndingWithEdge(srcModule, destModule);
+		if(!loops.isEmpty()){
+			final AppLoop loop = loops.get(0);
+			final int actualTupleId = tuple.getActualTupleId();
+			CloudSim.runInOrder(new Runnable() {
+				@Override
+				public void run() {
+					updateLoopDelay(loop, actualTupleId);
 				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock()- TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
-				break;
-			}
+			});
+		}
+		TuplePool.release(tuple);
+	}
+	
+	private void updateLoopDelay(AppLoop loop, int actualTupleId) {
+		double startTime = TimeKeeper.getInstance().loopEnded(actualTupleId);
+		if(Double.isNaN(startTime))
+			return;
+		if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
+			TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
+			TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
 		}
+		double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
+		int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
+		double delay = CloudSim.clock()- startTime;
+		TimeKeeper.getInstance().recordLoopDelay(loop.getLoopId(), delay);
+		double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
+		TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
+		TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
 	}
 
 	@Override
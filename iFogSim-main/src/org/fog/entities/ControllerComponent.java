@@ -4,6 +4,7 @@ import org.fog.application.Application;
 import org.fog.placement.MicroservicePlacementLogic;
 import org.fog.placement.PlacementLogicOutput;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -12,7 +13,10 @@ import java.util.Map;
 /**
  * Created by Samodha Pallewatta on 8/29/2019.
  */
-public class ControllerComponent {
+public class ControllerComponent implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
 
     protected LoadBalancer loadBalancer;
     protected MicroservicePlacementLogic microservicePlacementLogic = null;
@@ -137,7 +141,11 @@ public class ControllerComponent {
 
 }
 
-class ServiceDiscovery {
+class ServiceDiscovery implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     protected Map<String, List<Integer>> serviceDiscoveryInfo = new HashMap<>();
     int deviceId ;
 
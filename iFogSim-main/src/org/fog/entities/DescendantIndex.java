@@ -0,0 +1,404 @@
+package org.fog.entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+import org.fog.application.AppModule;
+
+/**
+ * The descendant index of the fog device trees of a simulation, which the devices use to send the
+ * tuples going down only to the children whose subtree needs them instead of to all their children.
+ * <p>
+ * The devices are labelled by an Euler tour of the trees: the devices of the subtree of a device are
+ * the devices between its entry and its exit in the tour, and the subtrees of its children follow
+ * each other in the order of its children. For each device and each module or actuator type asked
+ * for, the index keeps the positions in the tour of the devices of its subtree that have the module
+ * placed or an actuator of the type, and the children on the way to them.
+ * <p>
+ * The index is built lazily, and dropped whenever the devices change their children
+ * ({@link FogDevice#addChild(int)}, {@link FogDevice#removeChild(int)}); the controllers that fill
+ * the lists of children directly do so before the simulation starts. When a device changes its
+ * placed or hosted modules or its actuators, only the targets of that module or actuator type kept
+ * for the devices above it are dropped. Each partition of a parallel run has its own index, and only looks into the
+ * subtrees of the devices it runs; the devices of a partition cannot drop the index of another one,
+ * so a parallel run expects the modules and actuators to be in place before the tuples that go to
+ * them are sent.
+ */
+final class DescendantIndex implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The index of each simulation context; a checkpoint saves it empty. */
+	private static final SimulationLocal<DescendantIndex> instance = new SimulationLocal<DescendantIndex>(DescendantIndex.class, "instance") {
+		@Override
+		protected DescendantIndex initialValue() {
+			return new DescendantIndex();
+		}
+
+		@Override
+		protected DescendantIndex partitionValue(DescendantIndex value) {
+			return new DescendantIndex();
+		}
+	};
+
+	/** The position of the entry of each device in the tour, by entity id, or -1. */
+	private transient int[] entry;
+
+	/** The position after the exit of each device from the tour, by entity id. */
+	private transient int[] exit;
+
+	/** The devices, by position in the tour. */
+	private transient FogDevice[] devices;
+
+	/** The children of each device in the order of the tour, by entity id. */
+	private transient int[][] children;
+
+	/** The device each device was reached from in the tour, by entity id, or -1. */
+	private transient int[] parent;
+
+	/** The targets of the devices, by entity id. */
+	private transient Targets[] targets;
+
+	/**
+	 * Drops the index after a device has changed its children or its parent.
+	 */
+	static void topologyChanged() {
+		DescendantIndex index = instance.get();
+		index.entry = null;
+		index.targets = null;
+	}
+
+	/**
+	 * Drops the targets of a module kept for the devices above a device, after the device has
+	 * changed its placed modules or its instances of the module.
+	 *
+	 * @param device the device
+	 * @param appId the application id
+	 * @param moduleName the module name
+	 */
+	static void moduleChanged(FogDevice device, String appId, String moduleName) {
+		DescendantIndex index = instance.get();
+		for (int id = index.getParent(device.getId()); id >= 0; id = index.parent[id]) {
+			Targets targets = index.targets[id];
+			Map<String, Target> modules = targets == null ? null : targets.modules.get(appId);
+			if (modules != null) {
+				modules.remove(moduleName);
+			}
+		}
+	}
+
+	/**
+	 * Drops the targets of an actuator type kept for the devices above a device, after an actuator
+	 * of the type has joined the device.
+	 *
+	 * @param device the device
+	 * @param actuatorType the actuator type
+	 */
+	static void actuatorChanged(FogDevice device, String actuatorType) {
+		DescendantIndex index = instance.get();
+		for (int id = index.getParent(device.getId()); id >= 0; id = index.parent[id]) {
+			if (index.targets[id] != null) {
+				index.targets[id].actuators.remove(actuatorType);
+			}
+		}
+	}
+
+	/**
+	 * Gets the children of a device whose subtree has a device with a module placed, and, if the
+	 * instance is given, hosting that instance of the module.
+	 *
+	 * @param device the device
+	 * @param appId the application id
+	 * @param moduleName the module name
+	 * @param vmId the id of the instance of the module, or -1 for any instance
+	 * @return the ids of the children, in the order of the children of the device
+	 */
+	static List<Integer> getChildrenWithModule(FogDevice device, String appId, String moduleName, int vmId) {
+		DescendantIndex index = instance.get();
+		Targets targets = index.getTargets(device);
+		Map<String, Target> modules = targets.modules.get(appId);
+		if (modules == null) {
+			modules = new HashMap<String, Target>();
+			targets.modules.put(appId, modules);
+		}
+		Target target = modules.get(moduleName);
+		if (target == null) {
+			target = index.findModule(device, appId, moduleName);
+			modules.put(moduleName, target);
+		}
+		if (vmId < 0) {
+			return target.children;
+		}
+		Integer position = target.instances.get(vmId);
+		if (position == null) {
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(index.getChildOnWayTo(device, position));
+	}
+
+	/**
+	 * Gets the children of a device whose subtree has a device with an actuator of a type.
+	 *
+	 * @param device the device
+	 * @param actuatorType the actuator type
+	 * @return the ids of the children, in the order of the children of the device
+	 */
+	static List<Integer> getChildrenWithActuator(FogDevice device, String actuatorType) {
+		DescendantIndex index = instance.get();
+		Targets targets = index.getTargets(device);
+		Target target = targets.actuators.get(actuatorType);
+		if (target == null) {
+			target = index.findActuator(device, actuatorType);
+			targets.actuators.put(actuatorType, target);
+		}
+		return target.children;
+	}
+
+	/**
+	 * Gets the child of a device whose subtree has another device.
+	 *
+	 * @param device the device
+	 * @param targetDeviceId the id of the other device
+	 * @return the id of the child, or -1 if the other device is not below the device
+	 */
+	static int getChildWithRouteTo(FogDevice device, int targetDeviceId) {
+		DescendantIndex index = instance.get();
+		index.getTargets(device);
+		int id = device.getId();
+		if (targetDeviceId < 0 || targetDeviceId >= index.entry.length) {
+			return -1;
+		}
+		int position = index.entry[targetDeviceId];
+		if (position <= index.entry[id] || position >= index.exit[id]) {
+			return -1;
+		}
+		return index.getChildOnWayTo(device, position);
+	}
+
+	/**
+	 * Gets the targets of a device, building the index if needed.
+	 */
+	private Targets getTargets(FogDevice device) {
+		if (entry == null) {
+			build();
+		}
+		int id = device.getId();
+		if (targets == null) {
+			targets = new Targets[entry.length];
+		}
+		if (id >= targets.length) {
+			// a device created after the index was built
+			build();
+			targets = new Targets[entry.length];
+		}
+		if (targets[id] == null) {
+			targets[id] = new Targets();
+		}
+		return targets[id];
+	}
+
+	/**
+	 * Gets the device a device was reached from in the tour, or -1 if the device is not in the tour
+	 * or no target is kept.
+	 */
+	private int getParent(int id) {
+		if (targets == null || id >= parent.length) {
+			return -1;
+		}
+		return parent[id];
+	}
+
+	/**
+	 * Finds the devices of the subtree of a device, itself excluded, that have a module placed, and
+	 * the instances of the module they host.
+	 */
+	private Target findModule(FogDevice device, String appId, String moduleName) {
+		int id = device.getId();
+		int[] positions = new int[exit[id] - entry[id]];
+		int count = 0;
+		Map<Integer, Integer> instances = new HashMap<Integer, Integer>();
+		for (int position = entry[id] + 1; position < exit[id]; position++) {
+			Set<String> names = devices[position].placedModuleNames.get(appId);
+			if (names != null && names.contains(moduleName)) {
+				positions[count++] = position;
+				for (AppModule module : devices[position].hostedModulesById.values()) {
+					// the first device of the tour hosting an instance gets its tuples
+					if (module.getName().equals(moduleName) && module.getAppId().equals(appId)
+							&& !instances.containsKey(module.getId())) {
+						instances.put(module.getId(), position);
+					}
+				}
+			}
+		}
+		return new Target(device, Arrays.copyOf(positions, count), instances);
+	}
+
+	/**
+	 * Finds the devices of the subtree of a device, itself excluded, that have an actuator of a type.
+	 */
+	private Target findActuator(FogDevice device, String actuatorType) {
+		int id = device.getId();
+		int[] positions = new int[exit[id] - entry[id]];
+		int count = 0;
+		for (int position = entry[id] + 1; position < exit[id]; position++) {
+			for (Pair<Integer, Double> association : devices[position].getAssociatedActuatorIds()) {
+				Actuator actuator = (Actuator) CloudSim.getEntity(association.getFirst());
+				if (actuatorType.equals(actuator.getActuatorType())) {
+					positions[count++] = position;
+					break;
+				}
+			}
+		}
+		return new Target(device, Arrays.copyOf(positions, count), Collections.<Integer, Integer>emptyMap());
+	}
+
+	/**
+	 * Gets the child of a device whose subtree has the device at a position of the tour.
+	 */
+	private int getChildOnWayTo(FogDevice device, int position) {
+		int[] childIds = children[device.getId()];
+		int low = 0;
+		int high = childIds.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (entry[childIds[middle]] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return childIds[low];
+	}
+
+	/**
+	 * Labels the devices by an Euler tour of the trees, from the devices that are not the child of
+	 * another device.
+	 */
+	private void build() {
+		List<SimEntity> entities = CloudSim.getEntityList();
+		int size = entities.size();
+		entry = new int[size];
+		exit = new int[size];
+		children = new int[size][];
+		parent = new int[size];
+		Arrays.fill(entry, -1);
+		Arrays.fill(parent, -1);
+		boolean[] isChild = new boolean[size];
+		int deviceCount = 0;
+		for (SimEntity entity : entities) {
+			if (entity instanceof FogDevice) {
+				deviceCount++;
+				for (int childId : ((FogDevice) entity).getChildrenIds()) {
+					if (childId >= 0 && childId < size) {
+						isChild[childId] = true;
+					}
+				}
+			}
+		}
+		devices = new FogDevice[deviceCount];
+		int position = 0;
+		int[] stack = new int[deviceCount];
+		int[] next = new int[deviceCount];
+		int[] visited = new int[deviceCount];
+		// the roots first, then whatever a cycle of children left out
+		for (int pass = 0; pass < 2; pass++) {
+			for (SimEntity entity : entities) {
+				int root = entity.getId();
+				if (!(entity instanceof FogDevice) || entry[root] >= 0 || (pass == 0 && isChild[root])) {
+					continue;
+				}
+				int depth = 0;
+				stack[0] = root;
+				next[0] = 0;
+				visited[0] = 0;
+				position = visit((FogDevice) entity, position);
+				while (depth >= 0) {
+					int id = stack[depth];
+					List<Integer> childIds = devices[entry[id]].getChildrenIds();
+					if (next[depth] < childIds.size()) {
+						int childId = childIds.get(next[depth]++);
+						if (childId >= 0 && childId < size && entities.get(childId) instanceof FogDevice
+								&& entry[childId] < 0) {
+							children[id][visited[depth]++] = childId;
+							depth++;
+							stack[depth] = childId;
+							next[depth] = 0;
+							visited[depth] = 0;
+							parent[childId] = id;
+							position = visit((FogDevice) entities.get(childId), position);
+						}
+					} else {
+						exit[id] = position;
+						children[id] = Arrays.copyOf(children[id], visited[depth]);
+						depth--;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gives the next position of the tour to a device.
+	 */
+	private int visit(FogDevice device, int position) {
+		entry[device.getId()] = position;
+		devices[position] = device;
+		children[device.getId()] = new int[device.getChildrenIds().size()];
+		return position + 1;
+	}
+
+	/**
+	 * The devices of the subtree of a device that a tuple may be sent to, and the children of the
+	 * device on the way to them.
+	 */
+	private final class Target {
+
+		/** The positions of the devices in the tour, in increasing order. */
+		final int[] positions;
+
+		/** The children of the device on the way to the devices, in the order of the tour. */
+		final List<Integer> children;
+
+		/** The positions of the devices hosting the instances of the module, by VM id. */
+		final Map<Integer, Integer> instances;
+
+		Target(FogDevice device, int[] positions, Map<Integer, Integer> instances) {
+			this.positions = positions;
+			this.instances = instances;
+			List<Integer> childIds = new ArrayList<Integer>();
+			for (int i = 0; i < positions.length; i++) {
+				int childId = getChildOnWayTo(device, positions[i]);
+				childIds.add(childId);
+				// skip the other devices of the subtree of the child
+				while (i + 1 < positions.length && positions[i + 1] < exit[childId]) {
+					i++;
+				}
+			}
+			children = Collections.unmodifiableList(childIds);
+		}
+	}
+
+	/**
+	 * The targets of a device, by module and by actuator type.
+	 */
+	private static final class Targets {
+
+		/** The targets of the modules, by application id and module name. */
+		final Map<String, Map<String, Target>> modules = new HashMap<String, Map<String, Target>>();
+
+		/** The targets of the actuator types. */
+		final Map<String, Target> actuators = new HashMap<String, Target>();
+	}
+
+}
@@ -1,10 +1,14 @@
 package org.fog.entities;
 
+import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.power.PowerDatacenterBroker;
 
 public class FogBroker extends PowerDatacenterBroker{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	public FogBroker(String name) throws Exception {
 		super(name);
 		// TODO Auto-generated constructor stub
@@ -18,8 +22,10 @@ public class FogBroker extends PowerDatacenterBroker{
 
 	@Override
 	public void processEvent(SimEvent ev) {
-		// TODO Auto-generated method stub
-		
+		// the tuples whose execution is complete end here
+		if (ev.getTag() == CloudSimTags.CLOUDLET_RETURN && ev.getData() instanceof Tuple) {
+			TuplePool.release((Tuple) ev.getData());
+		}
 	}
 
 	@Override
@@ -4,7 +4,9 @@ import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.cloudbus.cloudsim.power.PowerDatacenter;
 import org.cloudbus.cloudsim.power.PowerHost;
 import org.cloudbus.cloudsim.power.models.PowerModel;
@@ -24,6 +26,10 @@ import org.json.simple.JSONObject;
 import java.util.*;
 
 public class FogDevice extends PowerDatacenter {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     protected Queue<Tuple> northTupleQueue;
     protected Queue<Pair<Tuple, Integer>> southTupleQueue;
 
@@ -31,10 +37,74 @@ public class FogDevice extends PowerDatacenter {
 
     protected Map<String, Application> applicationMap;
     protected Map<String, List<String>> appToModulesMap;
+
+    /**
+     * The names of the modules placed on this device, by application id; the same names as
+     * appToModulesMap, in sets for constant-time lookups during tuple dispatch
+     */
+    protected Map<String, Set<String>> placedModuleNames;
+
+    /**
+     * The modules hosted on this device, by application id and module name
+     */
+    protected Map<String, Map<String, AppModule>> hostedModules;
+
+    /**
+     * The modules hosted on this device, by VM id
+     */
+    protected Map<Integer, AppModule> hostedModulesById;
+
+    /**
+     * The modules on the host, by name, as of the last full allocation of the MIPS of the host
+     */
+    protected Map<String, List<AppModule>> operatorsByName = new HashMap<String, List<AppModule>>();
+
+    /**
+     * The modules that may turn idle at the next update of the allocated MIPS: the modules allocated
+     * the MIPS of the host while running no tuple, and the ones whose tuples finished since. Only the
+     * first operatorsToCheckCount modules are used, each once, in the order they were added
+     */
+    private AppModule[] operatorsToCheck = new AppModule[4];
+
+    private int operatorsToCheckCount;
+
+    /**
+     * The modules checked by the current update of the allocated MIPS, swapped with operatorsToCheck
+     * so that the updates do not copy them
+     */
+    private AppModule[] checkedOperators = new AppModule[4];
+
+    /**
+     * The modules that turned idle in the current update of the allocated MIPS
+     */
+    private AppModule[] idleOperators = new AppModule[4];
+
+    /**
+     * Whether each module of the host is busy, in the last full allocation of the MIPS of the host
+     */
+    private boolean[] busyFlags = new boolean[0];
+
+    /**
+     * The VM list of the host operatorsByName was built from
+     */
+    private Vm[] indexedOperators = new Vm[0];
+
+    /**
+     * The shares requested for a module allocated all the MIPS of the host and for an idle module,
+     * when the host is not scheduled by a StreamOperatorScheduler
+     */
+    private List<Double> fullShare;
+
+    private List<Double> idleShare;
+
     protected Map<Integer, Double> childToLatencyMap;
 
 
-    protected Map<Integer, Integer> cloudTrafficMap;
+    /**
+     * The number of tuples the cloud received in each second of simulation time, the network usage
+     * by link being in the {@link NetworkUsageAccount}.
+     */
+    protected int[] cloudTraffic;
 
     protected double lockTime;
 
@@ -69,15 +139,14 @@ public class FogDevice extends PowerDatacenter {
     protected double uplinkLatency;
     protected List<Pair<Integer, Double>> associatedActuatorIds;
 
-    protected double energyConsumption;
-    protected double lastUtilizationUpdateTime;
-    protected double lastUtilization;
+    /**
+     * The account of the energy consumed and the cost of this device, created on first use
+     */
+    protected EnergyAccount energyAccount;
     private int level;
 
     protected double ratePerMips;
 
-    protected double totalCost;
-
     protected Map<String, Map<String, Integer>> moduleInstanceCount;
 
     protected List<Integer> clusterMembers = new ArrayList<Integer>();
@@ -111,6 +180,9 @@ public class FogDevice extends PowerDatacenter {
         setAssociatedActuatorIds(new ArrayList<Pair<Integer, Double>>());
         for (Host host : getCharacteristics().getHostList()) {
             host.setDatacenter(this);
+            // nothing reads the state histories, which would grow with every update of the processing
+            if (host instanceof HostDynamicWorkload)
+                ((HostDynamicWorkload) host).setStateHistoryKept(false);
         }
         setActiveApplications(new ArrayList<String>());
         // If this resource doesn't have any PEs then no useful at all
@@ -123,6 +195,9 @@ public class FogDevice extends PowerDatacenter {
 
         applicationMap = new HashMap<String, Application>();
         appToModulesMap = new HashMap<String, List<String>>();
+        placedModuleNames = new HashMap<String, Set<String>>();
+        hostedModules = new HashMap<String, Map<String, AppModule>>();
+        hostedModulesById = new HashMap<Integer, AppModule>();
         northTupleQueue = new LinkedList<Tuple>();
         southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
         setNorthLinkBusy(false);
@@ -132,13 +207,10 @@ public class FogDevice extends PowerDatacenter {
         setChildrenIds(new ArrayList<Integer>());
         setChildToOperatorsMap(new HashMap<Integer, List<String>>());
 
-        this.cloudTrafficMap = new HashMap<Integer, Integer>();
+        this.cloudTraffic = new int[16];
 
         this.lockTime = 0;
 
-        this.energyConsumption = 0;
-        this.lastUtilization = 0;
-        setTotalCost(0);
         setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
         setChildToLatencyMap(new HashMap<Integer, Double>());
 
@@ -199,6 +271,9 @@ public class FogDevice extends PowerDatacenter {
         setAssociatedActuatorIds(new ArrayList<Pair<Integer, Double>>());
         for (Host host1 : getCharacteristics().getHostList()) {
             host1.setDatacenter(this);
+            // nothing reads the state histories, which would grow with every update of the processing
+            if (host1 instanceof HostDynamicWorkload)
+                ((HostDynamicWorkload) host1).setStateHistoryKept(false);
         }
         setActiveApplications(new ArrayList<String>());
         if (getCharacteristics().getNumberOfPes() == 0) {
@@ -211,6 +286,9 @@ public class FogDevice extends PowerDatacenter {
 
         applicationMap = new HashMap<String, Application>();
         appToModulesMap = new HashMap<String, List<String>>();
+        placedModuleNames = new HashMap<String, Set<String>>();
+        hostedModules = new HashMap<String, Map<String, AppModule>>();
+        hostedModulesById = new HashMap<Integer, AppModule>();
         northTupleQueue = new LinkedList<Tuple>();
         southTupleQueue = new LinkedList<Pair<Tuple, Integer>>();
         setNorthLinkBusy(false);
@@ -220,13 +298,10 @@ public class FogDevice extends PowerDatacenter {
         setChildrenIds(new ArrayList<Integer>());
         setChildToOperatorsMap(new HashMap<Integer, List<String>>());
 
-        this.cloudTrafficMap = new HashMap<Integer, Integer>();
+        this.cloudTraffic = new int[16];
 
         this.lockTime = 0;
 
-        this.energyConsumption = 0;
-        this.lastUtilization = 0;
-        setTotalCost(0);
         setChildToLatencyMap(new HashMap<Integer, Double>());
         setModuleInstanceCount(new HashMap<String, Map<String, Integer>>());
 
@@ -309,8 +384,8 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
-        System.out.println(getName() + " is sending " + appModule.getName());
-        NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
+        TraceSink.printLine("%s is sending %s", getName(), appModule.getName());
+        sendingModule(object, appModule);
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
 
@@ -324,14 +399,33 @@ public class FogDevice extends PowerDatacenter {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
         Application app = (Application) object.get("application");
-        System.out.println(getName() + " is receiving " + appModule.getName());
-        NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
+        TraceSink.printLine("%s is receiving %s", getName(), appModule.getName());
+        sendingModule(object, appModule);
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
         sendNow(getId(), FogEvents.APP_SUBMIT, app);
         sendNow(getId(), FogEvents.LAUNCH_MODULE, appModule);
     }
 
+    /**
+     * Accounts a leg of the migration of a module, on the link between the devices the controller
+     * gave as its source and destination, or on this device if it gave none. A leg the controller
+     * gave from a device to itself, such as the arrival of a module moved within a cluster, crosses
+     * no link and is not accounted.
+     *
+     * @param object    the migration, with the module, the delay and maybe the source and destination
+     * @param appModule the module
+     */
+    protected void sendingModule(JSONObject object, AppModule appModule) {
+        Object source = object.get("source");
+        Object destination = object.get("destination");
+        if (source != null && source.equals(destination))
+            return;
+        NetworkUsageMonitor.sendingModule(source != null ? (Integer) source : getId(),
+                destination != null ? (Integer) destination : getId(), appModule.getName(), (double) object.get("delay"),
+                appModule.getSize());
+    }
+
     /**
      * Perform miscellaneous resource management tasks
      *
@@ -357,14 +451,124 @@ public class FogDevice extends PowerDatacenter {
     }
 
     private AppModule getModuleByName(String moduleName) {
-        AppModule module = null;
-        for (Vm vm : getHost().getVmList()) {
-            if (((AppModule) vm).getName().equals(moduleName)) {
-                module = (AppModule) vm;
-                break;
+        for (Map<String, AppModule> modules : hostedModules.values()) {
+            AppModule module = modules.get(moduleName);
+            if (module != null)
+                return module;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the module of an application hosted on this device.
+     *
+     * @param appId      the application id
+     * @param moduleName the module name
+     * @return the module, or null if it is not hosted on this device
+     */
+    protected AppModule getHostedModule(String appId, String moduleName) {
+        Map<String, AppModule> modules = hostedModules.get(appId);
+        return modules == null ? null : modules.get(moduleName);
+    }
+
+    /**
+     * Checks if a module of an application is placed on this device.
+     *
+     * @param appId      the application id
+     * @param moduleName the module name
+     * @return true if the module is in the placed modules of the application
+     */
+    protected boolean isModulePlaced(String appId, String moduleName) {
+        Set<String> names = placedModuleNames.get(appId);
+        return names != null && names.contains(moduleName);
+    }
+
+    /**
+     * Adds a module to the placed modules of its application.
+     *
+     * @param module the module
+     */
+    protected void addPlacedModule(AppModule module) {
+        String appId = module.getAppId();
+        if (!appToModulesMap.containsKey(appId)) {
+            appToModulesMap.put(appId, new ArrayList<String>());
+            placedModuleNames.put(appId, new HashSet<String>());
+        }
+        appToModulesMap.get(appId).add(module.getName());
+        placedModuleNames.get(appId).add(module.getName());
+        DescendantIndex.moduleChanged(this, appId, module.getName());
+    }
+
+    /**
+     * Removes a module from the placed modules of its application.
+     *
+     * @param module the module
+     */
+    protected void removePlacedModule(AppModule module) {
+        List<String> names = appToModulesMap.get(module.getAppId());
+        if (names == null)
+            return;
+        names.remove(module.getName());
+        // a module may have been placed more than once
+        if (!names.contains(module.getName())) {
+            placedModuleNames.get(module.getAppId()).remove(module.getName());
+            DescendantIndex.moduleChanged(this, module.getAppId(), module.getName());
+        }
+    }
+
+    /**
+     * Updates the index of the hosted modules after a module has been created on, destroyed on or
+     * migrated to a host of this device.
+     *
+     * @param module the module
+     */
+    protected void updateHostedModule(AppModule module) {
+        // modules allocated during placement and again on launch are in the list of the host twice
+        boolean hosted = getHost().getVmList().contains(module);
+        DescendantIndex.moduleChanged(this, module.getAppId(), module.getName());
+        Map<String, AppModule> modules = hostedModules.get(module.getAppId());
+        if (hosted) {
+            if (modules == null) {
+                modules = new HashMap<String, AppModule>();
+                hostedModules.put(module.getAppId(), modules);
             }
+            // the last module created with a name gets the tuples for that name
+            modules.put(module.getName(), module);
+            hostedModulesById.put(module.getId(), module);
+            return;
         }
-        return module;
+        hostedModulesById.remove(module.getId());
+        if (modules == null || modules.get(module.getName()) != module)
+            return;
+        modules.remove(module.getName());
+        // fall back on another module with the same name, if any
+        for (Vm vm : getHost().getVmList()) {
+            AppModule other = (AppModule) vm;
+            if (other != module && other.getName().equals(module.getName()) && other.getAppId().equals(module.getAppId()))
+                modules.put(other.getName(), other);
+        }
+    }
+
+    @Override
+    protected void processVmCreate(SimEvent ev, boolean ack) {
+        super.processVmCreate(ev, ack);
+        if (ev.getData() instanceof AppModule)
+            updateHostedModule((AppModule) ev.getData());
+    }
+
+    @Override
+    protected void processVmDestroy(SimEvent ev, boolean ack) {
+        super.processVmDestroy(ev, ack);
+        if (ev.getData() instanceof AppModule)
+            updateHostedModule((AppModule) ev.getData());
+    }
+
+    @Override
+    protected void processVmMigrate(SimEvent ev, boolean ack) {
+        super.processVmMigrate(ev, ack);
+        Object vm = ((Map<?, ?>) ev.getData()).get("vm");
+        if (vm instanceof AppModule)
+            updateHostedModule((AppModule) vm);
     }
 
     /**
@@ -397,6 +601,7 @@ public class FogDevice extends PowerDatacenter {
         int actuatorId = ev.getSource();
         double delay = (double) ev.getData();
         getAssociatedActuatorIds().add(new Pair<Integer, Double>(actuatorId, delay));
+        DescendantIndex.actuatorChanged(this, ((Actuator) CloudSim.getEntity(actuatorId)).getActuatorType());
     }
 
 
@@ -407,11 +612,8 @@ public class FogDevice extends PowerDatacenter {
 
 
     public String getOperatorName(int vmId) {
-        for (Vm vm : this.getHost().getVmList()) {
-            if (vm.getId() == vmId)
-                return ((AppModule) vm).getName();
-        }
-        return null;
+        AppModule module = hostedModulesById.get(vmId);
+        return module == null ? null : module.getName();
     }
 
     /**
@@ -425,6 +627,8 @@ public class FogDevice extends PowerDatacenter {
         double timeDiff = currentTime - getLastProcessTime();
         double timeFrameDatacenterEnergy = 0.0;
 
+        // the log calls are guarded, so that disabled logging does not box their arguments
+        boolean logging = !Log.isDisabled();
         for (PowerHost host : this.<PowerHost>getHostList()) {
             Log.printLine();
 
@@ -433,18 +637,20 @@ public class FogDevice extends PowerDatacenter {
                 minTime = time;
             }
 
-            Log.formatLine(
-                    "%.2f: [Host #%d] utilization is %.2f%%",
-                    currentTime,
-                    host.getId(),
-                    host.getUtilizationOfCpu() * 100);
+            if (logging)
+                Log.formatLine(
+                        "%.2f: [Host #%d] utilization is %.2f%%",
+                        currentTime,
+                        host.getId(),
+                        host.getUtilizationOfCpu() * 100);
         }
 
         if (timeDiff > 0) {
-            Log.formatLine(
-                    "\nEnergy consumption for the last time frame from %.2f to %.2f:",
-                    getLastProcessTime(),
-                    currentTime);
+            if (logging)
+                Log.formatLine(
+                        "\nEnergy consumption for the last time frame from %.2f to %.2f:",
+                        getLastProcessTime(),
+                        currentTime);
 
             for (PowerHost host : this.<PowerHost>getHostList()) {
                 double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
@@ -455,25 +661,28 @@ public class FogDevice extends PowerDatacenter {
                         timeDiff);
                 timeFrameDatacenterEnergy += timeFrameHostEnergy;
 
-                Log.printLine();
-                Log.formatLine(
-                        "%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
-                        currentTime,
-                        host.getId(),
-                        getLastProcessTime(),
-                        previousUtilizationOfCpu * 100,
-                        utilizationOfCpu * 100);
-                Log.formatLine(
-                        "%.2f: [Host #%d] energy is %.2f W*sec",
-                        currentTime,
-                        host.getId(),
-                        timeFrameHostEnergy);
+                if (logging) {
+                    Log.printLine();
+                    Log.formatLine(
+                            "%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
+                            currentTime,
+                            host.getId(),
+                            getLastProcessTime(),
+                            previousUtilizationOfCpu * 100,
+                            utilizationOfCpu * 100);
+                    Log.formatLine(
+                            "%.2f: [Host #%d] energy is %.2f W*sec",
+                            currentTime,
+                            host.getId(),
+                            timeFrameHostEnergy);
+                }
             }
 
-            Log.formatLine(
-                    "\n%.2f: Data center's energy is %.2f W*sec\n",
-                    currentTime,
-                    timeFrameDatacenterEnergy);
+            if (logging)
+                Log.formatLine(
+                        "\n%.2f: Data center's energy is %.2f W*sec\n",
+                        currentTime,
+                        timeFrameDatacenterEnergy);
         }
 
         setPower(getPower() + timeFrameDatacenterEnergy);
@@ -512,12 +721,14 @@ public class FogDevice extends PowerDatacenter {
                         cloudletCompleted = true;
                         Tuple tuple = (Tuple) cl;
                         TimeKeeper.getInstance().tupleEndedExecution(tuple);
+                        tuple.trace(TraceSink.FINISHED, getName());
                         Application application = getApplicationMap().get(tuple.getAppId());
-                        Logger.debug(getName(), "Completed execution of tuple " + tuple.getCloudletId() + "on " + tuple.getDestModuleName());
+                        if (Logger.isDebugEnabled())
+                            Logger.debug(getName(), "Completed execution of tuple %d on %s", tuple.getCloudletId(),
+                                    tuple.getDestModuleName());
                         List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), vm.getId());
                         for (Tuple resTuple : resultantTuples) {
-                            resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
-                            resTuple.getModuleCopyMap().put(((AppModule) vm).getName(), vm.getId());
+                            resTuple.setModuleCopyMap(tuple, ((AppModule) vm).getName(), vm.getId());
                             updateTimingsOnSending(resTuple);
                             sendToSelf(resTuple);
                         }
@@ -535,29 +746,23 @@ public class FogDevice extends PowerDatacenter {
         // WILL NEED TO CHECK IF A NEW LOOP STARTS AND INSERT A UNIQUE TUPLE ID TO IT.
         String srcModule = resTuple.getSrcModuleName();
         String destModule = resTuple.getDestModuleName();
-        for (AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoops()) {
-            if (loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)) {
-                int tupleId = TimeKeeper.getInstance().getUniqueId();
-                resTuple.setActualTupleId(tupleId);
-                if (!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-                    TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-                TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-                TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-
-                //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
+        for (AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoopsStartingWithEdge(srcModule, destModule)) {
+            final int tupleId = TimeKeeper.getInstance().getUniqueId();
+            final int loopId = loop.getLoopId();
+            resTuple.setActualTupleId(tupleId);
+            CloudSim.runInOrder(new Runnable() {
+                @Override
+                public void run() {
+                    TimeKeeper.getInstance().loopStarted(loopId, tupleId);
+                }
+            });
 
-            }
+            //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
         }
     }
 
     protected int getChildIdWithRouteTo(int targetDeviceId) {
-        for (Integer childId : getChildrenIds()) {
-            if (targetDeviceId == childId)
-                return childId;
-            if (((FogDevice) CloudSim.getEntity(childId)).getChildIdWithRouteTo(targetDeviceId) != -1)
-                return childId;
-        }
-        return -1;
+        return DescendantIndex.getChildWithRouteTo(this, targetDeviceId);
     }
 
     protected int getChildIdForTuple(Tuple tuple) {
@@ -569,58 +774,198 @@ public class FogDevice extends PowerDatacenter {
     }
 
     protected void updateAllocatedMips(String incomingOperator) {
+        if (getHost().getVmScheduler() instanceof StreamOperatorScheduler) {
+            updateOperatorMips((StreamOperatorScheduler) getHost().getVmScheduler(), incomingOperator);
+            return;
+        }
         getHost().getVmScheduler().deallocatePesForAllVms();
         for (final Vm vm : getHost().getVmList()) {
-            if (vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator)) {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
+            boolean busy = vm.getCloudletScheduler().runningCloudlets() > 0
+                    || ((AppModule) vm).getName().equals(incomingOperator);
+            getHost().getVmScheduler().allocatePesForVm(vm, getShare(busy));
+        }
 
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
-            } else {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
+        updateEnergyConsumption();
 
-                    {
-                        add(0.0);
+    }
+
+    /**
+     * Updates the MIPS allocated to the modules of a host scheduled by a StreamOperatorScheduler. A
+     * module is busy if it runs tuples or is the incoming operator, and idle otherwise. While the
+     * allocation of the scheduler is incremental, only the modules that may have changed are checked:
+     * the modules of the incoming operator and the modules in operatorsToCheck. Otherwise all the
+     * modules are allocated again, as by the sequential allocation.
+     *
+     * @param scheduler        the scheduler of the host
+     * @param incomingOperator the name of the module about to get a tuple, or null
+     */
+    private void updateOperatorMips(StreamOperatorScheduler scheduler, String incomingOperator) {
+        if (!scheduler.isIncremental()) {
+            List<Vm> vms = getHost().getVmList();
+            if (busyFlags.length < vms.size())
+                busyFlags = new boolean[vms.size()];
+            boolean indexed = isIndexed(vms);
+            if (!indexed) {
+                operatorsByName.clear();
+                indexedOperators = vms.toArray(new Vm[vms.size()]);
+            }
+            Arrays.fill(operatorsToCheck, 0, operatorsToCheckCount, null);
+            operatorsToCheckCount = 0;
+            for (int i = 0; i < vms.size(); i++) {
+                AppModule operator = (AppModule) vms.get(i);
+                if (!indexed) {
+                    List<AppModule> operators = operatorsByName.get(operator.getName());
+                    if (operators == null) {
+                        operators = new ArrayList<AppModule>();
+                        operatorsByName.put(operator.getName(), operators);
                     }
-                });
+                    if (!operators.contains(operator))
+                        operators.add(operator);
+                }
+                boolean running = operator.getCloudletScheduler().runningCloudlets() > 0;
+                busyFlags[i] = running || operator.getName().equals(incomingOperator);
+                if (busyFlags[i] && !running)
+                    checkOperator(operator);
             }
+            scheduler.allocateOperators(vms, busyFlags);
+            updateEnergyConsumption();
+            return;
         }
 
-        updateEnergyConsumption();
+        // the modules to check are swapped with the spare array, and the ones still to check after
+        // this update are added to it
+        AppModule[] checked = operatorsToCheck;
+        int checkedCount = operatorsToCheckCount;
+        operatorsToCheck = checkedOperators;
+        operatorsToCheckCount = 0;
+        checkedOperators = checked;
+        int idleCount = 0;
+        for (int i = 0; i < checkedCount; i++) {
+            AppModule operator = checked[i];
+            checked[i] = null;
+            boolean running = operator.getCloudletScheduler().runningCloudlets() > 0;
+            boolean busy = running || operator.getName().equals(incomingOperator);
+            if (scheduler.setOperatorBusy(operator, busy) && !busy) {
+                if (idleCount == idleOperators.length)
+                    idleOperators = Arrays.copyOf(idleOperators, 2 * idleCount);
+                idleOperators[idleCount++] = operator;
+            }
+            if (busy && !running)
+                checkOperator(operator);
+        }
+        List<AppModule> incoming = incomingOperator == null ? null : operatorsByName.get(incomingOperator);
+        if (incoming != null) {
+            for (int i = 0; i < incoming.size(); i++) {
+                AppModule operator = incoming.get(i);
+                scheduler.setOperatorBusy(operator, true);
+                if (operator.getCloudletScheduler().runningCloudlets() == 0)
+                    checkOperator(operator);
+            }
+        }
+        // the modules that stayed idle have no tuple to process
+        for (int i = 0; i < scheduler.getBusyOperatorCount(); i++)
+            updateOperatorProcessing((AppModule) scheduler.getBusyOperator(i));
+        for (int i = 0; i < idleCount; i++) {
+            updateOperatorProcessing(idleOperators[i]);
+            idleOperators[i] = null;
+        }
+        updateEnergyConsumption(scheduler.getTotalAllocatedOperatorMips());
+    }
+
+    /**
+     * Checks if operatorsByName was built from a VM list holding the same modules in the same order.
+     */
+    private boolean isIndexed(List<Vm> vms) {
+        if (indexedOperators.length != vms.size())
+            return false;
+        for (int i = 0; i < indexedOperators.length; i++) {
+            if (indexedOperators[i] != vms.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a module to the modules to check at the next update of the allocated MIPS, unless it is
+     * already one of them.
+     *
+     * @param operator the module
+     */
+    private void checkOperator(AppModule operator) {
+        for (int i = 0; i < operatorsToCheckCount; i++) {
+            if (operatorsToCheck[i] == operator)
+                return;
+        }
+        if (operatorsToCheckCount == operatorsToCheck.length)
+            operatorsToCheck = Arrays.copyOf(operatorsToCheck, 2 * operatorsToCheckCount);
+        operatorsToCheck[operatorsToCheckCount++] = operator;
+    }
+
+    /**
+     * Gets the share requested for a module allocated all the MIPS of the host or none of them, when
+     * the host is not scheduled by a StreamOperatorScheduler. The schedulers keep the requested share
+     * without changing it, so the device requests the same two lists every time.
+     *
+     * @param busy true for the share of all the MIPS of the host, false for the share of none
+     * @return the share
+     */
+    private List<Double> getShare(boolean busy) {
+        double mips = getHost().getTotalMips();
+        if (fullShare == null || fullShare.get(0) != mips) {
+            fullShare = Collections.singletonList(mips);
+            idleShare = Collections.singletonList(0.0);
+        }
+        return busy ? fullShare : idleShare;
+    }
+
+    /**
+     * Allocates all the MIPS of the host to a module, before it gets a tuple.
+     *
+     * @param operator the module
+     */
+    protected void allocateAllMipsTo(AppModule operator) {
+        VmScheduler vmScheduler = getHost().getVmScheduler();
+        if (vmScheduler instanceof StreamOperatorScheduler && ((StreamOperatorScheduler) vmScheduler).isIncremental()) {
+            if (((StreamOperatorScheduler) vmScheduler).setOperatorBusy(operator, true))
+                checkOperator(operator);
+            return;
+        }
+        vmScheduler.deallocatePesForVm(operator);
+        vmScheduler.allocatePesForVm(operator, getShare(true));
+    }
 
+    /**
+     * Updates the processing of the tuples of a module with the MIPS allocated to it.
+     *
+     * @param operator the module
+     */
+    private void updateOperatorProcessing(AppModule operator) {
+        VmScheduler vmScheduler = getVmAllocationPolicy().getHost(operator).getVmScheduler();
+        operator.updateVmProcessing(CloudSim.clock(), vmScheduler.getAllocatedMipsForVm(operator));
+        if (vmScheduler instanceof StreamOperatorScheduler && operator.getCloudletScheduler().runningCloudlets() == 0
+                && ((StreamOperatorScheduler) vmScheduler).isOperatorBusy(operator))
+            checkOperator(operator);
     }
 
     private void updateEnergyConsumption() {
         double totalMipsAllocated = 0;
         for (final Vm vm : getHost().getVmList()) {
-            AppModule operator = (AppModule) vm;
-            operator.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(operator).getVmScheduler()
-                    .getAllocatedMipsForVm(operator));
+            updateOperatorProcessing((AppModule) vm);
             totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
         }
-
-        double timeNow = CloudSim.clock();
-        double currentEnergyConsumption = getEnergyConsumption();
-        double newEnergyConsumption = currentEnergyConsumption + (timeNow - lastUtilizationUpdateTime) * getHost().getPowerModel().getPower(lastUtilization);
-        setEnergyConsumption(newEnergyConsumption);
-	
-		/*if(getName().equals("d-0")){
-			System.out.println("------------------------");
-			System.out.println("Utilization = "+lastUtilization);
-			System.out.println("Power = "+getHost().getPowerModel().getPower(lastUtilization));
-			System.out.println(timeNow-lastUtilizationUpdateTime);
-		}*/
-
-        double currentCost = getTotalCost();
-        double newcost = currentCost + (timeNow - lastUtilizationUpdateTime) * getRatePerMips() * lastUtilization * getHost().getTotalMips();
-        setTotalCost(newcost);
-
-        lastUtilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
-        lastUtilizationUpdateTime = timeNow;
+        updateEnergyConsumption(totalMipsAllocated);
+    }
+
+    private void updateEnergyConsumption(double totalMipsAllocated) {
+        EnergyAccount account = getEnergyAccount();
+        double utilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
+        boolean changed = utilization != account.getUtilization();
+        account.update(CloudSim.clock(), utilization);
+        if (changed) {
+            TraceSink traceSink = CloudSim.getTraceSink();
+            if (traceSink != null && traceSink.isTraced(TraceSink.ENERGY))
+                traceSink.energy(CloudSim.clock(), getName(), utilization, account.getEnergy());
+        }
     }
 
     protected void processAppSubmit(SimEvent ev) {
@@ -631,8 +976,10 @@ public class FogDevice extends PowerDatacenter {
     public void addChild(int childId) {
         if (CloudSim.getEntityName(childId).toLowerCase().contains("sensor"))
             return;
-        if (!getChildrenIds().contains(childId) && childId != getId())
+        if (!getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().add(childId);
+            DescendantIndex.topologyChanged();
+        }
         if (!getChildToOperatorsMap().containsKey(childId))
             getChildToOperatorsMap().put(childId, new ArrayList<String>());
     }
@@ -640,9 +987,19 @@ public class FogDevice extends PowerDatacenter {
 
     protected void updateCloudTraffic() {
         int time = (int) CloudSim.clock() / 1000;
-        if (!cloudTrafficMap.containsKey(time))
-            cloudTrafficMap.put(time, 0);
-        cloudTrafficMap.put(time, cloudTrafficMap.get(time) + 1);
+        if (time >= cloudTraffic.length)
+            cloudTraffic = Arrays.copyOf(cloudTraffic, Math.max(time + 1, 2 * cloudTraffic.length));
+        cloudTraffic[time]++;
+    }
+
+    /**
+     * Gets the number of tuples the cloud received in a second of simulation time.
+     *
+     * @param second the second
+     * @return the number of tuples, 0 if this device is not the cloud
+     */
+    public int getCloudTraffic(int second) {
+        return second < cloudTraffic.length ? cloudTraffic[second] : 0;
     }
 
     protected void sendTupleToActuator(Tuple tuple) {
@@ -666,9 +1023,7 @@ public class FogDevice extends PowerDatacenter {
                 return;
             }
         }
-        for (int childId : getChildrenIds()) {
-            sendDown(tuple, childId);
-        }
+        sendDown(tuple, DescendantIndex.getChildrenWithActuator(this, tuple.getDestModuleName()));
     }
 
     int numClients = 0;
@@ -683,14 +1038,21 @@ public class FogDevice extends PowerDatacenter {
 		/*if(getName().equals("d-0") && tuple.getTupleType().equals("_SENSOR")){
 			System.out.println(++numClients);
 		}*/
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-                CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (Logger.isDebugEnabled())
+            Logger.debug(getName(), "Received tuple %d with tupleType = %s\t| Source : %s|Dest : %s", tuple.getCloudletId(),
+                    tuple.getTupleType(), CloudSim.getEntityName(ev.getSource()), CloudSim.getEntityName(ev.getDestination()));
+        tuple.trace(TraceSink.ARRIVED, getName());
 		
 		/*if(CloudSim.getEntityName(ev.getSource()).equals("drone_0")||CloudSim.getEntityName(ev.getDestination()).equals("drone_0"))
 			System.out.println(CloudSim.clock()+" "+getName()+" Received tuple "+tuple.getCloudletId()+" with tupleType = "+tuple.getTupleType()+"\t| Source : "+
 		CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));*/
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        // fog devices ignore acknowledgements; not sending them to the fog devices also keeps the
+        // events between the partitions of a parallel run at least one link latency apart. Sensor
+        // groups would get one per member, so they are not sent any either
+        SimEntity source = CloudSim.getEntity(ev.getSource());
+        if (!(source instanceof FogDevice) && !(source instanceof SensorGroup))
+            send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 
         if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
         }
@@ -703,32 +1065,28 @@ public class FogDevice extends PowerDatacenter {
         if (getHost().getVmList().size() > 0) {
             final AppModule operator = (AppModule) getHost().getVmList().get(0);
             if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
+                allocateAllMipsTo(operator);
             }
         }
 
 
         if (getName().equals("cloud") && tuple.getDestModuleName() == null) {
             sendNow(getControllerId(), FogEvents.TUPLE_FINISHED, null);
+            if (tuple.getDirection() == Tuple.UP && parentId <= 0) {
+                // the tuple would only be sent up from the top of the topology, which drops it
+                TuplePool.release(tuple);
+                return;
+            }
         }
 
         if (appToModulesMap.containsKey(tuple.getAppId())) {
-            if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                int vmId = -1;
-                for (Vm vm : getHost().getVmList()) {
-                    if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                        vmId = vm.getId();
-                }
+            if (isModulePlaced(tuple.getAppId(), tuple.getDestModuleName())) {
+                AppModule destModule = getHostedModule(tuple.getAppId(), tuple.getDestModuleName());
+                int vmId = destModule == null ? -1 : destModule.getId();
                 if (vmId < 0
-                        || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                        tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
+                        || (tuple.getModuleCopy(tuple.getDestModuleName()) != null &&
+                        tuple.getModuleCopy(tuple.getDestModuleName()) != vmId)) {
+                    TuplePool.release(tuple);
                     return;
                 }
                 tuple.setVmId(vmId);
@@ -740,20 +1098,16 @@ public class FogDevice extends PowerDatacenter {
             } else if (tuple.getDestModuleName() != null) {
                 if (tuple.getDirection() == Tuple.UP)
                     sendUp(tuple);
-                else if (tuple.getDirection() == Tuple.DOWN) {
-                    for (int childId : getChildrenIds())
-                        sendDown(tuple, childId);
-                }
+                else if (tuple.getDirection() == Tuple.DOWN)
+                    sendDownToModule(tuple);
             } else {
                 sendUp(tuple);
             }
         } else {
             if (tuple.getDirection() == Tuple.UP)
                 sendUp(tuple);
-            else if (tuple.getDirection() == Tuple.DOWN) {
-                for (int childId : getChildrenIds())
-                    sendDown(tuple, childId);
-            }
+            else if (tuple.getDirection() == Tuple.DOWN)
+                sendDownToModule(tuple);
         }
     }
 
@@ -761,37 +1115,47 @@ public class FogDevice extends PowerDatacenter {
         Application app = getApplicationMap().get(tuple.getAppId());
         String srcModule = tuple.getSrcModuleName();
         String destModule = tuple.getDestModuleName();
-        List<AppLoop> loops = app.getLoops();
-        for (AppLoop loop : loops) {
-            if (loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)) {
-                Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                if (startTime == null)
-                    break;
-                if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
-                    TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-                    TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
+        List<AppLoop> loops = app.getLoopsEndingWithEdge(srcModule, destModule);
+        if (!loops.isEmpty()) {
+            final AppLoop loop = loops.get(0);
+            final int actualTupleId = tuple.getActualTupleId();
+            CloudSim.runInOrder(new Runnable() {
+                @Override
+                public void run() {
+                    updateLoopDelay(loop, actualTupleId);
                 }
-                double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-                int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-                double delay = CloudSim.clock() - TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-                double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
-                TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-                TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
-                break;
-            }
+            });
         }
     }
 
+    private void updateLoopDelay(AppLoop loop, int actualTupleId) {
+        double startTime = TimeKeeper.getInstance().loopEnded(actualTupleId);
+        if (Double.isNaN(startTime))
+            return;
+        if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
+            TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
+            TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
+        }
+        double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
+        int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
+        double delay = CloudSim.clock() - startTime;
+        TimeKeeper.getInstance().recordLoopDelay(loop.getLoopId(), delay);
+        double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
+        TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
+        TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
+    }
+
     protected void processSensorJoining(SimEvent ev) {
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        // sensor groups ignore acknowledgements, as they do those of their tuples
+        if (!(CloudSim.getEntity(ev.getSource()) instanceof SensorGroup))
+            send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
     }
 
     protected void executeTuple(SimEvent ev, String moduleName) {
-        Logger.debug(getName(), "Executing tuple on module " + moduleName);
+        Logger.debug(getName(), "Executing tuple on module %s", moduleName);
         Tuple tuple = (Tuple) ev.getData();
 
-        AppModule module = getModuleByName(moduleName);
+        AppModule module = getHostedModule(tuple.getAppId(), moduleName);
 
         if (tuple.getDirection() == Tuple.UP) {
             String srcModule = tuple.getSrcModuleName();
@@ -808,6 +1172,7 @@ public class FogDevice extends PowerDatacenter {
         }
 
         TimeKeeper.getInstance().tupleStartedExecution(tuple);
+        tuple.trace(TraceSink.STARTED, getName());
         updateAllocatedMips(moduleName);
         processCloudletSubmit(ev, false);
         updateAllocatedMips(moduleName);
@@ -818,11 +1183,7 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processModuleArrival(SimEvent ev) {
         AppModule module = (AppModule) ev.getData();
-        String appId = module.getAppId();
-        if (!appToModulesMap.containsKey(appId)) {
-            appToModulesMap.put(appId, new ArrayList<String>());
-        }
-        appToModulesMap.get(appId).add(module.getName());
+        addPlacedModule(module);
         processVmCreate(ev, false);
         if (module.isBeingInstantiated()) {
             module.setBeingInstantiated(false);
@@ -867,7 +1228,8 @@ public class FogDevice extends PowerDatacenter {
         setNorthLinkBusy(true);
         send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
         send(parentId, networkDelay + getUplinkLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
-        NetworkUsageMonitor.sendingTuple(getUplinkLatency(), tuple.getCloudletFileSize());
+        NetworkUsageMonitor.sendingTuple(getId(), parentId, NetworkUsageAccount.UP, tuple.getTupleType(), getUplinkLatency(),
+                tuple.getCloudletFileSize());
     }
 
     protected void sendUp(Tuple tuple) {
@@ -898,7 +1260,33 @@ public class FogDevice extends PowerDatacenter {
         double latency = getChildToLatencyMap().get(childId);
         send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
         send(childId, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
-        NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+        NetworkUsageMonitor.sendingTuple(getId(), childId, NetworkUsageAccount.DOWN, tuple.getTupleType(), latency,
+                tuple.getCloudletFileSize());
+    }
+
+    /**
+     * Sends a tuple going down to the children on the way to the devices that have its destination
+     * module placed, or to the instance of the module the tuple has to reach if it has been through
+     * another module of that instance.
+     *
+     * @param tuple the tuple
+     */
+    protected void sendDownToModule(Tuple tuple) {
+        Integer vmId = tuple.getModuleCopy(tuple.getDestModuleName());
+        sendDown(tuple, DescendantIndex.getChildrenWithModule(this, tuple.getAppId(), tuple.getDestModuleName(),
+                vmId == null ? -1 : vmId));
+    }
+
+    /**
+     * Sends a tuple down to some children, a copy of it to every child but the first.
+     *
+     * @param tuple    the tuple
+     * @param childIds the ids of the children
+     */
+    protected void sendDown(Tuple tuple, List<Integer> childIds) {
+        // the tuple is not changed until the events are processed, so it can still be copied
+        for (int i = 0; i < childIds.size(); i++)
+            sendDown(i == 0 ? tuple : tuple.copy(), childIds.get(i));
     }
 
     protected void sendDown(Tuple tuple, int childId) {
@@ -934,6 +1322,7 @@ public class FogDevice extends PowerDatacenter {
 
     public void setChildrenIds(List<Integer> childrenIds) {
         this.childrenIds = childrenIds;
+        DescendantIndex.topologyChanged();
     }
 
     public double getUplinkBandwidth() {
@@ -1033,11 +1422,23 @@ public class FogDevice extends PowerDatacenter {
     }
 
     public double getEnergyConsumption() {
-        return energyConsumption;
+        return getEnergyAccount().getEnergy();
     }
 
     public void setEnergyConsumption(double energyConsumption) {
-        this.energyConsumption = energyConsumption;
+        getEnergyAccount().setEnergy(energyConsumption);
+    }
+
+    /**
+     * Gets the account of the energy consumed and the cost of this device, which integrates them over
+     * the utilization of its host.
+     *
+     * @return the account
+     */
+    public EnergyAccount getEnergyAccount() {
+        if (energyAccount == null)
+            energyAccount = new EnergyAccount(getHost().getPowerModel(), getRatePerMips() * getHost().getTotalMips());
+        return energyAccount;
     }
 
     public Map<Integer, Double> getChildToLatencyMap() {
@@ -1062,14 +1463,16 @@ public class FogDevice extends PowerDatacenter {
 
     public void setRatePerMips(double ratePerMips) {
         this.ratePerMips = ratePerMips;
+        if (energyAccount != null)
+            energyAccount.setCostRate(ratePerMips * getHost().getTotalMips());
     }
 
     public double getTotalCost() {
-        return totalCost;
+        return getEnergyAccount().getCost();
     }
 
     public void setTotalCost(double totalCost) {
-        this.totalCost = totalCost;
+        getEnergyAccount().setCost(totalCost);
     }
 
     public Map<String, Map<String, Integer>> getModuleInstanceCount() {
@@ -1089,8 +1492,10 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         @SuppressWarnings("deprecation")
         Integer childIDobject = new Integer(childId);
-        if (getChildrenIds().contains(childId) && childId != getId())
+        if (getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().remove(childIDobject);
+            DescendantIndex.topologyChanged();
+        }
         if (getChildToOperatorsMap().containsKey(childId)) {
             List<String> operatorName = getChildToOperatorsMap().get(childId);
             getChildToOperatorsMap().remove(childId, operatorName);
@@ -1172,7 +1577,8 @@ public class FogDevice extends PowerDatacenter {
         double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
         send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE);
         send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
-        NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+        NetworkUsageMonitor.sendingTuple(getId(), clusterNodeID, NetworkUsageAccount.CLUSTER, tuple.getTupleType(), latency,
+                tuple.getCloudletFileSize());
     }
 
     protected void setClusterLinkBusy(boolean busy) {
@@ -13,6 +13,9 @@ import java.util.Map;
  */
 public class ManagementTuple extends Tuple {
 
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     // management tuples are routed by device id, so direction doesn't matter/
     public static final int NONE = -1;
 
@@ -32,12 +35,12 @@ public class ManagementTuple extends Tuple {
 
     //todo cloudlet data hard coded
     public ManagementTuple(String appId, int cloudletId, int direction, int tupleType) {
-        super(appId, cloudletId, direction, 5, 1, 50, 50, new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+        super(appId, cloudletId, direction, 5, 1, 50, 50, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE);
         managementTupleType = tupleType;
     }
 
     public ManagementTuple(int cloudletId, int direction, int tupleType) {
-        super("Management Tuple", cloudletId, direction, 5, 1, 50, 50, new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+        super("Management Tuple", cloudletId, direction, 5, 1, 50, 50, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE);
         managementTupleType = tupleType;
     }
 
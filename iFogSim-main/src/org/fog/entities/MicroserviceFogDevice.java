@@ -2,10 +2,11 @@ package org.fog.entities;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.Storage;
-import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
@@ -21,6 +22,9 @@ import java.util.*;
  */
 public class MicroserviceFogDevice extends FogDevice {
 
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Device type (1.client device 2.FCN 3.FON 4.Cloud)
      * in this work client device only holds the clientModule of the app and does not participate in processing and placement of microservices ( microservices can be shared among users,
@@ -128,7 +132,8 @@ public class MicroserviceFogDevice extends FogDevice {
 //                NetworkUsageMonitor.sendingManagementTuple(latency, tuple.getCloudletFileSize());
         } else {
             send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
-            NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
+            NetworkUsageMonitor.sendingTuple(getId(), clusterNodeID, NetworkUsageAccount.CLUSTER, tuple.getTupleType(),
+                    latency, tuple.getCloudletFileSize());
         }
     }
 
@@ -156,14 +161,19 @@ public class MicroserviceFogDevice extends FogDevice {
 
         Tuple tuple = (Tuple) ev.getData();
 
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
-                CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        if (Logger.isDebugEnabled())
+            Logger.debug(getName(), "Received tuple %d with tupleType = %s\t| Source : %s|Dest : %s", tuple.getCloudletId(),
+                    tuple.getTupleType(), CloudSim.getEntityName(ev.getSource()), CloudSim.getEntityName(ev.getDestination()));
+        tuple.trace(TraceSink.ARRIVED, getName());
 
         if (deviceType.equals(MicroserviceFogDevice.CLOUD)) {
             updateCloudTraffic();
         }
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        // as in FogDevice, fog devices and sensor groups are not sent acknowledgements
+        SimEntity source = CloudSim.getEntity(ev.getSource());
+        if (!(source instanceof FogDevice) && !(source instanceof SensorGroup))
+            send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
 
         if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
         }
@@ -176,14 +186,7 @@ public class MicroserviceFogDevice extends FogDevice {
         if (getHost().getVmList().size() > 0) {
             final AppModule operator = (AppModule) getHost().getVmList().get(0);
             if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
+                allocateAllMipsTo(operator);
             }
         }
 
@@ -210,14 +213,12 @@ public class MicroserviceFogDevice extends FogDevice {
         }
 
         if (tuple.getDestinationDeviceId() == getId()) {
-            int vmId = -1;
-            for (Vm vm : getHost().getVmList()) {
-                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                    vmId = vm.getId();
-            }
+            AppModule destModule = getHostedModule(tuple.getAppId(), tuple.getDestModuleName());
+            int vmId = destModule == null ? -1 : destModule.getId();
             if (vmId < 0
-                    || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                    tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
+                    || (tuple.getModuleCopy(tuple.getDestModuleName()) != null &&
+                    tuple.getModuleCopy(tuple.getDestModuleName()) != vmId)) {
+                TuplePool.release(tuple);
                 return;
             }
             tuple.setVmId(vmId);
@@ -241,32 +242,27 @@ public class MicroserviceFogDevice extends FogDevice {
                 }
             } else {
                 if (tuple.getDirection() == Tuple.DOWN) {
-                    if (appToModulesMap.containsKey(tuple.getAppId())) {
-                        if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                            int vmId = -1;
-                            for (Vm vm : getHost().getVmList()) {
-                                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                                    vmId = vm.getId();
-                            }
-                            if (vmId < 0
-                                    || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
-                                    tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
-                                return;
-                            }
-                            tuple.setVmId(vmId);
-                            //Logger.error(getName(), "Executing tuple for operator " + moduleName);
-
-                            updateTimingsOnReceipt(tuple);
-
-                            executeTuple(ev, tuple.getDestModuleName());
-
+                    if (isModulePlaced(tuple.getAppId(), tuple.getDestModuleName())) {
+                        AppModule destModule = getHostedModule(tuple.getAppId(), tuple.getDestModuleName());
+                        int vmId = destModule == null ? -1 : destModule.getId();
+                        if (vmId < 0
+                                || (tuple.getModuleCopy(tuple.getDestModuleName()) != null &&
+                                tuple.getModuleCopy(tuple.getDestModuleName()) != vmId)) {
+                            TuplePool.release(tuple);
                             return;
                         }
+                        tuple.setVmId(vmId);
+                        //Logger.error(getName(), "Executing tuple for operator " + moduleName);
+
+                        updateTimingsOnReceipt(tuple);
+
+                        executeTuple(ev, tuple.getDestModuleName());
+
+                        return;
                     }
 
 
-                    for (int childId : getChildrenIds())
-                        sendDown(tuple, childId);
+                    sendDownToModule(tuple);
 
                 } else {
                     Logger.error("Routing error", "Destination id -1 for UP tuple");
@@ -435,12 +431,8 @@ public class MicroserviceFogDevice extends FogDevice {
         // assumed that a new object of AppModule is sent
         //todo what if an existing module is sent again in another placement cycle -> vertical scaling instead of having two vms
         AppModule module = (AppModule) ev.getData();
-        String appId = module.getAppId();
-        if (!appToModulesMap.containsKey(appId)) {
-            appToModulesMap.put(appId, new ArrayList<String>());
-        }
-        if (!appToModulesMap.get(appId).contains(module.getName())) {
-            appToModulesMap.get(appId).add(module.getName());
+        if (!isModulePlaced(module.getAppId(), module.getName())) {
+            addPlacedModule(module);
             processVmCreate(ev, false);
             boolean result = getVmAllocationPolicy().allocateHostForVm(module);
             if (result) {
@@ -468,14 +460,14 @@ public class MicroserviceFogDevice extends FogDevice {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
         Application app = (Application) object.get("application");
-        System.out.println(CloudSim.clock() + getName() + " is receiving " + appModule.getName());
+        TraceSink.printLine("%s%s is receiving %s", CloudSim.clock(), getName(), appModule.getName());
 
         sendNow(getId(), FogEvents.APP_SUBMIT, app);
         sendNow(getId(), FogEvents.LAUNCH_MODULE, appModule);
         ModuleLaunchConfig moduleLaunchConfig = new ModuleLaunchConfig(appModule, 1);
         sendNow(getId(), FogEvents.LAUNCH_MODULE_INSTANCE, moduleLaunchConfig);
 
-        NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
+        sendingModule(object, appModule);
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
     }
 
@@ -484,8 +476,8 @@ public class MicroserviceFogDevice extends FogDevice {
     protected void moduleSend(SimEvent ev) {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
-        System.out.println(getName() + " is sending " + appModule.getName());
-        NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
+        TraceSink.printLine("%s is sending %s", getName(), appModule.getName());
+        sendingModule(object, appModule);
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
         if (moduleInstanceCount.containsKey(appModule.getAppId()) && moduleInstanceCount.get(appModule.getAppId()).containsKey(appModule.getName())) {
@@ -494,7 +486,7 @@ public class MicroserviceFogDevice extends FogDevice {
                 moduleInstanceCount.get(appModule.getAppId()).put(appModule.getName(), moduleCount - 1);
             else {
                 moduleInstanceCount.get(appModule.getAppId()).remove(appModule.getName());
-                appToModulesMap.get(appModule.getAppId()).remove(appModule.getName());
+                removePlacedModule(appModule);
                 sendNow(getId(), FogEvents.RELEASE_MODULE, appModule);
             }
         }
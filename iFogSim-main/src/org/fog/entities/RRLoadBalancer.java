@@ -8,6 +8,10 @@ import java.util.Map;
  * Round Robin LoadBalancer
  */
 public class RRLoadBalancer implements LoadBalancer {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     protected Map<String, Integer> loadBalancerPosition = new HashMap();
 
     public int getDeviceId(String microservice, ServiceDiscovery serviceDiscoveryInfo) {
@@ -1,11 +1,12 @@
 package org.fog.entities;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.Application;
@@ -13,6 +14,9 @@ import org.fog.utils.*;
 import org.fog.utils.distribution.Distribution;
 
 public class Sensor extends SimEntity{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	private int gatewayDeviceId;
 	private GeoLocation geoLocation;
@@ -26,6 +30,10 @@ public class Sensor extends SimEntity{
 	private int controllerId;
 	private Application app;
 	private double latency;
+	/** The descriptor of the tuples of the sensor, derived from {@link #edgeDescriptor}. */
+	private transient TupleDescriptor descriptor;
+	/** The descriptor of the sensor edge {@link #descriptor} was derived from. */
+	private transient TupleDescriptor edgeDescriptor;
 
 	private int transmissionStartDelay = Config.TRANSMISSION_START_DELAY;
 	
@@ -77,24 +85,25 @@ public class Sensor extends SimEntity{
 	}
 	
 	public void transmit(){
-		AppEdge _edge = null;
-		for(AppEdge edge : getApp().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
-		}
-		long cpuLength = (long) _edge.getTupleCpuLength();
-		long nwLength = (long) _edge.getTupleNwLength();
+		transmit(getGatewayDeviceId());
+	}
+	
+	/**
+	 * Sends a tuple of the sensor to a gateway device.
+	 * @param gatewayDeviceId the id of the gateway device
+	 */
+	protected void transmit(int gatewayDeviceId){
+		AppEdge _edge = getApp().getSensorEdge(getTupleType());
+		TupleDescriptor descriptor = getTupleDescriptor(_edge.getTupleDescriptor(getAppId(), Tuple.UP));
 		
-		Tuple tuple = new Tuple(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize, 
-				new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+		Tuple tuple = TuplePool.obtain(descriptor, FogUtils.generateTupleId(), 1, outputSize,
+				UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE);
 		tuple.setUserId(getUserId());
-		tuple.setTupleType(getTupleType());
-		
-		tuple.setDestModuleName(_edge.getDestination());
-		tuple.setSrcModuleName(getSensorName());
-		Logger.debug(getName(), "Sending tuple with tupleId = "+tuple.getCloudletId());
+		if(Logger.isDebugEnabled())
+			Logger.debug(getName(), "Sending tuple with tupleId = %d", tuple.getCloudletId());
+		tuple.trace(TraceSink.EMITTED, getName());
 
-		tuple.setDestinationDeviceId(getGatewayDeviceId());
+		tuple.setDestinationDeviceId(gatewayDeviceId);
 
 		int actualTupleId = updateTimings(getSensorName(), tuple.getDestModuleName());
 		tuple.setActualTupleId(actualTupleId);
@@ -102,20 +111,35 @@ public class Sensor extends SimEntity{
 		send(gatewayDeviceId, getLatency(), FogEvents.TUPLE_ARRIVAL,tuple);
 	}
 	
+	/**
+	 * Gets the descriptor of the tuples of the sensor, with its tuple type and name as source
+	 * module, derived once from the descriptor of its edge rather than at every emission.
+	 * @param edgeDescriptor the descriptor of the sensor edge
+	 * @return the descriptor
+	 */
+	private TupleDescriptor getTupleDescriptor(TupleDescriptor edgeDescriptor){
+		if(descriptor == null || edgeDescriptor != this.edgeDescriptor){
+			descriptor = edgeDescriptor.withTupleType(getTupleType()).withSrcModuleName(getSensorName());
+			this.edgeDescriptor = edgeDescriptor;
+		}
+		return descriptor;
+	}
+	
 	protected int updateTimings(String src, String dest){
 		Application application = getApp();
-		for(AppLoop loop : application.getLoops()){
-			if(loop.hasEdge(src, dest)){
-				
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-				return tupleId;
+		List<AppLoop> loops = application.getLoopsWithEdge(src, dest);
+		if(loops.isEmpty())
+			return -1;
+		
+		final int tupleId = TimeKeeper.getInstance().getUniqueId();
+		final int loopId = loops.get(0).getLoopId();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				TimeKeeper.getInstance().loopStarted(loopId, tupleId);
 			}
-		}
-		return -1;
+		});
+		return tupleId;
 	}
 	
 	@Override
@@ -151,6 +175,23 @@ public class Sensor extends SimEntity{
 		this.gatewayDeviceId = gatewayDeviceId;
 	}
 
+	/**
+	 * Gets the number of sensors this entity stands for that are attached to a gateway device.
+	 * @param gatewayDeviceId the id of the gateway device
+	 * @return 1 if the sensor is attached to the device, or else 0
+	 */
+	public int getSensorCount(int gatewayDeviceId) {
+		return this.gatewayDeviceId == gatewayDeviceId ? 1 : 0;
+	}
+
+	/**
+	 * Gets the number of sensors this entity stands for.
+	 * @return 1
+	 */
+	public int getSensorCount() {
+		return 1;
+	}
+
 	public GeoLocation getGeoLocation() {
 		return geoLocation;
 	}
@@ -173,6 +214,7 @@ public class Sensor extends SimEntity{
 
 	public void setTupleType(String tupleType) {
 		this.tupleType = tupleType;
+		descriptor = null;
 	}
 
 	public String getSensorName() {
@@ -181,6 +223,7 @@ public class Sensor extends SimEntity{
 
 	public void setSensorName(String sensorName) {
 		this.sensorName = sensorName;
+		descriptor = null;
 	}
 
 	public String getAppId() {
@@ -0,0 +1,223 @@
+package org.fog.entities;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.utils.FogEvents;
+import org.fog.utils.distribution.Distribution;
+
+/**
+ * A single entity standing for many sensors of the same tuple type and transmit distribution,
+ * attached to the same or to different gateway devices. Every member sends its own tuples, which
+ * are tracked in the application loops as those of a {@link Sensor}, but the group has one pending
+ * emission event at a time, for the earliest next emission of its members, and sends the tuples of
+ * all the members due at that time when it occurs.
+ * <p>
+ * Member i first emits at its phase offset after the first emission a sensor would make, and then
+ * at intervals drawn from the distribution shared by the group. The members due at the same time
+ * emit in the order they were added. The group joins each of the gateway devices of its members
+ * once, and the gateway devices acknowledge neither its joining nor its tuples, which sensors ignore
+ * anyway.
+ */
+public class SensorGroup extends Sensor {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The gateway devices of the members. */
+	private int[] gatewayDeviceIds = new int[16];
+
+	/** The phase offsets of the members. */
+	private double[] phaseOffsets = new double[16];
+
+	/** The number of members. */
+	private int memberCount;
+
+	/** The time of the next emission of each member. */
+	private double[] nextEmitTimes;
+
+	/** The members, in a binary heap ordered by next emission time and then by member index. */
+	private int[] heap;
+
+	/** The time of the pending emission event. */
+	private double scheduledTime;
+
+	/**
+	 * Creates an empty group of sensors.
+	 * @param name
+	 * @param tupleType
+	 * @param userId
+	 * @param appId
+	 * @param transmitDistribution the distribution of the intervals between the emissions of a member
+	 */
+	public SensorGroup(String name, String tupleType, int userId, String appId, Distribution transmitDistribution) {
+		super(name, tupleType, userId, appId, transmitDistribution);
+	}
+
+	/**
+	 * Adds a member to the group. The gateway device of the group is that of its first member.
+	 * @param gatewayDeviceId the id of the gateway device of the member
+	 * @param phaseOffset the delay of the first emission of the member, not negative
+	 * @return the index of the member
+	 */
+	public int addMember(int gatewayDeviceId, double phaseOffset) {
+		if (phaseOffset < 0) {
+			throw new IllegalArgumentException("The phase offset should not be negative.");
+		}
+		if (heap != null) {
+			throw new IllegalStateException("Members cannot be added to sensor group " + getName() + " once it started.");
+		}
+		if (memberCount == gatewayDeviceIds.length) {
+			gatewayDeviceIds = Arrays.copyOf(gatewayDeviceIds, 2 * memberCount);
+			phaseOffsets = Arrays.copyOf(phaseOffsets, 2 * memberCount);
+		}
+		if (memberCount == 0) {
+			setGatewayDeviceId(gatewayDeviceId);
+		}
+		gatewayDeviceIds[memberCount] = gatewayDeviceId;
+		phaseOffsets[memberCount] = phaseOffset;
+		return memberCount++;
+	}
+
+	/**
+	 * Gets the gateway device of a member.
+	 * @param member the index of the member
+	 * @return the id of the gateway device
+	 */
+	public int getGatewayDeviceId(int member) {
+		checkMember(member);
+		return gatewayDeviceIds[member];
+	}
+
+	/**
+	 * Gets the phase offset of a member.
+	 * @param member the index of the member
+	 * @return the delay of the first emission of the member
+	 */
+	public double getPhaseOffset(int member) {
+		checkMember(member);
+		return phaseOffsets[member];
+	}
+
+	@Override
+	public int getSensorCount(int gatewayDeviceId) {
+		int count = 0;
+		for (int i = 0; i < memberCount; i++) {
+			if (gatewayDeviceIds[i] == gatewayDeviceId) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int getSensorCount() {
+		return memberCount;
+	}
+
+	@Override
+	public void startEntity() {
+		nextEmitTimes = new double[memberCount];
+		heap = new int[memberCount];
+		Set<Integer> joined = new HashSet<Integer>();
+		for (int i = 0; i < memberCount; i++) {
+			if (joined.add(gatewayDeviceIds[i])) {
+				send(gatewayDeviceIds[i], CloudSim.getMinTimeBetweenEvents(), FogEvents.SENSOR_JOINED, getGeoLocation());
+			}
+			nextEmitTimes[i] = CloudSim.clock()
+					+ (getTransmitDistribution().getNextValue() + getTransmissionStartDelay() + phaseOffsets[i]);
+			heap[i] = i;
+			siftUp(i);
+		}
+		scheduleEmission();
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		switch (ev.getTag()) {
+		case FogEvents.EMIT_TUPLE:
+			emit();
+			scheduleEmission();
+			break;
+		}
+	}
+
+	/**
+	 * Sends the tuples of the members due at the time of the pending emission event, and draws
+	 * their next emission times. The members are put back in the heap once all have emitted, so
+	 * that each emits once per event.
+	 */
+	private void emit() {
+		int due = 0;
+		while (due < memberCount && nextEmitTimes[heap[0]] <= scheduledTime) {
+			int member = heap[0];
+			int last = memberCount - 1 - due;
+			heap[0] = heap[last];
+			heap[last] = member;
+			siftDown(0, last);
+			due++;
+		}
+		// the due members are at the end of the heap array, the first due last
+		for (int k = memberCount - 1; k >= memberCount - due; k--) {
+			int member = heap[k];
+			transmit(gatewayDeviceIds[member]);
+			nextEmitTimes[member] = CloudSim.clock() + getTransmitDistribution().getNextValue();
+		}
+		for (int k = memberCount - due; k < memberCount; k++) {
+			siftUp(k);
+		}
+	}
+
+	private void scheduleEmission() {
+		if (memberCount == 0) {
+			return;
+		}
+		scheduledTime = nextEmitTimes[heap[0]];
+		send(getId(), scheduledTime - CloudSim.clock(), FogEvents.EMIT_TUPLE);
+	}
+
+	private boolean before(int a, int b) {
+		double ta = nextEmitTimes[a];
+		double tb = nextEmitTimes[b];
+		return ta < tb || (ta == tb && a < b);
+	}
+
+	private void siftUp(int k) {
+		int member = heap[k];
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (!before(member, heap[parent])) {
+				break;
+			}
+			heap[k] = heap[parent];
+			k = parent;
+		}
+		heap[k] = member;
+	}
+
+	private void siftDown(int k, int size) {
+		int member = heap[k];
+		int half = size >>> 1;
+		while (k < half) {
+			int child = 2 * k + 1;
+			if (child + 1 < size && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], member)) {
+				break;
+			}
+			heap[k] = heap[child];
+			k = child;
+		}
+		heap[k] = member;
+	}
+
+	private void checkMember(int member) {
+		if (member < 0 || member >= memberCount) {
+			throw new IllegalArgumentException("Sensor group " + getName() + " has no member " + member + ".");
+		}
+	}
+}
@@ -1,31 +1,35 @@
 package org.fog.entities;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.TraceSink;
+import org.fog.utils.ArrayMap;
 
 public class Tuple extends Cloudlet{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	public static final int UP = 1;
 	public static final int DOWN = 2;
 	public static final int ACTUATOR = 3;
 	
-	private String appId;
-	
-	private String tupleType;
-	private String destModuleName;
-	private String srcModuleName;
+	/**
+	 * The application, tuple type, modules and direction of the tuple, usually shared with all the
+	 * tuples of its application edge.
+	 */
+	private TupleDescriptor descriptor;
 	private int actualTupleId;
-	private int direction;
 	private int actuatorId;
 	private int sourceDeviceId;
 	private int sourceModuleId;
 	/**
 	 * Map to keep track of which module instances has a tuple traversed.
 	 * 
-	 * Map from moduleName to vmId of a module instance
+	 * Map from moduleName to vmId of a module instance, created on demand
 	 */
 	private Map<String, Integer> moduleCopyMap;
 
@@ -34,8 +38,12 @@ public class Tuple extends Cloudlet{
 	 */
 	protected int destinationDeviceId;
 	/* keep track of traversed microservices by tuples of type UP in microservices architecture UP -> tuple travelling towards service
-	 DOWN -> tuple travelling from service to client microservice.*/
-	protected Map<String, Integer> traversedMicroservices = new HashMap<>();
+	 DOWN -> tuple travelling from service to client microservice. Created on demand. */
+	protected Map<String, Integer> traversedMicroservices;
+	/**
+	 * Whether the tuple has been released to the {@link TuplePool} and not obtained again.
+	 */
+	private boolean released;
 	
 	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
 			long cloudletFileSize, long cloudletOutputSize,
@@ -45,13 +53,65 @@ public class Tuple extends Cloudlet{
 		super(cloudletId, cloudletLength, pesNumber, cloudletFileSize,
 				cloudletOutputSize, utilizationModelCpu, utilizationModelRam,
 				utilizationModelBw);
-		setAppId(appId);
-		setDirection(direction);
+		descriptor = new TupleDescriptor(appId, null, null, null, direction, cloudletLength, cloudletFileSize);
+		setSourceDeviceId(-1);
+		setDestinationDeviceId(-1);
+	}
+
+	/**
+	 * Creates a tuple of an application edge, with the lengths of the edge.
+	 * 
+	 * @param descriptor the descriptor of the tuples of the edge
+	 * @param cloudletId the id of the tuple
+	 * @param pesNumber the number of PEs the tuple needs
+	 * @param cloudletOutputSize the output size of the tuple
+	 * @param utilizationModelCpu the utilization model of the CPU, which may be shared by tuples
+	 * @param utilizationModelRam the utilization model of the RAM, which may be shared by tuples
+	 * @param utilizationModelBw the utilization model of the bandwidth, which may be shared by tuples
+	 */
+	public Tuple(TupleDescriptor descriptor, int cloudletId, int pesNumber, long cloudletOutputSize,
+			UtilizationModel utilizationModelCpu,
+			UtilizationModel utilizationModelRam,
+			UtilizationModel utilizationModelBw) {
+		super(cloudletId, descriptor.getCpuLength(), pesNumber, descriptor.getNwLength(),
+				cloudletOutputSize, utilizationModelCpu, utilizationModelRam,
+				utilizationModelBw);
+		this.descriptor = descriptor;
 		setSourceDeviceId(-1);
-		setModuleCopyMap(new HashMap<String, Integer>());
 		setDestinationDeviceId(-1);
 	}
 
+	/**
+	 * Resets the tuple to the state of a new tuple created with
+	 * {@link #Tuple(TupleDescriptor, int, int, long, UtilizationModel, UtilizationModel, UtilizationModel)},
+	 * so that the {@link TuplePool} can reuse it.
+	 */
+	void reset(TupleDescriptor descriptor, int cloudletId, int pesNumber, long cloudletOutputSize,
+			UtilizationModel utilizationModelCpu,
+			UtilizationModel utilizationModelRam,
+			UtilizationModel utilizationModelBw) {
+		reset(cloudletId, descriptor.getCpuLength(), pesNumber, descriptor.getNwLength(),
+				cloudletOutputSize, utilizationModelCpu, utilizationModelRam,
+				utilizationModelBw);
+		this.descriptor = descriptor;
+		actualTupleId = 0;
+		actuatorId = 0;
+		sourceModuleId = 0;
+		setSourceDeviceId(-1);
+		setDestinationDeviceId(-1);
+		// the maps are dropped rather than cleared, as the tuples resulting from this one may share them
+		moduleCopyMap = null;
+		traversedMicroservices = null;
+	}
+
+	boolean isReleased() {
+		return released;
+	}
+
+	void setReleased(boolean released) {
+		this.released = released;
+	}
+
 	public int getActualTupleId() {
 		return actualTupleId;
 	}
@@ -61,43 +121,51 @@ public class Tuple extends Cloudlet{
 	}
 
 	public String getAppId() {
-		return appId;
+		return descriptor.getAppId();
 	}
 
 	public void setAppId(String appId) {
-		this.appId = appId;
+		descriptor = descriptor.withAppId(appId);
 	}
 
 	public String getTupleType() {
-		return tupleType;
+		return descriptor.getTupleType();
 	}
 
 	public void setTupleType(String tupleType) {
-		this.tupleType = tupleType;
+		descriptor = descriptor.withTupleType(tupleType);
 	}
 
 	public String getDestModuleName() {
-		return destModuleName;
+		return descriptor.getDestModuleName();
 	}
 
 	public void setDestModuleName(String destModuleName) {
-		this.destModuleName = destModuleName;
+		descriptor = descriptor.withDestModuleName(destModuleName);
 	}
 
 	public String getSrcModuleName() {
-		return srcModuleName;
+		return descriptor.getSrcModuleName();
 	}
 
 	public void setSrcModuleName(String srcModuleName) {
-		this.srcModuleName = srcModuleName;
+		descriptor = descriptor.withSrcModuleName(srcModuleName);
 	}
 
 	public int getDirection() {
-		return direction;
+		return descriptor.getDirection();
 	}
 
 	public void setDirection(int direction) {
-		this.direction = direction;
+		descriptor = descriptor.withDirection(direction);
+	}
+
+	public TupleDescriptor getDescriptor() {
+		return descriptor;
+	}
+
+	public void setDescriptor(TupleDescriptor descriptor) {
+		this.descriptor = descriptor;
 	}
 
 	public int getActuatorId() {
@@ -117,6 +185,8 @@ public class Tuple extends Cloudlet{
 	}
 
 	public Map<String, Integer> getModuleCopyMap() {
+		if (moduleCopyMap == null)
+			moduleCopyMap = new ArrayMap<String, Integer>();
 		return moduleCopyMap;
 	}
 
@@ -124,6 +194,31 @@ public class Tuple extends Cloudlet{
 		this.moduleCopyMap = moduleCopyMap;
 	}
 
+	/**
+	 * Gets the module instance of a module the tuple has traversed, without creating the map.
+	 * 
+	 * @param moduleName the name of the module
+	 * @return the vmId of the module instance, or null if the tuple has not traversed the module
+	 */
+	public Integer getModuleCopy(String moduleName) {
+		return moduleCopyMap == null ? null : moduleCopyMap.get(moduleName);
+	}
+
+	/**
+	 * Sets the module instances traversed by the tuple to those traversed by the tuple it results
+	 * from, plus the module instance that executed that tuple.
+	 * 
+	 * @param inputTuple the tuple whose execution created this one
+	 * @param moduleName the name of the module that executed the input tuple
+	 * @param vmId the vmId of the module instance that executed the input tuple
+	 */
+	public void setModuleCopyMap(Tuple inputTuple, String moduleName, int vmId) {
+		Map<String, Integer> inputMap = inputTuple.moduleCopyMap;
+		moduleCopyMap = inputMap == null ? new ArrayMap<String, Integer>()
+				: new ArrayMap<String, Integer>(inputMap, inputMap.containsKey(moduleName) ? 0 : 1);
+		moduleCopyMap.put(moduleName, vmId);
+	}
+
 	public int getSourceModuleId() {
 		return sourceModuleId;
 	}
@@ -141,11 +236,11 @@ public class Tuple extends Cloudlet{
 	}
 
 	public void addToTraversedMicroservices(Integer deviceID, String microserviceName) {
-		traversedMicroservices.put(microserviceName, deviceID);
+		getTraversed().put(microserviceName, deviceID);
 	}
 
 	public int getDeviceForMicroservice(String microserviceName) {
-		if (!traversedMicroservices.containsKey(microserviceName))
+		if (traversedMicroservices == null || !traversedMicroservices.containsKey(microserviceName))
 			return -1;
 		else {
 			return traversedMicroservices.get(microserviceName);
@@ -153,6 +248,8 @@ public class Tuple extends Cloudlet{
 	}
 
 	public Map<String, Integer> getTraversed() {
+		if (traversedMicroservices == null)
+			traversedMicroservices = new ArrayMap<String, Integer>();
 		return traversedMicroservices;
 	}
 
@@ -160,4 +257,42 @@ public class Tuple extends Cloudlet{
 		traversedMicroservices = traversed;
 	}
 
+	/**
+	 * Creates a copy of this tuple that has not been executed yet, to send to another device when
+	 * a tuple is multicast. The copy has the same ids, so it counts as the same tuple in the
+	 * metrics, but its own execution state and its own maps.
+	 *
+	 * @return the copy
+	 */
+	public Tuple copy() {
+		Tuple copy = TuplePool.obtain(getDescriptor(), getCloudletId(), getNumberOfPes(), getCloudletOutputSize(),
+				getUtilizationModelCpu(), getUtilizationModelRam(), getUtilizationModelBw());
+		// the lengths of the tuple are those of its descriptor, unless its length was changed since
+		copy.setCloudletLength(getCloudletLength());
+		copy.setUserId(getUserId());
+		copy.setActualTupleId(getActualTupleId());
+		copy.setActuatorId(getActuatorId());
+		copy.setSourceDeviceId(getSourceDeviceId());
+		copy.setSourceModuleId(getSourceModuleId());
+		copy.setDestinationDeviceId(getDestinationDeviceId());
+		if (moduleCopyMap != null)
+			copy.setModuleCopyMap(new ArrayMap<String, Integer>(moduleCopyMap, 0));
+		if (traversedMicroservices != null)
+			copy.setTraversedMicroservices(new ArrayMap<String, Integer>(traversedMicroservices, 0));
+		return copy;
+	}
+
+	/**
+	 * Publishes a phase of the lifecycle of this tuple to the trace sink of the simulation, if it
+	 * has one tracing tuples.
+	 *
+	 * @param phase the phase, see {@link TraceSink#EMITTED}
+	 * @param entityName the name of the sensor, device or actuator the tuple is at
+	 */
+	public void trace(int phase, String entityName) {
+		TraceSink sink = CloudSim.getTraceSink();
+		if (sink != null && sink.isTraced(TraceSink.TUPLE))
+			sink.tuple(CloudSim.clock(), phase, getCloudletId(), getTupleType(), entityName);
+	}
+
 }
@@ -0,0 +1,129 @@
+package org.fog.entities;
+
+import java.io.Serializable;
+
+/**
+ * The part of a tuple that is the same for all the tuples carried by an application edge: the
+ * application, the tuple type, the source and destination modules, the direction and the lengths
+ * the tuples are created with. It is immutable, so that all these tuples can share one descriptor,
+ * see {@link org.fog.application.AppEdge#getTupleDescriptor(String, int)}.
+ */
+public final class TupleDescriptor implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	private final String appId;
+	private final String tupleType;
+	private final String srcModuleName;
+	private final String destModuleName;
+	private final int direction;
+	/** The CPU length (in MI) the tuples are created with. */
+	private final long cpuLength;
+	/** The network length (in bytes) the tuples are created with. */
+	private final long nwLength;
+
+	public TupleDescriptor(String appId, String tupleType, String srcModuleName, String destModuleName,
+			int direction, long cpuLength, long nwLength) {
+		this.appId = appId;
+		this.tupleType = tupleType;
+		this.srcModuleName = srcModuleName;
+		this.destModuleName = destModuleName;
+		this.direction = direction;
+		this.cpuLength = cpuLength;
+		this.nwLength = nwLength;
+	}
+
+	public String getAppId() {
+		return appId;
+	}
+
+	public String getTupleType() {
+		return tupleType;
+	}
+
+	public String getSrcModuleName() {
+		return srcModuleName;
+	}
+
+	public String getDestModuleName() {
+		return destModuleName;
+	}
+
+	public int getDirection() {
+		return direction;
+	}
+
+	public long getCpuLength() {
+		return cpuLength;
+	}
+
+	public long getNwLength() {
+		return nwLength;
+	}
+
+	/**
+	 * Gets a descriptor with another application.
+	 *
+	 * @param appId the application
+	 * @return this descriptor if it has the same application, or else a new one
+	 */
+	public TupleDescriptor withAppId(String appId) {
+		return equal(appId, this.appId) ? this
+				: new TupleDescriptor(appId, tupleType, srcModuleName, destModuleName, direction, cpuLength, nwLength);
+	}
+
+	/**
+	 * Gets a descriptor with another tuple type.
+	 *
+	 * @param tupleType the tuple type
+	 * @return this descriptor if it has the same tuple type, or else a new one
+	 */
+	public TupleDescriptor withTupleType(String tupleType) {
+		return equal(tupleType, this.tupleType) ? this
+				: new TupleDescriptor(appId, tupleType, srcModuleName, destModuleName, direction, cpuLength, nwLength);
+	}
+
+	/**
+	 * Gets a descriptor with another source module.
+	 *
+	 * @param srcModuleName the name of the source module
+	 * @return this descriptor if it has the same source module, or else a new one
+	 */
+	public TupleDescriptor withSrcModuleName(String srcModuleName) {
+		return equal(srcModuleName, this.srcModuleName) ? this
+				: new TupleDescriptor(appId, tupleType, srcModuleName, destModuleName, direction, cpuLength, nwLength);
+	}
+
+	/**
+	 * Gets a descriptor with another destination module.
+	 *
+	 * @param destModuleName the name of the destination module
+	 * @return this descriptor if it has the same destination module, or else a new one
+	 */
+	public TupleDescriptor withDestModuleName(String destModuleName) {
+		return equal(destModuleName, this.destModuleName) ? this
+				: new TupleDescriptor(appId, tupleType, srcModuleName, destModuleName, direction, cpuLength, nwLength);
+	}
+
+	/**
+	 * Gets a descriptor with another direction.
+	 *
+	 * @param direction the direction
+	 * @return this descriptor if it has the same direction, or else a new one
+	 */
+	public TupleDescriptor withDirection(int direction) {
+		return direction == this.direction ? this
+				: new TupleDescriptor(appId, tupleType, srcModuleName, destModuleName, direction, cpuLength, nwLength);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@Override
+	public String toString() {
+		return "TupleDescriptor [appId=" + appId + ", tupleType=" + tupleType + ", srcModuleName=" + srcModuleName
+				+ ", destModuleName=" + destModuleName + ", direction=" + direction + "]";
+	}
+}
@@ -0,0 +1,228 @@
+package org.fog.entities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+
+/**
+ * A free list of the tuples of a simulation. When it is enabled, the sensors, the applications and
+ * the copies of multicast tuples take their tuples from the pool, and the tuples are released to it
+ * where they end: when they reach an actuator, when the broker receives a tuple whose execution is
+ * complete (whether the execution produced resultant tuples or not), when a tuple without a
+ * destination module reaches the cloud, and when a device drops a tuple meant for another instance
+ * of a module. Tuples that end elsewhere are simply left to the garbage collector.
+ * <p>
+ * Entities must not keep references to the tuples they receive, or to their maps, once the tuples
+ * may have ended. In debug mode released tuples are never reused, releasing a tuple twice throws an
+ * {@link IllegalStateException}, and the pool keeps the tuples it handed out and that were not
+ * released, see {@link #getOutstandingTuples(double)}, in order to find the tuples that leak.
+ * <p>
+ * The pool is disabled by default. Each simulation context, and each partition of a parallel run,
+ * has its own pool.
+ */
+public class TuplePool implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The maximum number of free tuples kept. */
+	private static final int MAX_FREE = 1 << 16;
+
+	/** The pool of the simulation, or null if tuples are not pooled. */
+	private static final SimulationLocal<TuplePool> instance = new SimulationLocal<TuplePool>(TuplePool.class, "instance") {
+		@Override
+		protected TuplePool partitionValue(TuplePool pool) {
+			return pool == null ? null : new TuplePool(pool.debug, pool.outstanding);
+		}
+	};
+
+	/** The free tuples. */
+	private Tuple[] free = new Tuple[256];
+
+	/** The number of free tuples. */
+	private int freeCount;
+
+	/** Whether released tuples are kept out of the pool and the outstanding tuples are tracked. */
+	private final boolean debug;
+
+	/**
+	 * The tuples handed out and not released yet, with the time they were handed out at, in debug
+	 * mode. The partitions of a parallel run share it, so it is only accessed under its lock.
+	 */
+	private final Map<Tuple, Double> outstanding;
+
+	/** The number of tuples created by the pool. */
+	private long createdCount;
+
+	/** The number of tuples reused by the pool. */
+	private long reusedCount;
+
+	private TuplePool(boolean debug, Map<Tuple, Double> outstanding) {
+		this.debug = debug;
+		this.outstanding = outstanding;
+	}
+
+	/**
+	 * Enables the pooling of the tuples in the simulation of the calling thread, with an empty pool.
+	 *
+	 * @param debug <tt>true</tt> to never reuse released tuples, detect the tuples released twice and
+	 *            track the tuples that are not released
+	 */
+	public static void enable(boolean debug) {
+		instance.set(new TuplePool(debug, debug ? new IdentityHashMap<Tuple, Double>() : null));
+	}
+
+	/**
+	 * Disables the pooling of the tuples in the simulation of the calling thread.
+	 */
+	public static void disable() {
+		instance.set(null);
+	}
+
+	/**
+	 * Checks if the tuples are pooled in the simulation of the calling thread.
+	 *
+	 * @return true, if the tuples are pooled
+	 */
+	public static boolean isEnabled() {
+		return instance.get() != null;
+	}
+
+	/**
+	 * Gets a tuple of an application edge, reusing a released one when the pool is enabled and has
+	 * one. The tuple is in the same state as one created with
+	 * {@link Tuple#Tuple(TupleDescriptor, int, int, long, UtilizationModel, UtilizationModel, UtilizationModel)}.
+	 *
+	 * @param descriptor the descriptor of the tuples of the edge
+	 * @param cloudletId the id of the tuple
+	 * @param pesNumber the number of PEs the tuple needs
+	 * @param cloudletOutputSize the output size of the tuple
+	 * @param utilizationModelCpu the utilization model of the CPU
+	 * @param utilizationModelRam the utilization model of the RAM
+	 * @param utilizationModelBw the utilization model of the bandwidth
+	 * @return the tuple
+	 */
+	public static Tuple obtain(TupleDescriptor descriptor, int cloudletId, int pesNumber, long cloudletOutputSize,
+			UtilizationModel utilizationModelCpu, UtilizationModel utilizationModelRam,
+			UtilizationModel utilizationModelBw) {
+		TuplePool pool = instance.get();
+		if (pool == null) {
+			return new Tuple(descriptor, cloudletId, pesNumber, cloudletOutputSize, utilizationModelCpu,
+					utilizationModelRam, utilizationModelBw);
+		}
+		return pool.take(descriptor, cloudletId, pesNumber, cloudletOutputSize, utilizationModelCpu,
+				utilizationModelRam, utilizationModelBw);
+	}
+
+	/**
+	 * Returns a tuple that has ended to the pool, if the pool is enabled. Only plain tuples are
+	 * pooled: instances of subclasses are ignored. The tuple must not be used by the caller anymore.
+	 *
+	 * @param tuple the tuple
+	 * @throws IllegalStateException if the tuple was already released
+	 */
+	public static void release(Tuple tuple) {
+		TuplePool pool = instance.get();
+		if (pool != null && tuple.getClass() == Tuple.class) {
+			pool.put(tuple);
+		}
+	}
+
+	/**
+	 * Gets the tuples the pool handed out and that were not released, in debug mode. The tuples
+	 * still in flight at the end of a simulation are among them, so only the tuples handed out some
+	 * time ago are usually leaks.
+	 *
+	 * @param obtainedBefore the time before which the tuples were handed out
+	 * @return the outstanding tuples handed out before the time
+	 * @throws IllegalStateException if the pool is not enabled in debug mode
+	 */
+	public static List<Tuple> getOutstandingTuples(double obtainedBefore) {
+		TuplePool pool = instance.get();
+		if (pool == null || !pool.debug) {
+			throw new IllegalStateException("The tuple pool is not enabled in debug mode.");
+		}
+		List<Tuple> tuples = new ArrayList<Tuple>();
+		synchronized (pool.outstanding) {
+			for (Map.Entry<Tuple, Double> entry : pool.outstanding.entrySet()) {
+				if (entry.getValue() < obtainedBefore) {
+					tuples.add(entry.getKey());
+				}
+			}
+		}
+		return tuples;
+	}
+
+	/**
+	 * Gets the number of tuples the pool of the simulation created, as it had no free tuple.
+	 *
+	 * @return the number of tuples created, or 0 if the pool is disabled
+	 */
+	public static long getCreatedCount() {
+		TuplePool pool = instance.get();
+		return pool == null ? 0 : pool.createdCount;
+	}
+
+	/**
+	 * Gets the number of released tuples the pool of the simulation handed out again.
+	 *
+	 * @return the number of tuples reused, or 0 if the pool is disabled
+	 */
+	public static long getReusedCount() {
+		TuplePool pool = instance.get();
+		return pool == null ? 0 : pool.reusedCount;
+	}
+
+	private Tuple take(TupleDescriptor descriptor, int cloudletId, int pesNumber, long cloudletOutputSize,
+			UtilizationModel utilizationModelCpu, UtilizationModel utilizationModelRam,
+			UtilizationModel utilizationModelBw) {
+		Tuple tuple;
+		if (freeCount == 0) {
+			tuple = new Tuple(descriptor, cloudletId, pesNumber, cloudletOutputSize, utilizationModelCpu,
+					utilizationModelRam, utilizationModelBw);
+			createdCount++;
+		} else {
+			tuple = free[--freeCount];
+			free[freeCount] = null;
+			tuple.reset(descriptor, cloudletId, pesNumber, cloudletOutputSize, utilizationModelCpu,
+					utilizationModelRam, utilizationModelBw);
+			tuple.setReleased(false);
+			reusedCount++;
+		}
+		if (debug) {
+			synchronized (outstanding) {
+				outstanding.put(tuple, CloudSim.clock());
+			}
+		}
+		return tuple;
+	}
+
+	private void put(Tuple tuple) {
+		if (tuple.isReleased()) {
+			throw new IllegalStateException("Tuple " + tuple.getCloudletId() + " of type " + tuple.getTupleType()
+					+ " was released twice.");
+		}
+		tuple.setReleased(true);
+		if (debug) {
+			synchronized (outstanding) {
+				outstanding.remove(tuple);
+			}
+			return;
+		}
+		if (freeCount == MAX_FREE) {
+			return;
+		}
+		if (freeCount == free.length) {
+			Tuple[] grown = new Tuple[free.length << 1];
+			System.arraycopy(free, 0, grown, 0, freeCount);
+			free = grown;
+		}
+		free[freeCount++] = tuple;
+	}
+}
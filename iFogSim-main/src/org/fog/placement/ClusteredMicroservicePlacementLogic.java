@@ -18,6 +18,10 @@ import java.util.*;
  * Created by Samodha Pallewatta on 5/27/2021.
  */
 public class ClusteredMicroservicePlacementLogic implements MicroservicePlacementLogic {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Fog network related details
      */
@@ -225,7 +229,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                     int deviceId = device.getId();
 
                     if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator %s on device %s successful.", microservice, device.getName());
                         getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
                         System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
 
@@ -282,7 +286,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                         for (String microservice : toPlace.get(placementRequest)) {
                             // try to place
                             if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
-                                Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
+                                Logger.debug("ModulePlacementEdgeward", "Placement of operator %s on device %s successful.", microservice, device.getName());
                                 getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
                                 System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
 
@@ -382,7 +386,7 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                                 // try to place
                                 if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id) <= resourceAvailability.get(id).get(ControllerComponent.CPU)) {
                                     FogDevice placedDevice = getDevice(id);
-                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
+                                    Logger.debug("ModulePlacementEdgeward", "Placement of operator %s on device %s successful.", microservice, placedDevice.getName());
                                     getCurrentCpuLoad().put(id, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id));
                                     System.out.println("Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
 
@@ -3,6 +3,8 @@ package org.fog.placement;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
@@ -19,6 +21,9 @@ import java.util.stream.Collectors;
 
 public class ClusteringController extends SimEntity {
 
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     public static boolean ONLY_CLOUD = false;
 
     private List<FogDevice> fogDevices;
@@ -111,7 +116,7 @@ public class ClusteringController extends SimEntity {
             double latency = fogDevice.getUplinkLatency();
             parent.getChildToLatencyMap().put(fogDevice.getId(), latency);
             parent.getChildrenIds().add(fogDevice.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + parent.getName());
+            TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), parent.getName());
         }
     }
 
@@ -128,7 +133,7 @@ public class ClusteringController extends SimEntity {
 
         send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 
-        send(getId(), Config.MAX_SIMULATION_TIME, FogEvents.STOP_SIMULATION);
+        send(getId(), Config.getMaxSimulationTime(), FogEvents.STOP_SIMULATION);
 
         sendNow(getId(), FogEvents.MOBILITY_SUBMIT);
 
@@ -164,18 +169,22 @@ public class ClusteringController extends SimEntity {
                 printCostDetails();
                 printNetworkUsageDetails();
                 printMigrationDelayDetails();
-                System.exit(0);
+                // other simulations may be running in this JVM
+                if (SimulationContext.current().isDefault())
+                    System.exit(0);
+                else
+                    CloudSim.abruptallyTerminate();
                 break;
 
         }
     }
 
     public void clusteringSubmit(List Levels) {
-        System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
+        TraceSink.printLine("%s Start sending Clustering Request to Fog Devices in level: %s", CloudSim.clock(), Levels);
         for (int i = 0; i < Levels.size(); i++) {
             int clusterLevel = (int) Levels.get(i);
             for (FogDevice fogDevice : fogDevices) {
-                System.out.println(CloudSim.clock() + " fog Device: " + fogDevice.getName() + " with id: " + fogDevice.getId() + " is at level: " + fogDevice.getLevel());
+                TraceSink.printLine("%s fog Device: %s with id: %d is at level: %d", CloudSim.clock(), fogDevice.getName(), fogDevice.getId(), fogDevice.getLevel());
                 if ((int) fogDevice.getLevel() == clusterLevel) {
                     JSONObject jsonMessage = new JSONObject();
                     jsonMessage.put("locationsInfo", getLocator());
@@ -194,9 +203,9 @@ public class ClusteringController extends SimEntity {
 
 	/*private void printFogDeviceChildren(int deviceID) {
 		// TODO Auto-generated method stub
-		System.out.println("Childs of "+getFogDeviceById(deviceID).getName());
+		TraceSink.printLine("Childs of %s", getFogDeviceById(deviceID).getName());
 		for(Integer childId:getFogDeviceById(deviceID).getChildrenIds())
-			System.out.println(getFogDeviceById(childId).getName()+"("+childId+")");
+			TraceSink.printLine("%s(%d)", getFogDeviceById(childId).getName(), childId);
 
 	}*/
 
@@ -206,7 +215,7 @@ public class ClusteringController extends SimEntity {
         FogDevice fogDevice = (FogDevice) ev.getData();
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
-        System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
+        TraceSink.printLine("%s Starting Mobility Management for %s", CloudSim.clock(), fogDevice.getName());
         parentReference.put(fogDevice.getId(), newParent.getId());
         List<String> migratingModules = new ArrayList<String>();
         if (prevParent.getId() != newParent.getId()) {
@@ -220,7 +229,7 @@ public class ClusteringController extends SimEntity {
 
 
             fogDevice.setParentId(newParent.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
+            TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), newParent.getName());
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
@@ -235,26 +244,33 @@ public class ClusteringController extends SimEntity {
                     upDelay = getUpDelay(prevParent.getId(), commonAncestor, getApplications().get(applicationName).getModuleByName(moduleName));
                     downDelay = getDownDelay(newParent.getId(), commonAncestor, getApplications().get(applicationName).getModuleByName(moduleName));
 
+                    // the module goes up to the common ancestor and down to the new parent
+                    int via = commonAncestor;
                     if(getAppModulePlacementPolicy().get(applicationName).getClusteringFeature())
                     {
                         if(prevParent.getClusterMembers().contains(newParent.getId()))
                         {
                             upDelay = prevParent.getClusterMembersToLatencyMap().get(newParent.getId());
                             downDelay = 0;
+                            via = newParent.getId();
                         }
                     }
                     JSONObject jsonSend = new JSONObject();
                     jsonSend.put("module", getApplications().get(applicationName).getModuleByName(moduleName));
                     jsonSend.put("delay", upDelay);
+                    jsonSend.put("source", prevParent.getId());
+                    jsonSend.put("destination", via);
 
                     JSONObject jsonReceive = new JSONObject();
                     jsonReceive.put("module", getApplications().get(applicationName).getModuleByName(moduleName));
                     jsonReceive.put("delay", downDelay);
+                    jsonReceive.put("source", via);
+                    jsonReceive.put("destination", newParent.getId());
                     jsonReceive.put("application", getApplications().get(applicationName));
 
                     send(prevParent.getId(), upDelay, FogEvents.MODULE_SEND, jsonSend);
                     send(newParent.getId(), downDelay, FogEvents.MODULE_RECEIVE, jsonReceive);
-                    System.out.println("Migrating " + moduleName + " from " + prevParent.getName() + " to " + newParent.getName());
+                    TraceSink.printLine("Migrating %s from %s to %s", moduleName, prevParent.getName(), newParent.getName());
                 }
             }
 
@@ -317,7 +333,7 @@ public class ClusteringController extends SimEntity {
     }
 
     private void printNetworkUsageDetails() {
-        System.out.println("Total network usage = " + NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME);
+        System.out.println("Total network usage = " + NetworkUsageMonitor.getNetworkUsage() / Config.getMaxSimulationTime());
     }
 
     private FogDevice getCloud() {
@@ -376,6 +392,9 @@ public class ClusteringController extends SimEntity {
 
         for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
             System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+            LatencyHistogram cpuTimes = TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType);
+            if (cpuTimes != null)
+                System.out.println(tupleType + " percentiles ---> " + cpuTimes.getPercentileSummary());
         }
 
         System.out.println("=========================================");
@@ -390,6 +409,7 @@ public class ClusteringController extends SimEntity {
 
     @Override
     public void shutdownEntity() {
+        TimeKeeper.getInstance().close();
     }
 
     public void submitApplication(Application application, int delay, ModulePlacement modulePlacement) {
@@ -427,7 +447,7 @@ public class ClusteringController extends SimEntity {
     }
 
     private void processAppSubmit(Application application) {
-        System.out.println(CloudSim.clock() + " Submitted application " + application.getAppId());
+        TraceSink.printLine("%s Submitted application %s", CloudSim.clock(), application.getAppId());
         FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
         getApplications().put(application.getAppId(), application);
 
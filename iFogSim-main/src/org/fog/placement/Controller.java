@@ -8,6 +8,8 @@ import java.util.Map;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
@@ -18,10 +20,14 @@ import org.fog.entities.Sensor;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
+import org.fog.utils.LatencyHistogram;
 import org.fog.utils.NetworkUsageMonitor;
 import org.fog.utils.TimeKeeper;
 
 public class Controller extends SimEntity{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	public static boolean ONLY_CLOUD = false;
 		
@@ -78,7 +84,7 @@ public class Controller extends SimEntity{
 
 		send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 		
-		send(getId(), Config.MAX_SIMULATION_TIME, FogEvents.STOP_SIMULATION);
+		send(getId(), Config.getMaxSimulationTime(), FogEvents.STOP_SIMULATION);
 		
 		for(FogDevice dev : getFogDevices())
 			sendNow(dev.getId(), FogEvents.RESOURCE_MGMT);
@@ -103,14 +109,18 @@ public class Controller extends SimEntity{
 			printPowerDetails();
 			printCostDetails();
 			printNetworkUsageDetails();
-			System.exit(0);
+			// other simulations may be running in this JVM
+			if(SimulationContext.current().isDefault())
+				System.exit(0);
+			else
+				CloudSim.abruptallyTerminate();
 			break;
 			
 		}
 	}
 	
 	private void printNetworkUsageDetails() {
-		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.MAX_SIMULATION_TIME);		
+		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.getMaxSimulationTime());		
 	}
 
 	private FogDevice getCloud(){
@@ -148,7 +158,7 @@ public class Controller extends SimEntity{
 		System.out.println("=========================================");
 		System.out.println("APPLICATION LOOP DELAYS");
 		System.out.println("=========================================");
-		for(Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()){
+		for(Integer loopId : TimeKeeper.getInstance().getLoopIdToStartedTupleCount().keySet()){
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -160,6 +170,9 @@ public class Controller extends SimEntity{
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
 			System.out.println(getStringForLoopId(loopId) + " ---> "+TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+			LatencyHistogram delays = TimeKeeper.getInstance().getLoopIdToDelayHistogram().get(loopId);
+			if(delays != null)
+				System.out.println(getStringForLoopId(loopId) + " percentiles ---> " + delays.getPercentileSummary());
 		}
 		System.out.println("=========================================");
 		System.out.println("TUPLE CPU EXECUTION DELAY");
@@ -167,6 +180,9 @@ public class Controller extends SimEntity{
 		
 		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()){
 			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+			LatencyHistogram cpuTimes = TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType);
+			if(cpuTimes != null)
+				System.out.println(tupleType + " percentiles ---> " + cpuTimes.getPercentileSummary());
 		}
 		
 		System.out.println("=========================================");
@@ -181,6 +197,7 @@ public class Controller extends SimEntity{
 	
 	@Override
 	public void shutdownEntity() {	
+		TimeKeeper.getInstance().close();
 	}
 	
 	public void submitApplication(Application application, int delay, ModulePlacement modulePlacement){
@@ -218,7 +235,7 @@ public class Controller extends SimEntity{
 	}
 	
 	private void processAppSubmit(Application application){
-		System.out.println(CloudSim.clock()+" Submitted application "+ application.getAppId());
+		TraceSink.printLine("%s Submitted application %s", CloudSim.clock(), application.getAppId());
 		FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
 		getApplications().put(application.getAppId(), application);
 		
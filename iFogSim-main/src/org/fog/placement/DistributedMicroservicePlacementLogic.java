@@ -19,6 +19,10 @@ import java.util.*;
  * Per Placement Request Placement
  */
 public class DistributedMicroservicePlacementLogic implements MicroservicePlacementLogic {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Fog network related details
      */
@@ -154,7 +158,7 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
                             !app.getSpecialPlacementInfo().get(microservice).contains(fogDevice.getName())) {
                         failedMicroservices.add(microservice);
                     } else if (getModule(microservice, app).getMips() + currentCpuLoad <= resourceAvailability.get(fogDevice.getId()).get(ControllerComponent.CPU)) {
-                        Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
+                        Logger.debug("ModulePlacementEdgeward", "Placement of operator %s on device %s successful.", microservice, fogDevice.getName());
                         currentCpuLoad = getModule(microservice, app).getMips() + currentCpuLoad;
                         System.out.println("Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
 
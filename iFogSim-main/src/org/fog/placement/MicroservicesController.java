@@ -4,6 +4,7 @@ import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
 import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
@@ -17,6 +18,9 @@ import java.util.*;
  */
 public class MicroservicesController extends SimEntity {
 
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     protected List<FogDevice> fogDevices;
     protected List<Sensor> sensors;
     protected Map<String, Application> applications = new HashMap<>();
@@ -145,7 +149,7 @@ public class MicroservicesController extends SimEntity {
 
         send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 
-        send(getId(), Config.MAX_SIMULATION_TIME, FogEvents.STOP_SIMULATION);
+        send(getId(), Config.getMaxSimulationTime(), FogEvents.STOP_SIMULATION);
     }
 
     protected void shareResourceDataAmongClusterNodes() {
@@ -219,7 +223,11 @@ public class MicroservicesController extends SimEntity {
                 printCostDetails();
                 printNetworkUsageDetails();
                 printQoSDetails();
-                System.exit(0);
+                // other simulations may be running in this JVM
+                if (SimulationContext.current().isDefault())
+                    System.exit(0);
+                else
+                    CloudSim.abruptallyTerminate();
                 break;
         }
 
@@ -253,6 +261,7 @@ public class MicroservicesController extends SimEntity {
 
     @Override
     public void shutdownEntity() {
+        TimeKeeper.getInstance().close();
     }
 
     protected void manageResources() {
@@ -260,7 +269,7 @@ public class MicroservicesController extends SimEntity {
     }
 
     protected void printNetworkUsageDetails() {
-        System.out.println("Total network usage = " + NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME);
+        System.out.println("Total network usage = " + NetworkUsageMonitor.getNetworkUsage() / Config.getMaxSimulationTime());
     }
 
     protected FogDevice getCloud() {
@@ -298,7 +307,7 @@ public class MicroservicesController extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToStartedTupleCount().keySet()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -310,6 +319,9 @@ public class MicroservicesController extends SimEntity {
 			}
 			System.out.println(getStringForLoopId(loopId) + " ---> "+(average/count));*/
             System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
+            LatencyHistogram delays = TimeKeeper.getInstance().getLoopIdToDelayHistogram().get(loopId);
+            if (delays != null)
+                System.out.println(getStringForLoopId(loopId) + " percentiles ---> " + delays.getPercentileSummary());
         }
         System.out.println("=========================================");
         System.out.println("TUPLE CPU EXECUTION DELAY");
@@ -317,6 +329,9 @@ public class MicroservicesController extends SimEntity {
 
         for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
             System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+            LatencyHistogram cpuTimes = TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType);
+            if (cpuTimes != null)
+                System.out.println(tupleType + " percentiles ---> " + cpuTimes.getPercentileSummary());
         }
 
         System.out.println("=========================================");
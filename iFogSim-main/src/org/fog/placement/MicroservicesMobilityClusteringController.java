@@ -3,6 +3,8 @@ package org.fog.placement;
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
@@ -28,6 +30,9 @@ import java.util.stream.Collectors;
  */
 public class MicroservicesMobilityClusteringController extends MicroservicesController {
 
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
     private LocationHandler locator;
     private Map<Integer, Integer> parentReference;
 
@@ -101,7 +106,11 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                 printCostDetails();
                 printNetworkUsageDetails();
                 printMigrationDelayDetails();
-                System.exit(0);
+                // other simulations may be running in this JVM
+                if (SimulationContext.current().isDefault())
+                    System.exit(0);
+                else
+                    CloudSim.abruptallyTerminate();
                 break;
             default:
                 super.processEvent(ev);
@@ -158,7 +167,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
             double latency = fogDevice.getUplinkLatency();
             parent.getChildToLatencyMap().put(fogDevice.getId(), latency);
             parent.getChildrenIds().add(fogDevice.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + parent.getName());
+            TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), parent.getName());
         }
     }
 
@@ -168,7 +177,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
         FogDevice fogDevice = (FogDevice) ev.getData();
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
-        System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
+        TraceSink.printLine("%s Starting Mobility Management for %s", CloudSim.clock(), fogDevice.getName());
         parentReference.put(fogDevice.getId(), newParent.getId());
         Map<String, Integer> migratingModules = new HashMap<>(); // migrating module _> it's device (can be preParent or  device the same cluster
         setNewOrchestratorNode(fogDevice,newParent);
@@ -184,7 +193,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 
             fogDevice.setParentId(newParent.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
+            TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), newParent.getName());
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
@@ -204,15 +213,20 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                     JSONObject jsonSend = new JSONObject();
                     jsonSend.put("module", applications.get(applicationName).getModuleByName(moduleName));
                     jsonSend.put("delay", upDelay);
+                    // the module goes up to the common ancestor and down to the new parent
+                    jsonSend.put("source", migratingModules.get(moduleName));
+                    jsonSend.put("destination", commonAncestor);
 
                     JSONObject jsonReceive = new JSONObject();
                     jsonReceive.put("module", new AppModule(applications.get(applicationName).getModuleByName(moduleName)));
                     jsonReceive.put("delay", downDelay);
+                    jsonReceive.put("source", commonAncestor);
+                    jsonReceive.put("destination", newParent.getId());
                     jsonReceive.put("application", applications.get(applicationName));
 
                     send(migratingModules.get(moduleName), upDelay, FogEvents.MODULE_SEND, jsonSend);
                     send(newParent.getId(), downDelay, FogEvents.MODULE_RECEIVE, jsonReceive);
-                    System.out.println("Migrating " + moduleName + " from " + prevParent.getName() + " to " + newParent.getName());
+                    TraceSink.printLine("Migrating %s from %s to %s", moduleName, prevParent.getName(), newParent.getName());
                 }
 
                 serviceDiscoveryUpdate(fogDevice, migratingModules, applicationName, newParent.getId(), upDelays, downDelays);
@@ -240,7 +254,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                     ((MicroserviceFogDevice)getFogDeviceById(currentFon)).removeMonitoredDevice(fogDevice);
                     ((MicroserviceFogDevice) fogDevice).setFonID(parentId);
                     ((MicroserviceFogDevice)getFogDeviceById(parentId)).addMonitoredDevice(fogDevice);
-                    System.out.println("Orchestrator Node for device : " + fogDevice.getId() + " updated to " + parentId);
+                    TraceSink.printLine("Orchestrator Node for device : %d updated to %d", fogDevice.getId(), parentId);
                 }
                 break;
             }
@@ -416,11 +430,11 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 
     public void clusteringSubmit(List Levels) {
-        System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
+        TraceSink.printLine("%s Start sending Clustering Request to Fog Devices in level: %s", CloudSim.clock(), Levels);
         for (int i = 0; i < Levels.size(); i++) {
             int clusterLevel = (int) Levels.get(i);
             for (FogDevice fogDevice : fogDevices) {
-                System.out.println(CloudSim.clock() + " fog Device: " + fogDevice.getName() + " with id: " + fogDevice.getId() + " is at level: " + fogDevice.getLevel());
+                TraceSink.printLine("%s fog Device: %s with id: %d is at level: %d", CloudSim.clock(), fogDevice.getName(), fogDevice.getId(), fogDevice.getLevel());
                 if ((int) fogDevice.getLevel() == clusterLevel) {
                     JSONObject jsonMessage = new JSONObject();
                     jsonMessage.put("locationsInfo", getLocator());
@@ -10,6 +10,8 @@ import java.util.stream.Collectors;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppEdge;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
@@ -20,6 +22,7 @@ import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
+import org.fog.utils.LatencyHistogram;
 import org.fog.utils.MigrationDelayMonitor;
 import org.fog.utils.NetworkUsageMonitor;
 import org.fog.utils.TimeKeeper;
@@ -27,6 +30,9 @@ import org.json.simple.JSONObject;
 
 
 public class MobilityController extends SimEntity{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	public static boolean ONLY_CLOUD = false;
 		
@@ -103,7 +109,7 @@ public class MobilityController extends SimEntity{
 			double latency = fogDevice.getUplinkLatency();
 			parent.getChildToLatencyMap().put(fogDevice.getId(), latency);
 			parent.getChildrenIds().add(fogDevice.getId());
-			System.out.println("Child "+fogDevice.getName()+"\t----->\tParent "+parent.getName());
+			TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), parent.getName());
 		}
 	}
 	
@@ -118,7 +124,7 @@ public class MobilityController extends SimEntity{
 
 		send(getId(), Config.RESOURCE_MANAGE_INTERVAL, FogEvents.CONTROLLER_RESOURCE_MANAGE);
 		
-		send(getId(), Config.MAX_SIMULATION_TIME, FogEvents.STOP_SIMULATION);
+		send(getId(), Config.getMaxSimulationTime(), FogEvents.STOP_SIMULATION);
 		
 		sendNow(getId(), FogEvents.MOBILITY_SUBMIT);
 		
@@ -152,7 +158,11 @@ public class MobilityController extends SimEntity{
 			printCostDetails();
 			printNetworkUsageDetails();
 			printMigrationDelayDetails();
-			System.exit(0);
+			// other simulations may be running in this JVM
+			if(SimulationContext.current().isDefault())
+				System.exit(0);
+			else
+				CloudSim.abruptallyTerminate();
 			break;
 			
 		}
@@ -165,9 +175,9 @@ public class MobilityController extends SimEntity{
 
 	/*private void printFogDeviceChildren(int deviceID) {
 		// TODO Auto-generated method stub
-		System.out.println("Childs of "+getFogDeviceById(deviceID).getName());
+		TraceSink.printLine("Childs of %s", getFogDeviceById(deviceID).getName());
 		for(Integer childId:getFogDeviceById(deviceID).getChildrenIds())
-			System.out.println(getFogDeviceById(childId).getName()+"("+childId+")");
+			TraceSink.printLine("%s(%d)", getFogDeviceById(childId).getName(), childId);
 		
 	}*/
 
@@ -177,7 +187,7 @@ public class MobilityController extends SimEntity{
 		FogDevice fogDevice = (FogDevice) ev.getData();
 		FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
 		FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(),CloudSim.clock()));
-		System.out.println(CloudSim.clock()+" Starting Mobility Management for "+fogDevice.getName());
+		TraceSink.printLine("%s Starting Mobility Management for %s", CloudSim.clock(), fogDevice.getName());
 		parentReference.put(fogDevice.getId(),newParent.getId());
 		List<String>migratingModules = new ArrayList<String>();
 		if(prevParent.getId()!=newParent.getId()) {
@@ -191,7 +201,7 @@ public class MobilityController extends SimEntity{
 			
 			
 			fogDevice.setParentId(newParent.getId());
-			System.out.println("Child "+fogDevice.getName()+"\t----->\tParent "+newParent.getName());
+			TraceSink.printLine("Child %s\t----->\tParent %s", fogDevice.getName(), newParent.getName());
 			newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
 			newParent.addChild(fogDevice.getId());
 			prevParent.removeChild(fogDevice.getId());
@@ -205,15 +215,20 @@ public class MobilityController extends SimEntity{
 					JSONObject jsonSend = new JSONObject();
 					jsonSend.put("module", getApplications().get(applicationName).getModuleByName(moduleName));
 					jsonSend.put("delay", upDelay);
+					// the module goes up to the common ancestor and down to the new parent
+					jsonSend.put("source", prevParent.getId());
+					jsonSend.put("destination", commonAncestor);
 					
 					JSONObject jsonReceive = new JSONObject();
 					jsonReceive.put("module", getApplications().get(applicationName).getModuleByName(moduleName));
 					jsonReceive.put("delay", downDelay);
+					jsonReceive.put("source", commonAncestor);
+					jsonReceive.put("destination", newParent.getId());
 					jsonReceive.put("application", getApplications().get(applicationName));
 					
 					send(prevParent.getId(),upDelay, FogEvents.MODULE_SEND, jsonSend);
 					send(newParent.getId(),downDelay, FogEvents.MODULE_RECEIVE, jsonReceive);
-					System.out.println("Migrating "+moduleName+" from "+prevParent.getName()+" to "+newParent.getName());
+					TraceSink.printLine("Migrating %s from %s to %s", moduleName, prevParent.getName(), newParent.getName());
 				}
 			}
 			
@@ -276,7 +291,7 @@ public class MobilityController extends SimEntity{
 	}
 
 	private void printNetworkUsageDetails() {
-		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.MAX_SIMULATION_TIME);		
+		System.out.println("Total network usage = "+NetworkUsageMonitor.getNetworkUsage()/Config.getMaxSimulationTime());		
 	}
 
 	private FogDevice getCloud(){
@@ -335,6 +350,9 @@ public class MobilityController extends SimEntity{
 		
 		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()){
 			System.out.println(tupleType + " ---> "+TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
+			LatencyHistogram cpuTimes = TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType);
+			if(cpuTimes != null)
+				System.out.println(tupleType + " percentiles ---> " + cpuTimes.getPercentileSummary());
 		}
 		
 		System.out.println("=========================================");
@@ -349,6 +367,7 @@ public class MobilityController extends SimEntity{
 	
 	@Override
 	public void shutdownEntity() {	
+		TimeKeeper.getInstance().close();
 	}
 	
 	public void submitApplication(Application application, int delay, ModulePlacement modulePlacement){
@@ -386,7 +405,7 @@ public class MobilityController extends SimEntity{
 	}
 	
 	private void processAppSubmit(Application application){
-		System.out.println(CloudSim.clock()+" Submitted application "+ application.getAppId());
+		TraceSink.printLine("%s Submitted application %s", CloudSim.clock(), application.getAppId());
 		FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
 		getApplications().put(application.getAppId(), application);
 		
@@ -1,15 +1,20 @@
 package org.fog.placement;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.TraceSink;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
 import org.fog.entities.FogDevice;
 
-public abstract class ModulePlacement {
+public abstract class ModulePlacement implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 
 	public static int ONLY_CLOUD = 1;
@@ -52,7 +57,7 @@ public abstract class ModulePlacement {
 			module = _module;
 
 		if(canBeCreated(device, module)){
-			System.out.println("Creating "+module.getName()+" on device "+device.getName());
+			TraceSink.printLine("Creating %s on device %s", module.getName(), device.getName());
 
 			if(!getDeviceToModuleMap().containsKey(device.getId()))
 				getDeviceToModuleMap().put(device.getId(), new ArrayList<AppModule>());
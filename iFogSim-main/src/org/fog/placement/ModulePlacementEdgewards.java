@@ -18,6 +18,9 @@ import org.fog.entities.Tuple;
 import org.fog.utils.Logger;
 
 public class ModulePlacementEdgewards extends ModulePlacement{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	protected ModuleMapping moduleMapping;
 	protected List<Sensor> sensors;
@@ -203,7 +206,7 @@ public class ModulePlacementEdgewards extends ModulePlacement{
 							}
 						}
 						if(totalCpuLoad + getCurrentCpuLoad().get(deviceId) > device.getHost().getTotalMips()){
-							Logger.debug("ModulePlacementEdgeward", "Need to shift module "+moduleName+" upstream from device " + device.getName());
+							Logger.debug("ModulePlacementEdgeward", "Need to shift module %s upstream from device %s", moduleName, device.getName());
 							List<String> _placedOperators = shiftModuleNorth(moduleName, totalCpuLoad, deviceId, modulesToPlace);
 							for(String placedOperator : _placedOperators){
 								if(!placedModules.contains(placedOperator))
@@ -213,7 +216,7 @@ public class ModulePlacementEdgewards extends ModulePlacement{
 							placedModules.add(moduleName);
 							getCurrentCpuLoad().put(deviceId, getCurrentCpuLoad().get(deviceId)+totalCpuLoad);
 							getCurrentModuleInstanceNum().get(deviceId).put(moduleName, getCurrentModuleInstanceNum().get(deviceId).get(moduleName)+1);
-							Logger.debug("ModulePlacementEdgeward", "AppModule "+moduleName+" can be created on device "+device.getName());
+							Logger.debug("ModulePlacementEdgeward", "AppModule %s can be created on device %s", moduleName, device.getName());
 						}
 					}
 				}else{
@@ -226,10 +229,10 @@ public class ModulePlacementEdgewards extends ModulePlacement{
 					}
 						
 					if(totalCpuLoad + getCurrentCpuLoad().get(deviceId) > device.getHost().getTotalMips()){
-						Logger.debug("ModulePlacementEdgeward", "Placement of operator "+moduleName+ "NOT POSSIBLE on device "+device.getName());
+						Logger.debug("ModulePlacementEdgeward", "Placement of operator %sNOT POSSIBLE on device %s", moduleName, device.getName());
 					}
 					else{
-						Logger.debug("ModulePlacementEdgeward", "Placement of operator "+moduleName+ " on device "+device.getName() + " successful.");
+						Logger.debug("ModulePlacementEdgeward", "Placement of operator %s on device %s successful.", moduleName, device.getName());
 						getCurrentCpuLoad().put(deviceId, totalCpuLoad + getCurrentCpuLoad().get(deviceId));
 						System.out.println("Placement of operator "+moduleName+ " on device "+device.getName() + " successful.");
 
@@ -289,7 +292,7 @@ public class ModulePlacementEdgewards extends ModulePlacement{
 		while(true){ // Loop iterates over all devices in path upstream from current device. Tries to place modules (to be shifted northwards) on each of them.
 			if(id==-1){
 				// Loop has reached the apex fog device in hierarchy, and still could not place modules. 
-				Logger.debug("ModulePlacementEdgeward", "Could not place modules "+modulesToShift+" northwards.");
+				Logger.debug("ModulePlacementEdgeward", "Could not place modules %s northwards.", modulesToShift);
 				break;
 			}
 			FogDevice fogDevice = getFogDeviceById(id);
@@ -412,10 +415,11 @@ public class ModulePlacementEdgewards extends ModulePlacement{
 	private Map<String, Integer> getAssociatedSensors(FogDevice device) {
 		Map<String, Integer> endpoints = new HashMap<String, Integer>();
 		for(Sensor sensor : getSensors()){
-			if(sensor.getGatewayDeviceId()==device.getId()){
+			int count = sensor.getSensorCount(device.getId());
+			if(count > 0){
 				if(!endpoints.containsKey(sensor.getTupleType()))
 					endpoints.put(sensor.getTupleType(), 0);
-				endpoints.put(sensor.getTupleType(), endpoints.get(sensor.getTupleType())+1);
+				endpoints.put(sensor.getTupleType(), endpoints.get(sensor.getTupleType())+count);
 			}
 		}
 		return endpoints;
@@ -10,6 +10,9 @@ import org.fog.entities.FogDevice;
 
 public class ModulePlacementMapping extends ModulePlacement{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	private ModuleMapping moduleMapping;
 	
 	@Override
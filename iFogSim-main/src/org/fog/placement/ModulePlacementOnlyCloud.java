@@ -14,6 +14,9 @@ import org.fog.entities.Sensor;
 import org.fog.entities.Tuple;
 
 public class ModulePlacementOnlyCloud extends ModulePlacement{
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 	
 	private List<Sensor> sensors;
 	private List<Actuator> actuators;
@@ -40,7 +43,7 @@ public class ModulePlacementOnlyCloud extends ModulePlacement{
 			String sensorType = sensor.getSensorName();
 			if(!getModuleInstanceCountMap().get(cloud.getId()).containsKey(sensorType))
 				getModuleInstanceCountMap().get(cloud.getId()).put(sensorType, 0);
-			getModuleInstanceCountMap().get(cloud.getId()).put(sensorType, getModuleInstanceCountMap().get(cloud.getId()).get(sensorType)+1);
+			getModuleInstanceCountMap().get(cloud.getId()).put(sensorType, getModuleInstanceCountMap().get(cloud.getId()).get(sensorType)+sensor.getSensorCount());
 		}
 		
 		for(Actuator actuator : getActuators()){
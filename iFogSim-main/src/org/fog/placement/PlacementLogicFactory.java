@@ -1,11 +1,16 @@
 package org.fog.placement;
 
+import java.io.Serializable;
+
 import org.fog.utils.Logger;
 
 /**
  * Created by Samodha Pallewatta.
  */
-public class PlacementLogicFactory {
+public class PlacementLogicFactory implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
 
     public static final int EDGEWART_MICROSERCVICES_PLACEMENT = 1;
     public static final int CLUSTERED_MICROSERVICES_PLACEMENT = 2;
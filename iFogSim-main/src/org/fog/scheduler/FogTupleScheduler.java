@@ -0,0 +1,628 @@
+package org.fog.scheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletScheduler;
+import org.cloudbus.cloudsim.Consts;
+import org.cloudbus.cloudsim.ResCloudlet;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * A time-shared scheduler of the tuples of a module, which processes the tuples exactly as
+ * {@link TupleScheduler} does, but without scanning all the running tuples on every update.
+ * <p>
+ * All the running tuples that use the same number of PEs progress by the same amount on each update,
+ * so the scheduler keeps, for each number of PEs, the total progress of a tuple running since the
+ * group was created, and for each tuple the progress of its group when it started. A tuple is finished
+ * when the progress of its group reaches a threshold fixed when it starts, and the tuples of a group
+ * are kept in a min-heap of their thresholds, so an update only looks at the tuples that finish.
+ * The running tuples are kept in slots of primitive arrays, linked in the order they started, and the
+ * finished tuples are handed to the device through a circular queue.
+ */
+public class FogTupleScheduler extends CloudletScheduler {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The running tuples, by slot. */
+	private ResCloudlet[] cloudlets = new ResCloudlet[4];
+
+	/** The group of each running tuple, by slot. */
+	private int[] group = new int[4];
+
+	/** The progress of the group of each running tuple when it started, by slot. */
+	private long[] start = new long[4];
+
+	/** The progress of each running tuple before it started, by slot. */
+	private long[] base = new long[4];
+
+	/** The progress of the group at which each running tuple is finished, by slot. */
+	private long[] threshold = new long[4];
+
+	/** The order in which the running tuples started, by slot. */
+	private long[] sequence = new long[4];
+
+	/** The position of each running tuple in the heap of its group, by slot. */
+	private int[] heapPosition = new int[4];
+
+	/** The next running tuple, or the next free slot, by slot. */
+	private int[] next = new int[4];
+
+	/** The previous running tuple, by slot. */
+	private int[] previous = new int[4];
+
+	/** The first and last running tuples, and the first free slot. */
+	private int head = -1, tail = -1, free = -1;
+
+	/** The number of slots in use. */
+	private int slotCount;
+
+	/** The number of running tuples. */
+	private int running;
+
+	/** The number of PEs used by the running tuples. */
+	private int pesInUse;
+
+	/** The order of the next tuple to start. */
+	private long nextSequence;
+
+	/** The number of PEs of the tuples of each group. */
+	private int[] groupPes = new int[1];
+
+	/** The progress of each group, in millionths of MI. */
+	private long[] groupProgress = new long[1];
+
+	/** The heap of the slots of the running tuples of each group, by threshold. */
+	private int[][] heaps = new int[1][4];
+
+	/** The number of running tuples of each group. */
+	private int[] heapSizes = new int[1];
+
+	/** The number of groups. */
+	private int groupCount;
+
+	/** The finished tuples, in a circular queue. */
+	private ResCloudlet[] finished = new ResCloudlet[4];
+
+	/** The position of the first finished tuple, and the number of finished tuples. */
+	private int finishedHead, finishedCount;
+
+	/** The paused tuples. */
+	private List<ResCloudlet> pausedList = new ArrayList<ResCloudlet>();
+
+	/** The progress of each paused tuple, in millionths of MI. */
+	private List<Long> pausedProgress = new ArrayList<Long>();
+
+	/** The slots of the tuples finishing in an update, in the order they started. */
+	private int[] finishing = new int[4];
+
+	/** The number of CPUs of the current MIPS share. */
+	protected int currentCPUs;
+
+	public FogTupleScheduler(double mips, int numberOfPes) {
+		super();
+	}
+
+	@Override
+	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+		setCurrentMipsShare(mipsShare);
+		double timeSpam = currentTime - getPreviousTime();
+
+		if (running == 0) {
+			setPreviousTime(currentTime);
+			return 0.0;
+		}
+
+		double capacity = getCapacity(mipsShare);
+		for (int g = 0; g < groupCount; g++) {
+			if (heapSizes[g] > 0) {
+				groupProgress[g] += (long) (capacity * timeSpam * groupPes[g] * Consts.MILLION);
+			}
+		}
+
+		// the tuples finish in the order they started, as they are in the list of the time-shared scheduler
+		int finishingCount = 0;
+		for (int g = 0; g < groupCount; g++) {
+			while (heapSizes[g] > 0 && threshold[heaps[g][0]] <= groupProgress[g]) {
+				int slot = heaps[g][0];
+				removeFromHeap(slot);
+				if (finishingCount == finishing.length) {
+					finishing = Arrays.copyOf(finishing, 2 * finishingCount);
+				}
+				int i = finishingCount++;
+				for (; i > 0 && sequence[finishing[i - 1]] > sequence[slot]; i--) {
+					finishing[i] = finishing[i - 1];
+				}
+				finishing[i] = slot;
+			}
+		}
+		for (int i = 0; i < finishingCount; i++) {
+			cloudletFinish(removeRunning(finishing[i]));
+		}
+
+		double nextEvent = Double.MAX_VALUE;
+		if (running > 0) {
+			nextEvent = getNextFinishTime(currentTime, getCapacity(mipsShare));
+		}
+
+		setPreviousTime(currentTime);
+		return nextEvent;
+	}
+
+	/**
+	 * Gets the estimated time at which the next running tuple finishes, with the current MIPS share and
+	 * without further updates, in constant time for the usual tuples, which all use one PE.
+	 *
+	 * @return the estimated finish time, or Double.MAX_VALUE if no tuple is running
+	 */
+	public double getNextFinishTime() {
+		if (running == 0) {
+			return Double.MAX_VALUE;
+		}
+		return getNextFinishTime(getPreviousTime(), getCapacity(getCurrentMipsShare()));
+	}
+
+	/**
+	 * Gets the estimated time at which the next running tuple finishes, from the first tuple of the heap
+	 * of each group.
+	 */
+	private double getNextFinishTime(double currentTime, double capacity) {
+		double nextEvent = Double.MAX_VALUE;
+		for (int g = 0; g < groupCount; g++) {
+			if (heapSizes[g] == 0) {
+				continue;
+			}
+			int slot = heaps[g][0];
+			double estimatedFinishTime = currentTime + (getRemainingLength(slot) / (capacity * groupPes[g]));
+			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
+				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+			}
+			if (estimatedFinishTime < nextEvent) {
+				nextEvent = estimatedFinishTime;
+			}
+		}
+		return nextEvent;
+	}
+
+	/**
+	 * Gets the capacity of each PE for the running tuples.
+	 *
+	 * @param mipsShare the MIPS share
+	 * @return the capacity
+	 */
+	protected double getCapacity(List<Double> mipsShare) {
+		double capacity = 0.0;
+		int cpus = 0;
+		for (Double mips : mipsShare) {
+			capacity += mips;
+			if (mips > 0.0) {
+				cpus++;
+			}
+		}
+		currentCPUs = cpus;
+
+		if (pesInUse > currentCPUs) {
+			capacity /= pesInUse;
+		} else {
+			capacity /= currentCPUs;
+		}
+		return capacity;
+	}
+
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		ResCloudlet rcl = new ResCloudlet(cloudlet);
+		long progress = cloudlet.getCloudletFinishedSoFar() * Consts.MILLION;
+		rcl.setCloudletStatus(Cloudlet.INEXEC);
+		for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
+			rcl.setMachineAndPeId(0, i);
+		}
+
+		int slot = addRunning(rcl);
+
+		// use the current capacity to estimate the extra amount of
+		// time to file transferring. It must be added to the cloudlet length
+		double extraSize = getCapacity(getCurrentMipsShare()) * fileTransferTime;
+		long length = (long) (cloudlet.getCloudletLength() + extraSize);
+		cloudlet.setCloudletLength(length);
+		startRunning(slot, progress);
+		return cloudlet.getCloudletLength() / getCapacity(getCurrentMipsShare());
+	}
+
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet) {
+		return cloudletSubmit(cloudlet, 0.0);
+	}
+
+	@Override
+	public Cloudlet cloudletCancel(int cloudletId) {
+		for (int i = 0; i < finishedCount; i++) {
+			ResCloudlet rcl = finished[(finishedHead + i) % finished.length];
+			if (rcl.getCloudletId() == cloudletId) {
+				removeFinished(i);
+				return rcl.getCloudlet();
+			}
+		}
+
+		int slot = findRunning(cloudletId);
+		if (slot >= 0) {
+			removeFromHeap(slot);
+			ResCloudlet rcl = removeRunning(slot);
+			if (rcl.getRemainingCloudletLength() == 0) {
+				cloudletFinish(rcl);
+			} else {
+				rcl.setCloudletStatus(Cloudlet.CANCELED);
+			}
+			return rcl.getCloudlet();
+		}
+
+		for (int i = 0; i < pausedList.size(); i++) {
+			if (pausedList.get(i).getCloudletId() == cloudletId) {
+				pausedList.get(i).setCloudletStatus(Cloudlet.CANCELED);
+				pausedProgress.remove(i);
+				return pausedList.remove(i).getCloudlet();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean cloudletPause(int cloudletId) {
+		int slot = findRunning(cloudletId);
+		if (slot < 0) {
+			return false;
+		}
+		long progress = getProgress(slot);
+		removeFromHeap(slot);
+		ResCloudlet rcl = removeRunning(slot);
+		if (rcl.getRemainingCloudletLength() == 0) {
+			cloudletFinish(rcl);
+		} else {
+			rcl.setCloudletStatus(Cloudlet.PAUSED);
+			pausedList.add(rcl);
+			pausedProgress.add(progress);
+		}
+		return true;
+	}
+
+	@Override
+	public double cloudletResume(int cloudletId) {
+		for (int i = 0; i < pausedList.size(); i++) {
+			if (pausedList.get(i).getCloudletId() == cloudletId) {
+				ResCloudlet rgl = pausedList.remove(i);
+				long progress = pausedProgress.remove(i);
+				rgl.setCloudletStatus(Cloudlet.INEXEC);
+				startRunning(addRunning(rgl), progress);
+
+				double remainingLength = rgl.getRemainingCloudletLength();
+				return CloudSim.clock()
+						+ (remainingLength / (getCapacity(getCurrentMipsShare()) * rgl.getNumberOfPes()));
+			}
+		}
+		return 0.0;
+	}
+
+	@Override
+	public void cloudletFinish(ResCloudlet rcl) {
+		rcl.setCloudletStatus(Cloudlet.SUCCESS);
+		rcl.finalizeCloudlet();
+		if (finishedCount == finished.length) {
+			ResCloudlet[] queue = new ResCloudlet[2 * finished.length];
+			for (int i = 0; i < finishedCount; i++) {
+				queue[i] = finished[(finishedHead + i) % finished.length];
+			}
+			finished = queue;
+			finishedHead = 0;
+		}
+		finished[(finishedHead + finishedCount++) % finished.length] = rcl;
+	}
+
+	@Override
+	public int getCloudletStatus(int cloudletId) {
+		int slot = findRunning(cloudletId);
+		if (slot >= 0) {
+			return cloudlets[slot].getCloudletStatus();
+		}
+		for (ResCloudlet rcl : pausedList) {
+			if (rcl.getCloudletId() == cloudletId) {
+				return rcl.getCloudletStatus();
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean isFinishedCloudlets() {
+		return finishedCount > 0;
+	}
+
+	@Override
+	public Cloudlet getNextFinishedCloudlet() {
+		if (finishedCount == 0) {
+			return null;
+		}
+		ResCloudlet rcl = finished[finishedHead];
+		finished[finishedHead] = null;
+		finishedHead = (finishedHead + 1) % finished.length;
+		finishedCount--;
+		return rcl.getCloudlet();
+	}
+
+	@Override
+	public int runningCloudlets() {
+		return running;
+	}
+
+	@Override
+	public Cloudlet migrateCloudlet() {
+		int slot = head;
+		removeFromHeap(slot);
+		ResCloudlet rgl = removeRunning(slot);
+		rgl.finalizeCloudlet();
+		return rgl.getCloudlet();
+	}
+
+	@Override
+	public double getTotalUtilizationOfCpu(double time) {
+		double totalUtilization = 0;
+		for (int slot = head; slot >= 0; slot = next[slot]) {
+			totalUtilization += cloudlets[slot].getCloudlet().getUtilizationOfCpu(time);
+		}
+		return totalUtilization;
+	}
+
+	@Override
+	public List<Double> getCurrentRequestedMips() {
+		List<Double> mipsShare = new ArrayList<Double>();
+		return mipsShare;
+	}
+
+	@Override
+	public double getTotalCurrentAvailableMipsForCloudlet(ResCloudlet rcl, List<Double> mipsShare) {
+		return getCapacity(getCurrentMipsShare());
+	}
+
+	@Override
+	public double getTotalCurrentAllocatedMipsForCloudlet(ResCloudlet rcl, double time) {
+		return 0.0;
+	}
+
+	@Override
+	public double getTotalCurrentRequestedMipsForCloudlet(ResCloudlet rcl, double time) {
+		return 0.0;
+	}
+
+	@Override
+	public double getCurrentRequestedUtilizationOfRam() {
+		double ram = 0;
+		for (int slot = head; slot >= 0; slot = next[slot]) {
+			ram += cloudlets[slot].getCloudlet().getUtilizationOfRam(CloudSim.clock());
+		}
+		return ram;
+	}
+
+	@Override
+	public double getCurrentRequestedUtilizationOfBw() {
+		double bw = 0;
+		for (int slot = head; slot >= 0; slot = next[slot]) {
+			bw += cloudlets[slot].getCloudlet().getUtilizationOfBw(CloudSim.clock());
+		}
+		return bw;
+	}
+
+	/**
+	 * Adds a tuple at the end of the running tuples, before its length is final.
+	 */
+	private int addRunning(ResCloudlet rcl) {
+		int slot;
+		if (free >= 0) {
+			slot = free;
+			free = next[slot];
+		} else {
+			if (slotCount == cloudlets.length) {
+				int capacity = 2 * slotCount;
+				cloudlets = Arrays.copyOf(cloudlets, capacity);
+				group = Arrays.copyOf(group, capacity);
+				start = Arrays.copyOf(start, capacity);
+				base = Arrays.copyOf(base, capacity);
+				threshold = Arrays.copyOf(threshold, capacity);
+				sequence = Arrays.copyOf(sequence, capacity);
+				heapPosition = Arrays.copyOf(heapPosition, capacity);
+				next = Arrays.copyOf(next, capacity);
+				previous = Arrays.copyOf(previous, capacity);
+			}
+			slot = slotCount++;
+		}
+		cloudlets[slot] = rcl;
+		sequence[slot] = nextSequence++;
+		next[slot] = -1;
+		previous[slot] = tail;
+		if (tail >= 0) {
+			next[tail] = slot;
+		} else {
+			head = slot;
+		}
+		tail = slot;
+		running++;
+		pesInUse += rcl.getNumberOfPes();
+		return slot;
+	}
+
+	/**
+	 * Puts a running tuple in the heap of its group, once its length is final.
+	 */
+	private void startRunning(int slot, long progress) {
+		ResCloudlet rcl = cloudlets[slot];
+		int g = getGroup(rcl.getNumberOfPes());
+		group[slot] = g;
+		start[slot] = groupProgress[g];
+		base[slot] = progress;
+		// the tuple is finished once less than one MI remains
+		threshold[slot] = start[slot] - progress + rcl.getCloudletTotalLength() * Consts.MILLION - Consts.MILLION + 1;
+		int[] heap = heaps[g];
+		if (heapSizes[g] == heap.length) {
+			heap = heaps[g] = Arrays.copyOf(heap, 2 * heap.length);
+		}
+		heap[heapSizes[g]] = slot;
+		heapPosition[slot] = heapSizes[g]++;
+		siftUp(slot);
+	}
+
+	/**
+	 * Removes a tuple from the running tuples, once it is out of the heap of its group, and records its
+	 * progress in it.
+	 */
+	private ResCloudlet removeRunning(int slot) {
+		ResCloudlet rcl = cloudlets[slot];
+		rcl.updateCloudletFinishedSoFar(groupProgress[group[slot]] - start[slot]);
+		if (previous[slot] >= 0) {
+			next[previous[slot]] = next[slot];
+		} else {
+			head = next[slot];
+		}
+		if (next[slot] >= 0) {
+			previous[next[slot]] = previous[slot];
+		} else {
+			tail = previous[slot];
+		}
+		cloudlets[slot] = null;
+		next[slot] = free;
+		free = slot;
+		running--;
+		pesInUse -= rcl.getNumberOfPes();
+		return rcl;
+	}
+
+	/**
+	 * Finds the slot of a running tuple.
+	 */
+	private int findRunning(int cloudletId) {
+		for (int slot = head; slot >= 0; slot = next[slot]) {
+			if (cloudlets[slot].getCloudletId() == cloudletId) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the progress of a running tuple, in millionths of MI.
+	 */
+	private long getProgress(int slot) {
+		return base[slot] + groupProgress[group[slot]] - start[slot];
+	}
+
+	/**
+	 * Gets the remaining length of a running tuple, in MI, as {@link ResCloudlet#getRemainingCloudletLength()}.
+	 */
+	private long getRemainingLength(int slot) {
+		long length = cloudlets[slot].getCloudletTotalLength() * Consts.MILLION - getProgress(slot);
+		if (length < 0) {
+			return 0;
+		}
+		return length / Consts.MILLION;
+	}
+
+	/**
+	 * Gets the group of the tuples that use a number of PEs, creating it if needed.
+	 */
+	private int getGroup(int pes) {
+		for (int g = 0; g < groupCount; g++) {
+			if (groupPes[g] == pes) {
+				return g;
+			}
+		}
+		if (groupCount == groupPes.length) {
+			groupPes = Arrays.copyOf(groupPes, 2 * groupCount);
+			groupProgress = Arrays.copyOf(groupProgress, 2 * groupCount);
+			heaps = Arrays.copyOf(heaps, 2 * groupCount);
+			heapSizes = Arrays.copyOf(heapSizes, 2 * groupCount);
+		}
+		groupPes[groupCount] = pes;
+		groupProgress[groupCount] = 0;
+		if (heaps[groupCount] == null) {
+			heaps[groupCount] = new int[4];
+		}
+		heapSizes[groupCount] = 0;
+		return groupCount++;
+	}
+
+	/**
+	 * Removes a finished tuple from the queue of the finished tuples.
+	 */
+	private void removeFinished(int index) {
+		for (int i = index; i < finishedCount - 1; i++) {
+			finished[(finishedHead + i) % finished.length] = finished[(finishedHead + i + 1) % finished.length];
+		}
+		finished[(finishedHead + finishedCount - 1) % finished.length] = null;
+		finishedCount--;
+	}
+
+	/**
+	 * Removes a running tuple from the heap of its group.
+	 */
+	private void removeFromHeap(int slot) {
+		int g = group[slot];
+		int[] heap = heaps[g];
+		int position = heapPosition[slot];
+		int last = heap[--heapSizes[g]];
+		if (last != slot) {
+			heap[position] = last;
+			heapPosition[last] = position;
+			siftUp(last);
+			siftDown(last);
+		}
+	}
+
+	private void siftUp(int slot) {
+		int[] heap = heaps[group[slot]];
+		int position = heapPosition[slot];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (!isBefore(slot, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			heapPosition[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = slot;
+		heapPosition[slot] = position;
+	}
+
+	private void siftDown(int slot) {
+		int g = group[slot];
+		int[] heap = heaps[g];
+		int size = heapSizes[g];
+		int position = heapPosition[slot];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], slot)) {
+				break;
+			}
+			heap[position] = heap[child];
+			heapPosition[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = slot;
+		heapPosition[slot] = position;
+	}
+
+	/**
+	 * Checks if a running tuple finishes before another one of the same group.
+	 */
+	private boolean isBefore(int slot, int other) {
+		return threshold[slot] < threshold[other]
+				|| (threshold[slot] == threshold[other] && sequence[slot] < sequence[other]);
+	}
+
+}
@@ -1,16 +1,376 @@
 package org.fog.scheduler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Pe;
-import org.cloudbus.cloudsim.VmSchedulerTimeShared;
-import org.cloudbus.cloudsim.VmSchedulerTimeSharedOverSubscription;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.lists.PeList;
 import org.cloudbus.cloudsim.sdn.overbooking.VmSchedulerTimeSharedOverbookingEnergy;
 
+/**
+ * The scheduler of the hosts of fog devices, on which every module (operator) is either busy, and
+ * requests all the MIPS of the host, or idle, and requests none.
+ * <p>
+ * Besides the usual allocation calls, it keeps the allocation of the operators incrementally: after
+ * {@link #allocateOperators(List, boolean[])} has allocated the MIPS of all the operators, each call
+ * to {@link #setOperatorBusy(Vm, boolean)} only updates the shares that change, which are the share
+ * of that operator and, when the host is oversubscribed, the shares of the busy operators. The
+ * resulting allocation is the one of deallocating all the operators and allocating each of them in
+ * turn. Any other allocation call (e.g. the host updating its VMs, or a VM being created or destroyed)
+ * ends the incremental allocation until the next call to {@link #allocateOperators(List, boolean[])}.
+ */
 public class StreamOperatorScheduler extends VmSchedulerTimeSharedOverbookingEnergy{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** Whether the incremental allocation is up to date. */
+	private boolean incremental = false;
+
+	/** The slots of the operators, by uid. */
+	private Map<String, Integer> slots = new HashMap<String, Integer>();
+
+	/** The operators, by slot. */
+	private Vm[] operators = new Vm[0];
+
+	/** The number of times each operator is in the VM list of the host, by slot. */
+	private int[] occurrences = new int[0];
+
+	/** The position of each busy operator in {@link #busy}, by slot, or -1 if it is idle. */
+	private int[] busyPosition = new int[0];
+
+	/** The slots of the busy operators. */
+	private int[] busy = new int[0];
+
+	/** The number of busy operators. */
+	private int busyCount;
+
+	/** The number of times the busy operators are in the VM list of the host. */
+	private int busyOccurrences;
+
+	/** The share of the busy operators. */
+	private List<Double> busyShare;
+
+	/** The share of the idle operators, and their request. */
+	private final List<Double> idleShare = share(0);
+
+	/** The request of the busy operators, all the MIPS of the host. */
+	private List<Double> busyRequest;
+
+	/** The slot of each VM of the list given to {@link #allocateOperators(List, boolean[])}. */
+	private int[] slotOf = new int[0];
+
+	/** The PE list of an operator allocated MIPS on a single PE host. */
+	private List<Pe> allocatedPe;
+
+	/** The last share of oversubscribed busy operators, kept for the next allocation. */
+	private List<Double> oversubscribedShare;
+
 	public StreamOperatorScheduler(List<? extends Pe> pelist) {
 		super(pelist);
+		// the fog devices only read the energy consumption, and the history grows with every tuple
+		setUtilizationHistoryKept(false);
+	}
+
+	@Override
+	public boolean allocatePesForVm(Vm vm, List<Double> mipsShareRequested) {
+		incremental = false;
+		return super.allocatePesForVm(vm, mipsShareRequested);
+	}
+
+	@Override
+	public void deallocatePesForVm(Vm vm) {
+		incremental = false;
+		super.deallocatePesForVm(vm);
+	}
+
+	@Override
+	public void deallocatePesForAllVms() {
+		incremental = false;
+		super.deallocatePesForAllVms();
+	}
+
+	/**
+	 * Checks if the operators can be allocated incrementally: the allocation has not been changed by
+	 * other calls since the last call to {@link #allocateOperators(List, boolean[])}, and no VM is
+	 * migrating.
+	 *
+	 * @return true, if {@link #setOperatorBusy(Vm, boolean)} can be called
+	 */
+	public boolean isIncremental() {
+		return incremental && getVmsMigratingIn().isEmpty() && getVmsMigratingOut().isEmpty();
+	}
+
+	/**
+	 * Allocates the MIPS of all the operators of the host, all of them for the busy ones and none for
+	 * the idle ones, as if they were all deallocated and then allocated in turn. It starts the
+	 * incremental allocation, unless a VM is migrating.
+	 *
+	 * @param vms the VM list of the host
+	 * @param busyFlags whether each VM of the list is busy, by index; the array may be longer
+	 */
+	public void allocateOperators(List<? extends Vm> vms, boolean[] busyFlags) {
+		for (Vm vm : vms) {
+			if (vm.isInMigration()) {
+				reallocate(vms, busyFlags);
+				return;
+			}
+		}
+		if (!getVmsMigratingIn().isEmpty() || !getVmsMigratingOut().isEmpty()) {
+			reallocate(vms, busyFlags);
+			return;
+		}
+		slots.clear();
+		if (operators.length < vms.size()) {
+			operators = new Vm[vms.size()];
+			occurrences = new int[vms.size()];
+			busyPosition = new int[vms.size()];
+			busy = new int[vms.size()];
+			slotOf = new int[vms.size()];
+		}
+		Arrays.fill(operators, null);
+		Arrays.fill(occurrences, 0);
+		busyCount = 0;
+		busyOccurrences = 0;
+		int count = 0;
+		for (int i = 0; i < vms.size(); i++) {
+			Vm vm = vms.get(i);
+			Integer slot = slots.get(vm.getUid());
+			if (slot == null) {
+				slot = count++;
+				slots.put(vm.getUid(), slot);
+				operators[slot] = vm;
+				busyPosition[slot] = -1;
+			}
+			occurrences[slot]++;
+			slotOf[i] = slot;
+		}
+		getMipsMapRequested().clear();
+		getMipsMap().clear();
+		for (int i = 0; i < vms.size(); i++) {
+			// like the sequential allocation, the last request of an operator listed twice wins
+			setBusy(slotOf[i], busyFlags[i]);
+			getMipsMapRequested().put(vms.get(i).getUid(), request(busyFlags[i]));
+		}
+		setPesInUse(vms.size());
+		for (int slot = 0; slot < count; slot++) {
+			if (busyPosition[slot] < 0) {
+				getMipsMap().put(operators[slot].getUid(), idleShare);
+			}
+		}
+		busyShare = null;
+		updateShares(null);
+		updatePeProvisioning();
+		incremental = true;
+	}
+
+	/**
+	 * Sets whether an operator is busy, and updates the shares that change.
+	 *
+	 * @param vm the operator, in the VM list of the host when the allocation was last started
+	 * @param isBusy whether the operator is busy
+	 * @return true if the allocation changed
+	 * @throws IllegalStateException if the operators are not allocated incrementally
+	 * @see #isIncremental()
+	 */
+	public boolean setOperatorBusy(Vm vm, boolean isBusy) {
+		if (!isIncremental()) {
+			throw new IllegalStateException("The operators are not allocated incrementally.");
+		}
+		Integer slot = slots.get(vm.getUid());
+		if (slot == null) {
+			throw new IllegalArgumentException("Unknown operator: " + vm.getUid());
+		}
+		if ((busyPosition[slot] >= 0) == isBusy) {
+			return false;
+		}
+		setBusy(slot, isBusy);
+		getMipsMapRequested().put(vm.getUid(), request(isBusy));
+		if (!isBusy) {
+			getMipsMap().put(vm.getUid(), idleShare);
+			updatePeProvisioning(vm);
+		}
+		updateShares(isBusy ? vm : null);
+		if (getPeList().size() > 1) {
+			updatePeProvisioning();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if an operator is busy in the incremental allocation.
+	 *
+	 * @param vm the operator
+	 * @return true if it is busy
+	 */
+	public boolean isOperatorBusy(Vm vm) {
+		Integer slot = slots.get(vm.getUid());
+		return slot != null && busyPosition[slot] >= 0;
+	}
+
+	/**
+	 * Gets the number of busy operators in the incremental allocation.
+	 *
+	 * @return the number of busy operators
+	 */
+	public int getBusyOperatorCount() {
+		return busyCount;
+	}
+
+	/**
+	 * Gets a busy operator of the incremental allocation.
+	 *
+	 * @param index the index of the operator, between 0 and {@link #getBusyOperatorCount()}
+	 * @return the operator
+	 */
+	public Vm getBusyOperator(int index) {
+		return operators[busy[index]];
+	}
+
+	/**
+	 * Gets the MIPS allocated to the operators of the incremental allocation, counting an operator as
+	 * many times as it is in the VM list of the host.
+	 *
+	 * @return the allocated MIPS
+	 */
+	public double getTotalAllocatedOperatorMips() {
+		double totalMips = 0;
+		for (int i = 0; i < busyOccurrences; i++) {
+			totalMips += busyShare.get(0);
+		}
+		return totalMips;
+	}
+
+	/**
+	 * Moves an operator in or out of the busy operators.
+	 */
+	private void setBusy(int slot, boolean isBusy) {
+		if (isBusy && busyPosition[slot] < 0) {
+			busyPosition[slot] = busyCount;
+			busy[busyCount++] = slot;
+			busyOccurrences += occurrences[slot];
+		} else if (!isBusy && busyPosition[slot] >= 0) {
+			int last = busy[--busyCount];
+			busy[busyPosition[slot]] = last;
+			busyPosition[last] = busyPosition[slot];
+			busyPosition[slot] = -1;
+			busyOccurrences -= occurrences[slot];
+		}
+	}
+
+	/**
+	 * Computes the share of the busy operators and the available MIPS. Sets the share of all the busy
+	 * operators if it changed, or else only the share of the operator that became busy, if any.
+	 */
+	private void updateShares(Vm becameBusy) {
+		double totalMips = PeList.getTotalMips(getPeList());
+		double requested = Math.min(totalMips, getPeCapacity());
+		// the sequential allocation takes the requests in turn until one does not fit
+		double availableMips = totalMips;
+		boolean oversubscribed = false;
+		for (int i = 0; i < busyOccurrences; i++) {
+			if (availableMips >= requested) {
+				availableMips -= requested;
+			} else {
+				oversubscribed = true;
+				break;
+			}
+		}
+		double mips = requested;
+		if (oversubscribed) {
+			double requestedByAll = 0;
+			for (int i = 0; i < busyCount; i++) {
+				requestedByAll += requested;
+			}
+			mips = Math.floor(requested * (totalMips / requestedByAll));
+			availableMips = 0;
+		}
+		if (busyShare == null || busyShare.get(0) != mips) {
+			busyShare = busyShare(mips);
+			for (int i = 0; i < busyCount; i++) {
+				getMipsMap().put(operators[busy[i]].getUid(), busyShare);
+				updatePeProvisioning(operators[busy[i]]);
+			}
+		} else if (becameBusy != null) {
+			getMipsMap().put(becameBusy.getUid(), busyShare);
+			updatePeProvisioning(becameBusy);
+		}
+		if (getAvailableMips() != availableMips) {
+			setAvailableMips(availableMips);
+		}
+	}
+
+	/**
+	 * Updates the allocation of the PE of a single PE host to an operator.
+	 */
+	private void updatePeProvisioning(Vm vm) {
+		if (getPeList().size() != 1) {
+			return;
+		}
+		Pe pe = getPeList().get(0);
+		pe.getPeProvisioner().deallocateMipsForVm(vm);
+		if (allocatedPe == null || allocatedPe.get(0) != pe) {
+			allocatedPe = Collections.singletonList(pe);
+		}
+		List<Pe> pes = Collections.emptyList();
+		List<Double> share = getMipsMap().get(vm.getUid());
+		if (share.get(0) >= 0.1) {
+			// the provisioner keeps the share itself rather than a new list of it
+			pe.getPeProvisioner().allocateMipsForVm(vm, share);
+			pes = allocatedPe;
+		}
+		getPeMap().put(vm.getUid(), pes);
+	}
+
+	/**
+	 * Deallocates all the operators and allocates each of them in turn through the usual calls.
+	 */
+	private void reallocate(List<? extends Vm> vms, boolean[] busyFlags) {
+		deallocatePesForAllVms();
+		for (int i = 0; i < vms.size(); i++) {
+			allocatePesForVm(vms.get(i), request(busyFlags[i]));
+		}
+	}
+
+	/**
+	 * Gets the request of an operator. The schedulers keep the requests without changing them, so
+	 * the operators share the same two lists.
+	 */
+	private List<Double> request(boolean isBusy) {
+		if (!isBusy) {
+			return idleShare;
+		}
+		double totalMips = PeList.getTotalMips(getPeList());
+		if (busyRequest == null || busyRequest.get(0) != totalMips) {
+			busyRequest = share(totalMips);
+		}
+		return busyRequest;
+	}
+
+	/**
+	 * Gets the share of the busy operators: the request of a busy operator unless the host is
+	 * oversubscribed.
+	 */
+	private List<Double> busyShare(double mips) {
+		List<Double> request = request(true);
+		if (request.get(0) == mips) {
+			return request;
+		}
+		if (oversubscribedShare == null || oversubscribedShare.get(0) != mips) {
+			oversubscribedShare = share(mips);
+		}
+		return oversubscribedShare;
+	}
+
+	/**
+	 * Creates the share of a VM on a single PE.
+	 */
+	private static List<Double> share(double mips) {
+		return new ArrayList<Double>(Arrays.asList(mips));
 	}
 }
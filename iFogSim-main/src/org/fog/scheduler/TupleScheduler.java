@@ -5,6 +5,9 @@ import org.cloudbus.cloudsim.ResCloudlet;
 
 public class TupleScheduler extends CloudletSchedulerTimeShared{
 
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
 	public TupleScheduler(double mips, int numberOfPes) {
 		//super(mips, numberOfPes);
 		super();
@@ -24,7 +27,6 @@ public class TupleScheduler extends CloudletSchedulerTimeShared{
 		/*>>>>>>>>>>>>>>>>>>>>*/
 		/* edit made by HARSHIT GUPTA */
 		
-		System.out.println("ALLOCATED MIPS FOR CLOUDLET = "+getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		return time
 				+ ((rcl.getRemainingCloudletLength()) / getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		
@@ -0,0 +1,68 @@
+package org.fog.test.perfeval;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * Runs a simulation main class and reports the heap bytes allocated by the simulation thread and
+ * the wall-clock time it took. Used to compare allocation profiles with and without the
+ * allocation-saving options of the engine.
+ *
+ * Usage: AllocationProfile [--recycle-events|--recycle-events-debug] mainClass [args...]
+ * e.g.   AllocationProfile --recycle-events org.fog.test.perfeval.HypotensionDetection
+ */
+public class AllocationProfile {
+
+    public static void main(String[] args) throws Exception {
+        int next = 0;
+        while (next < args.length && args[next].startsWith("--")) {
+            next++;
+        }
+        BenchmarkHarness options = new BenchmarkHarness(Arrays.copyOfRange(args, 0, next), "--recycle-events",
+                "--recycle-events-debug");
+        options.checkAllRead();
+        if (options.isSet("--recycle-events-debug")) {
+            CloudSim.enableEventRecycling(true);
+        } else if (options.isSet("--recycle-events")) {
+            CloudSim.enableEventRecycling(false);
+        }
+        if (next >= args.length) {
+            System.out.println("Usage: AllocationProfile [options] mainClass [args...]");
+            return;
+        }
+
+        Method main = Class.forName(args[next]).getMethod("main", String[].class);
+        String[] mainArgs = Arrays.copyOfRange(args, next + 1, args.length);
+
+        final Thread thread = Thread.currentThread();
+        final long bytesBefore = BenchmarkHarness.allocatedBytes(thread);
+        final long start = System.nanoTime();
+        final String flags = String.join(" ", Arrays.copyOfRange(args, 0, next));
+
+        // some scenarios end with System.exit() from the controller
+        Thread report = new Thread() {
+            @Override
+            public void run() {
+                printReport(flags, BenchmarkHarness.allocatedBytes(thread) - bytesBefore, System.nanoTime() - start);
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(report);
+
+        main.invoke(null, (Object) mainArgs);
+
+        Runtime.getRuntime().removeShutdownHook(report);
+        printReport(flags, BenchmarkHarness.allocatedBytes() - bytesBefore, System.nanoTime() - start);
+    }
+
+    private static void printReport(String options, long bytes, long elapsed) {
+        System.out.println("=========================================");
+        System.out.println("ALLOCATION PROFILE");
+        System.out.println("=========================================");
+        System.out.println("Options : " + options);
+        System.out.println("Allocated bytes : " + bytes);
+        System.out.println("Wall-clock time : " + elapsed / 1000000 + " ms");
+        System.out.println(String.format("Allocation rate : %.1f MB/s", bytes / 1e6 / (elapsed / 1e9)));
+    }
+}
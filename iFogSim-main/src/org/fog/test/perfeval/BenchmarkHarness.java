@@ -0,0 +1,260 @@
+package org.fog.test.perfeval;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
+/**
+ * The harness the benchmarks of this package share. It reads their "--option value" arguments and
+ * the size of the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark}
+ * most of them run, runs their simulations each in a new simulation context with the reports of the
+ * controllers discarded, and measures their wall-clock times and allocations.
+ */
+final class BenchmarkHarness {
+
+    /** The values of the options not read yet, by option, in the order they were given. */
+    private final Map<String, String> values = new LinkedHashMap<String, String>();
+
+    /** The options given without a value. */
+    private final Set<String> flags = new HashSet<String>();
+
+    /** The number of tasks running with the standard output discarded. */
+    private static int quietTasks;
+
+    /** The standard output to restore once no task runs with it discarded anymore. */
+    private static PrintStream console;
+
+    /**
+     * Reads the arguments of a benchmark, as options followed by their value, or options without
+     * a value for the flags.
+     *
+     * @param args the arguments
+     * @param flags the options without a value
+     * @throws IllegalArgumentException if an option other than a flag has no value
+     */
+    BenchmarkHarness(String[] args, String... flags) {
+        List<String> flagList = Arrays.asList(flags);
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (flagList.contains(option)) {
+                this.flags.add(option);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            values.put(option, args[++i]);
+        }
+    }
+
+    /**
+     * Gets the value of an option.
+     *
+     * @param option the option, e.g. "--file"
+     * @param defaultValue the value if the option was not given
+     * @return the value
+     */
+    String getString(String option, String defaultValue) {
+        String value = values.remove(option);
+        return value == null ? defaultValue : value;
+    }
+
+    int getInt(String option, int defaultValue) {
+        String value = values.remove(option);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    long getLong(String option, long defaultValue) {
+        String value = values.remove(option);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    double getDouble(String option, double defaultValue) {
+        String value = values.remove(option);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Checks whether a flag was given.
+     *
+     * @param flag the flag, e.g. "--cloud-detector"
+     * @return true if the flag was given
+     */
+    boolean isSet(String flag) {
+        return flags.contains(flag);
+    }
+
+    /**
+     * Reads the --gateways, --sensors, --interval and --time options.
+     *
+     * @return the scenario
+     * @throws IllegalArgumentException if a value is not positive
+     */
+    Scenario getScenario(int gateways, int sensorsPerGateway, double interval, int time) {
+        return new Scenario(getInt("--gateways", gateways), getInt("--sensors", sensorsPerGateway),
+                getDouble("--interval", interval), getInt("--time", time));
+    }
+
+    /**
+     * Checks that all the options given were read.
+     *
+     * @throws IllegalArgumentException if an option was not read
+     */
+    void checkAllRead() {
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown option: " + values.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * The size of the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark}.
+     */
+    static final class Scenario {
+
+        final int gateways;
+        final int sensorsPerGateway;
+        final double interval;
+        final int time;
+
+        Scenario(int gateways, int sensorsPerGateway, double interval, int time) {
+            if (gateways < 1 || sensorsPerGateway < 1 || interval <= 0 || time <= 0) {
+                throw new IllegalArgumentException("Gateways, sensors, interval and time should be positive.");
+            }
+            this.gateways = gateways;
+            this.sensorsPerGateway = sensorsPerGateway;
+            this.interval = interval;
+            this.time = time;
+        }
+
+        /**
+         * Creates the topology in the simulation context of the calling thread and submits the
+         * application.
+         *
+         * @see ParallelHypotensionBenchmark#createScenario(int, int, double, boolean, int, boolean, boolean)
+         */
+        void create(boolean cloudDetector, boolean sensorGroups, boolean staggered) {
+            ParallelHypotensionBenchmark.createScenario(gateways, sensorsPerGateway, interval, cloudDetector, time,
+                    sensorGroups, staggered);
+        }
+
+        void create(boolean cloudDetector) {
+            create(cloudDetector, false, false);
+        }
+
+        /**
+         * Runs the simulation of the calling thread sequentially up to the simulated time.
+         */
+        void run() {
+            CloudSim.terminateSimulation(time);
+            CloudSim.startSimulation();
+            CloudSim.stopSimulation();
+        }
+
+        @Override
+        public String toString() {
+            return "Gateways : " + gateways + " x " + sensorsPerGateway + " sensors, simulated time : " + time;
+        }
+    }
+
+    /**
+     * Creates a stream discarding what is written to it.
+     */
+    static PrintStream discardingStream() {
+        return new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    /**
+     * Runs a task in a new simulation context, so that the simulations of a benchmark do not share
+     * their ids or metrics, with the standard output discarded, as the controllers print a report
+     * at the end of every simulation.
+     *
+     * @param task the task, creating and running a simulation
+     * @return the result of the task
+     */
+    static <T> T runQuietly(Callable<T> task) throws Exception {
+        return runQuietly(new SimulationContext(), task);
+    }
+
+    /**
+     * Runs a task in a simulation context, e.g. a restored one, with the standard output discarded.
+     * Tasks may run quietly on several threads at once: the standard output is restored when the
+     * last of them ends.
+     *
+     * @param context the simulation context
+     * @param task the task, running a simulation
+     * @return the result of the task
+     */
+    static <T> T runQuietly(SimulationContext context, Callable<T> task) throws Exception {
+        synchronized (BenchmarkHarness.class) {
+            if (quietTasks++ == 0) {
+                console = System.out;
+                System.setOut(discardingStream());
+            }
+        }
+        try {
+            return context.call(task);
+        } finally {
+            synchronized (BenchmarkHarness.class) {
+                if (--quietTasks == 0) {
+                    System.setOut(console);
+                    console = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the wall-clock time elapsed since a time given by {@link System#nanoTime()}.
+     *
+     * @param start the start time, in nanoseconds
+     * @return the time elapsed, in milliseconds
+     */
+    static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread so far, or -1 if the JVM cannot count them.
+     */
+    static long allocatedBytes() {
+        return allocatedBytes(Thread.currentThread());
+    }
+
+    /**
+     * Gets the bytes allocated by a thread so far, or -1 if the JVM cannot count them.
+     */
+    static long allocatedBytes(Thread thread) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that two sums of the same values, added in different orders, are equal to rounding
+     * errors.
+     */
+    static boolean close(double a, double b) {
+        return Math.abs(a - b) <= 1e-9 * Math.max(1, Math.abs(b));
+    }
+}
@@ -0,0 +1,133 @@
+package org.fog.test.perfeval;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+/**
+ * Checkpoints the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark}
+ * once it has reached steady state, then restores the checkpoint to run the tail of the simulation
+ * again and to branch into a tail with another sensor interval. Checks that the restored run gives
+ * the results of the uninterrupted run bit for bit, and compares the time to restore the checkpoint
+ * with the time to simulate the prefix.
+ *
+ * Usage: CheckpointBenchmark [--gateways 8] [--sensors 4] [--interval 5] [--time 4000]
+ *                            [--checkpoint 2000] [--branch-interval 10] [--file results/hypotension.ckpt]
+ */
+public class CheckpointBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private double checkpoint = 2000;
+    private double branchInterval = 10;
+    private File file = new File("results/hypotension.ckpt");
+
+    public static void main(String[] args) throws Exception {
+        CheckpointBenchmark benchmark = new CheckpointBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(8, 4, 5, 4000);
+        checkpoint = options.getDouble("--checkpoint", checkpoint);
+        branchInterval = options.getDouble("--branch-interval", branchInterval);
+        file = new File(options.getString("--file", file.getPath()));
+        options.checkAllRead();
+        if (branchInterval <= 0) {
+            throw new IllegalArgumentException("The branch interval should be positive.");
+        }
+        if (checkpoint <= 0 || checkpoint >= scenario.time) {
+            throw new IllegalArgumentException("The checkpoint should be within the simulated time.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        // warm up the JIT, and write the checkpoint
+        simulate(checkpoint, -1);
+        String full = simulate(scenario.time, checkpoint);
+        SimulationContext.restore(file);
+        SimulationContext.restore(file);
+
+        long start = System.nanoTime();
+        simulate(checkpoint, -1);
+        long prefixTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        SimulationContext context = SimulationContext.restore(file);
+        long restoreTime = System.nanoTime() - start;
+        String restored = resume(context, -1);
+        String branch = resume(SimulationContext.restore(file), branchInterval);
+
+        if (!full.equals(restored)) {
+            System.out.println("UNINTERRUPTED\n" + full + "RESTORED\n" + restored);
+            throw new IllegalStateException("The restored run gave different results.");
+        }
+
+        System.out.println("=========================================");
+        System.out.println("CHECKPOINT BENCHMARK");
+        System.out.println("=========================================");
+        System.out.println("Gateways : " + scenario.gateways + " x " + scenario.sensorsPerGateway + " sensors every "
+                + scenario.interval);
+        System.out.println("Checkpoint at " + checkpoint + " of " + scenario.time + " : " + file + " (" + file.length() / 1024
+                + " KB)");
+        System.out.print(full);
+        System.out.println("Prefix wall-clock time : " + prefixTime / 1000000 + " ms");
+        System.out.println("Restore wall-clock time : " + restoreTime / 1000000 + " ms");
+        System.out.println(String.format("Speedup : %.2f", (double) prefixTime / restoreTime));
+        System.out.println("=========================================");
+        System.out.println("BRANCH WITH SENSORS EVERY " + branchInterval + " AFTER THE CHECKPOINT");
+        System.out.println("=========================================");
+        System.out.print(branch);
+    }
+
+    /**
+     * Runs the scenario in a new simulation context until the given time, writing a checkpoint if
+     * the checkpoint time is not negative, and returns its results.
+     */
+    private String simulate(final double until, final double checkpointAt) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<String>() {
+            @Override
+            public String call() {
+                scenario.create(false);
+                List<FogDevice> fogDevices = ParallelHypotensionBenchmark.entities(FogDevice.class);
+                if (checkpointAt >= 0) {
+                    CloudSim.checkpointAt(checkpointAt, file);
+                }
+                CloudSim.terminateSimulation(until);
+                CloudSim.startSimulation();
+                CloudSim.stopSimulation();
+                return ParallelHypotensionBenchmark.results(fogDevices);
+            }
+        });
+    }
+
+    /**
+     * Runs a restored simulation to its end, after setting the interval of the sensors if it is
+     * positive, and returns its results.
+     */
+    private String resume(SimulationContext context, final double sensorInterval) throws Exception {
+        return BenchmarkHarness.runQuietly(context, new Callable<String>() {
+            @Override
+            public String call() {
+                if (sensorInterval > 0) {
+                    for (Sensor sensor : ParallelHypotensionBenchmark.entities(Sensor.class)) {
+                        sensor.setTransmitDistribution(new DeterministicDistribution(sensorInterval));
+                    }
+                }
+                List<FogDevice> fogDevices = ParallelHypotensionBenchmark.entities(FogDevice.class);
+                CloudSim.startSimulation();
+                CloudSim.stopSimulation();
+                return ParallelHypotensionBenchmark.results(fogDevices);
+            }
+        });
+    }
+}
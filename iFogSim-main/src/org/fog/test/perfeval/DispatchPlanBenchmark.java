@@ -0,0 +1,165 @@
+package org.fog.test.perfeval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.commons.math3.util.Pair;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppEdge;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.entities.Tuple;
+import org.fog.utils.FogUtils;
+
+/**
+ * Compares the generation of resultant tuples through the dispatch plan of an application with the
+ * scan of all its edges that Application.getResultantTuples() used to do. The application is a
+ * pipeline of modules, each emitting several tuple types to the next one, and every module executes
+ * every type of tuple it receives in turn. Both must emit the same tuple types in the same order.
+ *
+ * Usage: DispatchPlanBenchmark [modules] [tupleTypesPerModule] [rounds]
+ */
+public class DispatchPlanBenchmark {
+
+    private static final String APP_ID = "PipelineApp";
+
+    public static void main(String[] args) {
+        int modules = args.length >= 1 ? Integer.parseInt(args[0]) : 20;
+        int tupleTypes = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+        int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 20000;
+        if (modules < 1 || tupleTypes < 1 || rounds < 1) {
+            throw new IllegalArgumentException("The numbers of modules, tuple types and rounds should be positive.");
+        }
+        Log.disable();
+        CloudSim.init(1, Calendar.getInstance(), false);
+        Application application = createApplication(modules, tupleTypes);
+        List<Tuple> inputTuples = createInputTuples(application, modules, tupleTypes);
+
+        // first runs warm up the JIT
+        run(application, inputTuples, false, rounds / 10);
+        run(application, inputTuples, true, rounds / 10);
+        long start = System.nanoTime();
+        List<String> scanned = run(application, inputTuples, false, rounds);
+        long scanTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<String> planned = run(application, inputTuples, true, rounds);
+        long planTime = System.nanoTime() - start;
+        if (!scanned.equals(planned)) {
+            throw new IllegalStateException("The dispatch plan emitted other tuples than the scan of the edges.");
+        }
+
+        long executions = (long) rounds * inputTuples.size();
+        System.out.println("=========================================");
+        System.out.println("DISPATCH PLAN");
+        System.out.println("=========================================");
+        System.out.println("Modules : " + modules + ", edges : " + application.getEdges().size()
+                + ", executions : " + executions);
+        System.out.println("Scan of the edges : " + scanTime / executions + " ns per execution");
+        System.out.println("Dispatch plan     : " + planTime / executions + " ns per execution");
+        System.out.println(String.format("Speedup : %.2f", (double) scanTime / planTime));
+    }
+
+    /**
+     * Creates a pipeline of modules, where module i receives the tuple types TYPE_i_j and emits the
+     * tuple types TYPE_(i+1)_j to module i+1, or to an actuator for the last module.
+     */
+    private static Application createApplication(int modules, int tupleTypes) {
+        Application application = Application.createApplication(APP_ID, 1);
+        for (int i = 0; i < modules; i++) {
+            application.addAppModule("module" + i, 10);
+        }
+        for (int i = 0; i < modules; i++) {
+            for (int j = 0; j < tupleTypes; j++) {
+                String source = i == 0 ? "SENSOR_" + j : "module" + (i - 1);
+                application.addAppEdge(source, "module" + i, 100, 100, type(i, j), Tuple.UP,
+                        i == 0 ? AppEdge.SENSOR : AppEdge.MODULE);
+                application.addTupleMapping("module" + i, type(i, j), type(i + 1, j), new FractionalSelectivity(1.0));
+            }
+        }
+        for (int j = 0; j < tupleTypes; j++) {
+            application.addAppEdge("module" + (modules - 1), "DISPLAY", 100, 100, type(modules, j), Tuple.DOWN,
+                    AppEdge.ACTUATOR);
+        }
+        return application;
+    }
+
+    private static String type(int module, int j) {
+        return "TYPE_" + module + "_" + j;
+    }
+
+    /**
+     * Creates a tuple of every type a module receives.
+     */
+    private static List<Tuple> createInputTuples(Application application, int modules, int tupleTypes) {
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < modules; i++) {
+            for (int j = 0; j < tupleTypes; j++) {
+                AppEdge edge = application.getEdgeMap().get(type(i, j));
+                Tuple tuple = new Tuple(edge.getTupleDescriptor(APP_ID, edge.getDirection()), FogUtils.generateTupleId(),
+                        1, 3, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE);
+                tuple.setUserId(1);
+                tuples.add(tuple);
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * Executes every input tuple by its destination module the given number of times, and returns
+     * the types of the tuples emitted by the first round.
+     */
+    private static List<String> run(Application application, List<Tuple> inputTuples, boolean plan, int rounds) {
+        List<String> emitted = new ArrayList<String>();
+        for (int round = 0; round < rounds; round++) {
+            for (Tuple inputTuple : inputTuples) {
+                String moduleName = inputTuple.getDestModuleName();
+                List<Tuple> tuples = plan ? application.getResultantTuples(moduleName, inputTuple, 0, 0)
+                        : scanResultantTuples(application, moduleName, inputTuple, 0, 0);
+                if (round == 0) {
+                    for (Tuple tuple : tuples) {
+                        emitted.add(moduleName + ">" + tuple.getTupleType() + ">" + tuple.getDirection());
+                    }
+                }
+            }
+        }
+        return emitted;
+    }
+
+    /**
+     * The former Application.getResultantTuples(), which scans all the edges of the application.
+     */
+    private static List<Tuple> scanResultantTuples(Application application, String moduleName, Tuple inputTuple,
+            int sourceDeviceId, int sourceModuleId) {
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        AppModule module = application.getModuleByName(moduleName);
+        for (AppEdge edge : application.getEdges()) {
+            if (edge.getSource().equals(moduleName)) {
+                Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
+                SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
+                if (selectivityModel == null || !selectivityModel.canSelect()) {
+                    continue;
+                }
+                int direction = edge.getEdgeType() == AppEdge.ACTUATOR ? Tuple.ACTUATOR : edge.getDirection();
+                Tuple tuple = new Tuple(edge.getTupleDescriptor(inputTuple.getAppId(), direction),
+                        FogUtils.generateTupleId(), inputTuple.getNumberOfPes(), inputTuple.getCloudletOutputSize(),
+                        inputTuple.getUtilizationModelCpu(), inputTuple.getUtilizationModelRam(),
+                        inputTuple.getUtilizationModelBw());
+                tuple.setActualTupleId(inputTuple.getActualTupleId());
+                tuple.setUserId(inputTuple.getUserId());
+                if (direction == Tuple.ACTUATOR) {
+                    tuple.setSourceDeviceId(sourceDeviceId);
+                } else {
+                    tuple.setTraversedMicroservices(inputTuple.getTraversed());
+                }
+                tuple.setSourceModuleId(sourceModuleId);
+                tuples.add(tuple);
+            }
+        }
+        return tuples;
+    }
+}
@@ -0,0 +1,142 @@
+package org.fog.test.perfeval;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.fog.entities.FogDevice;
+import org.fog.utils.Config;
+import org.fog.utils.EnergyAccount;
+
+/**
+ * Runs the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark} with and
+ * without the energy time series of the fog devices, and exports the time series to a CSV file.
+ * Checks that the time series do not change the results, and that the periods of each device add up
+ * to its energy and cost.
+ *
+ * Usage: EnergyTimeSeriesBenchmark [--gateways 8] [--sensors 4] [--interval 5] [--time 2000]
+ *                                  [--resolution 10] [--file results/energy.csv]
+ */
+public class EnergyTimeSeriesBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private double resolution = 10;
+    private File file = new File("results/energy.csv");
+    private int periods;
+
+    public static void main(String[] args) throws Exception {
+        EnergyTimeSeriesBenchmark benchmark = new EnergyTimeSeriesBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(8, 4, 5, 2000);
+        resolution = options.getDouble("--resolution", resolution);
+        file = new File(options.getString("--file", file.getPath()));
+        options.checkAllRead();
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("The resolution should be positive.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        // warm up the JIT
+        simulate(0);
+
+        long start = System.nanoTime();
+        String[] totalsOnly = simulate(0);
+        long totalsOnlyTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String[] withSeries = simulate(resolution);
+        long withSeriesTime = System.nanoTime() - start;
+
+        if (!totalsOnly[0].equals(withSeries[0])) {
+            System.out.println("TOTALS ONLY\n" + totalsOnly[0] + "WITH TIME SERIES\n" + withSeries[0]);
+            throw new IllegalStateException("The time series changed the results.");
+        }
+        if (withSeries[1] != null) {
+            throw new IllegalStateException(withSeries[1]);
+        }
+
+        System.out.println("=========================================");
+        System.out.println("ENERGY TIME SERIES");
+        System.out.println("=========================================");
+        System.out.println(scenario);
+        System.out.print(totalsOnly[0]);
+        System.out.println("Time series : " + withSeries[2] + " periods of " + resolution + " written to " + file);
+        System.out.println("Totals only wall-clock time : " + totalsOnlyTime / 1000000 + " ms");
+        System.out.println("With time series wall-clock time : " + withSeriesTime / 1000000 + " ms");
+    }
+
+    /**
+     * Runs the scenario in a new simulation context and returns its results, the error found in the
+     * time series, if any, and the number of periods exported.
+     */
+    private String[] simulate(final double resolution) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<String[]>() {
+            @Override
+            public String[] call() throws Exception {
+                Config.setEnergyTimeSeriesResolution(resolution);
+                scenario.create(false);
+                List<FogDevice> fogDevices = ParallelHypotensionBenchmark.entities(FogDevice.class);
+                scenario.run();
+                String[] results = {ParallelHypotensionBenchmark.results(fogDevices), null, null};
+                if (resolution > 0) {
+                    if (file.getParentFile() != null) {
+                        file.getParentFile().mkdirs();
+                    }
+                    EnergyAccount.writeTimeSeries(fogDevices, file.getPath());
+                    results[1] = check(fogDevices);
+                    results[2] = String.valueOf(periods);
+                }
+                return results;
+            }
+        });
+    }
+
+    /**
+     * Reads the exported time series back and checks that the periods of each device add up to its
+     * totals.
+     *
+     * @return the error found, or null
+     */
+    private String check(List<FogDevice> fogDevices) throws Exception {
+        Map<String, double[]> sums = new HashMap<>();
+        periods = 0;
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            in.readLine();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                double[] sum = sums.get(fields[0]);
+                if (sum == null) {
+                    sum = new double[2];
+                    sums.put(fields[0], sum);
+                }
+                sum[0] += Double.parseDouble(fields[2]);
+                sum[1] += Double.parseDouble(fields[3]);
+                periods++;
+            }
+        } finally {
+            in.close();
+        }
+        for (FogDevice device : fogDevices) {
+            double[] sum = sums.get(device.getName());
+            if (sum == null || !BenchmarkHarness.close(sum[0], device.getEnergyConsumption())
+                    || !BenchmarkHarness.close(sum[1], device.getTotalCost())) {
+                return "The time series of " + device.getName() + " do not add up to its totals.";
+            }
+        }
+        return null;
+    }
+}
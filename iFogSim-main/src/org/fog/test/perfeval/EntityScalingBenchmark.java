@@ -0,0 +1,98 @@
+package org.fog.test.perfeval;
+
+import java.util.Calendar;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+
+/**
+ * Measures how the cost of the CloudSim event loop grows with the number of entities while the
+ * event rate is held constant. A fixed number of active entities exchange periodic events; the
+ * remaining entities are created but stay idle for the whole run, like sensors and devices of a
+ * large topology that have nothing to do on a given clock tick.
+ *
+ * Usage: EntityScalingBenchmark [simulatedTime]
+ */
+public class EntityScalingBenchmark {
+
+    private static final int[] ENTITIES = {1000, 10000, 100000};
+    private static final int ACTIVE_ENTITIES = 100;
+    private static final double PERIOD = 5.0;
+    private static final int PING = 1;
+
+    public static void main(String[] args) {
+        double simulatedTime = args.length >= 1 ? Double.parseDouble(args[0]) : 2000;
+        Log.disable();
+
+        System.out.println("=========================================");
+        System.out.println("ENTITY SCALING (" + ACTIVE_ENTITIES + " active entities)");
+        System.out.println("=========================================");
+        for (int entities : ENTITIES) {
+            // first run warms up the JIT
+            run(entities, simulatedTime);
+            long[] result = run(entities, simulatedTime);
+            System.out.println(String.format("entities=%d | events=%d | time=%d ms | %.0f ns/event",
+                    entities, result[0], result[1] / 1000000, (double) result[1] / result[0]));
+        }
+    }
+
+    private static long[] run(int entities, double simulatedTime) {
+        CloudSim.init(0, Calendar.getInstance(), false);
+        PingEntity[] active = new PingEntity[ACTIVE_ENTITIES];
+        for (int i = 0; i < entities; i++) {
+            if (i < ACTIVE_ENTITIES) {
+                active[i] = new PingEntity("active-" + i, PERIOD * i / ACTIVE_ENTITIES);
+            } else {
+                new PingEntity("idle-" + i, -1);
+            }
+        }
+        CloudSim.terminateSimulation(simulatedTime);
+
+        long start = System.nanoTime();
+        CloudSim.startSimulation();
+        long elapsed = System.nanoTime() - start;
+
+        long events = 0;
+        for (PingEntity entity : active) {
+            events += entity.received;
+        }
+        return new long[] {events, elapsed};
+    }
+
+    /**
+     * Sends itself an event every period, starting at a given phase; a negative phase keeps the
+     * entity idle.
+     */
+    private static class PingEntity extends SimEntity {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        private final double phase;
+        private long received = 0;
+
+        PingEntity(String name, double phase) {
+            super(name);
+            this.phase = phase;
+        }
+
+        @Override
+        public void startEntity() {
+            if (phase >= 0) {
+                schedule(getId(), phase, PING);
+            }
+        }
+
+        @Override
+        public void processEvent(SimEvent ev) {
+            received++;
+            schedule(getId(), PERIOD, PING);
+        }
+
+        @Override
+        public void shutdownEntity() {
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.fog.test.perfeval;
+
+import java.util.Calendar;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CalendarFutureQueue;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.EventHandle;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.HeapFutureQueue;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TimingWheelFutureQueue;
+import org.cloudbus.cloudsim.core.TreeSetFutureQueue;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+
+/**
+ * Measures event cancellation under heavy churn, the pattern of the datacenters that cancel and
+ * resend their next processing event whenever their load changes. Many entities each keep a
+ * timeout pending and a backlog of far future events; every time an entity does some work it
+ * cancels its timeout and schedules a new one, and the timeouts of the entities that work less
+ * often than the timeout fire. The timeouts are cancelled either with
+ * {@link CloudSim#cancelAll(int, org.cloudbus.cloudsim.core.predicates.Predicate)} or with the
+ * handles returned by {@link SimEntity#scheduleCancellable(int, double, int, Object)}; both must
+ * give the same counts.
+ *
+ * Usage: EventCancellationBenchmark [entities] [backlogPerEntity] [simulatedTime]
+ */
+public class EventCancellationBenchmark {
+
+    private static final String[] QUEUES = {"TreeSet", "Heap", "Calendar", "Wheel"};
+    private static final double TIMEOUT = 5.0;
+    private static final int WORK = 1;
+    private static final int TIMEOUT_EXPIRED = 2;
+    private static final int FAR = 3;
+
+    public static void main(String[] args) {
+        int entities = args.length >= 1 ? Integer.parseInt(args[0]) : 1000;
+        int backlog = args.length >= 2 ? Integer.parseInt(args[1]) : 20;
+        double simulatedTime = args.length >= 3 ? Double.parseDouble(args[2]) : 200;
+        if (entities < 1 || backlog < 0 || simulatedTime <= 0) {
+            throw new IllegalArgumentException("Entities and time should be positive, the backlog not negative.");
+        }
+        Log.disable();
+
+        System.out.println("=========================================");
+        System.out.println("EVENT CANCELLATION UNDER CHURN");
+        System.out.println("=========================================");
+        System.out.println("Entities : " + entities + ", backlog : " + backlog + " events each, time : " + simulatedTime);
+        for (String queue : QUEUES) {
+            // first runs warm up the JIT
+            run(queue, entities, backlog, simulatedTime, false);
+            run(queue, entities, backlog, simulatedTime, true);
+            long start = System.nanoTime();
+            long[] predicate = run(queue, entities, backlog, simulatedTime, false);
+            long predicateTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            long[] handle = run(queue, entities, backlog, simulatedTime, true);
+            long handleTime = System.nanoTime() - start;
+            if (predicate[0] != handle[0] || predicate[1] != handle[1]) {
+                throw new IllegalStateException("Predicate and handle cancellation gave different counts with "
+                        + queue + ": " + predicate[0] + "/" + predicate[1] + " and " + handle[0] + "/" + handle[1]);
+            }
+            System.out.println(String.format("%-8s | %d reschedules, %d timeouts | predicate %d ms | handle %d ms (x%.2f)",
+                    queue, predicate[0], predicate[1], predicateTime / 1000000, handleTime / 1000000,
+                    (double) predicateTime / handleTime));
+        }
+    }
+
+    private static FutureQueue createQueue(String name) {
+        if (name.equals("Heap")) {
+            return new HeapFutureQueue();
+        } else if (name.equals("Calendar")) {
+            return new CalendarFutureQueue();
+        } else if (name.equals("Wheel")) {
+            return new TimingWheelFutureQueue();
+        }
+        return new TreeSetFutureQueue();
+    }
+
+    /**
+     * Runs the scenario and returns the number of reschedules and of timeouts fired.
+     */
+    private static long[] run(String queue, int entities, int backlog, double simulatedTime, boolean handles) {
+        CloudSim.init(0, Calendar.getInstance(), false, createQueue(queue));
+        ChurnEntity[] churn = new ChurnEntity[entities];
+        for (int i = 0; i < entities; i++) {
+            // every seventh entity works less often than its timeout
+            churn[i] = new ChurnEntity("churn-" + i, 1 + i % 7, backlog, simulatedTime, handles);
+        }
+        CloudSim.terminateSimulation(simulatedTime);
+        CloudSim.startSimulation();
+
+        long[] counts = new long[2];
+        for (ChurnEntity entity : churn) {
+            counts[0] += entity.reschedules;
+            counts[1] += entity.timeouts;
+        }
+        return counts;
+    }
+
+    /**
+     * Does some work periodically and keeps a timeout pending, which is rescheduled after every
+     * piece of work.
+     */
+    private static class ChurnEntity extends SimEntity {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        private final double period;
+        private final int backlog;
+        private final double simulatedTime;
+        private final boolean handles;
+        private final PredicateType timeoutPredicate = new PredicateType(TIMEOUT_EXPIRED);
+        private EventHandle timeout;
+        private long reschedules = 0;
+        private long timeouts = 0;
+
+        ChurnEntity(String name, double period, int backlog, double simulatedTime, boolean handles) {
+            super(name);
+            this.period = period;
+            this.backlog = backlog;
+            this.simulatedTime = simulatedTime;
+            this.handles = handles;
+        }
+
+        @Override
+        public void startEntity() {
+            for (int i = 0; i < backlog; i++) {
+                schedule(getId(), simulatedTime + 1 + i, FAR);
+            }
+            schedule(getId(), period * (getId() % 10) / 10, WORK);
+            scheduleTimeout();
+        }
+
+        @Override
+        public void processEvent(SimEvent ev) {
+            switch (ev.getTag()) {
+                case WORK:
+                    reschedules++;
+                    if (handles) {
+                        timeout.cancel();
+                    } else {
+                        CloudSim.cancelAll(getId(), timeoutPredicate);
+                    }
+                    scheduleTimeout();
+                    schedule(getId(), period, WORK);
+                    break;
+                case TIMEOUT_EXPIRED:
+                    timeouts++;
+                    scheduleTimeout();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void scheduleTimeout() {
+            if (handles) {
+                timeout = scheduleCancellable(getId(), TIMEOUT, TIMEOUT_EXPIRED, null);
+            } else {
+                schedule(getId(), TIMEOUT, TIMEOUT_EXPIRED);
+            }
+        }
+
+        @Override
+        public void shutdownEntity() {
+        }
+    }
+}
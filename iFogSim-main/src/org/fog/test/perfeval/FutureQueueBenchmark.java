@@ -0,0 +1,122 @@
+package org.fog.test.perfeval;
+
+import java.util.Calendar;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CalendarFutureQueue;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.HeapFutureQueue;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TimingWheelFutureQueue;
+import org.cloudbus.cloudsim.core.TreeSetFutureQueue;
+
+/**
+ * Measures the throughput of the future event queue implementations through the CloudSim event loop.
+ * A single entity keeps a fixed number of timers pending; every timer that fires is rescheduled, so
+ * the future queue size stays constant (the classic "hold" model). Two workloads are run: periodic
+ * timers with random phases, like sensors emitting at a fixed rate, and exponentially distributed
+ * delays.
+ *
+ * Usage: FutureQueueBenchmark [simulatedTime]
+ */
+public class FutureQueueBenchmark {
+
+    private static final int[] PENDING_EVENTS = {1000, 10000, 100000};
+    private static final String[] QUEUES = {"TreeSet", "Heap", "Calendar", "Wheel"};
+    private static final double PERIOD = 5.0;
+    private static final int TIMER = 1;
+
+    public static void main(String[] args) {
+        double simulatedTime = args.length >= 1 ? Double.parseDouble(args[0]) : 200;
+        Log.disable();
+
+        System.out.println("=========================================");
+        System.out.println("FUTURE QUEUE THROUGHPUT (events/sec)");
+        System.out.println("=========================================");
+        for (boolean periodic : new boolean[] {true, false}) {
+            for (int pending : PENDING_EVENTS) {
+                StringBuilder line = new StringBuilder();
+                line.append(periodic ? "periodic   " : "exponential").append(" pending=").append(pending);
+                double baseline = 0;
+                for (String queue : QUEUES) {
+                    // first run warms up the JIT
+                    run(queue, pending, periodic, simulatedTime);
+                    double rate = run(queue, pending, periodic, simulatedTime);
+                    if (baseline == 0) {
+                        baseline = rate;
+                    }
+                    line.append(String.format(" | %s %.0f (x%.2f)", queue, rate, rate / baseline));
+                }
+                System.out.println(line);
+            }
+        }
+    }
+
+    private static FutureQueue createQueue(String name) {
+        if (name.equals("Heap")) {
+            return new HeapFutureQueue();
+        } else if (name.equals("Calendar")) {
+            return new CalendarFutureQueue();
+        } else if (name.equals("Wheel")) {
+            return new TimingWheelFutureQueue();
+        }
+        return new TreeSetFutureQueue();
+    }
+
+    private static double run(String queue, int pending, boolean periodic, double simulatedTime) {
+        CloudSim.init(0, Calendar.getInstance(), false, createQueue(queue));
+        TimerEntity timers = new TimerEntity("timers", pending, periodic);
+        CloudSim.terminateSimulation(simulatedTime);
+
+        long start = System.nanoTime();
+        CloudSim.startSimulation();
+        long elapsed = System.nanoTime() - start;
+
+        return timers.getFired() / (elapsed / 1e9);
+    }
+
+    /**
+     * Keeps a fixed number of self-addressed timer events in the future queue.
+     */
+    private static class TimerEntity extends SimEntity {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        private final int pending;
+        private final boolean periodic;
+        private final Random random = new Random(42);
+        private long fired = 0;
+
+        TimerEntity(String name, int pending, boolean periodic) {
+            super(name);
+            this.pending = pending;
+            this.periodic = periodic;
+        }
+
+        @Override
+        public void startEntity() {
+            for (int i = 0; i < pending; i++) {
+                schedule(getId(), random.nextDouble() * PERIOD, TIMER);
+            }
+        }
+
+        @Override
+        public void processEvent(SimEvent ev) {
+            fired++;
+            double delay = periodic ? PERIOD : -PERIOD * Math.log(1 - random.nextDouble());
+            schedule(getId(), delay, TIMER);
+        }
+
+        @Override
+        public void shutdownEntity() {
+        }
+
+        long getFired() {
+            return fired;
+        }
+    }
+}
@@ -17,34 +17,75 @@ import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.StreamOperatorScheduler;
 import org.fog.utils.*;
 import org.fog.utils.distribution.DeterministicDistribution;
+import org.fog.utils.distribution.Distribution;
+import org.fog.utils.distribution.NormalDistribution;
 
+import java.io.PrintStream;
 import java.util.*;
 
 public class HypotensionDetection {
 
-    static List<FogDevice> fogDevices = new ArrayList<>();
-    static List<Sensor> sensors = new ArrayList<>();
-    static List<Actuator> actuators = new ArrayList<>();
     static final int NUM_SENSORS = 8;
     static final double SENSOR_TRANSMISSION_TIME = 5.0;
-    
+    /** Standard deviation of the sensor emission interval, relative to the interval, in seeded runs. */
+    static final double EMISSION_JITTER = 0.1;
+
+    List<FogDevice> fogDevices = new ArrayList<>();
+    List<Sensor> sensors = new ArrayList<>();
+    List<Actuator> actuators = new ArrayList<>();
+
     /** Flag to determine if simulation is cloud-only or edge/fog. */
-    private static boolean CLOUD = false; // Set to true for cloud-only, false for edge/fog
+    private final boolean cloud;
+    private final int numSensors;
+    private final double sensorTransmissionTime;
+    /** Seed of the sensor emission intervals, or -1 for strictly periodic sensors. */
+    private final long seed;
+
+    private double loopDelay;
+    private double energyConsumed;
+    private double cloudCost;
+    private double networkUsage;
+
+    public HypotensionDetection(boolean cloud) {
+        this(cloud, NUM_SENSORS, SENSOR_TRANSMISSION_TIME, -1);
+    }
+
+    /**
+     * @param cloud True for cloud-only deployment, false for edge-ward deployment.
+     * @param numSensors The number of blood pressure sensors, split between the two gateways.
+     * @param sensorTransmissionTime The mean interval between two readings of a sensor.
+     * @param seed The seed of the normally distributed emission intervals, or -1 for strictly
+     *             periodic sensors.
+     */
+    public HypotensionDetection(boolean cloud, int numSensors, double sensorTransmissionTime, long seed) {
+        this.cloud = cloud;
+        this.numSensors = numSensors;
+        this.sensorTransmissionTime = sensorTransmissionTime;
+        this.seed = seed;
+    }
 
     public static void main(String[] args) {
         Log.printLine("Starting Hypotension Detection Simulation...");
         
         // Parse command line arguments for deployment mode
+        boolean cloud = false; // Set to true for cloud-only, false for edge/fog
         if (args.length >= 1) {
-            CLOUD = Boolean.parseBoolean(args[0]);
+            cloud = Boolean.parseBoolean(args[0]);
         }
         
-        System.out.println("Running in " + (CLOUD ? "CLOUD-ONLY" : "EDGE-WARD") + " mode");
-        
+        System.out.println("Running in " + (cloud ? "CLOUD-ONLY" : "EDGE-WARD") + " mode");
+        new HypotensionDetection(cloud).run(System.out);
+    }
+
+    /**
+     * Runs the scenario in the simulation context of the calling thread.
+     * @param out The stream the results are printed to.
+     */
+    public void run(PrintStream out) {
         try {
             Log.disable();
             CloudSim.init(1, Calendar.getInstance(), false);
-            Config.MAX_SIMULATION_TIME = 10000;
+            Config.setMaxSimulationTime(10000);
 
             String appId = "HypotensionApp";
             FogBroker broker = new FogBroker("broker");
@@ -56,7 +97,7 @@ public class HypotensionDetection {
 
             ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
             
-            if (CLOUD) {
+            if (cloud) {
                 // Cloud-only deployment
                 moduleMapping.addModuleToDevice("clientModule", "cloud");
                 moduleMapping.addModuleToDevice("hypotensionDetector", "cloud");
@@ -68,7 +109,7 @@ public class HypotensionDetection {
 
             Controller controller = new Controller("controller", fogDevices, sensors, actuators);
             controller.submitApplication(application, 0,
-                (CLOUD) ? (new ModulePlacementMapping(fogDevices, application, moduleMapping)) 
+                (cloud) ? (new ModulePlacementMapping(fogDevices, application, moduleMapping)) 
                 : (new ModulePlacementEdgewards(fogDevices, sensors, actuators, application, moduleMapping)));
 
             TimeKeeper.getInstance().setSimulationStartTime(Calendar.getInstance().getTimeInMillis());
@@ -77,14 +118,15 @@ public class HypotensionDetection {
             CloudSim.stopSimulation();
 
             Log.printLine("Simulation completed.");
-            printResults();
+            collectResults();
+            printResults(out);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private static void createFogDevices(int userId, String appId, Application application) {
+    private void createFogDevices(int userId, String appId, Application application) {
         FogDevice cloud = createFogDevice("cloud", 44800, 40000, 100, 10000, 0, 0.01, 1664, 1332);
         cloud.setParentId(-1);
         fogDevices.add(cloud);
@@ -99,15 +141,16 @@ public class HypotensionDetection {
         gateway2.setUplinkLatency(50);
         fogDevices.add(gateway2);
 
-        for (int i = 0; i < NUM_SENSORS; i++) {
+        for (int i = 0; i < numSensors; i++) {
             FogDevice sensorNode = createFogDevice("bp-sensor-" + i, 1000, 512, 1000, 1000, 2, 0.0, 87.53, 82.44);
-            FogDevice parentGateway = (i < NUM_SENSORS / 2) ? gateway1 : gateway2;
+            FogDevice parentGateway = (i < numSensors / 2) ? gateway1 : gateway2;
             sensorNode.setParentId(parentGateway.getId());
             sensorNode.setUplinkLatency(2);
             fogDevices.add(sensorNode);
 
             // Use the addSensorAndActuator method for proper linking
-            addSensorAndActuator("sensor_" + i, userId, appId, sensorNode.getId(), application);
+            addSensorAndActuator("sensor_" + i, userId, appId, sensorNode.getId(), application,
+                    createEmissionDistribution(i));
         }
     }
     
@@ -118,13 +161,14 @@ public class HypotensionDetection {
      * @param appId The application ID.
      * @param gatewayId The gateway device ID.
      * @param application The application object.
+     * @param emission The distribution of the interval between two readings of the sensor.
      */
-    private static void addSensorAndActuator(String id, int userId, String appId, int gatewayId, Application application) {
-        double sensorLatency = CLOUD ? 50.0 : 1.0; // Higher latency in cloud mode
-        double displayLatency = CLOUD ? 50.0 : 1.0; // Higher latency in cloud mode
+    private void addSensorAndActuator(String id, int userId, String appId, int gatewayId, Application application,
+                                      Distribution emission) {
+        double sensorLatency = cloud ? 50.0 : 1.0; // Higher latency in cloud mode
+        double displayLatency = cloud ? 50.0 : 1.0; // Higher latency in cloud mode
 
-        Sensor bpSensor = new Sensor("bp-" + id, "BP_SENSOR", userId, appId, 
-                new DeterministicDistribution(SENSOR_TRANSMISSION_TIME));
+        Sensor bpSensor = new Sensor("bp-" + id, "BP_SENSOR", userId, appId, emission);
         sensors.add(bpSensor);
         bpSensor.setGatewayDeviceId(gatewayId);
         bpSensor.setLatency(sensorLatency);
@@ -137,7 +181,16 @@ public class HypotensionDetection {
         display.setApp(application); // This ensures actuators are linked to the application
     }
 
-    private static FogDevice createFogDevice(String nodeName, long mips, int ram, long upBw, long downBw,
+    private Distribution createEmissionDistribution(int sensorIndex) {
+        if (seed < 0) {
+            return new DeterministicDistribution(sensorTransmissionTime);
+        }
+        Distribution emission = new NormalDistribution(sensorTransmissionTime, sensorTransmissionTime * EMISSION_JITTER);
+        emission.setRandom(new Random(seed * 1000003 + sensorIndex));
+        return emission;
+    }
+
+    static FogDevice createFogDevice(String nodeName, long mips, int ram, long upBw, long downBw,
                                              int level, double ratePerMips, double busyPower, double idlePower) {
         List<Pe> peList = new ArrayList<>();
         peList.add(new Pe(0, new PeProvisionerOverbooking(mips)));
@@ -167,7 +220,7 @@ public class HypotensionDetection {
         }
     }
 
-    private static Application createApplication(String appId, int userId) {
+    static Application createApplication(String appId, int userId) {
         Application application = Application.createApplication(appId, userId);
 
         application.addAppModule("clientModule", 10);
@@ -201,46 +254,80 @@ public class HypotensionDetection {
         return application;
     }
 
-    private static void printResults() {
-        System.out.println("=========================================");
-        System.out.println("============== RESULTS ==================");
-        System.out.println("=========================================");
+    private void collectResults() {
+        loopDelay = TimeKeeper.getInstance().getLoopIdToCurrentAverage().values().stream()
+                .mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+        energyConsumed = fogDevices.stream().mapToDouble(FogDevice::getEnergyConsumption).sum();
+        cloudCost = fogDevices.stream().filter(d -> d.getName().equalsIgnoreCase("cloud"))
+                .mapToDouble(FogDevice::getTotalCost).sum();
+        networkUsage = NetworkUsageMonitor.getNetworkUsage() / Config.getMaxSimulationTime();
+    }
+
+    /** Average delay of the application loops, NaN if no loop completed. */
+    public double getLoopDelay() {
+        return loopDelay;
+    }
+
+    /** Energy consumed by all the fog devices. */
+    public double getEnergyConsumed() {
+        return energyConsumed;
+    }
+
+    public double getCloudCost() {
+        return cloudCost;
+    }
+
+    public double getNetworkUsage() {
+        return networkUsage;
+    }
+
+    private void printResults(PrintStream out) {
+        out.println("=========================================");
+        out.println("============== RESULTS ==================");
+        out.println("=========================================");
 
         long execTime = Calendar.getInstance().getTimeInMillis() - TimeKeeper.getInstance().getSimulationStartTime();
-        System.out.println("EXECUTION TIME : " + execTime);
+        out.println("EXECUTION TIME : " + execTime);
 
-        System.out.println("=========================================");
-        System.out.println("APPLICATION LOOP DELAYS");
-        System.out.println("=========================================");
+        out.println("=========================================");
+        out.println("APPLICATION LOOP DELAYS");
+        out.println("=========================================");
         Map<Integer, Double> loopDelays = TimeKeeper.getInstance().getLoopIdToCurrentAverage();
         if (loopDelays.isEmpty()) {
-            System.out.println("No loop delay recorded.");
+            out.println("No loop delay recorded.");
         } else {
             for (Map.Entry<Integer, Double> entry : loopDelays.entrySet()) {
-                System.out.printf("Loop %d delay: %.2f ms%n", entry.getKey(), entry.getValue());
+                out.printf("Loop %d delay: %.2f ms%n", entry.getKey(), entry.getValue());
+                LatencyHistogram delays = TimeKeeper.getInstance().getLoopIdToDelayHistogram().get(entry.getKey());
+                if (delays != null) {
+                    out.printf("Loop %d delay percentiles: p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                            entry.getKey(), delays.getPercentile(50), delays.getPercentile(95),
+                            delays.getPercentile(99), delays.getMax());
+                }
             }
         }
 
-        System.out.println("=========================================");
-        System.out.println("TUPLE CPU EXECUTION DELAY");
-        System.out.println("=========================================");
+        out.println("=========================================");
+        out.println("TUPLE CPU EXECUTION DELAY");
+        out.println("=========================================");
         Map<String, Double> tupleDelays = TimeKeeper.getInstance().getTupleTypeToAverageCpuTime();
         for (Map.Entry<String, Double> entry : tupleDelays.entrySet()) {
-            System.out.println(entry.getKey() + " ---> " + entry.getValue());
+            out.println(entry.getKey() + " ---> " + entry.getValue());
+            LatencyHistogram cpuTimes = TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(entry.getKey());
+            if (cpuTimes != null) {
+                out.println(entry.getKey() + " percentiles ---> " + cpuTimes.getPercentileSummary());
+            }
         }
 
-        System.out.println("=========================================");
-        System.out.println("ENERGY CONSUMED PER DEVICE");
-        System.out.println("=========================================");
+        out.println("=========================================");
+        out.println("ENERGY CONSUMED PER DEVICE");
+        out.println("=========================================");
         for (FogDevice d : fogDevices) {
-            System.out.println(d.getName() + " : Energy Consumed = " + d.getEnergyConsumption());
+            out.println(d.getName() + " : Energy Consumed = " + d.getEnergyConsumption());
         }
 
-        System.out.println("Cost of execution in cloud = " +
-                fogDevices.stream().filter(d -> d.getName().equalsIgnoreCase("cloud"))
-                        .mapToDouble(FogDevice::getTotalCost).sum());
+        out.println("Cost of execution in cloud = " + cloudCost);
 
-        System.out.println("Total network usage = " +
-                NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME);
+        out.println("Total network usage = " + networkUsage);
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package org.fog.test.perfeval;
+
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.cloudbus.cloudsim.Log;
+
+/**
+ * Runs HypotensionDetection over a grid of deployment modes, sensor counts and sensor transmission
+ * times, with several seeded replications per grid point, and writes the mean and the 95%
+ * confidence interval of the loop delay, energy, cloud cost and network usage of each point to
+ * one CSV file.
+ * <p>
+ * Every replication runs in its own simulation context, so the replications run concurrently on a
+ * fork-join pool in this JVM. The grid is first run sequentially on the calling thread, after a
+ * warm-up pass, to report the speedup of the parallel run; both runs must give the same results.
+ * <p>
+ * Replications differ by the seed of the sensor emission intervals. Unlike strictly periodic
+ * sensors, jittered sensors do not reach the gateways together, so a grid point close to the
+ * capacity of the gateways (e.g. 8 sensors every 5 ms in edge-ward mode) saturates them and runs
+ * for a very long time.
+ *
+ * Usage: HypotensionSweep [--modes edge,cloud] [--sensors 4,6] [--intervals 5,10]
+ *                         [--replications 3] [--threads n] [--out file] [--no-sequential]
+ */
+public class HypotensionSweep {
+
+    private static final String[] METRICS = {"loop_delay", "energy", "cloud_cost", "network_usage"};
+
+    private String[] modes = {"edge", "cloud"};
+    private int[] sensors = {4, 6};
+    private double[] intervals = {5, 10};
+    private int replications = 3;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String out = "results/hypotension_sweep.csv";
+    private boolean sequential = true;
+
+    public static void main(String[] args) throws Exception {
+        HypotensionSweep sweep = new HypotensionSweep();
+        sweep.parse(args);
+        sweep.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args, "--no-sequential");
+        sequential = !options.isSet("--no-sequential");
+        String value = options.getString("--modes", null);
+        if (value != null) {
+            modes = value.split(",");
+            for (String mode : modes) {
+                if (!mode.equals("edge") && !mode.equals("cloud")) {
+                    throw new IllegalArgumentException("Unknown mode: " + mode);
+                }
+            }
+        }
+        value = options.getString("--sensors", null);
+        if (value != null) {
+            sensors = Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+        }
+        value = options.getString("--intervals", null);
+        if (value != null) {
+            intervals = Arrays.stream(value.split(",")).mapToDouble(Double::parseDouble).toArray();
+        }
+        replications = options.getInt("--replications", replications);
+        threads = options.getInt("--threads", threads);
+        out = options.getString("--out", out);
+        options.checkAllRead();
+        if (replications < 1 || threads < 1) {
+            throw new IllegalArgumentException("Replications and threads should be positive.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        List<Replication> runs = new ArrayList<>();
+        for (String mode : modes) {
+            for (int n : sensors) {
+                for (double interval : intervals) {
+                    for (int seed = 1; seed <= replications; seed++) {
+                        runs.add(new Replication(mode.equals("cloud"), n, interval, seed));
+                    }
+                }
+            }
+        }
+
+        // warm up the JIT with the first replication of every grid point
+        for (int first = 0; first < runs.size(); first += replications) {
+            runs.get(first).call();
+        }
+
+        double[][] sequentialResults = null;
+        long sequentialTime = 0;
+        if (sequential) {
+            long start = System.nanoTime();
+            sequentialResults = new double[runs.size()][];
+            for (int i = 0; i < runs.size(); i++) {
+                sequentialResults[i] = runs.get(i).call();
+            }
+            sequentialTime = System.nanoTime() - start;
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Future<double[]>> futures = pool.invokeAll(runs);
+        double[][] results = new double[runs.size()][];
+        for (int i = 0; i < runs.size(); i++) {
+            results[i] = futures.get(i).get();
+        }
+        long parallelTime = System.nanoTime() - start;
+        pool.shutdown();
+
+        if (sequentialResults != null && !Arrays.deepEquals(sequentialResults, results)) {
+            throw new IllegalStateException("Parallel and sequential runs gave different results.");
+        }
+
+        write(runs, results);
+
+        System.out.println("=========================================");
+        System.out.println("HYPOTENSION SWEEP");
+        System.out.println("=========================================");
+        System.out.println("Runs : " + runs.size() + " (" + runs.size() / replications + " grid points x "
+                + replications + " replications)");
+        System.out.println("Threads : " + threads);
+        if (sequential) {
+            System.out.println("Sequential wall-clock time : " + sequentialTime / 1000000 + " ms");
+        }
+        System.out.println("Parallel wall-clock time : " + parallelTime / 1000000 + " ms");
+        if (sequential) {
+            System.out.println(String.format("Speedup : %.2f", (double) sequentialTime / parallelTime));
+        }
+        System.out.println("Results saved to " + out);
+    }
+
+    private void write(List<Replication> runs, double[][] results) throws Exception {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(out))) {
+            StringBuilder header = new StringBuilder("mode,sensors,interval,replications");
+            for (String metric : METRICS) {
+                header.append(',').append(metric).append("_mean,").append(metric).append("_ci95");
+            }
+            writer.println(header);
+
+            // replications of a grid point are contiguous
+            for (int first = 0; first < runs.size(); first += replications) {
+                Replication point = runs.get(first);
+                StringBuilder line = new StringBuilder();
+                line.append(point.cloud ? "cloud" : "edge").append(',').append(point.numSensors).append(',')
+                        .append(point.interval).append(',').append(replications);
+                for (int m = 0; m < METRICS.length; m++) {
+                    SummaryStatistics stats = new SummaryStatistics();
+                    for (int r = first; r < first + replications; r++) {
+                        stats.addValue(results[r][m]);
+                    }
+                    line.append(',').append(stats.getMean()).append(',').append(confidenceHalfWidth(stats));
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    /**
+     * Half-width of the 95% confidence interval of the mean, from the Student t distribution.
+     */
+    private static double confidenceHalfWidth(SummaryStatistics stats) {
+        if (stats.getN() < 2) {
+            return Double.NaN;
+        }
+        double t = new TDistribution(stats.getN() - 1).inverseCumulativeProbability(0.975);
+        return t * stats.getStandardDeviation() / Math.sqrt(stats.getN());
+    }
+
+    /**
+     * One replication of a grid point, run in a new simulation context.
+     */
+    private static class Replication implements Callable<double[]> {
+
+        private final boolean cloud;
+        private final int numSensors;
+        private final double interval;
+        private final long seed;
+
+        Replication(boolean cloud, int numSensors, double interval, long seed) {
+            this.cloud = cloud;
+            this.numSensors = numSensors;
+            this.interval = interval;
+            this.seed = seed;
+        }
+
+        @Override
+        public double[] call() throws Exception {
+            final HypotensionDetection scenario = new HypotensionDetection(cloud, numSensors, interval, seed);
+            BenchmarkHarness.runQuietly(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    scenario.run(System.out);
+                    return null;
+                }
+            });
+            return new double[] {scenario.getLoopDelay(), scenario.getEnergyConsumed(),
+                    scenario.getCloudCost(), scenario.getNetworkUsage()};
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.fog.test.perfeval;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.fog.utils.LatencyHistogram;
+
+/**
+ * Measures the cost of recording latencies in a {@link LatencyHistogram} and the error of its
+ * percentiles against the exact percentiles of the latencies, drawn from a log-normal distribution
+ * with a long tail as loop delays have. Checks that merging the histograms of two halves of the
+ * latencies gives the histogram of all of them, and that the window since a snapshot holds the
+ * latencies recorded after it. Checks as well the edge cases: no latency, a single one, zero and
+ * negative latencies, latencies beyond the buckets, merging and windows of empty histograms, and
+ * the rounding of the summaries.
+ *
+ * Usage: LatencyHistogramBenchmark [latencies]
+ */
+public class LatencyHistogramBenchmark {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    public static void main(String[] args) {
+        int n = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        if (n < 2) {
+            throw new IllegalArgumentException("There should be two latencies at least.");
+        }
+        checkEdgeCases();
+        Random random = new Random(42);
+        double[] latencies = new double[n];
+        for (int i = 0; i < n; i++) {
+            latencies[i] = Math.exp(2 + random.nextGaussian());
+        }
+
+        // a first run warms up the JIT
+        record(latencies, 0, n);
+        long start = System.nanoTime();
+        LatencyHistogram histogram = record(latencies, 0, n);
+        long recordTime = System.nanoTime() - start;
+
+        LatencyHistogram merged = record(latencies, 0, n / 2);
+        merged.merge(record(latencies, n / 2, n));
+        if (merged.getCount() != n || !Arrays.equals(percentiles(merged), percentiles(histogram))
+                || merged.getMax() != histogram.getMax()) {
+            throw new IllegalStateException("The merged histogram differs from the histogram of all the latencies.");
+        }
+        LatencyHistogram growing = record(latencies, 0, n / 2);
+        LatencyHistogram snapshot = growing.snapshot();
+        for (int i = n / 2; i < n; i++) {
+            growing.record(latencies[i]);
+        }
+        if (!sameBuckets(percentiles(growing.since(snapshot)), percentiles(record(latencies, n / 2, n)))) {
+            throw new IllegalStateException("The window since the snapshot differs from the latencies recorded after it.");
+        }
+
+        double[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.println("=========================================");
+        System.out.println("LATENCY HISTOGRAM");
+        System.out.println("=========================================");
+        System.out.println("Latencies : " + n);
+        System.out.println("Record : " + recordTime / n + " ns per latency");
+        double maxError = 0;
+        for (double percentile : PERCENTILES) {
+            double exact = sorted[(int) Math.ceil(percentile / 100 * n) - 1];
+            double estimate = histogram.getPercentile(percentile);
+            double error = Math.abs(estimate - exact) / exact;
+            maxError = Math.max(maxError, error);
+            System.out.println(String.format("p%s : %.3f (exact %.3f)", percentile, estimate, exact));
+        }
+        System.out.println(String.format("Max : %.3f (exact %.3f)", histogram.getMax(), sorted[n - 1]));
+        System.out.println(String.format("Largest relative error : %.2f%%", 100 * maxError));
+        System.out.println("Edge cases : empty, single, zero and negative, underflow and overflow, rounded summaries");
+        if (maxError > 0.035) {
+            throw new IllegalStateException("A percentile is further from the exact one than the buckets allow.");
+        }
+    }
+
+    /**
+     * Checks the histograms of a few latencies whose percentiles are known exactly, as they are
+     * clamped to the minimum and maximum, and the latencies the buckets do not cover.
+     */
+    private static void checkEdgeCases() {
+        LatencyHistogram empty = new LatencyHistogram();
+        if (empty.getCount() != 0 || !Double.isNaN(empty.getPercentile(0)) || !Double.isNaN(empty.getPercentile(100))
+                || !Double.isNaN(empty.getMin()) || !Double.isNaN(empty.getMax()) || !Double.isNaN(empty.getMean())
+                || !empty.getPercentileSummary().equals("p50 = NaN, p95 = NaN, p99 = NaN, max = NaN")) {
+            throw new IllegalStateException("The empty histogram has latencies: " + empty);
+        }
+        for (double percentile : new double[] {-1, 100.5}) {
+            try {
+                empty.getPercentile(percentile);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            throw new IllegalStateException("The percentile " + percentile + " is accepted.");
+        }
+
+        LatencyHistogram single = record(new double[] {12.0757}, 0, 1);
+        for (double percentile : new double[] {0, 50, 100}) {
+            if (single.getPercentile(percentile) != 12.0757) {
+                throw new IllegalStateException("The percentiles of a single latency differ from it: " + single);
+            }
+        }
+        if (!single.getPercentileSummary().equals("p50 = 12.08, p95 = 12.08, p99 = 12.08, max = 12.08")
+                || !record(new double[] {1234567}, 0, 1).getPercentileSummary().endsWith("max = 1235000")
+                || !record(new double[] {0.000123456}, 0, 1).getPercentileSummary().endsWith("max = 0.0001235")
+                || !record(new double[] {2}, 0, 1).getPercentileSummary().endsWith("max = 2")) {
+            throw new IllegalStateException("The summaries are not rounded to 4 significant digits.");
+        }
+
+        LatencyHistogram nonPositive = record(new double[] {-5, 0, 0, 7}, 0, 4);
+        if (nonPositive.getPercentile(0) != -5 || nonPositive.getPercentile(50) > 0
+                || nonPositive.getPercentile(50) < -5 || nonPositive.getPercentile(100) != 7
+                || nonPositive.getMin() != -5 || nonPositive.getMax() != 7 || nonPositive.getMean() != 0.5) {
+            throw new IllegalStateException("The zero and negative latencies are misplaced: " + nonPositive);
+        }
+
+        double tiny = 1e-9;
+        double huge = 1e20;
+        LatencyHistogram beyond = record(new double[] {tiny, huge, huge}, 0, 3);
+        double lowest = beyond.getPercentile(0);
+        if (lowest < tiny || lowest > Math.scalb(1.0, -20) || beyond.getPercentile(50) != huge
+                || beyond.getPercentile(100) != huge) {
+            throw new IllegalStateException("The latencies beyond the buckets are misplaced: " + beyond);
+        }
+
+        LatencyHistogram merged = single.snapshot();
+        merged.merge(empty);
+        LatencyHistogram fromEmpty = new LatencyHistogram();
+        fromEmpty.merge(single);
+        if (!merged.equals(single) || !fromEmpty.equals(single)) {
+            throw new IllegalStateException("Merging an empty histogram changes the latencies.");
+        }
+        LatencyHistogram window = beyond.since(beyond.snapshot());
+        if (window.getCount() != 0 || !Double.isNaN(window.getPercentile(50)) || !Double.isNaN(window.getMax())) {
+            throw new IllegalStateException("The window of a snapshot just taken has latencies: " + window);
+        }
+        window = beyond.since(empty);
+        if (window.getCount() != 3 || window.getPercentile(100) != huge || window.getMin() != tiny) {
+            throw new IllegalStateException("The window since no latency differs from the histogram: " + window);
+        }
+        try {
+            beyond.since(single);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new IllegalStateException("A histogram that is not a snapshot is accepted as one.");
+    }
+
+    private static LatencyHistogram record(double[] latencies, int from, int to) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = from; i < to; i++) {
+            histogram.record(latencies[i]);
+        }
+        return histogram;
+    }
+
+    /**
+     * Checks that percentiles are equal, or within the width of a bucket where they are clamped to
+     * the minimum or maximum, which the window since a snapshot only knows as precisely as its
+     * buckets.
+     */
+    private static boolean sameBuckets(double[] a, double[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i] && Math.abs(a[i] - b[i]) > b[i] / 16) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double[] percentiles(LatencyHistogram histogram) {
+        double[] values = new double[PERCENTILES.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = histogram.getPercentile(PERCENTILES[i]);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,200 @@
+package org.fog.test.perfeval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.cloudbus.cloudsim.Log;
+import org.fog.utils.Logger;
+
+/**
+ * Compares the log statements of the hot paths of the fog devices, the hosts and the SDN channels
+ * as they were, building their messages before the log is checked, with their parameterized and
+ * guarded forms, with the logs disabled: reports the bytes allocated and the time per statement.
+ * Then enables the logs and checks that both forms print the same messages.
+ *
+ * Usage: LoggingBenchmark [--statements 10000000]
+ */
+public class LoggingBenchmark {
+
+    private int statements = 10000000;
+
+    public static void main(String[] args) throws Exception {
+        LoggingBenchmark benchmark = new LoggingBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        statements = options.getInt("--statements", statements);
+        options.checkAllRead();
+        if (statements < 1) {
+            throw new IllegalArgumentException("The number of statements should be positive.");
+        }
+    }
+
+    /**
+     * A log statement of a hot path, in its eager and lazy forms, logging values derived from a
+     * counter so that they cannot be folded.
+     */
+    private static abstract class Statement {
+
+        final String name;
+
+        Statement(String name) {
+            this.name = name;
+        }
+
+        abstract void eager(int i);
+
+        abstract void lazy(int i);
+    }
+
+    private static final String DEVICE = "edge-gateway-0";
+    private static final String[] TYPES = {"BP_SENSOR", "RAW_BP_DATA", "PROCESSED_DATA"};
+
+    private static final Statement[] STATEMENTS = {
+        new Statement("FogDevice tuple arrival") {
+            @Override
+            void eager(int i) {
+                Logger.debug(DEVICE, "Received tuple " + i + " with tupleType = " + TYPES[i % 3] + "\t| Source : " +
+                        TYPES[(i + 1) % 3] + "|Dest : " + DEVICE);
+            }
+
+            @Override
+            void lazy(int i) {
+                if (Logger.isDebugEnabled())
+                    Logger.debug(DEVICE, "Received tuple %d with tupleType = %s\t| Source : %s|Dest : %s", i,
+                            TYPES[i % 3], TYPES[(i + 1) % 3], DEVICE);
+            }
+        },
+        new Statement("FogDevice tuple execution") {
+            @Override
+            void eager(int i) {
+                Logger.debug(DEVICE, "Executing tuple on module " + TYPES[i % 3]);
+            }
+
+            @Override
+            void lazy(int i) {
+                Logger.debug(DEVICE, "Executing tuple on module %s", TYPES[i % 3]);
+            }
+        },
+        new Statement("Host under-allocated MIPS") {
+            @Override
+            void eager(int i) {
+                Log.formatLine("%.2f: [Host #" + (i % 7) + "] Under allocated MIPS for VM #" + i + ": %.2f", i * 0.5,
+                        i * 0.25);
+            }
+
+            @Override
+            void lazy(int i) {
+                if (!Log.isDisabled()) {
+                    Log.formatLine("%.2f: [Host #%d] Under allocated MIPS for VM #%d: %.2f", i * 0.5, i % 7, i,
+                            i * 0.25);
+                }
+            }
+        },
+        new Statement("SDN channel update") {
+            @Override
+            void eager(int i) {
+                Log.printLine(i * 0.5 + ": Channel.updatePackageProcessing() (" + TYPES[i % 3] + "):Time spent:" + i * 0.1
+                        + ", BW/host:" + i * 2.0 + ", Processed:" + (long) i);
+            }
+
+            @Override
+            void lazy(int i) {
+                if (!Log.isDisabled())
+                    Log.formatLine("%s: Channel.updatePackageProcessing() (%s):Time spent:%s, BW/host:%s, Processed:%d",
+                            i * 0.5, TYPES[i % 3], i * 0.1, i * 2.0, (long) i);
+            }
+        },
+    };
+
+    private void run() {
+        boolean loggerEnabled = Logger.ENABLED;
+        boolean logDisabled = Log.isDisabled();
+        Logger.ENABLED = false;
+        Log.disable();
+        long[][] results = new long[STATEMENTS.length][];
+        try {
+            // the first round warms up the JIT
+            for (int round = 0; round < 2; round++) {
+                for (int s = 0; s < STATEMENTS.length; s++) {
+                    results[s] = measure(STATEMENTS[s]);
+                }
+            }
+            check();
+        } finally {
+            Logger.ENABLED = loggerEnabled;
+            Log.setDisabled(logDisabled);
+        }
+
+        System.out.println("=========================================");
+        System.out.println("DISABLED LOG STATEMENTS");
+        System.out.println("=========================================");
+        System.out.println("Statements : " + statements + " of each");
+        System.out.println(String.format("%-28s %14s %14s %12s %12s", "", "eager bytes", "lazy bytes", "eager ns",
+                "lazy ns"));
+        for (int s = 0; s < STATEMENTS.length; s++) {
+            System.out.println(String.format("%-28s %14.1f %14.1f %12.2f %12.2f", STATEMENTS[s].name,
+                    (double) results[s][0] / statements, (double) results[s][1] / statements,
+                    (double) results[s][2] / statements, (double) results[s][3] / statements));
+        }
+        System.out.println("Enabled statements print the same messages in both forms.");
+    }
+
+    /**
+     * Runs the eager and the lazy forms of a statement and returns the bytes allocated by each form
+     * and the nanoseconds each took.
+     */
+    private long[] measure(Statement statement) {
+        long[] result = new long[4];
+        long bytes = BenchmarkHarness.allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < statements; i++) {
+            statement.eager(i);
+        }
+        result[2] = System.nanoTime() - start;
+        result[0] = BenchmarkHarness.allocatedBytes() - bytes;
+        bytes = BenchmarkHarness.allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < statements; i++) {
+            statement.lazy(i);
+        }
+        result[3] = System.nanoTime() - start;
+        result[1] = BenchmarkHarness.allocatedBytes() - bytes;
+        return result;
+    }
+
+    /**
+     * Enables the logs, captures what both forms of every statement print and checks that it is the
+     * same.
+     */
+    private static void check() {
+        PrintStream console = System.out;
+        Logger.ENABLED = true;
+        Logger.setLogLevel(Logger.DEBUG);
+        Log.enable();
+        try {
+            for (Statement statement : STATEMENTS) {
+                for (int i = 0; i < 100; i += 7) {
+                    ByteArrayOutputStream eager = new ByteArrayOutputStream();
+                    System.setOut(new PrintStream(eager));
+                    Log.setOutput(eager);
+                    statement.eager(i);
+                    ByteArrayOutputStream lazy = new ByteArrayOutputStream();
+                    System.setOut(new PrintStream(lazy));
+                    Log.setOutput(lazy);
+                    statement.lazy(i);
+                    if (eager.size() == 0 || !eager.toString().equals(lazy.toString())) {
+                        throw new IllegalStateException(statement.name + " prints \"" + lazy + "\" instead of \""
+                                + eager + "\".");
+                    }
+                }
+            }
+        } finally {
+            System.setOut(console);
+            Log.setOutput(console);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.fog.test.perfeval;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.fog.application.AppLoop;
+import org.fog.application.Application;
+
+/**
+ * Compares the lookup of the loops a tuple starts or ends through the loop index of an application
+ * with the scan of all the loops that the sensors, fog devices and actuators used to do. The
+ * application has several overlapping loops over a pipeline of modules, and every edge of the
+ * pipeline is looked up in turn. Both must find the same loops.
+ *
+ * Usage: LoopIndexBenchmark [modules] [loops] [rounds]
+ */
+public class LoopIndexBenchmark {
+
+    public static void main(String[] args) {
+        int modules = args.length >= 1 ? Integer.parseInt(args[0]) : 12;
+        int loopCount = args.length >= 2 ? Integer.parseInt(args[1]) : 8;
+        int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 200000;
+        if (modules < 2 || loopCount < 1 || rounds < 1) {
+            throw new IllegalArgumentException("There should be two modules, one loop and one round at least.");
+        }
+        Log.disable();
+        Application application = Application.createApplication("PipelineApp", 1);
+        // loop i goes from module i % (modules - 1) to the end of the pipeline
+        List<AppLoop> loops = new ArrayList<AppLoop>();
+        for (int i = 0; i < loopCount; i++) {
+            List<String> loopModules = new ArrayList<String>();
+            for (int m = i % (modules - 1); m < modules; m++) {
+                loopModules.add("module" + m);
+            }
+            loops.add(new AppLoop(loopModules));
+        }
+        application.setLoops(loops);
+        String[] names = new String[modules];
+        for (int m = 0; m < modules; m++) {
+            names[m] = "module" + m;
+        }
+
+        // first runs warm up the JIT
+        run(application, names, false, rounds / 10);
+        run(application, names, true, rounds / 10);
+        long start = System.nanoTime();
+        List<Integer> scanned = run(application, names, false, rounds);
+        long scanTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<Integer> indexed = run(application, names, true, rounds);
+        long indexTime = System.nanoTime() - start;
+        if (!scanned.equals(indexed)) {
+            throw new IllegalStateException("The loop index found other loops than the scan of the loops.");
+        }
+
+        long lookups = (long) rounds * (modules - 1);
+        System.out.println("=========================================");
+        System.out.println("LOOP INDEX");
+        System.out.println("=========================================");
+        System.out.println("Modules : " + modules + ", loops : " + loopCount + ", lookups : " + lookups);
+        System.out.println("Scan of the loops : " + scanTime / lookups + " ns per tuple");
+        System.out.println("Loop index        : " + indexTime / lookups + " ns per tuple");
+        System.out.println(String.format("Speedup : %.2f", (double) scanTime / indexTime));
+    }
+
+    /**
+     * Looks up, for every edge of the pipeline, the loops a tuple sent on it starts and the loop it
+     * ends, as a fog device does on sending and on receiving it. Returns the ids of the loops found
+     * in the first round.
+     */
+    private static List<Integer> run(Application application, String[] names, boolean index, int rounds) {
+        List<Integer> found = new ArrayList<Integer>();
+        for (int round = 0; round < rounds; round++) {
+            for (int m = 0; m < names.length - 1; m++) {
+                String src = names[m];
+                String dest = names[m + 1];
+                int sum = 0;
+                if (index) {
+                    for (AppLoop loop : application.getLoopsStartingWithEdge(src, dest)) {
+                        sum += loop.getLoopId();
+                    }
+                    List<AppLoop> ending = application.getLoopsEndingWithEdge(src, dest);
+                    sum = 31 * sum + (ending.isEmpty() ? -1 : ending.get(0).getLoopId());
+                } else {
+                    for (AppLoop loop : application.getLoops()) {
+                        if (loop.hasEdge(src, dest) && loop.isStartModule(src)) {
+                            sum += loop.getLoopId();
+                        }
+                    }
+                    int ending = -1;
+                    for (AppLoop loop : application.getLoops()) {
+                        if (loop.hasEdge(src, dest) && loop.isEndModule(dest)) {
+                            ending = loop.getLoopId();
+                            break;
+                        }
+                    }
+                    sum = 31 * sum + ending;
+                }
+                if (round == 0) {
+                    found.add(sum);
+                }
+            }
+        }
+        return found;
+    }
+}
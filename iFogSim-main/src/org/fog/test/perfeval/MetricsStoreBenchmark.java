@@ -0,0 +1,348 @@
+package org.fog.test.perfeval;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.utils.IntDoubleMap;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * Checks the {@link IntDoubleMap} the {@link TimeKeeper} keeps its times per tuple id in against a
+ * HashMap, in memory and spilling to a file, and compares their speeds. Checks its edge cases too:
+ * removals from nearly full tables, whose probe sequences wrap around the end of the table, and the
+ * entries and the spill file of a map that spills and then unspills or closes. Then runs the scaled-up
+ * HypotensionDetection topology of {@link ParallelHypotensionBenchmark} for a day of simulated time
+ * and reports, every few simulated hours, the heap used after a garbage collection and the numbers
+ * of times the time keeper holds, which should stay flat.
+ *
+ * Usage: MetricsStoreBenchmark [--gateways 2] [--sensors 2] [--interval 1000] [--hours 24]
+ */
+public class MetricsStoreBenchmark {
+
+    private static final int HOUR = 3600 * 1000;
+
+    private int gateways = 2;
+    private int sensorsPerGateway = 2;
+    private double interval = 1000;
+    private int hours = 24;
+
+    public static void main(String[] args) throws Exception {
+        MetricsStoreBenchmark benchmark = new MetricsStoreBenchmark();
+        benchmark.parse(args);
+        checkRemovals();
+        checkSpillFile();
+        benchmark.checkMap();
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        gateways = options.getInt("--gateways", gateways);
+        sensorsPerGateway = options.getInt("--sensors", sensorsPerGateway);
+        interval = options.getDouble("--interval", interval);
+        hours = options.getInt("--hours", hours);
+        options.checkAllRead();
+        if (gateways < 1 || sensorsPerGateway < 1 || interval <= 0 || hours < 1 || hours > 24 * 24) {
+            throw new IllegalArgumentException("Gateways, sensors, interval and hours should be positive, "
+                    + "hours at most " + 24 * 24 + ".");
+        }
+    }
+
+    /**
+     * Applies the same random puts, gets and removes to a HashMap and to maps with and without a
+     * spill file, as a time keeper does with tuple ids: increasing keys, most of them removed soon
+     * after and some never. Then compares the speeds of the HashMap and of the map in memory.
+     */
+    private void checkMap() throws Exception {
+        int operations = 2000000;
+        File file = File.createTempFile("metrics", ".spill");
+        file.deleteOnExit();
+        IntDoubleMap spilling = new IntDoubleMap();
+        spilling.spillTo(file, 1000);
+        Object[] reference = apply(new HashMap<Integer, Double>(), null, operations);
+        Object[] spilled = apply(null, spilling, operations);
+        if (!reference[0].equals(spilled[0])) {
+            throw new IllegalStateException("The spilling map differs from a HashMap.");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(spilling);
+        out.close();
+        IntDoubleMap restored = (IntDoubleMap) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject();
+        if (restored.size() != spilling.size() || restored.getSizeInMemory() != spilling.size()) {
+            throw new IllegalStateException("The deserialized map lost entries.");
+        }
+        int spilledInMemory = spilling.getSizeInMemory();
+        spilling.unspill();
+
+        // first runs warm up the JIT
+        apply(new HashMap<Integer, Double>(), null, operations);
+        apply(null, new IntDoubleMap(), operations);
+        reference = apply(new HashMap<Integer, Double>(), null, operations);
+        Object[] inMemory = apply(null, new IntDoubleMap(), operations);
+        if (!reference[0].equals(inMemory[0])) {
+            throw new IllegalStateException("The map differs from a HashMap.");
+        }
+
+        System.out.println("=========================================");
+        System.out.println("INT TO DOUBLE MAP");
+        System.out.println("=========================================");
+        System.out.println("Operations : " + operations + ", entries left : " + spilling.size());
+        System.out.println("HashMap      : " + reference[1] + " ns per operation");
+        System.out.println("IntDoubleMap : " + inMemory[1] + " ns per operation");
+        System.out.println("IntDoubleMap spilling beyond 1000 entries : " + spilled[1] + " ns per operation, "
+                + spilledInMemory + " of them in memory");
+        System.out.println("Removals with wrapped probe sequences, spill and unspill, close : same as a HashMap");
+    }
+
+    /**
+     * Removes, in random order, the entries of many small maps three-quarters full, where the probe
+     * sequences often wrap around the end of the table, and checks the maps against HashMaps after
+     * every removal.
+     */
+    private static void checkRemovals() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 20000; trial++) {
+            IntDoubleMap map = new IntDoubleMap();
+            Map<Integer, Double> reference = new HashMap<Integer, Double>();
+            List<Integer> keys = new ArrayList<Integer>();
+            // 12 entries fill a table of 16 slots without growing it
+            for (int i = 0; i < 12; i++) {
+                int key = random.nextInt(1 << 20);
+                keys.add(key);
+                map.put(key, i);
+                reference.put(key, (double) i);
+            }
+            Collections.shuffle(keys, random);
+            for (int key : keys) {
+                if (Double.compare(map.remove(key), valueOf(reference.remove(key))) != 0) {
+                    throw new IllegalStateException("The map removed another value than a HashMap.");
+                }
+                compare(map, reference, keys);
+            }
+        }
+    }
+
+    /**
+     * Spills a map, removes and replaces entries spilled and in memory, and checks that unspilling
+     * brings all the entries back into memory, and that closing keeps only those in memory. Both
+     * delete the spill file.
+     */
+    private static void checkSpillFile() throws Exception {
+        IntDoubleMap map = new IntDoubleMap();
+        Map<Integer, Double> reference = new HashMap<Integer, Double>();
+        List<Integer> keys = new ArrayList<Integer>();
+        File file = File.createTempFile("metrics", ".spill");
+        file.deleteOnExit();
+        map.spillTo(file, 100);
+        for (int key = 0; key < 1000; key++) {
+            keys.add(key);
+            map.put(key, key);
+            reference.put(key, (double) key);
+        }
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            int key = random.nextInt(1000);
+            if (random.nextBoolean()) {
+                map.remove(key);
+                reference.remove(key);
+            } else {
+                map.put(key, -i);
+                reference.put(key, (double) -i);
+            }
+        }
+        if (map.getSizeInMemory() >= map.size()) {
+            throw new IllegalStateException("The map did not spill.");
+        }
+        compare(map, reference, keys);
+        map.unspill();
+        if (file.exists() || map.getSizeInMemory() != map.size()) {
+            throw new IllegalStateException("Unspilling left entries or the spill file behind.");
+        }
+        compare(map, reference, keys);
+
+        File second = File.createTempFile("metrics", ".spill");
+        second.deleteOnExit();
+        map.spillTo(second, 100);
+        int inMemory = map.getSizeInMemory();
+        map.close();
+        int kept = 0;
+        for (int key : keys) {
+            double value = map.get(key);
+            if (!Double.isNaN(value)) {
+                if (value != reference.get(key)) {
+                    throw new IllegalStateException("Closing the spill file changed the value of " + key + ".");
+                }
+                kept++;
+            }
+        }
+        if (second.exists() || map.size() != inMemory || kept != inMemory) {
+            throw new IllegalStateException("Closing the spill file did not keep only the entries in memory, "
+                    + "or left the file behind.");
+        }
+    }
+
+    /**
+     * Checks that a map has the size of a HashMap and the same values for some keys.
+     */
+    private static void compare(IntDoubleMap map, Map<Integer, Double> reference, List<Integer> keys) {
+        if (map.size() != reference.size()) {
+            throw new IllegalStateException("The map has " + map.size() + " entries, a HashMap " + reference.size()
+                    + ".");
+        }
+        for (int key : keys) {
+            if (Double.compare(map.get(key), valueOf(reference.get(key))) != 0) {
+                throw new IllegalStateException("The map has " + map.get(key) + " for " + key + ", a HashMap "
+                        + reference.get(key) + ".");
+            }
+        }
+    }
+
+    private static double valueOf(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    /**
+     * Applies the random operations to one of the maps and returns a checksum of the values read
+     * and the time per operation in nanoseconds.
+     */
+    private static Object[] apply(Map<Integer, Double> hashMap, IntDoubleMap map, int operations) {
+        Random random = new Random(42);
+        double checksum = 0;
+        int nextKey = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int op = random.nextInt(4);
+            // a key among the last thousand, or one of any age now and then
+            int key = random.nextInt(100) == 0 ? random.nextInt(nextKey + 1) : nextKey - random.nextInt(1000);
+            if (op == 0) {
+                double value = random.nextDouble();
+                if (hashMap != null) {
+                    hashMap.put(nextKey, value);
+                } else {
+                    map.put(nextKey, value);
+                }
+                nextKey++;
+            } else if (op == 1) {
+                double value;
+                if (hashMap != null) {
+                    Double boxed = hashMap.get(key);
+                    value = boxed == null ? -1 : boxed;
+                } else {
+                    value = map.get(key);
+                    value = Double.isNaN(value) ? -1 : value;
+                }
+                checksum = 31 * checksum + value;
+            } else if (op == 2) {
+                double value;
+                if (hashMap != null) {
+                    Double boxed = hashMap.remove(key);
+                    value = boxed == null ? -1 : boxed;
+                } else {
+                    value = map.remove(key);
+                    value = Double.isNaN(value) ? -1 : value;
+                }
+                checksum = 31 * checksum + value;
+            } else {
+                int size = hashMap != null ? hashMap.size() : map.size();
+                checksum = 31 * checksum + size;
+            }
+            checksum %= 1e9;
+        }
+        long time = (System.nanoTime() - start) / operations;
+        return new Object[] {checksum, time};
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        List<String> samples = simulate();
+
+        System.out.println("=========================================");
+        System.out.println("METRICS HEAP OVER " + hours + " SIMULATED HOURS");
+        System.out.println("=========================================");
+        System.out.println("Gateways : " + gateways + " x " + sensorsPerGateway + " sensors, interval : " + interval);
+        for (String sample : samples) {
+            System.out.println(sample);
+        }
+    }
+
+    /**
+     * Runs the scenario in a new simulation context with a probe sampling the heap and the time
+     * keeper, and returns the samples.
+     */
+    private List<String> simulate() throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                int time = hours * HOUR;
+                ParallelHypotensionBenchmark.createScenario(gateways, sensorsPerGateway, interval, false, time,
+                        false, true);
+                HeapProbe probe = new HeapProbe(Math.max(1, hours / 8) * HOUR);
+                CloudSim.terminateSimulation(time);
+                CloudSim.startSimulation();
+                CloudSim.stopSimulation();
+                return probe.samples;
+            }
+        });
+    }
+
+    /**
+     * An entity sampling, at a fixed period of simulated time, the heap used after a garbage
+     * collection and the numbers of times the time keeper holds.
+     */
+    private static class HeapProbe extends SimEntity {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        private static final int SAMPLE = 1;
+
+        private final double period;
+        private final List<String> samples = new ArrayList<String>();
+
+        HeapProbe(double period) {
+            super("heap-probe");
+            this.period = period;
+        }
+
+        @Override
+        public void startEntity() {
+            schedule(getId(), period, SAMPLE);
+        }
+
+        @Override
+        public void processEvent(SimEvent ev) {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long used = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+            TimeKeeper timeKeeper = TimeKeeper.getInstance();
+            long started = 0;
+            for (int count : timeKeeper.getLoopIdToStartedTupleCount().values()) {
+                started += count;
+            }
+            samples.add(String.format("Hour %3d : heap %7d KB, loops started %8d, emit times held %5d, "
+                    + "CPU start times held %5d", Math.round(CloudSim.clock() / HOUR), used, started,
+                    timeKeeper.getEmitTimes().size(), timeKeeper.getTupleIdToCpuStartTime().size()));
+            schedule(getId(), period, SAMPLE);
+        }
+
+        @Override
+        public void shutdownEntity() {
+        }
+    }
+}
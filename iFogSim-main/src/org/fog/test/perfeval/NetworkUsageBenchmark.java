@@ -0,0 +1,176 @@
+package org.fog.test.perfeval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.fog.utils.NetworkUsageAccount;
+import org.fog.utils.NetworkUsageMonitor;
+
+/**
+ * Runs the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark} with the
+ * hypotension detector on the gateways (edge-ward) and in the cloud (cloud-only), and compares the
+ * network usage of both placements by kind of link and by tuple type, from the
+ * {@link NetworkUsageAccount}. Exports the account of each placement as CSV and as a columnar file,
+ * and checks that both files read back give the rows of the account, value for value, and that the
+ * rows add up to the total network usage. An empty account is exported and read back too.
+ *
+ * Usage: NetworkUsageBenchmark [--gateways 8] [--sensors 4] [--interval 5] [--time 2000]
+ *                              [--resolution 100] [--file results/network]
+ */
+public class NetworkUsageBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private double resolution = 100;
+    private String file = "results/network";
+
+    public static void main(String[] args) throws Exception {
+        NetworkUsageBenchmark benchmark = new NetworkUsageBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(8, 4, 5, 2000);
+        resolution = options.getDouble("--resolution", resolution);
+        file = options.getString("--file", file);
+        options.checkAllRead();
+        if (resolution < 0) {
+            throw new IllegalArgumentException("The resolution should be positive or 0.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        NetworkUsageAccount edgeward = simulate(false, file + "-edgeward");
+        NetworkUsageAccount cloudOnly = simulate(true, file + "-cloud");
+        check(new NetworkUsageAccount(), file + "-empty", 0);
+
+        System.out.println("=========================================");
+        System.out.println("NETWORK USAGE BY LINK AND TUPLE TYPE");
+        System.out.println("=========================================");
+        System.out.println(scenario);
+        System.out.println(String.format("%-24s %16s %16s", "", "edge-ward", "cloud-only"));
+        for (int kind = NetworkUsageAccount.UP; kind <= NetworkUsageAccount.MIGRATION; kind++) {
+            System.out.println(String.format("%-24s %16.1f %16.1f", NetworkUsageAccount.getKindName(kind) + " links",
+                    edgeward.getUsageOfKind(kind), cloudOnly.getUsageOfKind(kind)));
+        }
+        Map<String, Double> edgewardByType = edgeward.getUsageByType();
+        Map<String, Double> cloudOnlyByType = cloudOnly.getUsageByType();
+        Set<String> types = new TreeSet<String>(edgewardByType.keySet());
+        types.addAll(cloudOnlyByType.keySet());
+        for (String type : types) {
+            Double edgewardUsage = edgewardByType.get(type);
+            Double cloudOnlyUsage = cloudOnlyByType.get(type);
+            System.out.println(String.format("%-24s %16.1f %16.1f", type, edgewardUsage == null ? 0 : edgewardUsage,
+                    cloudOnlyUsage == null ? 0 : cloudOnlyUsage));
+        }
+        System.out.println(String.format("%-24s %16.1f %16.1f", "total", edgeward.getTotalUsage(),
+                cloudOnly.getTotalUsage()));
+        System.out.println("Rows : " + edgeward.getRowCount() + " edge-ward, " + cloudOnly.getRowCount()
+                + " cloud-only, periods of " + resolution + ", written to " + file + "-*.csv and " + file + "-*.cols");
+    }
+
+    /**
+     * Runs the scenario in a new simulation context, exports its account and checks the exports
+     * against the total network usage.
+     */
+    private NetworkUsageAccount simulate(final boolean cloudDetector, final String fileName) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<NetworkUsageAccount>() {
+            @Override
+            public NetworkUsageAccount call() throws Exception {
+                NetworkUsageMonitor.getAccount().setResolution(resolution);
+                scenario.create(cloudDetector);
+                scenario.run();
+                NetworkUsageAccount account = NetworkUsageMonitor.getAccount();
+                double total = NetworkUsageMonitor.getNetworkUsage();
+                if (!BenchmarkHarness.close(account.getTotalUsage(), total)) {
+                    throw new IllegalStateException("The rows of the account do not add up to the network usage.");
+                }
+                File parent = new File(fileName).getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                check(account, fileName, total);
+                return account;
+            }
+        });
+    }
+
+    /**
+     * Reads the exports back and checks that they have the rows of the account, value for value,
+     * and that their usages add up to the total. The columnar file gives the links and the types of
+     * the rows as indexes, which must stand for the same link or type in every row.
+     */
+    private static void check(NetworkUsageAccount account, String fileName, double total) throws Exception {
+        account.writeCsv(fileName + ".csv");
+        account.writeColumns(fileName + ".cols");
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName + ".csv"));
+        try {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        double[][] columns = new double[6][];
+        int columnRows = -1;
+        for (int column = 0; column < columns.length; column++) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName + ".cols")));
+            try {
+                columnRows = NetworkUsageAccount.readHeader(in);
+                columns[column] = NetworkUsageAccount.readColumn(in, columnRows, column);
+            } finally {
+                in.close();
+            }
+        }
+        if (lines.size() != account.getRowCount() || columnRows != account.getRowCount()) {
+            throw new IllegalStateException("The exports of " + fileName + " do not have the rows of the account.");
+        }
+        Map<Double, String> links = new HashMap<Double, String>();
+        Map<Double, String> types = new HashMap<Double, String>();
+        double csvTotal = 0;
+        double columnTotal = 0;
+        for (int row = 0; row < account.getRowCount(); row++) {
+            String[] fields = lines.get(row).split(",");
+            String kind = NetworkUsageAccount.getKindName(account.getLinkKind(row));
+            String link = account.getLinkSource(row) + ">" + account.getLinkDestination(row) + ":" + kind;
+            String previousLink = links.put(columns[0][row], link);
+            String previousType = types.put(columns[1][row], account.getType(row));
+            if (fields.length != 8 || !fields[2].equals(kind) || !fields[3].equals(account.getType(row))
+                    || Double.parseDouble(fields[4]) != account.getPeriodStart(row)
+                    || Long.parseLong(fields[5]) != account.getCount(row)
+                    || Double.parseDouble(fields[6]) != account.getBytes(row)
+                    || Double.parseDouble(fields[7]) != account.getUsage(row)) {
+                throw new IllegalStateException("Row " + row + " of " + fileName + ".csv differs from the account.");
+            }
+            if ((previousLink != null && !previousLink.equals(link))
+                    || (previousType != null && !previousType.equals(account.getType(row)))
+                    || columns[2][row] * account.getResolution() != account.getPeriodStart(row)
+                    || columns[3][row] != account.getCount(row) || columns[4][row] != account.getBytes(row)
+                    || columns[5][row] != account.getUsage(row)) {
+                throw new IllegalStateException("Row " + row + " of " + fileName + ".cols differs from the account.");
+            }
+            csvTotal += Double.parseDouble(fields[7]);
+            columnTotal += columns[5][row];
+        }
+        if (!BenchmarkHarness.close(csvTotal, total) || !BenchmarkHarness.close(columnTotal, total)) {
+            throw new IllegalStateException("The exports of " + fileName + " do not add up to the total.");
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package org.fog.test.perfeval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.application.Application;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.SensorGroup;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementMapping;
+import org.fog.utils.Config;
+import org.fog.utils.FogSubtreePartitioning;
+import org.fog.utils.LatencyHistogram;
+import org.fog.utils.NetworkUsageAccount;
+import org.fog.utils.NetworkUsageMonitor;
+import org.fog.utils.TimeKeeper;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+/**
+ * Runs a scaled-up HypotensionDetection topology (a cloud above many gateways, each with its own
+ * blood pressure sensor nodes and its own copy of the application modules) sequentially and as a
+ * parallel run partitioned by gateway subtree, checks that both runs give bit-identical results and
+ * reports their wall-clock times.
+ * <p>
+ * With --cloud-detector the detector runs in the cloud, so every reading crosses from a gateway
+ * partition to the root partition and back.
+ *
+ * Usage: ParallelHypotensionBenchmark [--gateways 32] [--sensors 4] [--interval 5] [--time 2000]
+ *                                     [--threads n] [--cloud-detector]
+ */
+public class ParallelHypotensionBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean cloudDetector;
+
+    public static void main(String[] args) throws Exception {
+        ParallelHypotensionBenchmark benchmark = new ParallelHypotensionBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args, "--cloud-detector");
+        scenario = options.getScenario(32, 4, 5, 2000);
+        threads = options.getInt("--threads", threads);
+        cloudDetector = options.isSet("--cloud-detector");
+        options.checkAllRead();
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads should be positive.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        // warm up the JIT with both engines
+        simulate(false);
+        simulate(true);
+
+        long start = System.nanoTime();
+        String sequential = simulate(false);
+        long sequentialTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        String parallel = simulate(true);
+        long parallelTime = System.nanoTime() - start;
+
+        if (!sequential.equals(parallel)) {
+            System.out.println("SEQUENTIAL\n" + sequential + "PARALLEL\n" + parallel);
+            throw new IllegalStateException("Parallel and sequential runs gave different results.");
+        }
+
+        System.out.println("=========================================");
+        System.out.println("PARALLEL HYPOTENSION BENCHMARK");
+        System.out.println("=========================================");
+        System.out.println("Gateways : " + scenario.gateways + " x " + scenario.sensorsPerGateway
+                + " sensors, detector in the " + (cloudDetector ? "cloud" : "gateways"));
+        System.out.println("Simulated time : " + scenario.time);
+        System.out.println("Threads : " + threads);
+        System.out.print(sequential);
+        System.out.println("Sequential wall-clock time : " + sequentialTime / 1000000 + " ms");
+        System.out.println("Parallel wall-clock time : " + parallelTime / 1000000 + " ms");
+        System.out.println(String.format("Speedup : %.2f", (double) sequentialTime / parallelTime));
+    }
+
+    /**
+     * Runs the scenario in a new simulation context and returns its results, with every value
+     * printed exactly.
+     */
+    private String simulate(final boolean parallel) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<String>() {
+            @Override
+            public String call() {
+                return simulateInContext(parallel);
+            }
+        });
+    }
+
+    private String simulateInContext(boolean parallel) {
+        scenario.create(cloudDetector);
+        List<FogDevice> fogDevices = entities(FogDevice.class);
+        CloudSim.terminateSimulation(scenario.time);
+        if (parallel) {
+            CloudSim.startSimulation(new FogSubtreePartitioning(fogDevices, entities(Sensor.class),
+                    entities(Actuator.class), threads), threads);
+        } else {
+            CloudSim.startSimulation();
+        }
+        CloudSim.stopSimulation();
+        return results(fogDevices);
+    }
+
+    /**
+     * Creates the scaled-up topology in the simulation context of the calling thread and submits
+     * the application.
+     */
+    static void createScenario(int gateways, int sensorsPerGateway, double interval, boolean cloudDetector,
+                               int time) {
+        createScenario(gateways, sensorsPerGateway, interval, cloudDetector, time, false, false);
+    }
+
+    /**
+     * Creates the scaled-up topology in the simulation context of the calling thread and submits
+     * the application, with the blood pressure sensors of each gateway in a {@link SensorGroup} if
+     * asked. Staggered sensors start at whole time units spread over the first interval rather than
+     * all together.
+     */
+    static void createScenario(int gateways, int sensorsPerGateway, double interval, boolean cloudDetector,
+                               int time, boolean sensorGroups, boolean staggered) {
+        createScenario(gateways, sensorsPerGateway, interval, cloudDetector, time, sensorGroups, staggered, 1);
+    }
+
+    /**
+     * Creates the scaled-up topology with up to the given number of blood pressure sensors attached
+     * to each sensor node of a gateway, rather than one per node. Each node has one display.
+     */
+    static void createScenario(int gateways, int sensorsPerGateway, double interval, boolean cloudDetector,
+                               int time, boolean sensorGroups, boolean staggered, int sensorsPerNode) {
+        if (sensorsPerNode < 1) {
+            throw new IllegalArgumentException("The number of sensors per node should be positive.");
+        }
+        CloudSim.init(1, Calendar.getInstance(), false);
+        Config.setMaxSimulationTime(time);
+
+        String appId = "HypotensionApp";
+        FogBroker broker;
+        try {
+            broker = new FogBroker("broker");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        Application application = HypotensionDetection.createApplication(appId, broker.getId());
+        application.setUserId(broker.getId());
+
+        List<FogDevice> fogDevices = new ArrayList<>();
+        List<Sensor> sensors = new ArrayList<>();
+        List<Actuator> actuators = new ArrayList<>();
+        ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+
+        FogDevice cloud = HypotensionDetection.createFogDevice("cloud", 44800, 40000, 100, 10000, 0, 0.01, 1664, 1332);
+        cloud.setParentId(-1);
+        fogDevices.add(cloud);
+        if (cloudDetector) {
+            moduleMapping.addModuleToDevice("hypotensionDetector", "cloud");
+        }
+        for (int g = 0; g < gateways; g++) {
+            FogDevice gateway = HypotensionDetection.createFogDevice("edge-gateway-" + g, 2800, 4000, 10000, 10000, 1,
+                    0.0, 107.33, 83.43);
+            gateway.setParentId(cloud.getId());
+            gateway.setUplinkLatency(50);
+            fogDevices.add(gateway);
+            moduleMapping.addModuleToDevice("clientModule", gateway.getName());
+            if (!cloudDetector) {
+                moduleMapping.addModuleToDevice("hypotensionDetector", gateway.getName());
+            }
+
+            SensorGroup group = null;
+            if (sensorGroups) {
+                group = new SensorGroup("bp-sensors_" + g, "BP_SENSOR", broker.getId(), appId,
+                        new DeterministicDistribution(interval));
+                group.setLatency(1.0);
+                group.setApp(application);
+                sensors.add(group);
+            }
+            FogDevice sensorNode = null;
+            for (int s = 0; s < sensorsPerGateway; s++) {
+                String id = g + "_" + s;
+                String nodeId = g + "_" + s / sensorsPerNode;
+                if (s % sensorsPerNode == 0) {
+                    sensorNode = HypotensionDetection.createFogDevice("bp-sensor-" + nodeId, 1000, 512, 1000, 1000,
+                            2, 0.0, 87.53, 82.44);
+                    sensorNode.setParentId(gateway.getId());
+                    sensorNode.setUplinkLatency(2);
+                    fogDevices.add(sensorNode);
+                }
+
+                int phase = staggered ? (int) (s * interval / sensorsPerGateway) : 0;
+                if (sensorGroups) {
+                    group.addMember(sensorNode.getId(), phase);
+                } else {
+                    Sensor sensor = new Sensor("bp-sensor_" + id, "BP_SENSOR", broker.getId(), appId,
+                            new DeterministicDistribution(interval));
+                    sensor.setGatewayDeviceId(sensorNode.getId());
+                    sensor.setTransmissionStartDelay(sensor.getTransmissionStartDelay() + phase);
+                    sensor.setLatency(1.0);
+                    sensor.setApp(application);
+                    sensors.add(sensor);
+                }
+
+                if ((s + 1) % sensorsPerNode == 0 || s + 1 == sensorsPerGateway) {
+                    Actuator display = new Actuator("display-" + nodeId, broker.getId(), appId, "DISPLAY");
+                    display.setGatewayDeviceId(sensorNode.getId());
+                    display.setLatency(1.0);
+                    display.setApp(application);
+                    actuators.add(display);
+                }
+            }
+        }
+
+        Controller controller = new Controller("controller", fogDevices, sensors, actuators);
+        controller.submitApplication(application, 0, new ModulePlacementMapping(fogDevices, application, moduleMapping));
+    }
+
+    /**
+     * Gets the entities of a type, in the order of their ids, before the simulation ends.
+     */
+    static <T> List<T> entities(Class<T> type) {
+        List<T> entities = new ArrayList<>();
+        for (SimEntity entity : CloudSim.getEntityList()) {
+            if (type.isInstance(entity)) {
+                entities.add(type.cast(entity));
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Gets the results of a simulation that has ended, with every value printed exactly.
+     */
+    static String results(List<FogDevice> fogDevices) {
+        StringBuilder results = new StringBuilder();
+        for (Map.Entry<Integer, Double> entry : new TreeMap<>(TimeKeeper.getInstance().getLoopIdToCurrentAverage()).entrySet()) {
+            results.append("Loop ").append(entry.getKey()).append(" delay : ").append(entry.getValue())
+                    .append(" over ").append(TimeKeeper.getInstance().getLoopIdToCurrentNum().get(entry.getKey()))
+                    .append(" loops\n");
+            LatencyHistogram delays = TimeKeeper.getInstance().getLoopIdToDelayHistogram().get(entry.getKey());
+            results.append("Loop ").append(entry.getKey()).append(" delay percentiles : ")
+                    .append(delays.getPercentileSummary()).append('\n');
+        }
+        for (Map.Entry<String, Double> entry : new TreeMap<>(TimeKeeper.getInstance().getTupleTypeToAverageCpuTime()).entrySet()) {
+            results.append(entry.getKey()).append(" CPU time : ").append(entry.getValue()).append('\n');
+        }
+        double energy = 0;
+        double cloudCost = 0;
+        for (FogDevice device : fogDevices) {
+            energy += device.getEnergyConsumption();
+            if (device.getName().equals("cloud")) {
+                cloudCost = device.getTotalCost();
+            }
+        }
+        results.append("Energy : ").append(energy).append('\n');
+        results.append("Cloud cost : ").append(cloudCost).append('\n');
+        results.append("Network usage : ").append(NetworkUsageMonitor.getNetworkUsage()).append('\n');
+        NetworkUsageAccount account = NetworkUsageMonitor.getAccount();
+        for (int kind = NetworkUsageAccount.UP; kind <= NetworkUsageAccount.MIGRATION; kind++) {
+            results.append("Network usage ").append(NetworkUsageAccount.getKindName(kind)).append(" : ")
+                    .append(account.getUsageOfKind(kind)).append('\n');
+        }
+        for (Map.Entry<String, Double> entry : new TreeMap<>(account.getUsageByType()).entrySet()) {
+            results.append(entry.getKey()).append(" network usage : ").append(entry.getValue()).append('\n');
+        }
+        return results.toString();
+    }
+}
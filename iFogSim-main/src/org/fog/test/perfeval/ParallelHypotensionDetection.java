@@ -0,0 +1,61 @@
+package org.fog.test.perfeval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
+/**
+ * Runs the edge-ward and the cloud-only HypotensionDetection scenarios at the same time in one JVM,
+ * each in its own simulation context and thread, then prints the results of both.
+ *
+ * Usage: ParallelHypotensionDetection
+ */
+public class ParallelHypotensionDetection {
+
+    private static final boolean[] MODES = {false, true};
+
+    public static void main(String[] args) throws Exception {
+        Log.disable();
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(MODES.length);
+        List<Future<String>> reports = new ArrayList<>();
+        for (final boolean cloud : MODES) {
+            reports.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return run(cloud);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        for (int i = 0; i < MODES.length; i++) {
+            System.out.println("Running in " + (MODES[i] ? "CLOUD-ONLY" : "EDGE-WARD") + " mode");
+            System.out.print(reports.get(i).get());
+        }
+        System.out.println("Wall-clock time : " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    private static String run(final boolean cloud) throws Exception {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buffer);
+        new SimulationContext().call(new Callable<Void>() {
+            @Override
+            public Void call() {
+                new HypotensionDetection(cloud).run(out);
+                return null;
+            }
+        });
+        out.flush();
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package org.fog.test.perfeval;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.SensorGroup;
+import org.fog.utils.FogSubtreePartitioning;
+
+/**
+ * Runs the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark} with one
+ * {@link Sensor} entity per blood pressure sensor and with one {@link SensorGroup} per gateway,
+ * checks that both give the same results, sequentially and in parallel for the groups, and reports
+ * the numbers of sensor entities and the median wall-clock times. Many sensors are attached to each
+ * sensor node of a gateway, and the sensors of a gateway start at different times of the first
+ * interval, so that the gateways are not flooded at once. The three modes are run in turn, first to
+ * warm up the JIT and then as many times as asked. A gateway processes the readings of about 64
+ * sensors per interval of 100; beyond that its tuples queue up without bound and the runs slow down
+ * sharply.
+ *
+ * Usage: SensorGroupBenchmark [--gateways 4] [--sensors 64] [--per-node 64] [--interval 100] [--time 2000]
+ *                             [--threads 2] [--warmup 2] [--runs 5]
+ */
+public class SensorGroupBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private int sensorsPerNode = 64;
+    private int threads = 2;
+    private int warmup = 2;
+    private int runs = 5;
+
+    public static void main(String[] args) throws Exception {
+        SensorGroupBenchmark benchmark = new SensorGroupBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(4, 64, 100, 2000);
+        sensorsPerNode = options.getInt("--per-node", sensorsPerNode);
+        threads = options.getInt("--threads", threads);
+        warmup = options.getInt("--warmup", warmup);
+        runs = options.getInt("--runs", runs);
+        options.checkAllRead();
+        if (sensorsPerNode < 1 || threads < 1 || runs < 1) {
+            throw new IllegalArgumentException("The numbers of sensors per node, threads and runs should be positive.");
+        }
+        if (warmup < 0) {
+            throw new IllegalArgumentException("The number of warm-up runs should not be negative.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        // warm up the JIT
+        for (int i = 0; i < warmup; i++) {
+            simulate(false, false);
+            simulate(true, false);
+            simulate(true, true);
+        }
+
+        Object[] sensors = null;
+        Object[] groups = null;
+        long[] sensorsTimes = new long[runs];
+        long[] groupsTimes = new long[runs];
+        long[] parallelGroupsTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            sensors = simulate(false, false);
+            groups = simulate(true, false);
+            Object[] parallelGroups = simulate(true, true);
+            for (Object[] results : new Object[][] {groups, parallelGroups}) {
+                if (!sensors[0].equals(results[0])) {
+                    System.out.println("SENSORS\n" + sensors[0] + "SENSOR GROUPS\n" + results[0]);
+                    throw new IllegalStateException("The sensor groups changed the results.");
+                }
+            }
+            sensorsTimes[i] = (Long) sensors[2];
+            groupsTimes[i] = (Long) groups[2];
+            parallelGroupsTimes[i] = (Long) parallelGroups[2];
+        }
+
+        System.out.println("=========================================");
+        System.out.println("SENSOR GROUPS");
+        System.out.println("=========================================");
+        System.out.println(scenario);
+        System.out.println("Sensors per node : " + sensorsPerNode);
+        System.out.print(sensors[0]);
+        System.out.println("Sensor entities : " + sensors[1] + " sensors, " + groups[1] + " groups");
+        System.out.println("Runs : " + runs + " after " + warmup + " warm-up runs");
+        System.out.println("Sensors wall-clock time : " + describe(sensorsTimes));
+        System.out.println("Sensor groups wall-clock time : " + describe(groupsTimes));
+        System.out.println("Parallel sensor groups wall-clock time : " + describe(parallelGroupsTimes));
+        System.out.println(String.format("Speedup of the medians : %.2f",
+                (double) median(sensorsTimes) / Math.max(1, median(groupsTimes))));
+    }
+
+    /**
+     * Describes the wall-clock times of the runs of a mode.
+     */
+    private static String describe(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return "median " + median(times) + " ms, min " + sorted[0] + " ms, max " + sorted[sorted.length - 1] + " ms";
+    }
+
+    /**
+     * Gets the median of the wall-clock times of the runs of a mode, the lower one for an even number
+     * of runs.
+     */
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[(sorted.length - 1) / 2];
+    }
+
+    /**
+     * Runs the scenario in a new simulation context and returns its results, the number of sensor
+     * entities and the wall-clock time of the simulation in milliseconds.
+     */
+    private Object[] simulate(final boolean sensorGroups, final boolean parallel) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<Object[]>() {
+            @Override
+            public Object[] call() {
+                ParallelHypotensionBenchmark.createScenario(scenario.gateways, scenario.sensorsPerGateway,
+                        scenario.interval, false, scenario.time, sensorGroups, true, sensorsPerNode);
+                List<FogDevice> fogDevices = ParallelHypotensionBenchmark.entities(FogDevice.class);
+                List<Sensor> sensors = ParallelHypotensionBenchmark.entities(Sensor.class);
+                CloudSim.terminateSimulation(scenario.time);
+                long start = System.nanoTime();
+                if (parallel) {
+                    CloudSim.startSimulation(new FogSubtreePartitioning(fogDevices, sensors,
+                            ParallelHypotensionBenchmark.entities(Actuator.class), threads), threads);
+                } else {
+                    CloudSim.startSimulation();
+                }
+                long wallClockTime = BenchmarkHarness.millisSince(start);
+                CloudSim.stopSimulation();
+                return new Object[] {ParallelHypotensionBenchmark.results(fogDevices), sensors.size(), wallClockTime};
+            }
+        });
+    }
+}
@@ -0,0 +1,254 @@
+package org.fog.test.perfeval;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.TraceSink;
+import org.fog.utils.Logger;
+
+/**
+ * Runs the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark} without
+ * any output, with the fog and CloudSim logs printed synchronously to a file flushed at every line
+ * as the standard output is, with the same logs published to a {@link TraceSink}, and with the
+ * logs, the events, the tuple lifecycles and the energy samples published to a sink, blocking or
+ * dropping records when its rings are full. Reports the wall-clock time of each run, the CPU time of
+ * the simulation thread, which leaves out the work of the thread of the sink, and the records of the
+ * sinks, and checks that the sinks write the same log lines as the synchronous output. Checks as
+ * well that a burst of records overflowing a ring of two records is written whole by a blocking
+ * sink, and in order with the records it dropped counted by a dropping sink, and that a closed sink
+ * rejects records once its ring is full. With a single processor, the thread of the sink takes its time from the simulation thread, and the wall-clock
+ * times include it.
+ *
+ * Usage: TraceSinkBenchmark [--gateways 4] [--sensors 4] [--interval 5] [--time 1000]
+ *                           [--file results/trace] [--file-size 64] [--files 4]
+ */
+public class TraceSinkBenchmark {
+
+    private BenchmarkHarness.Scenario scenario;
+    private String file = "results/trace";
+    private long fileSize = 64;
+    private int files = 4;
+
+    public static void main(String[] args) throws Exception {
+        TraceSinkBenchmark benchmark = new TraceSinkBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(4, 4, 5, 1000);
+        file = options.getString("--file", file);
+        fileSize = options.getLong("--file-size", fileSize);
+        files = options.getInt("--files", files);
+        options.checkAllRead();
+        if (fileSize < 1 || files < 1) {
+            throw new IllegalArgumentException("The file size and the number of files should be positive.");
+        }
+    }
+
+    private void run() throws Exception {
+        PrintStream console = System.out;
+        boolean loggerEnabled = Logger.ENABLED;
+        boolean logDisabled = Log.isDisabled();
+        String syncFile = file + "-sync.log";
+        String logsFile = file + "-logs.log";
+        String blockFile = file + "-block.log";
+        String dropFile = file + "-drop.log";
+        long[] off;
+        long[] sync;
+        TraceSink logs;
+        TraceSink block;
+        TraceSink drop;
+        long[] logging;
+        long[] blocking;
+        long[] dropping;
+        try {
+            // the first runs warm up the JIT
+            simulate(null, false, null);
+            simulate(null, false, null);
+            off = simulate(null, false, null);
+            sync = simulate(syncFile, true, null);
+            logs = new TraceSink(logsFile, 1 << 16, TraceSink.BLOCK, fileSize << 20, files);
+            logs.setTraced(TraceSink.EVENT, false);
+            logs.setTraced(TraceSink.TUPLE, false);
+            logs.setTraced(TraceSink.ENERGY, false);
+            logging = simulate(null, true, logs);
+            block = new TraceSink(blockFile, 1 << 16, TraceSink.BLOCK, fileSize << 20, files);
+            blocking = simulate(null, true, block);
+            drop = new TraceSink(dropFile, 1 << 10, TraceSink.DROP, fileSize << 20, files);
+            dropping = simulate(null, true, drop);
+        } finally {
+            System.setOut(console);
+            Log.setOutput(console);
+            Logger.ENABLED = loggerEnabled;
+            Log.setDisabled(logDisabled);
+        }
+        if (logs.getDropped() != 0 || logs.getWritten() != logs.getPublished() || block.getDropped() != 0
+                || block.getWritten() != block.getPublished() || drop.getWritten() != drop.getPublished()) {
+            throw new IllegalStateException("The sinks lost records.");
+        }
+        check(syncFile, logsFile, Math.min(logs.getFileCount(), files));
+        check(syncFile, blockFile, Math.min(block.getFileCount(), files));
+        checkFullRing(file + "-full-block.log", TraceSink.BLOCK);
+        checkFullRing(file + "-full-drop.log", TraceSink.DROP);
+
+        System.out.println("=========================================");
+        System.out.println("TRACE SINK");
+        System.out.println("=========================================");
+        System.out.println(scenario + ", processors : " + Runtime.getRuntime().availableProcessors());
+        System.out.println(String.format("%-32s %10s %10s %10s %10s %12s %10s", "", "time (ms)", "slowdown", "CPU (ms)",
+                "slowdown", "records", "dropped"));
+        print("No output", off, off, -1, -1);
+        print("Logs to a line-flushed file", sync, off, -1, -1);
+        print("Logs to a trace sink", logging, off, logs.getPublished(), logs.getDropped());
+        print("All records, blocking", blocking, off, block.getPublished(), block.getDropped());
+        print("All records, dropping", dropping, off, drop.getPublished(), drop.getDropped());
+        System.out.println("Sinks closed in " + logging[1] + " ms with the logs, " + blocking[1] + " ms blocking, "
+                + dropping[1] + " ms dropping, " + block.getFileCount() + " files of at most " + fileSize + " MB, "
+                + files + " kept");
+        System.out.println("Log lines of the sink : same as the synchronous output");
+        System.out.println("Full rings : all records written blocking, written in order and counted dropping");
+    }
+
+    private static void print(String name, long[] result, long[] off, long records, long dropped) {
+        System.out.println(String.format("%-32s %10d %10.2f %10d %10.2f %12s %10s", name, result[0],
+                (double) result[0] / off[0], result[2], (double) result[2] / off[2],
+                records < 0 ? "" : String.valueOf(records), dropped < 0 ? "" : String.valueOf(dropped)));
+    }
+
+    /**
+     * Runs the scenario in a new simulation context, with the logs printed to a file, or to a sink,
+     * or disabled, and returns the wall-clock time of the simulation, the time the sink took to write
+     * its remaining records once closed, and the CPU time of the simulation thread, in milliseconds.
+     */
+    private long[] simulate(final String logFile, final boolean logs, final TraceSink sink) throws Exception {
+        final PrintStream out = logFile == null ? BenchmarkHarness.discardingStream()
+                : new PrintStream(new BufferedOutputStream(new FileOutputStream(logFile), 8192), true);
+        try {
+            return BenchmarkHarness.runQuietly(new Callable<long[]>() {
+                @Override
+                public long[] call() {
+                    System.setOut(out);
+                    Log.setOutput(out);
+                    Logger.ENABLED = logs;
+                    Log.setDisabled(!logs);
+                    CloudSim.setTraceSink(sink);
+                    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                    long cpu = bean.getCurrentThreadCpuTime();
+                    long start = System.nanoTime();
+                    scenario.create(false);
+                    scenario.run();
+                    long simulated = BenchmarkHarness.millisSince(start);
+                    cpu = bean.getCurrentThreadCpuTime() - cpu;
+                    // the results printed by the controller are not traced
+                    Logger.ENABLED = false;
+                    Log.disable();
+                    start = System.nanoTime();
+                    if (sink != null) {
+                        sink.close();
+                    }
+                    return new long[] {simulated, BenchmarkHarness.millisSince(start), cpu / 1000000};
+                }
+            });
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Checks that the lines of the files of the sink, from the oldest kept, that are not records of
+     * events, tuples or energy samples are lines the logs, the placement and the controller printed
+     * synchronously, in the same order.
+     */
+    private static void check(String syncFile, String sinkFile, int sinkFiles) throws IOException {
+        List<String> sync = readLines(syncFile);
+        List<String> text = new ArrayList<String>();
+        for (int i = sinkFiles - 1; i >= 0; i--) {
+            for (String line : readLines(i == 0 ? sinkFile : sinkFile + "." + i)) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 3 || !(fields[1].equals("EVENT") || fields[1].equals("TUPLE")
+                        || fields[1].equals("ENERGY"))) {
+                    text.add(line);
+                }
+            }
+        }
+        if (text.isEmpty() || Collections.indexOfSubList(sync, text) < 0) {
+            throw new IllegalStateException("The sink does not write the lines printed synchronously.");
+        }
+    }
+
+    /**
+     * Publishes a burst of numbered records, formatted by the thread of the sink so that it falls
+     * behind, to a sink with rings of two records, and checks the records written: all of them with
+     * the {@link TraceSink#BLOCK} policy, and the others in order with the {@link TraceSink#DROP}
+     * policy. Then checks that the closed sink takes as many records as its ring has slots, which are
+     * never written, and rejects the next one.
+     */
+    private static void checkFullRing(String fileName, int backpressure) throws IOException {
+        int records = 100000;
+        int capacity = 2;
+        TraceSink sink = new TraceSink(fileName, capacity, backpressure, 0, 1);
+        for (int i = 0; i < records; i++) {
+            sink.format(true, "%d", i);
+        }
+        sink.close();
+        long written = sink.getWritten();
+        long dropped = sink.getDropped();
+        if (written != sink.getPublished() || written + dropped != records
+                || (backpressure == TraceSink.BLOCK ? dropped != 0 : dropped == 0)) {
+            throw new IllegalStateException("The sink of " + fileName + " wrote " + written + " records and dropped "
+                    + dropped + " of " + records + ".");
+        }
+        List<String> lines = readLines(fileName);
+        int previous = -1;
+        for (String line : lines) {
+            int record = Integer.parseInt(line);
+            if (record <= previous || (backpressure == TraceSink.BLOCK && record != previous + 1)) {
+                throw new IllegalStateException("The sink of " + fileName + " wrote record " + record + " after "
+                        + previous + ".");
+            }
+            previous = record;
+        }
+        if (lines.size() != written) {
+            throw new IllegalStateException("The sink of " + fileName + " wrote " + lines.size() + " lines for "
+                    + written + " records.");
+        }
+        for (int i = 0; i < capacity; i++) {
+            sink.text("after close", true);
+        }
+        try {
+            sink.text("after close", true);
+        } catch (IllegalStateException e) {
+            return;
+        }
+        throw new IllegalStateException("The closed sink of " + fileName + " took more records than its ring has.");
+    }
+
+    private static List<String> readLines(String fileName) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(new File(fileName)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,96 @@
+package org.fog.test.perfeval;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppEdge;
+import org.fog.application.Application;
+import org.fog.entities.Tuple;
+import org.fog.utils.FogUtils;
+
+/**
+ * Measures the memory taken by the tuples of HypotensionDetection. For every sensor, it creates the
+ * tuple the sensor emits as Sensor.transmit() does, and then the tuples resulting from its
+ * execution by each module in turn as FogDevice.checkCloudletCompletion() does, up to the tuple sent
+ * to the display. All the tuples are held, as if they were in flight at the same time, and the
+ * heap they retain after a full GC is divided by their number. The bytes allocated to create them
+ * are reported too, when the JVM can count them.
+ *
+ * Usage: TupleFootprintBenchmark [sensors]
+ */
+public class TupleFootprintBenchmark {
+
+    private static final String APP_ID = "HypotensionApp";
+
+    public static void main(String[] args) {
+        int sensors = args.length >= 1 ? Integer.parseInt(args[0]) : 10000;
+        if (sensors < 1) {
+            throw new IllegalArgumentException("The number of sensors should be positive.");
+        }
+        Log.disable();
+        CloudSim.init(1, Calendar.getInstance(), false);
+        Application application = HypotensionDetection.createApplication(APP_ID, 1);
+        application.setUserId(1);
+
+        // a first run warms up the JIT and creates the shared objects
+        createTuples(application, sensors);
+        long before = usedHeap();
+        long allocated = BenchmarkHarness.allocatedBytes();
+        List<Tuple> tuples = createTuples(application, sensors);
+        if (allocated >= 0) {
+            allocated = BenchmarkHarness.allocatedBytes() - allocated;
+        }
+        long after = usedHeap();
+
+        System.out.println("=========================================");
+        System.out.println("TUPLE FOOTPRINT");
+        System.out.println("=========================================");
+        System.out.println("Sensors : " + sensors + ", tuples in flight : " + tuples.size());
+        System.out.println("Retained bytes per tuple : " + (after - before) / tuples.size());
+        if (allocated >= 0) {
+            System.out.println("Allocated bytes per tuple : " + allocated / tuples.size());
+        }
+    }
+
+    /**
+     * Creates the tuples of every sensor, in the list that holds them.
+     */
+    private static List<Tuple> createTuples(Application application, int sensors) {
+        List<Tuple> tuples = new ArrayList<Tuple>(4 * sensors);
+        AppEdge sensorEdge = application.getEdgeMap().get("BP_SENSOR");
+        for (int i = 0; i < sensors; i++) {
+            Tuple tuple = new Tuple(sensorEdge.getTupleDescriptor(APP_ID, Tuple.UP), FogUtils.generateTupleId(), 1, 3,
+                    UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE, UtilizationModelFull.INSTANCE);
+            tuple.setUserId(1);
+            tuple.setDestinationDeviceId(i);
+            tuples.add(tuple);
+            int vmId = 0;
+            while (tuple != null) {
+                String moduleName = tuple.getDestModuleName();
+                Tuple inputTuple = tuple;
+                tuple = null;
+                for (Tuple resTuple : application.getResultantTuples(moduleName, inputTuple, i, vmId)) {
+                    resTuple.setModuleCopyMap(inputTuple, moduleName, vmId);
+                    tuples.add(resTuple);
+                    if (resTuple.getDirection() != Tuple.ACTUATOR) {
+                        tuple = resTuple;
+                    }
+                }
+                vmId++;
+            }
+        }
+        return tuples;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
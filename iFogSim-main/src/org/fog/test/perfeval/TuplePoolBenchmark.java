@@ -0,0 +1,131 @@
+package org.fog.test.perfeval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.TuplePool;
+import org.fog.utils.FogSubtreePartitioning;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * Runs the scaled-up HypotensionDetection topology of {@link ParallelHypotensionBenchmark} without
+ * and with the tuple pool, and reports the bytes the simulation allocates per sensor reading. The
+ * pooled runs, sequential and parallel, must give the same results as the run without the pool. A
+ * last run in debug mode checks that no tuple is released twice and counts the tuples that were
+ * handed out long before the end of the simulation and never released.
+ *
+ * The pool does not bring the allocation near zero: about 6.4 KB per reading remain with the pool
+ * and event recycling. Most of it is outside the tuples: the events that are not recycled, the
+ * CloudSim hosts that deallocate and reallocate the PEs of every VM on each processing update,
+ * the cloudlet bookkeeping of the schedulers and the module copy maps of the tuples.
+ *
+ * Usage: TuplePoolBenchmark [--gateways 8] [--sensors 4] [--interval 5] [--time 2000] [--threads 2]
+ */
+public class TuplePoolBenchmark {
+
+    private static final int PLAIN = 0;
+    private static final int POOLED = 1;
+    private static final int POOLED_EVENTS = 2;
+    private static final int DEBUG = 3;
+
+    private BenchmarkHarness.Scenario scenario;
+    private int threads = 2;
+
+    public static void main(String[] args) throws Exception {
+        TuplePoolBenchmark benchmark = new TuplePoolBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        BenchmarkHarness options = new BenchmarkHarness(args);
+        scenario = options.getScenario(8, 4, 5, 2000);
+        threads = options.getInt("--threads", threads);
+        options.checkAllRead();
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads should be positive.");
+        }
+    }
+
+    private void run() throws Exception {
+        Log.disable();
+        // warm up the JIT
+        simulate(PLAIN, false);
+        simulate(POOLED, false);
+
+        Object[] plain = simulate(PLAIN, false);
+        Object[] pooled = simulate(POOLED, false);
+        Object[] pooledEvents = simulate(POOLED_EVENTS, false);
+        Object[] parallel = simulate(POOLED, true);
+        Object[] debug = simulate(DEBUG, false);
+
+        for (Object[] results : new Object[][] {pooled, pooledEvents, parallel, debug}) {
+            if (!plain[0].equals(results[0])) {
+                System.out.println("WITHOUT POOL\n" + plain[0] + "WITH POOL\n" + results[0]);
+                throw new IllegalStateException("The tuple pool changed the results.");
+            }
+        }
+
+        System.out.println("=========================================");
+        System.out.println("TUPLE POOL");
+        System.out.println("=========================================");
+        System.out.println(scenario);
+        System.out.print(plain[0]);
+        System.out.println("Sensor readings : " + plain[1]);
+        System.out.println("Tuples created / reused by the pool : " + pooled[2] + " / " + pooled[3]);
+        System.out.println("Bytes allocated per reading without pool : " + plain[4]);
+        System.out.println("Bytes allocated per reading with pool : " + pooled[4]);
+        System.out.println("Bytes allocated per reading with pool and event recycling : " + pooledEvents[4]);
+        System.out.println("Tuples not released (debug) : " + debug[5]);
+    }
+
+    /**
+     * Runs the scenario in a new simulation context and returns its results, the number of sensor
+     * readings, the numbers of tuples created and reused by the pool, the bytes allocated per reading
+     * by a sequential run, and in debug mode the number of tuples handed out in the first half of
+     * the simulation and never released.
+     */
+    private Object[] simulate(final int mode, final boolean parallel) throws Exception {
+        return BenchmarkHarness.runQuietly(new Callable<Object[]>() {
+            @Override
+            public Object[] call() {
+                scenario.create(false);
+                if (mode != PLAIN) {
+                    TuplePool.enable(mode == DEBUG);
+                }
+                if (mode == POOLED_EVENTS) {
+                    CloudSim.enableEventRecycling(false);
+                }
+                List<FogDevice> fogDevices = ParallelHypotensionBenchmark.entities(FogDevice.class);
+                CloudSim.terminateSimulation(scenario.time);
+                long allocated = BenchmarkHarness.allocatedBytes();
+                if (parallel) {
+                    CloudSim.startSimulation(new FogSubtreePartitioning(fogDevices,
+                            ParallelHypotensionBenchmark.entities(Sensor.class),
+                            ParallelHypotensionBenchmark.entities(Actuator.class), threads), threads);
+                } else {
+                    CloudSim.startSimulation();
+                }
+                allocated = BenchmarkHarness.allocatedBytes() - allocated;
+                CloudSim.stopSimulation();
+                // every reading of a sensor starts the loop of the application
+                long readings = 0;
+                for (int count : TimeKeeper.getInstance().getLoopIdToStartedTupleCount().values()) {
+                    readings += count;
+                }
+                return new Object[] {
+                        ParallelHypotensionBenchmark.results(fogDevices),
+                        readings,
+                        TuplePool.getCreatedCount(),
+                        TuplePool.getReusedCount(),
+                        readings == 0 ? 0 : allocated / readings,
+                        mode == DEBUG ? TuplePool.getOutstandingTuples(scenario.time / 2).size() : 0};
+            }
+        });
+    }
+}
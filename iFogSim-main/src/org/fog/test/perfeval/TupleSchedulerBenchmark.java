@@ -0,0 +1,96 @@
+package org.fog.test.perfeval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletScheduler;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.Tuple;
+import org.fog.scheduler.FogTupleScheduler;
+import org.fog.scheduler.TupleScheduler;
+
+/**
+ * Compares the scheduling of the tuples of a single busy module by {@link TupleScheduler} and by
+ * {@link FogTupleScheduler}. Tuples of random lengths arrive at every step while many others are still
+ * running, the schedulers are updated as a device updates its modules, and the finished tuples are
+ * drained as in FogDevice.checkCloudletCompletion(). Both schedulers must finish the same tuples in
+ * the same order at the same steps and predict the same next events.
+ *
+ * Usage: TupleSchedulerBenchmark [runningTuples] [steps]
+ */
+public class TupleSchedulerBenchmark {
+
+    private static final double MIPS = 1000;
+    private static final double STEP = 0.1;
+
+    public static void main(String[] args) {
+        int runningTuples = args.length >= 1 ? Integer.parseInt(args[0]) : 1000;
+        int steps = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+        if (runningTuples < 1 || steps < 1) {
+            throw new IllegalArgumentException("The number of tuples and of steps should be positive.");
+        }
+        Log.disable();
+        CloudSim.init(1, Calendar.getInstance(), false);
+
+        System.out.println("=========================================");
+        System.out.println("TUPLE SCHEDULERS");
+        System.out.println("=========================================");
+        System.out.println("Running tuples : " + runningTuples + ", steps : " + steps);
+        // first runs warm up the JIT
+        run(new TupleScheduler(MIPS, 1), runningTuples, steps);
+        run(new FogTupleScheduler(MIPS, 1), runningTuples, steps);
+        long start = System.nanoTime();
+        List<Double> timeShared = run(new TupleScheduler(MIPS, 1), runningTuples, steps);
+        long timeSharedTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<Double> heap = run(new FogTupleScheduler(MIPS, 1), runningTuples, steps);
+        long heapTime = System.nanoTime() - start;
+        if (!timeShared.equals(heap)) {
+            throw new IllegalStateException("The schedulers processed the tuples differently.");
+        }
+        System.out.println("Finished tuples : " + (timeShared.size() / 3));
+        System.out.println("TupleScheduler    : " + timeSharedTime / 1000000 + " ms");
+        System.out.println("FogTupleScheduler : " + heapTime / 1000000 + " ms");
+        System.out.println(String.format("Speedup : %.2f", (double) timeSharedTime / heapTime));
+    }
+
+    /**
+     * Runs the scenario and returns, for each finished tuple, its id, the step it finished at and the
+     * next event predicted at that step.
+     */
+    private static List<Double> run(CloudletScheduler scheduler, int runningTuples, int steps) {
+        Random random = new Random(42);
+        List<Double> mipsShare = new ArrayList<Double>(Arrays.asList(MIPS));
+        List<Double> trace = new ArrayList<Double>();
+        int nextId = 0;
+        scheduler.updateVmProcessing(0, mipsShare);
+        for (int step = 1; step <= steps; step++) {
+            // keep about as many tuples running as asked
+            int arrivals = Math.max(0, runningTuples - scheduler.runningCloudlets()) / 10 + 1;
+            for (int i = 0; i < arrivals; i++) {
+                scheduler.cloudletSubmit(createTuple(nextId++, random));
+            }
+            double nextEvent = scheduler.updateVmProcessing(step * STEP, mipsShare);
+            while (scheduler.isFinishedCloudlets()) {
+                Cloudlet tuple = scheduler.getNextFinishedCloudlet();
+                trace.add((double) tuple.getCloudletId());
+                trace.add((double) step);
+                trace.add(nextEvent);
+            }
+        }
+        return trace;
+    }
+
+    private static Tuple createTuple(int id, Random random) {
+        Tuple tuple = new Tuple("benchmark", id, Tuple.UP, 1 + random.nextInt(10), 1, 100, 100,
+                new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+        tuple.setResourceParameter(1, 0);
+        return tuple;
+    }
+}
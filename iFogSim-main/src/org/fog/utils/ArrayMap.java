@@ -0,0 +1,246 @@
+package org.fog.utils;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map kept in a single array of keys and values, searched linearly. It is meant for the maps of
+ * a few entries every tuple carries, for which it takes a fraction of the memory of a HashMap: an
+ * empty map has no array at all, and each entry takes two array slots.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The keys and the values of the entries, in turn, or null if no entry was put yet. */
+	private Object[] table;
+
+	/** The number of entries. */
+	private int size;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public ArrayMap() {
+	}
+
+	/**
+	 * Creates a map with the entries of another one, and room for more.
+	 *
+	 * @param map the map whose entries are copied
+	 * @param extraCapacity the number of entries that can be added without growing the map
+	 */
+	public ArrayMap(Map<? extends K, ? extends V> map, int extraCapacity) {
+		if (extraCapacity < 0) {
+			throw new IllegalArgumentException("The extra capacity should not be negative.");
+		}
+		if (map.size() + extraCapacity > 0) {
+			table = new Object[2 * (map.size() + extraCapacity)];
+		}
+		if (map instanceof ArrayMap) {
+			ArrayMap<?, ?> other = (ArrayMap<?, ?>) map;
+			if (other.size > 0) {
+				System.arraycopy(other.table, 0, table, 0, 2 * other.size);
+			}
+			size = other.size;
+		} else {
+			for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+				table[2 * size] = entry.getKey();
+				table[2 * size + 1] = entry.getValue();
+				size++;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index >= 0 ? (V) table[index + 1] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V put(K key, V value) {
+		int index = indexOf(key);
+		if (index >= 0) {
+			V previous = (V) table[index + 1];
+			table[index + 1] = value;
+			return previous;
+		}
+		if (table == null) {
+			table = new Object[2];
+		} else if (2 * size == table.length) {
+			table = Arrays.copyOf(table, 2 * table.length);
+		}
+		table[2 * size] = key;
+		table[2 * size + 1] = value;
+		size++;
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		V previous = (V) table[index + 1];
+		removeAt(index);
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		if (table != null) {
+			Arrays.fill(table, 0, 2 * size, null);
+		}
+		size = 0;
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new AbstractSet<Map.Entry<K, V>>() {
+			@Override
+			public Iterator<Map.Entry<K, V>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public void clear() {
+				ArrayMap.this.clear();
+			}
+		};
+	}
+
+	/**
+	 * Gets the index of the key of an entry in the table.
+	 */
+	private int indexOf(Object key) {
+		for (int i = 0; i < 2 * size; i += 2) {
+			Object k = table[i];
+			if (k == key || (key != null && key.equals(k))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Removes the entry at an index of the table, moving the last entry in its place.
+	 */
+	private void removeAt(int index) {
+		size--;
+		table[index] = table[2 * size];
+		table[index + 1] = table[2 * size + 1];
+		table[2 * size] = null;
+		table[2 * size + 1] = null;
+	}
+
+	/**
+	 * Iterates over the entries of the map, in the order of the table.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+		/** The index of the next entry in the table. */
+		private int next;
+
+		/** The index of the last entry returned, or -1 if it was removed. */
+		private int last = -1;
+
+		@Override
+		public boolean hasNext() {
+			return next < 2 * size;
+		}
+
+		@Override
+		public Map.Entry<K, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next += 2;
+			final int index = last;
+			return new Map.Entry<K, V>() {
+				@SuppressWarnings("unchecked")
+				@Override
+				public K getKey() {
+					return (K) table[index];
+				}
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public V getValue() {
+					return (V) table[index + 1];
+				}
+
+				@Override
+				public V setValue(V value) {
+					V previous = getValue();
+					table[index + 1] = value;
+					return previous;
+				}
+
+				@Override
+				public boolean equals(Object o) {
+					if (!(o instanceof Map.Entry)) {
+						return false;
+					}
+					Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+					return eq(getKey(), e.getKey()) && eq(getValue(), e.getValue());
+				}
+
+				@Override
+				public int hashCode() {
+					return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+				}
+
+				@Override
+				public String toString() {
+					return getKey() + "=" + getValue();
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			// the last entry of the table takes the place of the removed one, and is visited next
+			removeAt(last);
+			next = last;
+			last = -1;
+		}
+	}
+
+	private static boolean eq(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
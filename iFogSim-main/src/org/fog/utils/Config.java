@@ -1,5 +1,8 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+
 public class Config {
 
 	public static final double RESOURCE_MGMT_INTERVAL = 100;
@@ -23,4 +26,51 @@ public class Config {
 	public static double clusteringLatency = 2.0; //milisecond
 
 	public static final int TRANSMISSION_START_DELAY = 50;
+
+	/** The maximum simulation time set in the simulation contexts other than the default one. */
+	private static final SimulationLocal<Integer> maxSimulationTime = new SimulationLocal<Integer>(Config.class, "maxSimulationTime");
+
+	/** The resolution of the energy, cost and utilization time series, by simulation context. */
+	private static final SimulationLocal<Double> energyTimeSeriesResolution = new SimulationLocal<Double>(Config.class, "energyTimeSeriesResolution");
+
+	/**
+	 * Gets the maximum simulation time of the simulation context of the calling thread. Unless it
+	 * has been set in that context, this is {@link #MAX_SIMULATION_TIME}.
+	 */
+	public static int getMaxSimulationTime() {
+		Integer time = maxSimulationTime.get();
+		return time == null ? MAX_SIMULATION_TIME : time;
+	}
+
+	/**
+	 * Sets the maximum simulation time of the simulation context of the calling thread. In the
+	 * default context this sets {@link #MAX_SIMULATION_TIME}.
+	 */
+	public static void setMaxSimulationTime(int time) {
+		if (SimulationContext.current().isDefault())
+			MAX_SIMULATION_TIME = time;
+		else
+			maxSimulationTime.set(time);
+	}
+
+	/**
+	 * Gets the resolution of the energy, cost and utilization time series of the fog devices created
+	 * from now on in the simulation context of the calling thread, 0 unless it has been set in that
+	 * context, to keep only the totals.
+	 */
+	public static double getEnergyTimeSeriesResolution() {
+		Double resolution = energyTimeSeriesResolution.get();
+		return resolution == null ? 0 : resolution;
+	}
+
+	/**
+	 * Sets the resolution of the energy, cost and utilization time series of the fog devices created
+	 * from now on in the simulation context of the calling thread, 0 to keep only the totals.
+	 * @throws IllegalArgumentException if the resolution is negative or not finite
+	 */
+	public static void setEnergyTimeSeriesResolution(double resolution) {
+		if (resolution < 0 || Double.isNaN(resolution) || Double.isInfinite(resolution))
+			throw new IllegalArgumentException("The resolution should be a positive time, or 0.");
+		energyTimeSeriesResolution.set(resolution);
+	}
 }
@@ -0,0 +1,282 @@
+package org.fog.utils;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudbus.cloudsim.power.models.PowerModel;
+import org.fog.entities.FogDevice;
+
+/**
+ * The energy and cost account of a fog device. The device reports its utilization whenever it may
+ * have changed, and the account integrates the power and the cost of the device only when the
+ * utilization actually changes, over the time the device spent at the previous utilization.
+ * <p>
+ * Besides the totals, the account can keep the energy, the cost and the average utilization of the
+ * device in consecutive periods of simulation time of a given resolution, see
+ * {@link Config#setEnergyTimeSeriesResolution(double)} and {@link #writeTimeSeries(List, String)}.
+ */
+public class EnergyAccount implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The power model of the device. */
+	private final PowerModel powerModel;
+
+	/** The cost of a second of the device at full utilization. */
+	private double costRate;
+
+	/** The current utilization. */
+	private double utilization;
+
+	/** The power at the current utilization. */
+	private double power;
+
+	/** The time since which the device is at the current utilization, integrated up to it. */
+	private double since;
+
+	/** The time of the last report of the utilization. */
+	private double updated;
+
+	/** The energy integrated up to {@link #since}. */
+	private double energy;
+
+	/** The cost integrated up to {@link #since}. */
+	private double cost;
+
+	/** The resolution of the time series, or 0 if the account keeps only the totals. */
+	private double resolution;
+
+	/** The energy, the cost and the utilization times the time spent at it, by period. */
+	private double[] periodEnergy, periodCost, periodUtilization;
+
+	/** The number of periods in the time series. */
+	private int periodCount;
+
+	/**
+	 * Creates the account of a device, with the time series resolution of the simulation context of
+	 * the calling thread, see {@link Config#getEnergyTimeSeriesResolution()}.
+	 *
+	 * @param powerModel the power model of the device
+	 * @param costRate the cost of a second of the device at full utilization
+	 */
+	public EnergyAccount(PowerModel powerModel, double costRate) {
+		this.powerModel = powerModel;
+		this.costRate = costRate;
+		power = powerModel.getPower(0);
+		setTimeSeriesResolution(Config.getEnergyTimeSeriesResolution());
+	}
+
+	/**
+	 * Reports the utilization of the device at a time.
+	 *
+	 * @param time the current time, not before the last report
+	 * @param utilization the utilization, between 0 and 1
+	 */
+	public void update(double time, double utilization) {
+		updated = time;
+		if (utilization == this.utilization) {
+			return;
+		}
+		integrate(time);
+		this.utilization = utilization;
+		power = powerModel.getPower(utilization);
+	}
+
+	/**
+	 * Sets the cost of a second of the device at full utilization, from the last report on.
+	 *
+	 * @param costRate the cost rate
+	 */
+	public void setCostRate(double costRate) {
+		integrate(updated);
+		this.costRate = costRate;
+	}
+
+	/**
+	 * Gets the energy consumed by the device up to the last report.
+	 *
+	 * @return the energy
+	 */
+	public double getEnergy() {
+		return energy + (updated - since) * power;
+	}
+
+	/**
+	 * Sets the energy consumed by the device up to the last report.
+	 *
+	 * @param energy the energy
+	 */
+	public void setEnergy(double energy) {
+		integrate(updated);
+		this.energy = energy;
+	}
+
+	/**
+	 * Gets the cost of the device up to the last report.
+	 *
+	 * @return the cost
+	 */
+	public double getCost() {
+		return cost + (updated - since) * costRate * utilization;
+	}
+
+	/**
+	 * Sets the cost of the device up to the last report.
+	 *
+	 * @param cost the cost
+	 */
+	public void setCost(double cost) {
+		integrate(updated);
+		this.cost = cost;
+	}
+
+	/**
+	 * Gets the current utilization of the device.
+	 *
+	 * @return the utilization
+	 */
+	public double getUtilization() {
+		return utilization;
+	}
+
+	/**
+	 * Gets the resolution of the time series.
+	 *
+	 * @return the resolution, or 0 if the account keeps only the totals
+	 */
+	public double getTimeSeriesResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Sets the resolution of the time series, dropping the periods recorded so far.
+	 *
+	 * @param resolution the length of a period of the time series, or 0 to keep only the totals
+	 */
+	public void setTimeSeriesResolution(double resolution) {
+		if (resolution < 0 || Double.isNaN(resolution) || Double.isInfinite(resolution)) {
+			throw new IllegalArgumentException("The resolution should be a positive time, or 0.");
+		}
+		this.resolution = resolution;
+		periodCount = 0;
+		periodEnergy = resolution > 0 ? new double[16] : null;
+		periodCost = resolution > 0 ? new double[16] : null;
+		periodUtilization = resolution > 0 ? new double[16] : null;
+	}
+
+	/**
+	 * Integrates the power and the cost of the device from {@link #since} to a time.
+	 */
+	private void integrate(double time) {
+		double duration = time - since;
+		if (duration <= 0) {
+			return;
+		}
+		energy += duration * power;
+		cost += duration * costRate * utilization;
+		if (resolution > 0) {
+			record(since, time);
+		}
+		since = time;
+	}
+
+	/**
+	 * Adds the time from a start to an end at the current utilization to the periods of the time
+	 * series.
+	 */
+	private void record(double start, double end) {
+		int period = (int) (start / resolution);
+		while (start < end) {
+			double periodEnd = Math.min(end, (period + 1) * resolution);
+			double duration = periodEnd - start;
+			if (duration > 0) {
+				ensurePeriods(period + 1);
+				periodEnergy[period] += duration * power;
+				periodCost[period] += duration * costRate * utilization;
+				periodUtilization[period] += duration * utilization;
+			}
+			start = periodEnd;
+			period++;
+		}
+	}
+
+	private void ensurePeriods(int count) {
+		if (count > periodEnergy.length) {
+			int length = Math.max(count, 2 * periodEnergy.length);
+			periodEnergy = Arrays.copyOf(periodEnergy, length);
+			periodCost = Arrays.copyOf(periodCost, length);
+			periodUtilization = Arrays.copyOf(periodUtilization, length);
+		}
+		periodCount = Math.max(periodCount, count);
+	}
+
+	/**
+	 * Writes the time series of the account up to the last report, one line per period with the
+	 * name of the device, the start of the period, the energy, the cost and the average utilization
+	 * over the part of the period up to the last report.
+	 *
+	 * @param deviceName the name of the device
+	 * @param out the output
+	 * @throws IOException if the output fails
+	 */
+	public void writeTimeSeries(String deviceName, Writer out) throws IOException {
+		if (resolution <= 0) {
+			return;
+		}
+		// the pending time at the current utilization is recorded in a copy of the account
+		EnergyAccount account = copy();
+		account.integrate(updated);
+		for (int period = 0; period < account.periodCount; period++) {
+			double start = period * resolution;
+			double length = Math.min(resolution, updated - start);
+			out.write(deviceName + "," + start + "," + account.periodEnergy[period] + "," + account.periodCost[period]
+					+ "," + (length > 0 ? account.periodUtilization[period] / length : 0) + "\n");
+		}
+	}
+
+	/**
+	 * Writes the time series of the accounts of fog devices to a CSV file, with a header line.
+	 *
+	 * @param fogDevices the fog devices
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeTimeSeries(List<? extends FogDevice> fogDevices, String fileName) throws IOException {
+		Writer out = new FileWriter(fileName);
+		try {
+			out.write("device,time,energy,cost,utilization\n");
+			for (FogDevice fogDevice : fogDevices) {
+				fogDevice.getEnergyAccount().writeTimeSeries(fogDevice.getName(), out);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private EnergyAccount copy() {
+		EnergyAccount account = new EnergyAccount(powerModel, costRate, resolution);
+		account.utilization = utilization;
+		account.power = power;
+		account.since = since;
+		account.updated = updated;
+		account.energy = energy;
+		account.cost = cost;
+		account.periodCount = periodCount;
+		account.periodEnergy = periodEnergy.clone();
+		account.periodCost = periodCost.clone();
+		account.periodUtilization = periodUtilization.clone();
+		return account;
+	}
+
+	private EnergyAccount(PowerModel powerModel, double costRate, double resolution) {
+		this.powerModel = powerModel;
+		this.costRate = costRate;
+		this.resolution = resolution;
+	}
+
+}
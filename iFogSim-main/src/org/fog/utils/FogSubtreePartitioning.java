@@ -0,0 +1,185 @@
+package org.fog.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.Partitioning;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.entities.Actuator;
+import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.SensorGroup;
+
+/**
+ * Partitions a fog topology by subtree for a parallel run, see
+ * {@link org.cloudbus.cloudsim.core.CloudSim#startSimulation(Partitioning, int)}.
+ * <p>
+ * The topology is cut below its top devices, or below the chain of single children under them
+ * (e.g. a proxy server). The subtrees under the cut are spread over the partitions, the largest
+ * first onto the least loaded partition; sensors and actuators go with their gateway device, and
+ * sensor groups with the gateway devices of their members, which must all be in the same
+ * partition. The devices above the cut and all the other entities (controller, broker, ...) go to
+ * the root partition. The lookahead is the smallest uplink latency of the subtree roots, which only
+ * holds if the devices of different subtrees do not exchange tuples directly, e.g. over cluster
+ * links.
+ */
+public class FogSubtreePartitioning implements Partitioning {
+
+	/** The partition of the entities not in the root partition, by id. */
+	private final Map<Integer, Integer> partitionOf = new HashMap<Integer, Integer>();
+
+	/** The number of partitions, including the root partition. */
+	private final int partitionCount;
+
+	/** The smallest uplink latency of the subtree roots. */
+	private double lookahead = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Partitions a fog topology.
+	 *
+	 * @param fogDevices the fog devices
+	 * @param sensors the sensors
+	 * @param actuators the actuators
+	 * @param partitions the number of partitions for the subtrees, usually the number of threads
+	 */
+	public FogSubtreePartitioning(List<FogDevice> fogDevices, List<Sensor> sensors, List<Actuator> actuators,
+			int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("The number of partitions should be positive.");
+		}
+		Map<Integer, List<FogDevice>> children = new HashMap<Integer, List<FogDevice>>();
+		List<FogDevice> frontier = new ArrayList<FogDevice>();
+		for (FogDevice device : fogDevices) {
+			if (device.getParentId() < 0) {
+				frontier.add(device);
+			} else {
+				List<FogDevice> siblings = children.get(device.getParentId());
+				if (siblings == null) {
+					siblings = new ArrayList<FogDevice>();
+					children.put(device.getParentId(), siblings);
+				}
+				siblings.add(device);
+			}
+		}
+		// cut below the top devices and the chains of single children under them
+		do {
+			List<FogDevice> below = new ArrayList<FogDevice>();
+			for (FogDevice device : frontier) {
+				if (children.containsKey(device.getId())) {
+					below.addAll(children.get(device.getId()));
+				}
+			}
+			if (below.isEmpty()) {
+				break;
+			}
+			frontier = below;
+		} while (frontier.size() == 1);
+
+		Map<Integer, Integer> gatewayLoad = new HashMap<Integer, Integer>();
+		for (Sensor sensor : sensors) {
+			if (sensor instanceof SensorGroup) {
+				SensorGroup group = (SensorGroup) sensor;
+				for (int i = 0; i < group.getSensorCount(); i++) {
+					increment(gatewayLoad, group.getGatewayDeviceId(i));
+				}
+			} else {
+				increment(gatewayLoad, sensor.getGatewayDeviceId());
+			}
+		}
+		for (Actuator actuator : actuators) {
+			increment(gatewayLoad, actuator.getGatewayDeviceId());
+		}
+		final Map<FogDevice, List<FogDevice>> subtrees = new HashMap<FogDevice, List<FogDevice>>();
+		final Map<FogDevice, Integer> sizes = new HashMap<FogDevice, Integer>();
+		for (FogDevice root : frontier) {
+			List<FogDevice> subtree = new ArrayList<FogDevice>();
+			subtree.add(root);
+			int size = 0;
+			for (int i = 0; i < subtree.size(); i++) {
+				FogDevice device = subtree.get(i);
+				if (children.containsKey(device.getId())) {
+					subtree.addAll(children.get(device.getId()));
+				}
+				Integer load = gatewayLoad.get(device.getId());
+				size += 1 + (load == null ? 0 : load);
+			}
+			subtrees.put(root, subtree);
+			sizes.put(root, size);
+		}
+
+		partitionCount = 1 + Math.min(partitions, frontier.size());
+		int[] loads = new int[partitionCount];
+		List<FogDevice> roots = new ArrayList<FogDevice>(frontier);
+		Collections.sort(roots, new Comparator<FogDevice>() {
+			@Override
+			public int compare(FogDevice a, FogDevice b) {
+				int c = Integer.compare(sizes.get(b), sizes.get(a));
+				return c != 0 ? c : Integer.compare(a.getId(), b.getId());
+			}
+		});
+		for (FogDevice root : roots) {
+			int partition = 1;
+			for (int p = 2; p < partitionCount; p++) {
+				if (loads[p] < loads[partition]) {
+					partition = p;
+				}
+			}
+			loads[partition] += sizes.get(root);
+			for (FogDevice device : subtrees.get(root)) {
+				partitionOf.put(device.getId(), partition);
+			}
+			lookahead = Math.min(lookahead, root.getUplinkLatency());
+		}
+		for (Sensor sensor : sensors) {
+			Integer partition = partitionOf.get(sensor.getGatewayDeviceId());
+			if (sensor instanceof SensorGroup) {
+				SensorGroup group = (SensorGroup) sensor;
+				for (int i = 1; i < group.getSensorCount(); i++) {
+					if (!equal(partition, partitionOf.get(group.getGatewayDeviceId(i)))) {
+						throw new IllegalArgumentException("The members of sensor group " + group.getName()
+								+ " are attached to devices of different partitions.");
+					}
+				}
+			}
+			if (partition != null) {
+				partitionOf.put(sensor.getId(), partition);
+			}
+		}
+		for (Actuator actuator : actuators) {
+			Integer partition = partitionOf.get(actuator.getGatewayDeviceId());
+			if (partition != null) {
+				partitionOf.put(actuator.getId(), partition);
+			}
+		}
+	}
+
+	private static boolean equal(Integer a, Integer b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private static void increment(Map<Integer, Integer> counts, int key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	@Override
+	public int getPartitionCount() {
+		return partitionCount;
+	}
+
+	@Override
+	public int getPartition(SimEntity entity) {
+		Integer partition = partitionOf.get(entity.getId());
+		return partition == null ? 0 : partition;
+	}
+
+	@Override
+	public double getLookahead() {
+		return lookahead;
+	}
+
+}
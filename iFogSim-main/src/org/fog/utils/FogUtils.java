@@ -3,13 +3,29 @@ package org.fog.utils;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+
 public class FogUtils {
-	private static int TUPLE_ID = 1;
-	private static int ENTITY_ID = 1;
-	private static int ACTUAL_TUPLE_ID = 1;
+	private static final int TUPLE_ID = 0;
+	private static final int ENTITY_ID = 1;
+	private static final int ACTUAL_TUPLE_ID = 2;
+	
+	/** The next tuple, entity and actual tuple ids, one set per simulation context and partition. */
+	private static final SimulationLocal<int[]> nextIds = new SimulationLocal<int[]>(FogUtils.class, "nextIds") {
+		@Override
+		protected int[] initialValue() {
+			return new int[] {1, 1, 1};
+		}
+		
+		@Override
+		protected int[] partitionValue(int[] value) {
+			return value.clone();
+		}
+	};
 	
 	public static int generateTupleId(){
-		return TUPLE_ID++;
+		return SimulationContext.current().partitionUniqueId(nextIds.get()[TUPLE_ID]++);
 	}
 	
 	public static String getSensorTypeFromSensorName(String sensorName){
@@ -17,11 +33,11 @@ public class FogUtils {
 	}
 	
 	public static int generateEntityId(){
-		return ENTITY_ID++;
+		return SimulationContext.current().partitionUniqueId(nextIds.get()[ENTITY_ID]++);
 	}
 	
 	public static int generateActualTupleId(){
-		return ACTUAL_TUPLE_ID++;
+		return SimulationContext.current().partitionUniqueId(nextIds.get()[ACTUAL_TUPLE_ID]++);
 	}
 	
 	public static int USER_ID = 1;
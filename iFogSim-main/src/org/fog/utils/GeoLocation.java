@@ -1,6 +1,11 @@
 package org.fog.utils;
 
-public class GeoLocation {
+import java.io.Serializable;
+
+public class GeoLocation implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
 
 	private double latitude;
 	private double longitude;
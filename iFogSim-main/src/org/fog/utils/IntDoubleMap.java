@@ -0,0 +1,543 @@
+package org.fog.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A map from int keys to double values, kept in two primitive arrays with open addressing and
+ * linear probing. It is meant for the times the {@link TimeKeeper} keeps per tuple id, for which it
+ * takes 12 bytes per entry in a table at most three-quarters full, where a HashMap takes about 80
+ * bytes per entry with the boxed key and value. Removing an entry frees its slot at once, so a map
+ * whose entries are removed when their tuples complete keeps the size of the tuples in flight.
+ * <p>
+ * Values may not be NaN, which stands for a missing entry: {@link #get(int)} returns NaN for a key
+ * that is not in the map.
+ * <p>
+ * The map can spill to a file, see {@link #spillTo(File, int)}: when it holds more entries than
+ * allowed in memory, the half with the smallest keys is written to the file as a sorted run, and
+ * is looked up there by binary search when a key is not in memory. For the increasing ids of the
+ * time keeper these are the oldest entries, e.g. those of tuples lost on the way, which are
+ * seldom looked up again. A serialized map holds all its entries and does not spill. The spill file
+ * stays open until {@link #unspill()} or {@link #close()} is called, which delete it.
+ */
+public class IntDoubleMap implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The number of bytes of an entry in the spill file, an int key and a double value. */
+	private static final int SPILLED_ENTRY_BYTES = 12;
+
+	/** The keys of the slots. */
+	private transient int[] keys;
+
+	/** The values of the slots, NaN for the free slots. */
+	private transient double[] values;
+
+	/** The number of entries in memory. */
+	private transient int size;
+
+	/** The spill file, or null if the map does not spill. */
+	private transient RandomAccessFile spill;
+
+	/** The path of the spill file, or null if the map does not spill. */
+	private transient File spillFile;
+
+	/** The largest number of entries kept in memory when the map spills. */
+	private transient int maxInMemory;
+
+	/** The offsets of the runs in the spill file. */
+	private transient long[] runOffsets;
+
+	/** The numbers of entries of the runs. */
+	private transient int[] runLengths;
+
+	/** The smallest keys of the runs. */
+	private transient int[] runMinKeys;
+
+	/** The largest keys of the runs. */
+	private transient int[] runMaxKeys;
+
+	/** The number of runs in the spill file. */
+	private transient int runCount;
+
+	/** The number of entries in the spill file that were not removed. */
+	private transient int spilledSize;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public IntDoubleMap() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty map with room for some entries.
+	 *
+	 * @param expectedSize the number of entries that can be put without growing the table
+	 */
+	public IntDoubleMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("The expected size should not be negative.");
+		}
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * Gets the number of entries, in memory and spilled.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size + spilledSize;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Gets the number of entries in memory.
+	 *
+	 * @return the number of entries in memory
+	 */
+	public int getSizeInMemory() {
+		return size;
+	}
+
+	public boolean containsKey(int key) {
+		return !Double.isNaN(get(key));
+	}
+
+	/**
+	 * Gets the value of a key.
+	 *
+	 * @param key the key
+	 * @return the value, or NaN if the key is not in the map
+	 */
+	public double get(int key) {
+		int slot = slotOf(key);
+		if (slot >= 0) {
+			return values[slot];
+		}
+		if (spilledSize == 0) {
+			return Double.NaN;
+		}
+		long position = spilledPositionOf(key);
+		return position < 0 ? Double.NaN : readSpilledValue(position);
+	}
+
+	/**
+	 * Puts the value of a key, replacing its previous value if any.
+	 *
+	 * @param key the key
+	 * @param value the value
+	 * @throws IllegalArgumentException if the value is NaN
+	 */
+	public void put(int key, double value) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("The value of key " + key + " should not be NaN.");
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (!Double.isNaN(values[slot])) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (spilledSize > 0) {
+			long position = spilledPositionOf(key);
+			if (position >= 0 && !Double.isNaN(readSpilledValue(position))) {
+				writeSpilledValue(position, value);
+				return;
+			}
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		if (4 * size > 3 * keys.length) {
+			rehash(2 * keys.length);
+		}
+		if (spill != null && size > maxInMemory) {
+			spillSmallestKeys();
+		}
+	}
+
+	/**
+	 * Removes the entry of a key.
+	 *
+	 * @param key the key
+	 * @return the value the key had, or NaN if it was not in the map
+	 */
+	public double remove(int key) {
+		int slot = slotOf(key);
+		if (slot < 0) {
+			if (spilledSize == 0) {
+				return Double.NaN;
+			}
+			long position = spilledPositionOf(key);
+			if (position < 0) {
+				return Double.NaN;
+			}
+			double value = readSpilledValue(position);
+			if (!Double.isNaN(value)) {
+				writeSpilledValue(position, Double.NaN);
+				spilledSize--;
+			}
+			return value;
+		}
+		double value = values[slot];
+		deleteSlot(slot);
+		return value;
+	}
+
+	/**
+	 * Removes all the entries, and the spill file if any.
+	 */
+	public void clear() {
+		Arrays.fill(values, Double.NaN);
+		size = 0;
+		if (spill != null) {
+			try {
+				spill.setLength(0);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not clear the spill file", e);
+			}
+		}
+		runCount = 0;
+		spilledSize = 0;
+	}
+
+	/**
+	 * Makes the map spill to a file when it holds more than some entries in memory. The file is
+	 * overwritten; the entries already spilled by the map, if any, are read back into memory first.
+	 *
+	 * @param file the spill file
+	 * @param maxInMemory the largest number of entries kept in memory
+	 * @throws IllegalStateException if the file cannot be opened
+	 */
+	public void spillTo(File file, int maxInMemory) {
+		if (maxInMemory < 2) {
+			throw new IllegalArgumentException("The map should keep two entries in memory at least.");
+		}
+		unspill();
+		try {
+			spill = new RandomAccessFile(file, "rw");
+			spill.setLength(0);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not open the spill file " + file, e);
+		}
+		spillFile = file;
+		this.maxInMemory = maxInMemory;
+		runOffsets = new long[4];
+		runLengths = new int[4];
+		runMinKeys = new int[4];
+		runMaxKeys = new int[4];
+		if (size > maxInMemory) {
+			spillSmallestKeys();
+		}
+	}
+
+	/**
+	 * Reads the spilled entries back into memory, and closes and deletes the spill file. The map
+	 * does not spill anymore.
+	 */
+	public void unspill() {
+		if (spill == null) {
+			return;
+		}
+		try {
+			for (int run = 0; run < runCount; run++) {
+				spill.seek(runOffsets[run]);
+				for (int i = 0; i < runLengths[run]; i++) {
+					int key = spill.readInt();
+					double value = spill.readDouble();
+					if (!Double.isNaN(value)) {
+						insert(key, value);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the spill file", e);
+		}
+		closeSpill();
+	}
+
+	/**
+	 * Discards the spilled entries, and closes and deletes the spill file, e.g. at the end of a
+	 * simulation, when the entries left are those of tuples that never completed. The entries in
+	 * memory are kept, and the map does not spill anymore. Does nothing if the map does not spill.
+	 *
+	 * @throws IllegalStateException if the spill file cannot be closed or deleted
+	 */
+	public void close() {
+		if (spill != null) {
+			closeSpill();
+		}
+	}
+
+	private void closeSpill() {
+		File file = spillFile;
+		try {
+			spill.close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not close the spill file " + file, e);
+		} finally {
+			spill = null;
+			spillFile = null;
+			runCount = 0;
+			spilledSize = 0;
+		}
+		if (!file.delete() && file.exists()) {
+			throw new IllegalStateException("Could not delete the spill file " + file);
+		}
+	}
+
+	/**
+	 * Gets the slot of a key in memory, or -1 if it is not in memory.
+	 */
+	private int slotOf(int key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (!Double.isNaN(values[slot])) {
+			if (keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Puts a key that is not in the map in memory, without spilling.
+	 */
+	private void insert(int key, double value) {
+		if (4 * (size + 1) > 3 * keys.length) {
+			rehash(2 * keys.length);
+		}
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (!Double.isNaN(values[slot])) {
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	/**
+	 * Frees a slot, shifting back the entries of the same probe sequence that follow it so that
+	 * they can still be found.
+	 */
+	private void deleteSlot(int slot) {
+		int mask = keys.length - 1;
+		int free = slot;
+		int next = (free + 1) & mask;
+		while (!Double.isNaN(values[next])) {
+			int home = hash(keys[next]) & mask;
+			// the entry can fill the free slot if its home slot is not between the two, cyclically
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[free] = Double.NaN;
+		size--;
+	}
+
+	private void rehash(int tableSize) {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		allocate(tableSize);
+		int mask = tableSize - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (!Double.isNaN(oldValues[i])) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (!Double.isNaN(values[slot])) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int tableSize) {
+		keys = new int[tableSize];
+		values = new double[tableSize];
+		Arrays.fill(values, Double.NaN);
+	}
+
+	/**
+	 * Writes the half of the entries in memory with the smallest keys to a new run of the spill
+	 * file, and removes them from memory.
+	 */
+	private void spillSmallestKeys() {
+		int[] sorted = new int[size];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (!Double.isNaN(values[i])) {
+				sorted[n++] = keys[i];
+			}
+		}
+		Arrays.sort(sorted);
+		int count = size / 2;
+		if (runCount == runOffsets.length) {
+			runOffsets = Arrays.copyOf(runOffsets, 2 * runCount);
+			runLengths = Arrays.copyOf(runLengths, 2 * runCount);
+			runMinKeys = Arrays.copyOf(runMinKeys, 2 * runCount);
+			runMaxKeys = Arrays.copyOf(runMaxKeys, 2 * runCount);
+		}
+		try {
+			long offset = spill.length();
+			byte[] buffer = new byte[count * SPILLED_ENTRY_BYTES];
+			for (int i = 0; i < count; i++) {
+				int key = sorted[i];
+				long bits = Double.doubleToRawLongBits(get(key));
+				int b = i * SPILLED_ENTRY_BYTES;
+				for (int shift = 24; shift >= 0; shift -= 8) {
+					buffer[b++] = (byte) (key >>> shift);
+				}
+				for (int shift = 56; shift >= 0; shift -= 8) {
+					buffer[b++] = (byte) (bits >>> shift);
+				}
+			}
+			spill.seek(offset);
+			spill.write(buffer);
+			runOffsets[runCount] = offset;
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write to the spill file", e);
+		}
+		runLengths[runCount] = count;
+		runMinKeys[runCount] = sorted[0];
+		runMaxKeys[runCount] = sorted[count - 1];
+		runCount++;
+		for (int i = 0; i < count; i++) {
+			deleteSlot(slotOf(sorted[i]));
+		}
+		spilledSize += count;
+	}
+
+	/**
+	 * Gets the position of the value of a key in the spill file, or -1 if the key was not spilled.
+	 * The value is NaN if the entry was removed since.
+	 */
+	private long spilledPositionOf(int key) {
+		try {
+			for (int run = runCount - 1; run >= 0; run--) {
+				if (key < runMinKeys[run] || key > runMaxKeys[run]) {
+					continue;
+				}
+				int low = 0;
+				int high = runLengths[run] - 1;
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					long position = runOffsets[run] + (long) mid * SPILLED_ENTRY_BYTES;
+					spill.seek(position);
+					int midKey = spill.readInt();
+					if (midKey < key) {
+						low = mid + 1;
+					} else if (midKey > key) {
+						high = mid - 1;
+					} else {
+						return position + 4;
+					}
+				}
+			}
+			return -1;
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the spill file", e);
+		}
+	}
+
+	private double readSpilledValue(long position) {
+		try {
+			spill.seek(position);
+			return spill.readDouble();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the spill file", e);
+		}
+	}
+
+	private void writeSpilledValue(long position, double value) {
+		try {
+			spill.seek(position);
+			spill.writeDouble(value);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write to the spill file", e);
+		}
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int tableSize = 16;
+		while (3 * tableSize < 4 * expectedSize) {
+			tableSize *= 2;
+		}
+		return tableSize;
+	}
+
+	/**
+	 * Saves the entries, those spilled included, as a count followed by the keys and values.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		IntDoubleMap copy = this;
+		if (spilledSize > 0) {
+			copy = new IntDoubleMap(size());
+			for (int i = 0; i < keys.length; i++) {
+				if (!Double.isNaN(values[i])) {
+					copy.insert(keys[i], values[i]);
+				}
+			}
+			for (int run = 0; run < runCount; run++) {
+				spill.seek(runOffsets[run]);
+				for (int i = 0; i < runLengths[run]; i++) {
+					int key = spill.readInt();
+					double value = spill.readDouble();
+					if (!Double.isNaN(value)) {
+						copy.insert(key, value);
+					}
+				}
+			}
+		}
+		out.writeInt(copy.size);
+		for (int i = 0; i < copy.keys.length; i++) {
+			if (!Double.isNaN(copy.values[i])) {
+				out.writeInt(copy.keys[i]);
+				out.writeDouble(copy.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Restores the entries saved by {@link #writeObject(ObjectOutputStream)}, in memory.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int count = in.readInt();
+		allocate(tableSizeFor(count));
+		for (int i = 0; i < count; i++) {
+			int key = in.readInt();
+			insert(key, in.readDouble());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "IntDoubleMap [size=" + size() + ", inMemory=" + size + "]";
+	}
+}
@@ -0,0 +1,282 @@
+package org.fog.utils;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies with logarithmic buckets, taking a fixed amount of memory whatever the
+ * number of latencies recorded. Each power of two between 2^-20 and 2^44 is split into 16 buckets
+ * of equal width, so a percentile is within about 3% of the latency it stands for; smaller and
+ * larger latencies fall into an underflow and an overflow bucket. The count, sum, minimum and
+ * maximum are exact.
+ * <p>
+ * Recording a latency takes a constant time. Histograms can be merged, e.g. those of several loops
+ * or runs, and a snapshot taken at some simulation time can be subtracted from a later state of
+ * the same histogram to get the latencies of the window in between, see {@link #since(LatencyHistogram)}.
+ */
+public class LatencyHistogram implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The number of bits of the mantissa selecting the bucket in a power of two. */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/** The number of buckets in a power of two. */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/** The smallest power of two with buckets. */
+	private static final int MIN_EXPONENT = -20;
+
+	/** The largest power of two with buckets. */
+	private static final int MAX_EXPONENT = 43;
+
+	/** The bucket of the latencies that are zero, negative or not a number. */
+	private static final int ZERO_BUCKET = 0;
+
+	/** The bucket of the positive latencies below 2^MIN_EXPONENT. */
+	private static final int UNDERFLOW_BUCKET = 1;
+
+	/** The bucket of the latencies of 2^(MAX_EXPONENT + 1) and more. */
+	private static final int OVERFLOW_BUCKET = 2 + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+	/** The significant digits of the latencies in the summaries, a little more than the buckets have. */
+	private static final MathContext SUMMARY_PRECISION = new MathContext(4);
+
+	/** The number of latencies in each bucket. */
+	private final long[] counts = new long[OVERFLOW_BUCKET + 1];
+
+	private long count;
+	private double sum;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param latency the latency
+	 */
+	public void record(double latency) {
+		counts[bucketOf(latency)]++;
+		count++;
+		sum += latency;
+		if (latency < min) {
+			min = latency;
+		}
+		if (latency > max) {
+			max = latency;
+		}
+	}
+
+	/**
+	 * Adds the latencies of another histogram to this one.
+	 *
+	 * @param other the other histogram
+	 */
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Gets a copy of the histogram as it is now.
+	 *
+	 * @return the copy
+	 */
+	public LatencyHistogram snapshot() {
+		LatencyHistogram snapshot = new LatencyHistogram();
+		snapshot.merge(this);
+		return snapshot;
+	}
+
+	/**
+	 * Gets the latencies recorded since a snapshot of this histogram was taken. The minimum and
+	 * maximum of the result are those of its first and last buckets, within the minimum and maximum
+	 * of this histogram, so they are only as precise as the percentiles.
+	 *
+	 * @param earlier a snapshot of this histogram
+	 * @return the histogram of the latencies recorded since the snapshot
+	 * @throws IllegalArgumentException if the histogram was not a snapshot of this one
+	 */
+	public LatencyHistogram since(LatencyHistogram earlier) {
+		LatencyHistogram window = new LatencyHistogram();
+		int first = -1;
+		int last = -1;
+		for (int i = 0; i < counts.length; i++) {
+			long c = counts[i] - earlier.counts[i];
+			if (c < 0) {
+				throw new IllegalArgumentException("The histogram is not an earlier snapshot of this one.");
+			}
+			window.counts[i] = c;
+			if (c > 0) {
+				if (first < 0) {
+					first = i;
+				}
+				last = i;
+			}
+		}
+		window.count = count - earlier.count;
+		if (window.count > 0) {
+			window.sum = sum - earlier.sum;
+			window.min = Math.max(min, lowerBound(first));
+			window.max = Math.min(max, upperBound(last));
+		}
+		return window;
+	}
+
+	/**
+	 * Gets a percentile of the latencies, e.g. 50 for the median or 99.
+	 *
+	 * @param percentile the percentile, from 0 to 100
+	 * @return the latency, or NaN if no latency was recorded
+	 */
+	public double getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile should be between 0 and 100.");
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		if (rank >= count) {
+			return max;
+		}
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				double value = (lowerBound(i) + upperBound(i)) / 2;
+				return Math.min(max, Math.max(min, value));
+			}
+		}
+		return max;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the mean of the latencies.
+	 *
+	 * @return the mean, or NaN if no latency was recorded
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * Gets the smallest latency.
+	 *
+	 * @return the smallest latency, or NaN if no latency was recorded
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Gets the largest latency.
+	 *
+	 * @return the largest latency, or NaN if no latency was recorded
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Gets the median, the 95th and 99th percentiles and the maximum of the latencies, for reports,
+	 * rounded to 4 significant digits.
+	 *
+	 * @return the percentiles, as "p50 = ..., p95 = ..., p99 = ..., max = ..."
+	 */
+	public String getPercentileSummary() {
+		return "p50 = " + format(getPercentile(50)) + ", p95 = " + format(getPercentile(95)) + ", p99 = "
+				+ format(getPercentile(99)) + ", max = " + format(getMax());
+	}
+
+	/**
+	 * Formats a latency for the summaries, e.g. 12.08 for 12.075700000001.
+	 */
+	private static String format(double latency) {
+		if (Double.isNaN(latency) || Double.isInfinite(latency)) {
+			return String.valueOf(latency);
+		}
+		return new BigDecimal(latency).round(SUMMARY_PRECISION).stripTrailingZeros().toPlainString();
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + count + ", mean=" + getMean() + ", " + getPercentileSummary() + "]";
+	}
+
+	/**
+	 * Gets the bucket of a latency.
+	 */
+	private static int bucketOf(double latency) {
+		if (!(latency > 0)) {
+			return ZERO_BUCKET;
+		}
+		long bits = Double.doubleToRawLongBits(latency);
+		int exponent = (int) ((bits >>> 52) & 0x7ff) - 1023;
+		if (exponent < MIN_EXPONENT) {
+			return UNDERFLOW_BUCKET;
+		}
+		if (exponent > MAX_EXPONENT) {
+			return OVERFLOW_BUCKET;
+		}
+		int subBucket = (int) ((bits >>> (52 - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+		return 2 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+	}
+
+	private static double lowerBound(int bucket) {
+		if (bucket == ZERO_BUCKET) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		if (bucket == UNDERFLOW_BUCKET) {
+			return 0;
+		}
+		if (bucket == OVERFLOW_BUCKET) {
+			return Math.scalb(1.0, MAX_EXPONENT + 1);
+		}
+		int exponent = MIN_EXPONENT + (bucket - 2) / SUB_BUCKETS;
+		int subBucket = (bucket - 2) % SUB_BUCKETS;
+		return Math.scalb(1.0 + (double) subBucket / SUB_BUCKETS, exponent);
+	}
+
+	private static double upperBound(int bucket) {
+		if (bucket == ZERO_BUCKET) {
+			return 0;
+		}
+		if (bucket == UNDERFLOW_BUCKET) {
+			return Math.scalb(1.0, MIN_EXPONENT);
+		}
+		if (bucket == OVERFLOW_BUCKET) {
+			return Double.POSITIVE_INFINITY;
+		}
+		int exponent = MIN_EXPONENT + (bucket - 2) / SUB_BUCKETS;
+		int subBucket = (bucket - 2) % SUB_BUCKETS;
+		return Math.scalb(1.0 + (double) (subBucket + 1) / SUB_BUCKETS, exponent);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof LatencyHistogram)) {
+			return false;
+		}
+		LatencyHistogram other = (LatencyHistogram) o;
+		return count == other.count && Double.compare(sum, other.sum) == 0 && Double.compare(min, other.min) == 0
+				&& Double.compare(max, other.max) == 0 && Arrays.equals(counts, other.counts);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(counts);
+	}
+}
@@ -1,9 +1,23 @@
 package org.fog.utils;
 
 import java.text.DecimalFormat;
+import java.util.function.Supplier;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.TraceSink;
 
+/**
+ * The debug and error log of the fog entities, disabled by default.
+ *
+ * The message of a log statement on a hot path should not be built before the log is known to be
+ * enabled: pass a format and its arguments, formatted as in String.format() only when the
+ * statement prints, or a supplier of the message. A statement with reference arguments then costs
+ * a branch when the log is disabled; primitive arguments are still boxed at the call site, so such
+ * a statement should be guarded by {@link #isDebugEnabled()} or {@link #isErrorEnabled()}.
+ *
+ * If the simulation has a {@link TraceSink} tracing log messages, the messages go to the sink
+ * instead of the standard output, and are formatted by the thread of the sink.
+ */
 public class Logger {
 	
 	public static final int ERROR = 1;
@@ -11,24 +25,185 @@ public class Logger {
 	
 	public static int LOG_LEVEL = Logger.DEBUG;
 	private static DecimalFormat df = new DecimalFormat("#.00"); 
-
-	public static boolean ENABLED = false;;
+	
+	public static boolean ENABLED = false;
 	
 	public static void setLogLevel(int level){
 		Logger.LOG_LEVEL = level;
 	}
 	
+	/**
+	 * Checks if debug messages are printed.
+	 * @return true if the log is enabled at the debug level
+	 */
+	public static boolean isDebugEnabled(){
+		return ENABLED && Logger.LOG_LEVEL <= Logger.DEBUG;
+	}
+	
+	/**
+	 * Checks if error messages are printed.
+	 * @return true if the log is enabled at the error level or below
+	 */
+	public static boolean isErrorEnabled(){
+		return ENABLED && Logger.LOG_LEVEL <= Logger.ERROR;
+	}
+	
 	public static void debug(String name, String message){
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.DEBUG)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+			print(name, message);
+	}
+	
+	/**
+	 * Prints a debug message built by the supplier, which is only called if the message is printed.
+	 * @param name the name of the entity logging
+	 * @param message the supplier of the message
+	 */
+	public static void debug(String name, Supplier<String> message){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			print(name, message.get());
+	}
+	
+	/**
+	 * Prints a debug message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg the argument
+	 */
+	public static void debug(String name, String format, Object arg){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			printFormat(name, format, arg);
+	}
+	
+	/**
+	 * Prints a debug message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 */
+	public static void debug(String name, String format, Object arg1, Object arg2){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			printFormat(name, format, arg1, arg2);
 	}
+	
+	/**
+	 * Prints a debug message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 */
+	public static void debug(String name, String format, Object arg1, Object arg2, Object arg3){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			printFormat(name, format, arg1, arg2, arg3);
+	}
+	
+	/**
+	 * Prints a debug message formatted as in String.format(), only if it is printed. The arguments
+	 * array is allocated at the call site, so the statement should be guarded by
+	 * {@link #isDebugEnabled()} on a hot path.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param args the arguments
+	 */
+	public static void debug(String name, String format, Object... args){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			printFormat(name, format, args);
+	}
+	
 	public static void error(String name, String message){
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			print(name, message);
+	}
+	
+	/**
+	 * Prints an error message built by the supplier, which is only called if the message is printed.
+	 * @param name the name of the entity logging
+	 * @param message the supplier of the message
+	 */
+	public static void error(String name, Supplier<String> message){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			print(name, message.get());
+	}
+	
+	/**
+	 * Prints an error message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg the argument
+	 */
+	public static void error(String name, String format, Object arg){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			printFormat(name, format, arg);
+	}
+	
+	/**
+	 * Prints an error message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 */
+	public static void error(String name, String format, Object arg1, Object arg2){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			printFormat(name, format, arg1, arg2);
+	}
+	
+	/**
+	 * Prints an error message formatted as in String.format(), only if it is printed.
+	 * @param name the name of the entity logging
+	 * @param format the format of the message
+	 * @param arg1 the first argument
+	 * @param arg2 the second argument
+	 * @param arg3 the third argument
+	 */
+	public static void error(String name, String format, Object arg1, Object arg2, Object arg3){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			printFormat(name, format, arg1, arg2, arg3);
+	}
+	
+	private static void print(String name, String message){
+		TraceSink sink = getTraceSink();
+		if(sink != null)
+			sink.log(CloudSim.clock(), name, message);
+		else
 			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
 	}
 	
+	private static void printFormat(String name, String format, Object... args){
+		TraceSink sink = getTraceSink();
+		if(sink != null)
+			sink.log(CloudSim.clock(), name, format, args);
+		else
+			print(name, String.format(format, args));
+	}
+	
+	private static TraceSink getTraceSink(){
+		TraceSink sink = CloudSim.getTraceSink();
+		return sink != null && sink.isTraced(TraceSink.LOG) ? sink : null;
+	}
+	
 }
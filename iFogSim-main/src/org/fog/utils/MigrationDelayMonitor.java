@@ -1,14 +1,28 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+
 public class MigrationDelayMonitor {
 	
-	private static double migrationDelay = 0.0;
+	/** The migration delay, one per simulation context. */
+	private static final SimulationLocal<double[]> migrationDelay = new SimulationLocal<double[]>(MigrationDelayMonitor.class, "migrationDelay") {
+		@Override
+		protected double[] initialValue() {
+			return new double[1];
+		}
+	};
 	
 	public static double getMigrationDelay() {
-		return migrationDelay;
+		return migrationDelay.get()[0];
 	}
 
-	public static void setMigrationDelay(double migrationDelayReceived) {
-		migrationDelay += migrationDelayReceived;
+	public static void setMigrationDelay(final double migrationDelayReceived) {
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				migrationDelay.get()[0] += migrationDelayReceived;
+			}
+		});
 	}
 }
@@ -0,0 +1,596 @@
+package org.fog.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * The network usage of a simulation, by link, by tuple type and by period of simulation time. A
+ * link is a direction of transfer between two devices: up from a child to its parent, down from a
+ * parent to a child, between two members of a cluster, or the migration of a module. Every
+ * transfer adds its size in bytes and its latency-weighted usage, the latency times the size as in
+ * {@link NetworkUsageMonitor}, to the row of its link, tuple type (or module name, for a
+ * migration) and period.
+ * <p>
+ * The rows are kept in columns of primitive arrays, and found through an open-addressing table of
+ * their keys, so that accounting a transfer allocates nothing once its row exists, except in a
+ * parallel run, where {@link NetworkUsageMonitor} defers it to the end of the time window. They
+ * can be exported as CSV, see {@link #writeCsv(String)}, or as a columnar file, see
+ * {@link #writeColumns(String)}, the columns one after the other.
+ * <p>
+ * The account keeps a single period for the whole simulation unless a resolution is set with
+ * {@link #setResolution(double)}; the account of a simulation is set up in its context, before it
+ * starts, with <tt>NetworkUsageMonitor.getAccount().setResolution(...)</tt>.
+ */
+public class NetworkUsageAccount implements Serializable {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The kind of the link from a child to its parent. */
+	public static final int UP = 0;
+
+	/** The kind of the link from a parent to a child. */
+	public static final int DOWN = 1;
+
+	/** The kind of the link between two members of a cluster. */
+	public static final int CLUSTER = 2;
+
+	/** The kind of the link a module migrates on. */
+	public static final int MIGRATION = 3;
+
+	/** The names of the kinds of links, by kind. */
+	private static final String[] KIND_NAMES = {"up", "down", "cluster", "migration"};
+
+	/** The magic number at the start of a columnar file. */
+	private static final int COLUMNS_MAGIC = 0x464e5531;
+
+	/** The resolution of the periods, or 0 for a single period. */
+	private double resolution;
+
+	/** The ids of the links, by source, destination and kind, see {@link #linkKey(int, int, int)}. */
+	private final LongIntTable linkIds = new LongIntTable();
+
+	/** The number of links. */
+	private int linkCount;
+
+	/** The sources, destinations and kinds of the links, by id. */
+	private int[] linkSources = new int[16], linkDestinations = new int[16], linkKinds = new int[16];
+
+	/** The names of the sources and destinations of the links, by id. */
+	private final List<String> linkSourceNames = new ArrayList<String>();
+	private final List<String> linkDestinationNames = new ArrayList<String>();
+
+	/** The ids of the tuple types and module names. */
+	private final Map<String, Integer> typeIds = new HashMap<String, Integer>();
+
+	/** The tuple types and module names, by id. */
+	private final List<String> types = new ArrayList<String>();
+
+	/** The columns of the rows: link, type, period, number of transfers, bytes and usage. */
+	private int[] rowLinks = new int[64], rowTypes = new int[64], rowPeriods = new int[64];
+	private long[] rowCounts = new long[64];
+	private double[] rowBytes = new double[64], rowUsages = new double[64];
+
+	/** The number of rows. */
+	private int rowCount;
+
+	/** The rows, by link, type and period, see {@link #rowKey(int, int, int)}. */
+	private LongIntTable rowIds = new LongIntTable();
+
+	/** The cached id of the last link and type accounted, as most transfers repeat them. */
+	private transient boolean lastLinkCached;
+	private transient long lastLinkKey;
+	private transient int lastLinkId;
+	private transient String lastType;
+	private transient int lastTypeId;
+
+	/**
+	 * Creates an account keeping a single period.
+	 */
+	public NetworkUsageAccount() {
+	}
+
+	/**
+	 * Gets the resolution of the periods.
+	 *
+	 * @return the length of a period, or 0 if the account keeps a single period
+	 */
+	public double getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Sets the resolution of the periods, dropping the rows accounted so far.
+	 *
+	 * @param resolution the length of a period, or 0 to keep a single period
+	 */
+	public void setResolution(double resolution) {
+		if (resolution < 0 || Double.isNaN(resolution) || Double.isInfinite(resolution)) {
+			throw new IllegalArgumentException("The resolution should be a positive time, or 0.");
+		}
+		this.resolution = resolution;
+		rowCount = 0;
+		rowIds = new LongIntTable();
+	}
+
+	/**
+	 * Accounts a transfer on a link.
+	 *
+	 * @param time the time the transfer starts
+	 * @param sourceId the id of the device sending
+	 * @param destinationId the id of the device receiving
+	 * @param kind the kind of the link, {@link #UP}, {@link #DOWN}, {@link #CLUSTER} or {@link #MIGRATION}
+	 * @param type the tuple type, or the module name for a migration
+	 * @param latency the latency of the link
+	 * @param size the size of the transfer in bytes
+	 */
+	public void add(double time, int sourceId, int destinationId, int kind, String type, double latency, double size) {
+		if (kind < UP || kind > MIGRATION) {
+			throw new IllegalArgumentException("Unknown kind of link: " + kind);
+		}
+		int link = linkId(sourceId, destinationId, kind);
+		int typeId = typeId(type);
+		int period = resolution > 0 ? (int) (time / resolution) : 0;
+		int row = row(link, typeId, period);
+		rowCounts[row]++;
+		rowBytes[row] += size;
+		rowUsages[row] += latency * size;
+	}
+
+	private int linkId(int sourceId, int destinationId, int kind) {
+		long key = linkKey(sourceId, destinationId, kind);
+		if (lastLinkCached && key == lastLinkKey) {
+			return lastLinkId;
+		}
+		int id = linkIds.get(key);
+		if (id < 0) {
+			id = linkCount++;
+			linkIds.put(key, id);
+			if (id == linkSources.length) {
+				linkSources = Arrays.copyOf(linkSources, 2 * id);
+				linkDestinations = Arrays.copyOf(linkDestinations, 2 * id);
+				linkKinds = Arrays.copyOf(linkKinds, 2 * id);
+			}
+			linkSources[id] = sourceId;
+			linkDestinations[id] = destinationId;
+			linkKinds[id] = kind;
+			linkSourceNames.add(entityName(sourceId));
+			linkDestinationNames.add(entityName(destinationId));
+		}
+		lastLinkCached = true;
+		lastLinkKey = key;
+		lastLinkId = id;
+		return id;
+	}
+
+	private int typeId(String type) {
+		if (type.equals(lastType)) {
+			return lastTypeId;
+		}
+		Integer id = typeIds.get(type);
+		if (id == null) {
+			id = types.size();
+			typeIds.put(type, id);
+			types.add(type);
+		}
+		lastType = type;
+		lastTypeId = id;
+		return id;
+	}
+
+	/**
+	 * Gets the row of a link, a type and a period, adding it if needed.
+	 */
+	private int row(int link, int type, int period) {
+		if (link >= 1 << 20 || type >= 1 << 20 || period >= 1 << 23 || period < 0) {
+			throw new IllegalStateException("Too many links, types or periods to account, or a negative time.");
+		}
+		long key = rowKey(link, type, period);
+		int row = rowIds.get(key);
+		if (row >= 0) {
+			return row;
+		}
+		row = rowCount++;
+		if (row == rowLinks.length) {
+			int length = 2 * row;
+			rowLinks = Arrays.copyOf(rowLinks, length);
+			rowTypes = Arrays.copyOf(rowTypes, length);
+			rowPeriods = Arrays.copyOf(rowPeriods, length);
+			rowCounts = Arrays.copyOf(rowCounts, length);
+			rowBytes = Arrays.copyOf(rowBytes, length);
+			rowUsages = Arrays.copyOf(rowUsages, length);
+		}
+		rowLinks[row] = link;
+		rowTypes[row] = type;
+		rowPeriods[row] = period;
+		rowCounts[row] = 0;
+		rowBytes[row] = 0;
+		rowUsages[row] = 0;
+		rowIds.put(key, row);
+		return row;
+	}
+
+	private static long linkKey(int sourceId, int destinationId, int kind) {
+		return ((long) sourceId << 34) ^ ((long) destinationId << 2) ^ kind;
+	}
+
+	private static long rowKey(int link, int type, int period) {
+		return ((long) period << 40) | ((long) link << 20) | type;
+	}
+
+	private static String entityName(int id) {
+		String name = CloudSim.getEntityName(id);
+		return name != null ? name : String.valueOf(id);
+	}
+
+	/**
+	 * Gets the number of rows, one per link, type and period with some transfer.
+	 *
+	 * @return the number of rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getLinkSource(int row) {
+		return linkSources[rowLinks[checkRow(row)]];
+	}
+
+	public int getLinkDestination(int row) {
+		return linkDestinations[rowLinks[checkRow(row)]];
+	}
+
+	public int getLinkKind(int row) {
+		return linkKinds[rowLinks[checkRow(row)]];
+	}
+
+	/**
+	 * Gets the tuple type of a row, or the module name for a migration.
+	 *
+	 * @param row the row
+	 * @return the type
+	 */
+	public String getType(int row) {
+		return types.get(rowTypes[checkRow(row)]);
+	}
+
+	/**
+	 * Gets the start of the period of a row.
+	 *
+	 * @param row the row
+	 * @return the start time of the period
+	 */
+	public double getPeriodStart(int row) {
+		return rowPeriods[checkRow(row)] * resolution;
+	}
+
+	public long getCount(int row) {
+		return rowCounts[checkRow(row)];
+	}
+
+	public double getBytes(int row) {
+		return rowBytes[checkRow(row)];
+	}
+
+	/**
+	 * Gets the latency-weighted usage of a row, the sum of the latencies times the sizes.
+	 *
+	 * @param row the row
+	 * @return the usage
+	 */
+	public double getUsage(int row) {
+		return rowUsages[checkRow(row)];
+	}
+
+	private int checkRow(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IllegalArgumentException("There is no row " + row + " in " + rowCount + " rows.");
+		}
+		return row;
+	}
+
+	/**
+	 * Gets the name of a kind of link.
+	 *
+	 * @param kind the kind
+	 * @return "up", "down", "cluster" or "migration"
+	 */
+	public static String getKindName(int kind) {
+		return KIND_NAMES[kind];
+	}
+
+	/**
+	 * Gets the latency-weighted usage of the links of a kind.
+	 *
+	 * @param kind the kind of the links
+	 * @return the usage
+	 */
+	public double getUsageOfKind(int kind) {
+		double usage = 0;
+		for (int row = 0; row < rowCount; row++) {
+			if (linkKinds[rowLinks[row]] == kind) {
+				usage += rowUsages[row];
+			}
+		}
+		return usage;
+	}
+
+	/**
+	 * Gets the latency-weighted usage of the links, by tuple type or module name, in the order the
+	 * types were first accounted.
+	 *
+	 * @return the usage by type
+	 */
+	public Map<String, Double> getUsageByType() {
+		double[] usages = new double[types.size()];
+		for (int row = 0; row < rowCount; row++) {
+			usages[rowTypes[row]] += rowUsages[row];
+		}
+		Map<String, Double> usageByType = new LinkedHashMap<String, Double>();
+		for (int type = 0; type < usages.length; type++) {
+			usageByType.put(types.get(type), usages[type]);
+		}
+		return usageByType;
+	}
+
+	/**
+	 * Gets the latency-weighted usage of all the links.
+	 *
+	 * @return the usage
+	 */
+	public double getTotalUsage() {
+		double usage = 0;
+		for (int row = 0; row < rowCount; row++) {
+			usage += rowUsages[row];
+		}
+		return usage;
+	}
+
+	/**
+	 * Writes the rows to a CSV file, with a header line, one line per row with the names of the
+	 * source and the destination of the link, its kind, the type, the start of the period, the
+	 * number of transfers, the bytes and the latency-weighted usage.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeCsv(String fileName) throws IOException {
+		Writer out = new FileWriter(fileName);
+		try {
+			out.write("source,destination,link,type,time,transfers,bytes,usage\n");
+			for (int row = 0; row < rowCount; row++) {
+				int link = rowLinks[row];
+				out.write(linkSourceNames.get(link) + "," + linkDestinationNames.get(link) + ","
+						+ KIND_NAMES[linkKinds[link]] + "," + types.get(rowTypes[row]) + ","
+						+ rowPeriods[row] * resolution + "," + rowCounts[row] + "," + rowBytes[row] + ","
+						+ rowUsages[row] + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the rows to a columnar file: a magic number, the resolution, the number of links, of
+	 * types and of rows, then the links as the columns of their source names, destination names and
+	 * kinds, the types, and the rows as the columns of their links, types, periods, numbers of
+	 * transfers, bytes and usages, each column with all its values in a row. The links and the
+	 * types of the rows are their indexes in the columns of links and of types. As the sizes of the
+	 * columns of the rows follow from their number, a column can be read without parsing the others,
+	 * see {@link #readColumn(DataInputStream, int, int)}.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeColumns(String fileName) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try {
+			int linkCount = this.linkCount;
+			out.writeInt(COLUMNS_MAGIC);
+			out.writeDouble(resolution);
+			out.writeInt(linkCount);
+			out.writeInt(types.size());
+			out.writeInt(rowCount);
+			for (String name : linkSourceNames) {
+				out.writeUTF(name);
+			}
+			for (String name : linkDestinationNames) {
+				out.writeUTF(name);
+			}
+			for (int link = 0; link < linkCount; link++) {
+				out.writeByte(linkKinds[link]);
+			}
+			for (String type : types) {
+				out.writeUTF(type);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeInt(rowLinks[row]);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeInt(rowTypes[row]);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeInt(rowPeriods[row]);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeLong(rowCounts[row]);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeDouble(rowBytes[row]);
+			}
+			for (int row = 0; row < rowCount; row++) {
+				out.writeDouble(rowUsages[row]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the header of a columnar file written by {@link #writeColumns(String)}, up to the
+	 * columns of the rows, and returns the number of rows.
+	 *
+	 * @param in the input, at the start of the file
+	 * @return the number of rows, followed in the input by the columns of links, types, periods,
+	 *         numbers of transfers, bytes and usages
+	 * @throws IOException if the input fails or is not a columnar file of an account
+	 */
+	public static int readHeader(DataInputStream in) throws IOException {
+		if (in.readInt() != COLUMNS_MAGIC) {
+			throw new IOException("Not a columnar file of a network usage account");
+		}
+		in.readDouble();
+		int linkCount = in.readInt();
+		int typeCount = in.readInt();
+		int rowCount = in.readInt();
+		for (int i = 0; i < 2 * linkCount; i++) {
+			in.readUTF();
+		}
+		in.skipBytes(linkCount);
+		for (int i = 0; i < typeCount; i++) {
+			in.readUTF();
+		}
+		return rowCount;
+	}
+
+	/**
+	 * Reads a column of the rows of a columnar file, after its header, as doubles, skipping the
+	 * columns before it.
+	 *
+	 * @param in the input, just after the header
+	 * @param rowCount the number of rows, from {@link #readHeader(DataInputStream)}
+	 * @param column the index of the column, from 0 for the links to 5 for the usages
+	 * @return the values of the column
+	 * @throws IOException if the input fails
+	 */
+	public static double[] readColumn(DataInputStream in, int rowCount, int column) throws IOException {
+		if (column < 0 || column > 5) {
+			throw new IllegalArgumentException("There is no column " + column + ".");
+		}
+		// the links, types and periods are ints, the numbers of transfers longs, the bytes and usages doubles
+		long skipped = 4L * rowCount * Math.min(column, 3) + 8L * rowCount * Math.max(0, column - 3);
+		while (skipped > 0) {
+			int n = in.skipBytes((int) Math.min(skipped, Integer.MAX_VALUE));
+			if (n <= 0) {
+				throw new IOException("The columnar file is truncated");
+			}
+			skipped -= n;
+		}
+		double[] values = new double[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			values[row] = column < 3 ? in.readInt() : column == 3 ? in.readLong() : in.readDouble();
+		}
+		return values;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof NetworkUsageAccount)) {
+			return false;
+		}
+		NetworkUsageAccount other = (NetworkUsageAccount) o;
+		if (rowCount != other.rowCount || resolution != other.resolution) {
+			return false;
+		}
+		for (int row = 0; row < rowCount; row++) {
+			if (getLinkSource(row) != other.getLinkSource(row) || getLinkDestination(row) != other.getLinkDestination(row)
+					|| getLinkKind(row) != other.getLinkKind(row) || !getType(row).equals(other.getType(row))
+					|| rowPeriods[row] != other.rowPeriods[row] || rowCounts[row] != other.rowCounts[row]
+					|| Double.compare(rowBytes[row], other.rowBytes[row]) != 0
+					|| Double.compare(rowUsages[row], other.rowUsages[row]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return rowCount;
+	}
+
+	@Override
+	public String toString() {
+		return "NetworkUsageAccount [links=" + linkCount + ", types=" + types.size() + ", rows=" + rowCount
+				+ ", usage=" + getTotalUsage() + "]";
+	}
+
+	/**
+	 * A table from long keys to non-negative int values, with open addressing and linear probing.
+	 */
+	private static final class LongIntTable implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The keys of the slots. */
+		private long[] keys = new long[64];
+
+		/** The values of the slots plus one, 0 for a free slot. */
+		private int[] values = new int[64];
+
+		private int size;
+
+		/**
+		 * Gets the value of a key, or -1 if the key is not in the table.
+		 */
+		int get(long key) {
+			int mask = keys.length - 1;
+			int slot = hash(key) & mask;
+			while (values[slot] != 0) {
+				if (keys[slot] == key) {
+					return values[slot] - 1;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Puts a key that is not in the table.
+		 */
+		void put(long key, int value) {
+			insert(key, value);
+			size++;
+			if (2 * size > keys.length) {
+				long[] oldKeys = keys;
+				int[] oldValues = values;
+				keys = new long[2 * oldKeys.length];
+				values = new int[2 * oldKeys.length];
+				for (int i = 0; i < oldKeys.length; i++) {
+					if (oldValues[i] != 0) {
+						insert(oldKeys[i], oldValues[i] - 1);
+					}
+				}
+			}
+		}
+
+		private void insert(long key, int value) {
+			int mask = keys.length - 1;
+			int slot = hash(key) & mask;
+			while (values[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value + 1;
+		}
+
+		private static int hash(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -1,18 +1,100 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationLocal;
+
 public class NetworkUsageMonitor {
 
-	private static double networkUsage = 0.0;
+	/** The network usage, one per simulation context. */
+	private static final SimulationLocal<double[]> networkUsage = new SimulationLocal<double[]>(NetworkUsageMonitor.class, "networkUsage") {
+		@Override
+		protected double[] initialValue() {
+			return new double[1];
+		}
+	};
+	
+	/** The network usage by link, tuple type and period, one per simulation context. */
+	private static final SimulationLocal<NetworkUsageAccount> account = new SimulationLocal<NetworkUsageAccount>(NetworkUsageMonitor.class, "account") {
+		@Override
+		protected NetworkUsageAccount initialValue() {
+			return new NetworkUsageAccount();
+		}
+	};
 	
 	public static void sendingTuple(double latency, double tupleNwSize){
-		networkUsage += latency*tupleNwSize;
+		add(latency*tupleNwSize);
+	}
+	
+	/**
+	 * Accounts a tuple sent on a link, in the total network usage and in the account by link.
+	 * @param sourceId the id of the device sending the tuple
+	 * @param destinationId the id of the device receiving it
+	 * @param kind the kind of the link, see {@link NetworkUsageAccount#UP}
+	 * @param tupleType the type of the tuple
+	 * @param latency the latency of the link
+	 * @param tupleNwSize the size of the tuple
+	 */
+	public static void sendingTuple(int sourceId, int destinationId, int kind, String tupleType, double latency, double tupleNwSize){
+		add(sourceId, destinationId, kind, tupleType, latency, tupleNwSize);
 	}
 	
 	public static void sendingModule(double latency, long moduleSize){
-		networkUsage += latency*moduleSize;
+		add(latency*moduleSize);
+	}
+	
+	/**
+	 * Accounts a module migrating between two devices, in the total network usage and in the
+	 * account by link.
+	 * @param sourceId the id of the device the module leaves, or on the way
+	 * @param destinationId the id of the device the module goes to, or on the way
+	 * @param moduleName the name of the module
+	 * @param latency the delay of the migration
+	 * @param moduleSize the size of the module
+	 */
+	public static void sendingModule(int sourceId, int destinationId, String moduleName, double latency, long moduleSize){
+		add(sourceId, destinationId, NetworkUsageAccount.MIGRATION, moduleName, latency, moduleSize);
+	}
+	
+	private static void add(final double usage){
+		if(CloudSim.isSequential()){
+			networkUsage.get()[0] += usage;
+			return;
+		}
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				networkUsage.get()[0] += usage;
+			}
+		});
+	}
+	
+	private static void add(final int sourceId, final int destinationId, final int kind, final String type,
+			final double latency, final double size){
+		// outside a parallel run, the accounting is done directly, without allocating a task
+		if(CloudSim.isSequential()){
+			networkUsage.get()[0] += latency*size;
+			account.get().add(CloudSim.clock(), sourceId, destinationId, kind, type, latency, size);
+			return;
+		}
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				networkUsage.get()[0] += latency*size;
+				account.get().add(CloudSim.clock(), sourceId, destinationId, kind, type, latency, size);
+			}
+		});
 	}
 	
 	public static double getNetworkUsage(){
-		return networkUsage;
+		return networkUsage.get()[0];
+	}
+	
+	/**
+	 * Gets the network usage by link, tuple type and period of the simulation context of the
+	 * calling thread.
+	 * @return the account
+	 */
+	public static NetworkUsageAccount getAccount(){
+		return account.get();
 	}
 }
@@ -1,28 +1,56 @@
 package org.fog.utils;
 
+import java.io.File;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+import org.cloudbus.cloudsim.core.SimulationLocal;
 import org.fog.entities.Tuple;
 
-public class TimeKeeper {
+public class TimeKeeper implements Serializable {
 
-	private static TimeKeeper instance;
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	private static final SimulationLocal<TimeKeeper> instance = new SimulationLocal<TimeKeeper>(TimeKeeper.class, "instance") {
+		@Override
+		protected TimeKeeper initialValue() {
+			return new TimeKeeper();
+		}
+	};
+	
+	/** The next unique id of each partition of a parallel run, following the ids given before the run. */
+	private static final SimulationLocal<int[]> partitionIds = new SimulationLocal<int[]>(TimeKeeper.class, "partitionIds") {
+		@Override
+		protected int[] partitionValue(int[] value) {
+			return new int[] {getInstance().count};
+		}
+	};
 	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
-	private Map<Integer, Double> endTimes;
-	private Map<Integer, List<Integer>> loopIdToTupleIds;
-	private Map<Integer, Double> tupleIdToCpuStartTime;
+	/** The emission times of the tuples starting a loop, by tuple id, until they end the loop. */
+	private IntDoubleMap emitTimes;
+	private IntDoubleMap endTimes;
+	/** The number of tuples that started each loop. */
+	private Map<Integer, Integer> loopIdToStartedTupleCount;
+	/** The times the tuples started executing, by tuple id, until they end executing. */
+	private IntDoubleMap tupleIdToCpuStartTime;
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
 	private Map<Integer, Double> loopIdToCurrentAverage;
 	private Map<Integer, Integer> loopIdToCurrentNum;
+	
+	/** The histograms of the delays of the loops, for their percentiles. */
+	private Map<Integer, LatencyHistogram> loopIdToDelayHistogram;
+	/** The histograms of the CPU times of the tuple types, for their percentiles. */
+	private Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram;
 
 	private Map<Integer, Integer> loopIdToLatencyQoSSuccessCount = new HashMap<>();
 
@@ -31,48 +59,134 @@ public class TimeKeeper {
 	// last execution time
 	private Map<Integer, Double> tupleIdToExecutionTime = new HashMap<>();
 	
+	/**
+	 * Gets the time keeper of the simulation context of the calling thread.
+	 */
 	public static TimeKeeper getInstance(){
-		if(instance == null)
-			instance = new TimeKeeper();
-		return instance;
+		return instance.get();
 	}
 	
 	public int getUniqueId(){
-		return count++;
+		SimulationContext context = SimulationContext.current();
+		if(context.getPartitionCount() == 1)
+			return count++;
+		return context.partitionUniqueId(partitionIds.get()[0]++);
 	}
 	
 	public void tupleStartedExecution(Tuple tuple){
-		tupleIdToCpuStartTime.put(tuple.getCloudletId(), CloudSim.clock());
+		// the tasks take the fields they need, as the tuple may be reused by the time they run
+		final int tupleId = tuple.getCloudletId();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				tupleIdToCpuStartTime.put(tupleId, CloudSim.clock());
+			}
+		});
 	}
 	
 	public void tupleEndedExecution(Tuple tuple){
-		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
+		final int tupleId = tuple.getCloudletId();
+		final String tupleType = tuple.getTupleType();
+		CloudSim.runInOrder(new Runnable() {
+			@Override
+			public void run() {
+				recordExecutionTime(tupleId, tupleType);
+			}
+		});
+	}
+	
+	private void recordExecutionTime(int tupleId, String tupleType){
+		double startTime = tupleIdToCpuStartTime.remove(tupleId);
+		if(Double.isNaN(startTime))
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
-		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
-			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
-			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
+		double executionTime = CloudSim.clock() - startTime;
+		histogram(tupleTypeToCpuTimeHistogram, tupleType).record(executionTime);
+		if(!tupleTypeToAverageCpuTime.containsKey(tupleType)){
+			tupleTypeToAverageCpuTime.put(tupleType, executionTime);
+			tupleTypeToExecutedTupleCount.put(tupleType, 1);
 		} else{
-			double currentAverage = tupleTypeToAverageCpuTime.get(tuple.getTupleType());
-			int currentCount = tupleTypeToExecutedTupleCount.get(tuple.getTupleType());
-			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), (currentAverage*currentCount+executionTime)/(currentCount+1));
+			double currentAverage = tupleTypeToAverageCpuTime.get(tupleType);
+			int currentCount = tupleTypeToExecutedTupleCount.get(tupleType);
+			tupleTypeToAverageCpuTime.put(tupleType, (currentAverage*currentCount+executionTime)/(currentCount+1));
 		}
 	}
 	
-	public Map<Integer, List<Integer>> loopIdToTupleIds(){
-		return getInstance().getLoopIdToTupleIds();
+	/**
+	 * Records that a tuple started a loop at the current simulation time. Its emission time is kept
+	 * until the loop ends, see {@link #loopEnded(int)}.
+	 * @param loopId the id of the loop
+	 * @param tupleId the unique id of the tuple, from {@link #getUniqueId()}
+	 */
+	public void loopStarted(int loopId, int tupleId){
+		Integer count = loopIdToStartedTupleCount.get(loopId);
+		loopIdToStartedTupleCount.put(loopId, count == null ? 1 : count + 1);
+		emitTimes.put(tupleId, CloudSim.clock());
+	}
+	
+	/**
+	 * Forgets the emission time of a tuple that ended its loop.
+	 * @param tupleId the unique id of the tuple
+	 * @return the emission time of the tuple, or NaN if it ended its loop already or started none
+	 */
+	public double loopEnded(int tupleId){
+		return emitTimes.remove(tupleId);
+	}
+	
+	/**
+	 * Makes the emission times and the execution start times of the tuples spill to files when
+	 * more than some tuples are in flight, e.g. for long runs losing tuples on the way, whose
+	 * times would otherwise stay in memory. The controllers close the spill files when the
+	 * simulation finishes; a simulation run without a controller calls {@link #close()} itself.
+	 * @param directory the directory of the spill files
+	 * @param maxInMemory the largest number of times of each kind kept in memory
+	 * @see IntDoubleMap#spillTo(File, int)
+	 */
+	public void spillTo(File directory, int maxInMemory){
+		emitTimes.spillTo(new File(directory, "emit-times.spill"), maxInMemory);
+		tupleIdToCpuStartTime.spillTo(new File(directory, "cpu-start-times.spill"), maxInMemory);
+	}
+	
+	/**
+	 * Closes and deletes the spill files, if any, discarding the times spilled, which are those of
+	 * tuples that did not complete. The times do not spill anymore.
+	 * @see IntDoubleMap#close()
+	 */
+	public void close(){
+		emitTimes.close();
+		tupleIdToCpuStartTime.close();
+	}
+	
+	/**
+	 * Records the delay of a loop, in the histogram of the loop. The running average of the loop is
+	 * kept by the caller.
+	 * @param loopId the id of the loop
+	 * @param delay the time from the emission of the tuple starting the loop to the end of the loop
+	 */
+	public void recordLoopDelay(int loopId, double delay){
+		histogram(loopIdToDelayHistogram, loopId).record(delay);
+	}
+	
+	private static <K> LatencyHistogram histogram(Map<K, LatencyHistogram> histograms, K key){
+		LatencyHistogram histogram = histograms.get(key);
+		if(histogram == null){
+			histogram = new LatencyHistogram();
+			histograms.put(key, histogram);
+		}
+		return histogram;
 	}
 	
 	private TimeKeeper(){
 		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
-		setEndTimes(new HashMap<Integer, Double>());
-		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
+		setEmitTimes(new IntDoubleMap());
+		setEndTimes(new IntDoubleMap());
+		setLoopIdToStartedTupleCount(new HashMap<Integer, Integer>());
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
-		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
+		setTupleIdToCpuStartTime(new IntDoubleMap());
 		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
 		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+		setLoopIdToDelayHistogram(new HashMap<Integer, LatencyHistogram>());
+		setTupleTypeToCpuTimeHistogram(new HashMap<String, LatencyHistogram>());
 	}
 	
 	public int getCount() {
@@ -83,28 +197,28 @@ public class TimeKeeper {
 		this.count = count;
 	}
 
-	public Map<Integer, Double> getEmitTimes() {
+	public IntDoubleMap getEmitTimes() {
 		return emitTimes;
 	}
 
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
+	public void setEmitTimes(IntDoubleMap emitTimes) {
 		this.emitTimes = emitTimes;
 	}
 
-	public Map<Integer, Double> getEndTimes() {
+	public IntDoubleMap getEndTimes() {
 		return endTimes;
 	}
 
-	public void setEndTimes(Map<Integer, Double> endTimes) {
+	public void setEndTimes(IntDoubleMap endTimes) {
 		this.endTimes = endTimes;
 	}
 
-	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
-		return loopIdToTupleIds;
+	public Map<Integer, Integer> getLoopIdToStartedTupleCount() {
+		return loopIdToStartedTupleCount;
 	}
 
-	public void setLoopIdToTupleIds(Map<Integer, List<Integer>> loopIdToTupleIds) {
-		this.loopIdToTupleIds = loopIdToTupleIds;
+	public void setLoopIdToStartedTupleCount(Map<Integer, Integer> loopIdToStartedTupleCount) {
+		this.loopIdToStartedTupleCount = loopIdToStartedTupleCount;
 	}
 
 	public Map<String, Double> getTupleTypeToAverageCpuTime() {
@@ -125,11 +239,11 @@ public class TimeKeeper {
 		this.tupleTypeToExecutedTupleCount = tupleTypeToExecutedTupleCount;
 	}
 
-	public Map<Integer, Double> getTupleIdToCpuStartTime() {
+	public IntDoubleMap getTupleIdToCpuStartTime() {
 		return tupleIdToCpuStartTime;
 	}
 
-	public void setTupleIdToCpuStartTime(Map<Integer, Double> tupleIdToCpuStartTime) {
+	public void setTupleIdToCpuStartTime(IntDoubleMap tupleIdToCpuStartTime) {
 		this.tupleIdToCpuStartTime = tupleIdToCpuStartTime;
 	}
 
@@ -157,6 +271,22 @@ public class TimeKeeper {
 		this.loopIdToCurrentNum = loopIdToCurrentNum;
 	}
 
+	public Map<Integer, LatencyHistogram> getLoopIdToDelayHistogram() {
+		return loopIdToDelayHistogram;
+	}
+
+	public void setLoopIdToDelayHistogram(Map<Integer, LatencyHistogram> loopIdToDelayHistogram) {
+		this.loopIdToDelayHistogram = loopIdToDelayHistogram;
+	}
+
+	public Map<String, LatencyHistogram> getTupleTypeToCpuTimeHistogram() {
+		return tupleTypeToCpuTimeHistogram;
+	}
+
+	public void setTupleTypeToCpuTimeHistogram(Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram) {
+		this.tupleTypeToCpuTimeHistogram = tupleTypeToCpuTimeHistogram;
+	}
+
 	public Map<Integer, Integer> getLoopIdToLatencyQoSSuccessCount() {
 		return loopIdToLatencyQoSSuccessCount;
 	}